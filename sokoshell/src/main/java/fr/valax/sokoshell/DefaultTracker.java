@@ -1,6 +1,10 @@
 package fr.valax.sokoshell;
 
+import fr.valax.sokoshell.solver.BucketTrackable;
+import fr.valax.sokoshell.solver.CacheStatistics;
+import fr.valax.sokoshell.solver.CorralBudget;
 import fr.valax.sokoshell.solver.ISolverStatistics;
+import fr.valax.sokoshell.solver.ParallelTrackable;
 import fr.valax.sokoshell.solver.Trackable;
 import fr.valax.sokoshell.solver.Tracker;
 import fr.valax.sokoshell.utils.Alignment;
@@ -24,6 +28,11 @@ public class DefaultTracker implements Tracker {
     private List<InstantStatistic> stats;
     private boolean end = false;
 
+    /**
+     * Last size of each bucket of a {@link BucketTrackable}. Null if the trackable doesn't have buckets
+     */
+    private List<BucketTrackable.Bucket> bucketSizes;
+
     @Override
     public synchronized void updateStatistics(Trackable trackable) {
         if (end) {
@@ -36,12 +45,21 @@ public class DefaultTracker implements Tracker {
         int queue = trackable.currentQueueSize();
 
         stats.add(new InstantStatistic(time, state, queue));
+
+        if (trackable instanceof BucketTrackable b) {
+            List<BucketTrackable.Bucket> sizes = b.bucketSizes();
+
+            if (sizes != null) {
+                bucketSizes = sizes;
+            }
+        }
     }
 
     @Override
     public synchronized void reset() {
         end = false;
         stats = new ArrayList<>();
+        bucketSizes = null;
     }
 
     @Override
@@ -52,8 +70,21 @@ public class DefaultTracker implements Tracker {
         add(end, trackable.nStateExplored(), trackable.currentQueueSize());
 
         stats.add(0, new InstantStatistic(trackable.timeStarted(), 0, 0));
+
+        long[] workersStateExploredPerSeconds = null;
+        if (trackable instanceof ParallelTrackable p && p.nWorkers() > 0) {
+            long runTime = Math.max(1, trackable.timeEnded() - trackable.timeStarted());
+
+            workersStateExploredPerSeconds = new long[p.nWorkers()];
+            for (int i = 0; i < workersStateExploredPerSeconds.length; i++) {
+                workersStateExploredPerSeconds[i] = 1000L * p.nStateExplored(i) / runTime;
+            }
+        }
+
         return new SolverStatistics(stats, trackable.timeStarted(), trackable.timeEnded(),
-                trackable.lowerBound());
+                trackable.lowerBound(), workersStateExploredPerSeconds, bucketSizes,
+                trackable.pushPatternStatistics(), trackable.corralPatternStatistics(), trackable.corralCacheStatistics(),
+                trackable.corralBudgetStatistics(), trackable.heuristicCacheStatistics());
     }
 
     private void add(long time, int state, int queue) {
@@ -79,11 +110,63 @@ public class DefaultTracker implements Tracker {
         private final long timeEnded; // in millis
         private final int lowerBound;
 
+        /**
+         * Number of state explored per seconds by each worker of a
+         * {@link ParallelTrackable}. Null if the solver isn't parallel
+         */
+        private final long[] workersStateExploredPerSeconds;
+
+        /**
+         * Last known size of each bucket of a {@link BucketTrackable}.
+         * Null if the queue of the solver isn't split into buckets
+         */
+        private final List<BucketTrackable.Bucket> bucketSizes;
+
+        /**
+         * Statistics about the deadlock patterns looked up when a crate is pushed
+         * and before researching PI corrals. Null if the solver doesn't learn patterns
+         */
+        private final CacheStatistics pushPatternStatistics;
+        private final CacheStatistics corralPatternStatistics;
+
+        /**
+         * Statistics about the cache of corrals that aren't deadlocks. Null if the solver doesn't cache corrals
+         */
+        private final CacheStatistics corralCacheStatistics;
+
+        /**
+         * Statistics about the corral researches. Null if the solver doesn't research corrals
+         */
+        private final CorralBudget.Statistics corralBudgetStatistics;
+
+        /**
+         * Statistics about the cache of heuristics. Null if the solver isn't guided by a heuristic
+         */
+        private final CacheStatistics heuristicCacheStatistics;
+
         public SolverStatistics(List<InstantStatistic> statistics, long timeStarted, long timeEnded, int lowerBound) {
+            this(statistics, timeStarted, timeEnded, lowerBound, null, null, null, null, null, null, null);
+        }
+
+        public SolverStatistics(List<InstantStatistic> statistics, long timeStarted, long timeEnded, int lowerBound,
+                                long[] workersStateExploredPerSeconds,
+                                List<BucketTrackable.Bucket> bucketSizes,
+                                CacheStatistics pushPatternStatistics,
+                                CacheStatistics corralPatternStatistics,
+                                CacheStatistics corralCacheStatistics,
+                                CorralBudget.Statistics corralBudgetStatistics,
+                                CacheStatistics heuristicCacheStatistics) {
             this.statistics = statistics;
             this.timeStarted = timeStarted;
             this.timeEnded = timeEnded;
             this.lowerBound = lowerBound;
+            this.workersStateExploredPerSeconds = workersStateExploredPerSeconds;
+            this.bucketSizes = bucketSizes;
+            this.pushPatternStatistics = pushPatternStatistics;
+            this.corralPatternStatistics = corralPatternStatistics;
+            this.corralCacheStatistics = corralCacheStatistics;
+            this.corralBudgetStatistics = corralBudgetStatistics;
+            this.heuristicCacheStatistics = heuristicCacheStatistics;
         }
 
         @Override
@@ -158,6 +241,57 @@ public class DefaultTracker implements Tracker {
             return lowerBound;
         }
 
+        /**
+         * @return number of state explored per seconds by each worker or null if the solver isn't parallel
+         */
+        public long[] workersStateExploredPerSeconds() {
+            return workersStateExploredPerSeconds;
+        }
+
+        /**
+         * @return last known size of each bucket or null if the queue of the solver isn't split into buckets
+         */
+        public List<BucketTrackable.Bucket> bucketSizes() {
+            return bucketSizes;
+        }
+
+        /**
+         * @return statistics about the deadlock patterns looked up when a crate is pushed
+         * or null if the solver doesn't learn patterns
+         */
+        public CacheStatistics pushPatternStatistics() {
+            return pushPatternStatistics;
+        }
+
+        /**
+         * @return statistics about the deadlock patterns looked up before researching PI corrals
+         * or null if the solver doesn't learn patterns
+         */
+        public CacheStatistics corralPatternStatistics() {
+            return corralPatternStatistics;
+        }
+
+        /**
+         * @return statistics about the cache of corrals or null if the solver doesn't cache corrals
+         */
+        public CacheStatistics corralCacheStatistics() {
+            return corralCacheStatistics;
+        }
+
+        /**
+         * @return statistics about the corral researches or null if the solver doesn't research corrals
+         */
+        public CorralBudget.Statistics corralBudgetStatistics() {
+            return corralBudgetStatistics;
+        }
+
+        /**
+         * @return statistics about the cache of heuristics or null if the solver isn't guided by a heuristic
+         */
+        public CacheStatistics heuristicCacheStatistics() {
+            return heuristicCacheStatistics;
+        }
+
         @Override
         public PrettyTable printStatistics(PrintStream out, PrintStream err) {
             ISolverStatistics.super.printStatistics(out, err);
@@ -166,6 +300,37 @@ public class DefaultTracker implements Tracker {
             if (!statistics.isEmpty()) {
                 out.printf("Average queue size: %d%n", averageQueueSize());
                 out.printf("State explored per seconds: %d%n",  stateExploredPerSeconds());
+
+                if (workersStateExploredPerSeconds != null) {
+                    for (int i = 0; i < workersStateExploredPerSeconds.length; i++) {
+                        out.printf("State explored per seconds by worker %d: %d%n", i, workersStateExploredPerSeconds[i]);
+                    }
+                }
+                if (bucketSizes != null) {
+                    for (BucketTrackable.Bucket bucket : bucketSizes) {
+                        out.printf("Bucket %s: %d states%n", bucket.key(), bucket.size());
+                    }
+                }
+                if (pushPatternStatistics != null && corralPatternStatistics != null) {
+                    out.printf("Deadlock patterns: %d. Push hits: %d. Push misses: %d. Corral hits: %d. Corral misses: %d%n",
+                            pushPatternStatistics.size(), pushPatternStatistics.hits(), pushPatternStatistics.misses(),
+                            corralPatternStatistics.hits(), corralPatternStatistics.misses());
+                }
+                if (corralCacheStatistics != null) {
+                    out.printf("Corral cache: %d corrals. Hit rate: %.2f%%%n",
+                            corralCacheStatistics.size(), 100 * corralCacheStatistics.hitRate());
+                }
+                if (corralBudgetStatistics != null) {
+                    out.printf("Corral researches: %d. Deadlocks: %d. Skipped: %d. Average cost: %d states. Maximal number of states: %d%n",
+                            corralBudgetStatistics.researches(), corralBudgetStatistics.deadlocks(),
+                            corralBudgetStatistics.skipped(), corralBudgetStatistics.averageCost(),
+                            corralBudgetStatistics.maxStates());
+                }
+                if (heuristicCacheStatistics != null) {
+                    out.printf("Heuristic cache: %d heuristics. Hit rate: %.2f%%. Memory: %d KB%n",
+                            heuristicCacheStatistics.size(), 100 * heuristicCacheStatistics.hitRate(),
+                            heuristicCacheStatistics.memoryUsage() / 1024);
+                }
                 out.println();
 
                 PrettyTable table = new PrettyTable();
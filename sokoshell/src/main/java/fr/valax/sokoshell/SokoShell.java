@@ -47,6 +47,7 @@ import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
 
 import static fr.valax.args.api.Command.SUCCESS;
 import static org.jline.utils.AttributedStyle.*;
@@ -103,6 +104,7 @@ public class SokoShell {
 
 
     private final java.util.Map<String, Solver> solvers = new HashMap<>();
+    private final java.util.Map<String, Supplier<Solver>> solverFactories = new HashMap<>();
     private final java.util.Map<String, Pack> packs = new HashMap<>();
     private final java.util.Map<String, BoardStyle> styles = new HashMap<>();
 
@@ -122,10 +124,11 @@ public class SokoShell {
     private SokoShell() {
         cli = createCommandLine();
 
-        addSolver(BruteforceSolver.newBFSSolver());
-        addSolver(BruteforceSolver.newDFSSolver());
-        addSolver(new AStarSolver());
-        addSolver(new FESS0Solver());
+        addSolver(() -> BruteforceSolver.newBFSSolver());
+        addSolver(() -> BruteforceSolver.newDFSSolver());
+        addSolver(AStarSolver::new);
+        addSolver(HDAStarSolver::new);
+        addSolver(FESS0Solver::new);
 
         addBoardStyle(BasicStyle.DEFAULT_STYLE);
         addBoardStyle(BasicStyle.XSB_STYLE);
@@ -152,6 +155,7 @@ public class SokoShell {
                     .addCommand(new SaveCommand())
                     .addCommand(new AutoSaveSolutionCommand())
                     .addCommand(new MoveTaskCommand())
+                    .addCommand(new SchedulerCommand())
                     .addCommand(new RemoveReport())
 
                     .subCommand(new ListPacks())
@@ -179,6 +183,7 @@ public class SokoShell {
                     .addCommand(AbstractCommand.newCommand(this::gc, "gc", "Run garbage collector.\nYou may want to use this after solving a sokoban"))
 
                     .addCommand(new ObjectSizeCommand())
+                    .addCommand(new GenerateTableCommand())
 
                     // unix-like commands
                     .addCommand(new Cat())
@@ -394,10 +399,19 @@ public class SokoShell {
     // solvers
 
     // actually private, but one day...
-    private void addSolver(Solver solver) {
+    private void addSolver(Supplier<Solver> factory) {
+        Solver solver = factory.get();
+
         solvers.put(solver.getName(), solver);
+        solverFactories.put(solver.getName(), factory);
     }
 
+    /**
+     * Returns one instance of each solver. These instances shouldn't be
+     * used to solve a level, use {@link #getSolverFactory(String)} instead
+     *
+     * @return one instance of each solver
+     */
     public Map<String, Solver> getSolvers() {
         return Collections.unmodifiableMap(solvers);
     }
@@ -406,6 +420,17 @@ public class SokoShell {
         return solvers.get(name);
     }
 
+    /**
+     * Returns an object that creates new instances of the solver named 'name'.
+     * Each {@link SolverTask} must use its own solver.
+     *
+     * @param name name of the solver
+     * @return a factory of solver or {@code null} if there is no solver with this name
+     */
+    public Supplier<Solver> getSolverFactory(String name) {
+        return solverFactories.get(name);
+    }
+
     // tasks
     public void addTask(SolverTask task) {
         taskList.offerTask(task);
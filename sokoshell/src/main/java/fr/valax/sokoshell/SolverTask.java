@@ -7,12 +7,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * A solver task is used to solve a collection of level in another thread.
+ * The solver is created when the task starts, so each task has its own solver
+ * and multiple tasks can run at the same time.
  * If the solver implements {@link Trackable}, a {@link Tracker} is added
  * to the solver.
  */
@@ -20,7 +24,8 @@ public class SolverTask {
 
     private static final AtomicInteger index = new AtomicInteger(1);
 
-    protected final Solver solver;
+    protected final Supplier<? extends Solver> solverFactory;
+    protected volatile Solver solver;
     protected final Tracker tracker;
     protected ScheduledFuture<?> trackerFuture;
 
@@ -39,10 +44,16 @@ public class SolverTask {
     private long finishedAt = -1;
     private volatile TaskStatus taskStatus = TaskStatus.PENDING;
 
+    /**
+     * Released when the task reaches a final status
+     */
+    private final CountDownLatch done = new CountDownLatch(1);
+
     private List<SolverReport> solverReports;
 
-    public SolverTask(Solver solver, Tracker tracker, List<SolverParameter> params, List<Level> levels, String pack, String level) {
-        this.solver = solver;
+    public SolverTask(Supplier<? extends Solver> solverFactory, Tracker tracker, List<SolverParameter> params,
+                      List<Level> levels, String pack, String level) {
+        this.solverFactory = Objects.requireNonNull(solverFactory);
         this.tracker = tracker;
         this.params = params;
         this.levels = Objects.requireNonNull(levels);
@@ -71,6 +82,7 @@ public class SolverTask {
         boolean solve = false;
         synchronized (this) {
             if (taskStatus == TaskStatus.PENDING) {
+                solver = Objects.requireNonNull(solverFactory.get());
                 changeStatus(TaskStatus.RUNNING);
 
                 if (tracker != null && solver instanceof Trackable t) {
@@ -191,6 +203,19 @@ public class SolverTask {
         for (TaskListener listener : listeners) {
             listener.statusChanged(this, old, newStatus);
         }
+
+        if (newStatus != TaskStatus.PENDING && newStatus != TaskStatus.RUNNING) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Blocks until the task is canceled, stopped or finished, with or without an error
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public void waitUntilFinished() throws InterruptedException {
+        done.await();
     }
 
     /**
@@ -227,14 +252,59 @@ public class SolverTask {
     }
 
     /**
-     * Returns the solver used by this task
+     * Returns the solver used by this task. The solver is created when the task starts
      *
-     * @return the solver used by this task
+     * @return the solver used by this task or {@code null} if the task never started
      */
     public Solver getSolver() {
         return solver;
     }
 
+    /**
+     * Returns the value of the max-ram parameter of this task
+     *
+     * @return the maximal number of bytes the solver is allowed to use or -1 if unlimited
+     */
+    public long getMaxRam() {
+        for (SolverParameter param : params) {
+            if (param.getName().equals(AbstractSolver.MAX_RAM)) {
+                return (long) param.getOrDefault();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of threads used by the solver of this task. Parallel solvers
+     * give it with their threads parameter, other solvers use one thread
+     *
+     * @return the number of threads used by the solver
+     */
+    public int getThreads() {
+        for (SolverParameter param : params) {
+            if (param.getName().equals(HDAStarSolver.THREADS)) {
+                return HDAStarSolver.threads((int) param.getOrDefault());
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * Returns an estimation of the memory used by the solver
+     *
+     * @return an estimation of the memory used by the solver or -1
+     * @see Trackable#memoryUsage()
+     */
+    public long memoryUsage() {
+        if (taskStatus == TaskStatus.RUNNING && solver instanceof Trackable t) {
+            return t.memoryUsage();
+        } else {
+            return -1;
+        }
+    }
+
     /**
      * The index of this task. It is independent of the {@link TaskList}.
      *
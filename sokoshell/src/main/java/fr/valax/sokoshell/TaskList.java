@@ -4,19 +4,40 @@ import java.util.*;
 
 /**
  * A task list manages a queue of {@link SolverTask}. It holds finished, pending tasks
- * and the running tasks. It is responsible for automatically starting a pending task if the
- * running task has finished
+ * and the running tasks. It is responsible for automatically starting pending tasks when
+ * a running task has finished.
+ * <br>
+ * Multiple tasks can run at the same time. A task counts once per thread of its solver
+ * (see {@link SolverTask#getThreads()}). A pending task is started only if the threads
+ * of the running tasks and of the new task don't exceed {@link #getMaxRunningTasks()}
+ * and if the projected heap usage of the running tasks and of the new task stay under
+ * {@link #getMemoryBudget()}. The projected heap usage of a task is the maximum between
+ * its current memory usage (see {@link SolverTask#memoryUsage()}) and its reservation:
+ * the max-ram parameter of the task if present, otherwise
+ * {@code memory budget / max running tasks} per thread.
+ * When no task is running, the first pending task is always started.
  */
 public class TaskList {
 
     private final List<SolverTask> finished;
-    private SolverTask runningTask;
+    private final List<SolverTask> running;
     private final LinkedList<SolverTask> pending;
 
+    private int maxRunningTasks;
+    private long memoryBudget;
+
+    /**
+     * True when {@link #stopAll()} is running: pending tasks mustn't be started
+     */
+    private boolean stopping;
+
     public TaskList() {
         finished = new ArrayList<>();
-        runningTask = null;
+        running = new ArrayList<>();
         pending = new LinkedList<>();
+
+        maxRunningTasks = Runtime.getRuntime().availableProcessors();
+        memoryBudget = Runtime.getRuntime().maxMemory() / 10 * 8;
     }
 
     /**
@@ -37,23 +58,16 @@ public class TaskList {
      */
     public synchronized void offerTask(SolverTask task, int index) {
         if (task.getTaskStatus() == TaskStatus.PENDING) {
-            if (runningTask == null) {
-                runningTask = task;
-                task.start();
-            } else if (index >= pending.size() || index < 0) {
+            if (index >= pending.size() || index < 0) {
                 pending.offer(task);
             } else {
                 pending.add(index, task);
             }
 
             task.addListener(this::onStatusChanged);
+            startPendingTasks();
         } else if (task.getTaskStatus() == TaskStatus.RUNNING) {
-            if (runningTask != null) {
-                throw new IllegalStateException("A task is already running");
-            } else {
-                runningTask = task;
-            }
-
+            running.add(task);
             task.addListener(this::onStatusChanged);
         } else {
             finished.add(task);
@@ -64,15 +78,65 @@ public class TaskList {
         if (newStatus != TaskStatus.PENDING && newStatus != TaskStatus.RUNNING) {
             finished.add(task);
 
-            if (runningTask == task) {
-                runningTask = pending.poll();
-
-                if (runningTask != null) {
-                    runningTask.start();
-                }
-            } else {
+            if (!running.remove(task)) {
                 pending.remove(task);
             }
+
+            startPendingTasks();
+        }
+    }
+
+    /**
+     * Starts pending tasks, from the top of the queue, while they can be admitted
+     *
+     * @see #canStart(SolverTask)
+     */
+    private void startPendingTasks() {
+        while (!stopping && !pending.isEmpty() && canStart(pending.getFirst())) {
+            SolverTask task = pending.poll();
+            running.add(task);
+            task.start();
+        }
+    }
+
+    /**
+     * @param task a pending task
+     * @return true if the task can be started without exceeding the maximal
+     * number of running tasks and the memory budget
+     */
+    private boolean canStart(SolverTask task) {
+        if (running.isEmpty()) {
+            return true;
+        }
+
+        int threads = task.getThreads();
+        for (SolverTask t : running) {
+            threads += t.getThreads();
+        }
+
+        if (threads > maxRunningTasks) {
+            return false;
+        }
+
+        long projected = reservation(task);
+        for (SolverTask t : running) {
+            projected += Math.max(t.memoryUsage(), reservation(t));
+        }
+
+        return projected <= memoryBudget;
+    }
+
+    /**
+     * @param task a task
+     * @return the number of bytes reserved by the task
+     */
+    private long reservation(SolverTask task) {
+        long maxRam = task.getMaxRam();
+
+        if (maxRam > 0) {
+            return maxRam;
+        } else {
+            return memoryBudget / maxRunningTasks * Math.min(task.getThreads(), maxRunningTasks);
         }
     }
 
@@ -89,8 +153,10 @@ public class TaskList {
             }
         }
 
-        if (runningTask != null && runningTask.getTaskIndex() == index) {
-            return runningTask;
+        for (SolverTask running : running) {
+            if (running.getTaskIndex() == index) {
+                return running;
+            }
         }
 
         for (SolverTask finished : pending) {
@@ -103,16 +169,29 @@ public class TaskList {
     }
 
     /**
-     * Cancel all pending tasks and stop the running task
+     * Cancel all pending tasks and stop the running tasks
      */
     public synchronized void stopAll() {
-        while (!pending.isEmpty()) {
-            SolverTask p = pending.getLast();
-            p.stop();
+        stopping = true;
+
+        try {
+            while (!pending.isEmpty()) {
+                SolverTask p = pending.getLast();
+                p.stop();
+            }
+
+            stopRunning();
+        } finally {
+            stopping = false;
         }
+    }
 
-        if (runningTask != null) {
-            runningTask.stop();
+    /**
+     * Stop all running tasks
+     */
+    public synchronized void stopRunning() {
+        for (SolverTask task : new ArrayList<>(running)) {
+            task.stop();
         }
     }
 
@@ -177,8 +256,8 @@ public class TaskList {
      *
      * @return {@code true} if a task is running
      */
-    public boolean isRunning() {
-        return runningTask != null;
+    public synchronized boolean isRunning() {
+        return !running.isEmpty();
     }
 
     /**
@@ -188,11 +267,9 @@ public class TaskList {
      * @return a list of all tasks that are in this TaskList, this includes finished, running and pending task
      */
     public synchronized List<SolverTask> getTasks() {
-        List<SolverTask> tasks = new ArrayList<>(finished.size() + pending.size() + (runningTask == null ? 0 : 1));
+        List<SolverTask> tasks = new ArrayList<>(finished.size() + running.size() + pending.size());
         tasks.addAll(finished);
-        if (runningTask != null) {
-            tasks.add(runningTask);
-        }
+        tasks.addAll(running);
         tasks.addAll(pending);
 
         return tasks;
@@ -208,12 +285,26 @@ public class TaskList {
     }
 
     /**
-     * Returns the running task
+     * Returns the running task that was started first
      *
-     * @return the running task
+     * @return the running task that was started first or {@code null}
      */
-    public SolverTask getRunningTask() {
-        return runningTask;
+    public synchronized SolverTask getRunningTask() {
+        if (running.isEmpty()) {
+            return null;
+        } else {
+            return running.get(0);
+        }
+    }
+
+    /**
+     * Returns a list of all running tasks.
+     * Modification of the returned list has no effect over the TaskList
+     *
+     * @return a list of all running tasks
+     */
+    public synchronized List<SolverTask> getRunningTasks() {
+        return new ArrayList<>(running);
     }
 
     /**
@@ -231,7 +322,7 @@ public class TaskList {
      * @return the number of task that are in this TaskList.
      */
     public int nTask() {
-        return finished.size() + (runningTask == null ? 0 : 1) + pending.size();
+        return finished.size() + running.size() + pending.size();
     }
 
     /**
@@ -242,4 +333,55 @@ public class TaskList {
     public int nPendingTask() {
         return pending.size();
     }
+
+    /**
+     * Returns the maximal number of tasks that can run at the same time.
+     * A task counts once per thread of its solver
+     *
+     * @return the maximal number of tasks that can run at the same time
+     */
+    public synchronized int getMaxRunningTasks() {
+        return maxRunningTasks;
+    }
+
+    /**
+     * Sets the maximal number of tasks that can run at the same time.
+     * Pending tasks are started if possible
+     *
+     * @param maxRunningTasks the maximal number of tasks that can run at the same time
+     * @throws IllegalArgumentException if maxRunningTasks is negative or zero
+     */
+    public synchronized void setMaxRunningTasks(int maxRunningTasks) {
+        if (maxRunningTasks <= 0) {
+            throw new IllegalArgumentException("The maximal number of running tasks must be positive");
+        }
+
+        this.maxRunningTasks = maxRunningTasks;
+        startPendingTasks();
+    }
+
+    /**
+     * Returns the number of bytes the running tasks are allowed to use
+     *
+     * @return the number of bytes the running tasks are allowed to use
+     */
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the number of bytes the running tasks are allowed to use.
+     * Pending tasks are started if possible
+     *
+     * @param memoryBudget the number of bytes the running tasks are allowed to use
+     * @throws IllegalArgumentException if memoryBudget is negative or zero
+     */
+    public synchronized void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("The memory budget must be positive");
+        }
+
+        this.memoryBudget = memoryBudget;
+        startPendingTasks();
+    }
 }
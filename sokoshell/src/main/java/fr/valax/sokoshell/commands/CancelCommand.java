@@ -24,12 +24,7 @@ public class CancelCommand extends AbstractCommand {
             if (all) {
                 list.stopAll();
             } else if (taskIndex == null) {
-                SolverTask task = list.getRunningTask();
-
-                if (task != null) {
-                    stop(task, err);
-                }
-
+                list.stopRunning();
             } else {
                 SolverTask task = list.getTask(taskIndex);
 
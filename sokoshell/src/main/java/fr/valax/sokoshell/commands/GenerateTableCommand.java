@@ -0,0 +1,84 @@
+package fr.valax.sokoshell.commands;
+
+import fr.valax.args.api.Option;
+import fr.valax.sokoshell.solver.DeadlockTableGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * Generates a deadlock table in the flat format. The generation can be
+ * stopped at any time and resumed later from the checkpoint directory.
+ * Solvers use the table given by their {@code deadlock-table} parameter.
+ *
+ * @see DeadlockTableGenerator
+ */
+public class GenerateTableCommand extends AbstractCommand {
+
+    @Option(names = {"s", "size"}, hasArgument = true, argName = "Size",
+            description = "size of the patterns. Default: 4")
+    private Integer size;
+
+    @Option(names = {"d", "split-depth"}, hasArgument = true, argName = "Depth",
+            description = "number of tiles used to split the table into subtrees. Default: 6")
+    private Integer splitDepth;
+
+    @Option(names = {"t", "threads"}, hasArgument = true, argName = "Number of threads",
+            description = "number of threads used to generate subtrees. Default: all cores")
+    private Integer threads;
+
+    @Option(names = {"c", "checkpoints"}, hasArgument = true, argName = "Directory",
+            description = "where generated subtrees are stored. Default: table-checkpoints")
+    private Path checkpoints;
+
+    @Option(names = {"o", "output"}, hasArgument = true, argName = "Output",
+            description = "where the table is written. Default: <size>x<size>.table")
+    private Path output;
+
+    @Override
+    protected int executeImpl(InputStream in, PrintStream out, PrintStream err) throws InvalidArgument {
+        int size = this.size == null ? 4 : this.size;
+        if (size < 2) {
+            throw new InvalidArgument("Size must be at least 2");
+        }
+
+        Path checkpoints = this.checkpoints == null ? Path.of("table-checkpoints") : this.checkpoints;
+        // the solvers load the table given by their deadlock-table parameter, 4x4.table by default
+        Path output = this.output == null ? Path.of(size + "x" + size + ".table") : this.output;
+
+        DeadlockTableGenerator generator = new DeadlockTableGenerator(size,
+                splitDepth == null ? 6 : splitDepth, checkpoints);
+
+        try {
+            generator.generate(threads == null ? 0 : threads, out);
+
+            out.println("Writing table to " + output);
+            generator.write(output);
+        } catch (IOException e) {
+            e.printStackTrace(err);
+            return FAILURE;
+        } catch (InterruptedException e) {
+            err.println("Interrupted. Run the command again to resume");
+            return FAILURE;
+        }
+
+        return SUCCESS;
+    }
+
+    @Override
+    public String getName() {
+        return "generate-table";
+    }
+
+    @Override
+    public String getShortDescription() {
+        return "Generate a deadlock table. Can be resumed if stopped";
+    }
+
+    @Override
+    public String[] getUsage() {
+        return new String[0];
+    }
+}
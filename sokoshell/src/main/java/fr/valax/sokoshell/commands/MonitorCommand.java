@@ -1,5 +1,6 @@
 package fr.valax.sokoshell.commands;
 
+import fr.valax.args.api.Option;
 import fr.valax.sokoshell.Exporter;
 import fr.valax.sokoshell.SokoShell;
 import fr.valax.sokoshell.SolverTask;
@@ -23,11 +24,20 @@ import java.util.List;
 
 public class MonitorCommand extends AbstractCommand {
 
+    @Option(names = {"t", "task-index"}, hasArgument = true, argName = "Task index",
+            description = "index of the running task to monitor. By default, the first running task")
+    private Integer taskIndex;
+
     @Override
     protected int executeImpl(InputStream in, PrintStream out, PrintStream err) {
-        SolverTask runningTask = sokoshell().getTaskList().getRunningTask();
+        SolverTask runningTask;
+        if (taskIndex == null) {
+            runningTask = sokoshell().getTaskList().getRunningTask();
+        } else {
+            runningTask = sokoshell().getTaskList().getTask(taskIndex);
+        }
 
-        if (runningTask == null) {
+        if (runningTask == null || runningTask.getTaskStatus() != TaskStatus.RUNNING) {
             err.println("No task are running");
             return FAILURE;
         }
@@ -0,0 +1,70 @@
+package fr.valax.sokoshell.commands;
+
+import fr.valax.args.api.Option;
+import fr.valax.sokoshell.TaskList;
+import fr.valax.sokoshell.solver.SolverParameter;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/**
+ * Shows or changes how many tasks can run at the same time and how much memory they can use.
+ *
+ * @see TaskList
+ */
+public class SchedulerCommand extends AbstractCommand {
+
+    @Option(names = {"n", "max-running-tasks"}, hasArgument = true, argName = "Number of tasks",
+            description = "maximal number of tasks running at the same time. A task counts once per solver thread")
+    private Integer maxRunningTasks;
+
+    @Option(names = {"m", "memory-budget"}, hasArgument = true, argName = "Memory",
+            description = "memory the running tasks can use. Example: 16gb")
+    private String memoryBudget;
+
+    @Override
+    protected int executeImpl(InputStream in, PrintStream out, PrintStream err) throws InvalidArgument {
+        TaskList list = sokoshell().getTaskList();
+
+        if (maxRunningTasks == null && memoryBudget == null) {
+            out.printf("Max running tasks: %d%n", list.getMaxRunningTasks());
+            out.printf("Memory budget: %d MiB%n", list.getMemoryBudget() / (1024 * 1024));
+            return SUCCESS;
+        }
+
+        if (maxRunningTasks != null) {
+            if (maxRunningTasks <= 0) {
+                throw new InvalidArgument("The maximal number of running tasks must be positive");
+            }
+
+            list.setMaxRunningTasks(maxRunningTasks);
+        }
+
+        if (memoryBudget != null) {
+            long budget = SolverParameter.RamParameter.parse(memoryBudget);
+
+            if (budget <= 0) {
+                throw new InvalidArgument("The memory budget must be positive");
+            }
+
+            list.setMemoryBudget(budget);
+        }
+
+        return SUCCESS;
+    }
+
+    @Override
+    public String getName() {
+        return "scheduler";
+    }
+
+    @Override
+    public String getShortDescription() {
+        return "Show or change the number of tasks that can run at the same time and their memory budget";
+    }
+
+    @Override
+    public String[] getUsage() {
+        return new String[0];
+    }
+}
@@ -13,6 +13,7 @@ import org.jline.reader.LineReader;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * @author PoulpoGaz
@@ -26,7 +27,7 @@ public class SolveCommand extends AbstractCommand {
     protected String levels;
 
     @Option(names = {"s", "solver-type"}, hasArgument = true, argName = "Solver type",
-            description = "solving strategy: DFS, BFS, A*, fess0 (default)",
+            description = "solving strategy: DFS, BFS, A*, HDA*, fess0 (default)",
             defaultValue = "fess0")
     protected String solver;
 
@@ -70,38 +71,44 @@ public class SolveCommand extends AbstractCommand {
             return FAILURE;
         }
 
-        Tracker tracker = null;
-        if (!this.tracker.equalsIgnoreCase("none")) {
-            tracker = getTracker();
-            if (tracker == null) {
-                err.printf("No such tracker: %s%n", this.tracker);
-                return FAILURE;
-            }
+        if (!this.tracker.equalsIgnoreCase("none") && getTracker() == null) {
+            err.printf("No such tracker: %s%n", this.tracker);
+            return FAILURE;
         }
 
         List<SolverParameter> parameters = getParameters(solver, args);
         printTask(out, solver, parameters, levels);
 
+        Supplier<Solver> factory = sokoshell().getSolverFactory(solver.getName());
         String packRequest = formatPackRequest();
-        SolverTask lastTask = null;
+        List<SolverTask> tasks = new ArrayList<>();
         if (split) {
             for (Level level : levels) {
-                lastTask = newTask(solver, tracker, parameters, List.of(level), packRequest);
+                tasks.add(newTask(factory, getTracker(), parameters, List.of(level), packRequest));
             }
         } else {
-            lastTask = newTask(solver, tracker, parameters, levels, packRequest);
+            tasks.add(newTask(factory, getTracker(), parameters, levels, packRequest));
         }
 
+        // tasks may run concurrently: wait for all of them
         if (waitUntilFinished || !sokoshell().isPromptEnabled()) {
-            while (lastTask.getTaskStatus() == TaskStatus.PENDING ||
-                    lastTask.getTaskStatus() == TaskStatus.RUNNING) {
-                Thread.onSpinWait();
+            try {
+                for (SolverTask task : tasks) {
+                    task.waitUntilFinished();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                err.println("Interrupted while waiting for the tasks");
+                return FAILURE;
             }
         }
 
         return Command.SUCCESS;
     }
 
+    /**
+     * @return a new tracker or null if the tracker doesn't exist or is 'none'
+     */
     private Tracker getTracker() {
         return switch (tracker.toLowerCase()) {
             case "light" -> new LightweightTracker();
@@ -155,12 +162,8 @@ public class SolveCommand extends AbstractCommand {
         }
     }
 
-    private SolverTask newTask(Solver solver, Tracker tracker, List<SolverParameter> params, List<Level> levels, String packRequest) {
-        SolverTask task = new SolverTask(solver, tracker, params, levels, packRequest, nullSafeToString(this.levels));
-
-        if (!sokoshell().isPromptEnabled()) {
-            task.start(false);
-        }
+    private SolverTask newTask(Supplier<Solver> solverFactory, Tracker tracker, List<SolverParameter> params, List<Level> levels, String packRequest) {
+        SolverTask task = new SolverTask(solverFactory, tracker, params, levels, packRequest, nullSafeToString(this.levels));
 
         TaskList list = sokoshell().getTaskList();
 
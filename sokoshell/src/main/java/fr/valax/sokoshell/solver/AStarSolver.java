@@ -4,11 +4,17 @@ import fr.poulpogaz.json.IJsonReader;
 import fr.poulpogaz.json.IJsonWriter;
 import fr.poulpogaz.json.JsonException;
 import fr.valax.sokoshell.commands.AbstractCommand;
+import fr.valax.sokoshell.solver.board.Board;
 import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.collections.BucketPriorityQueue;
+import fr.valax.sokoshell.solver.collections.SolverCollection;
 import fr.valax.sokoshell.solver.collections.SolverPriorityQueue;
+import fr.valax.sokoshell.solver.heuristic.CachedHeuristic;
 import fr.valax.sokoshell.solver.heuristic.GreedyHeuristic;
 import fr.valax.sokoshell.solver.heuristic.Heuristic;
+import fr.valax.sokoshell.solver.heuristic.MatchingHeuristic;
+import fr.valax.sokoshell.solver.heuristic.PatternDatabaseHeuristic;
 import fr.valax.sokoshell.solver.heuristic.SimpleHeuristic;
 import org.jline.reader.Candidate;
 import org.jline.reader.LineReader;
@@ -18,32 +24,40 @@ import java.util.List;
 
 public class AStarSolver extends AbstractSolver<WeightedState> {
 
-    private Heuristic heuristic;
     private int lowerBound;
 
     public AStarSolver() {
         super(A_STAR);
+        // a state is added again when a cheaper path to it is found
+        processed.setRememberCosts(true);
     }
 
     @Override
     protected void init(SolverParameters parameters) {
-        String heuristicName = parameters.getArgument("heuristic");
-
-        if (heuristicName.equalsIgnoreCase("simple")) {
-            heuristic = new SimpleHeuristic(board);
-        } else {
-            heuristic = new GreedyHeuristic(board);
-        }
-
-        toProcess = new SolverPriorityQueue();
+        heuristic = new CachedHeuristic(createHeuristic(parameters, board, null), zobrist);
+        toProcess = createQueue(parameters.getArgument("queue"));
     }
 
     @Override
     protected void addInitialState(Level level) {
-        final State s = level.getInitialState();
+        final State s = level.getInitialState(zobrist);
         lowerBound = heuristic.compute(s);
 
-        toProcess.addState(new WeightedState(s, 0, lowerBound));
+        // the level can't be solved
+        if (lowerBound != Heuristic.INFINITY) {
+            processed.add(s, 0);
+            toProcess.addState(new WeightedState(s, 0, lowerBound));
+        }
+    }
+
+    @Override
+    protected boolean expand(WeightedState state) {
+        // a cheaper path to this state was found after it was added to the queue
+        if (processed.cost(state) < state.cost()) {
+            return false;
+        }
+
+        return super.expand(state);
     }
 
     @Override
@@ -54,18 +68,71 @@ public class AStarSolver extends AbstractSolver<WeightedState> {
 
         final int i = board.topLeftReachablePosition(crate, crateDest);
         // The new player position is the crate position
-        WeightedState s = toProcess.cachedState().child(i, crate.getCrateIndex(), crateDest.getIndex());
-        s.setHeuristic(heuristic.compute(s));
+        WeightedState parent = toProcess.cachedState();
+        WeightedState s = parent.child(zobrist, i, crate.getCrateIndex(), crateDest.getIndex());
+        s.setCost(parent.cost() + numberOfPushes(crate, crateDest, pushDir));
+        s.setHeuristic(heuristic.compute(parent, parent.heuristic(), crate.getCrateIndex(), crate.getIndex(), crateDest.getIndex()));
+
+        if (s.heuristic() == Heuristic.INFINITY) {
+            return;
+        }
 
-        if (processed.add(s)) {
+        if (processed.add(s, s.cost())) {
             toProcess.addState(s);
         }
     }
 
+    /**
+     * Creates the heuristic given by the {@link HeuristicParameter}. Pattern databases
+     * are cached in the directory given by {@link AbstractSolver#LEVEL_DEADLOCKS_CACHE}.
+     *
+     * @param parameters parameters of the solver
+     * @param board the board used by the heuristic
+     * @param shared a heuristic of the same level whose immutable data, like pattern databases,
+     *               are shared with the new heuristic, or null
+     * @return the heuristic
+     * @throws RuntimeException if the pattern databases can't be read or written
+     */
+    static Heuristic createHeuristic(SolverParameters parameters, Board board, Heuristic shared) {
+        String heuristicName = parameters.getArgument("heuristic");
+
+        if (heuristicName.equalsIgnoreCase("simple")) {
+            return new SimpleHeuristic(board);
+        } else if (heuristicName.equalsIgnoreCase("matching")) {
+            return new MatchingHeuristic(board);
+        } else if (heuristicName.equalsIgnoreCase("pattern")) {
+            if (shared instanceof PatternDatabaseHeuristic p) {
+                return new PatternDatabaseHeuristic(board, p);
+            }
+
+            String directory = parameters.getArgument(LEVEL_DEADLOCKS_CACHE);
+            try {
+                return new PatternDatabaseHeuristic(board, SolverParameter.Directory.toPath(directory));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            return new GreedyHeuristic(board);
+        }
+    }
+
+    /**
+     * @param queueName the value of the {@link QueueParameter}
+     * @return the priority queue named queueName
+     */
+    static SolverCollection<WeightedState> createQueue(String queueName) {
+        if (queueName.equalsIgnoreCase("heap")) {
+            return new SolverPriorityQueue();
+        } else {
+            return new BucketPriorityQueue<>();
+        }
+    }
+
     @Override
     protected void addParameters(List<SolverParameter> parameters) {
         super.addParameters(parameters);
         parameters.add(new HeuristicParameter());
+        parameters.add(new QueueParameter());
     }
 
     @Override
@@ -83,7 +150,8 @@ public class AStarSolver extends AbstractSolver<WeightedState> {
 
         @Override
         public void set(String argument) throws AbstractCommand.InvalidArgument {
-            if (argument.equalsIgnoreCase("greedy") || argument.equalsIgnoreCase("simple")) {
+            if (argument.equalsIgnoreCase("greedy") || argument.equalsIgnoreCase("simple")
+                    || argument.equalsIgnoreCase("matching") || argument.equalsIgnoreCase("pattern")) {
                 this.value = argument;
             } else {
                 throw new AbstractCommand.InvalidArgument("No such heuristic: " + argument);
@@ -114,6 +182,52 @@ public class AStarSolver extends AbstractSolver<WeightedState> {
         public void complete(LineReader reader, String argument, List<Candidate> candidates) {
             candidates.add(new Candidate("simple"));
             candidates.add(new Candidate("greedy"));
+            candidates.add(new Candidate("matching"));
+            candidates.add(new Candidate("pattern"));
+        }
+    }
+
+    protected static class QueueParameter extends SolverParameter {
+
+        private String value;
+
+        public QueueParameter() {
+            super("queue", "The priority queue the solver should use: bucket or heap");
+        }
+
+        @Override
+        public void set(String argument) throws AbstractCommand.InvalidArgument {
+            if (argument.equalsIgnoreCase("bucket") || argument.equalsIgnoreCase("heap")) {
+                this.value = argument;
+            } else {
+                throw new AbstractCommand.InvalidArgument("No such queue: " + argument);
+            }
+        }
+
+        @Override
+        public Object get() {
+            return value;
+        }
+
+        @Override
+        public Object getDefaultValue() {
+            return "bucket";
+        }
+
+        @Override
+        public void toJson(IJsonWriter jw) throws JsonException, IOException {
+            jw.value(value);
+        }
+
+        @Override
+        public void fromJson(IJsonReader jr) throws JsonException, IOException {
+            value = jr.nextString();
+        }
+
+        @Override
+        public void complete(LineReader reader, String argument, List<Candidate> candidates) {
+            candidates.add(new Candidate("bucket"));
+            candidates.add(new Candidate("heap"));
         }
     }
 }
@@ -3,8 +3,14 @@ package fr.valax.sokoshell.solver;
 import fr.valax.sokoshell.graphics.style.BasicStyle;
 import fr.valax.sokoshell.solver.board.*;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.collections.ClockCache;
+import fr.valax.sokoshell.solver.collections.CratesEncoding;
 import fr.valax.sokoshell.solver.collections.SolverCollection;
+import fr.valax.sokoshell.solver.collections.TranspositionTable;
+import fr.valax.sokoshell.solver.heuristic.CachedHeuristic;
+import fr.valax.sokoshell.solver.heuristic.PatternDatabase;
 import fr.valax.sokoshell.solver.pathfinder.CrateAStar;
+import fr.valax.sokoshell.solver.pathfinder.Node;
 import fr.valax.sokoshell.utils.SizeOf;
 
 import java.io.IOException;
@@ -18,19 +24,72 @@ import java.util.*;
  */
 public abstract class AbstractSolver<S extends State> implements Trackable, Solver {
 
-    protected static final String TIMEOUT = "timeout";
-    protected static final String MAX_RAM = "max-ram";
-    protected static final String ACCURATE = "accurate";
+    public static final String TIMEOUT = "timeout";
+    public static final String MAX_RAM = "max-ram";
+    public static final String ACCURATE = "accurate";
+    public static final String SEED = "seed";
+    public static final String LEVEL_DEADLOCKS = "level-deadlocks";
+    public static final String LEVEL_DEADLOCKS_CACHE = "level-deadlocks-cache";
+    public static final String DEADLOCK_TABLE = "deadlock-table";
+
+    /**
+     * Maximal number of corrals in {@link #corralCache}
+     */
+    private static final int CORRAL_CACHE_SIZE = 1 << 16;
 
     protected final String name;
 
-    protected final DeadlockTable table;
+    /**
+     * Deadlock table of the research, loaded from the {@link #DEADLOCK_TABLE} parameter
+     */
+    protected FlatDeadlockTable table;
 
     protected SolverCollection<S> toProcess;
-    protected final Set<State> processed = new HashSet<>();
+    protected final TranspositionTable processed = new TranspositionTable();
 
     protected MutableBoard board;
 
+    /**
+     * Freeze deadlock detector of the board. It doesn't modify the board and checks pushes without playing them
+     */
+    protected FreezeDeadlockDetector freezeDetector;
+
+    /**
+     * Deadlock patterns learned by the corrals during the research
+     */
+    protected DeadlockPatternStore patterns;
+
+    /**
+     * Hashes of the corrals that aren't deadlocks
+     */
+    protected ClockCache corralCache;
+
+    /**
+     * Limits the researches of the corrals
+     */
+    protected CorralBudget corralBudget;
+
+    /**
+     * Deadlocks of two and three crates of the level. Null if disabled
+     */
+    protected LevelDeadlockTable levelDeadlocks;
+
+    /**
+     * Buffer of {@link LevelDeadlockTable#isDeadlock(int[], int, int, int[])}
+     */
+    private final int[] levelDeadlockPlacement = new int[3];
+
+    /**
+     * Values used to hash the states of the current research
+     */
+    protected Zobrist zobrist;
+
+    /**
+     * Heuristic of the research, created by {@link #init(SolverParameters)}.
+     * Null if the research isn't guided by a heuristic
+     */
+    protected CachedHeuristic heuristic;
+
     private boolean running = false;
     private boolean stopped = false;
 
@@ -39,16 +98,26 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
     private long timeEnd = -1;
     private int nStateProcessed = -1;
     private int queueSize = -1;
+    private CacheStatistics pushPatternStatistics;
+    private CacheStatistics corralPatternStatistics;
+    private CacheStatistics corralCacheStatistics;
+    private CorralBudget.Statistics corralBudgetStatistics;
+    private CacheStatistics heuristicCacheStatistics;
     private Tracker tracker;
 
     public AbstractSolver(String name) {
         this.name = name;
+    }
 
-        try {
-            table = DeadlockTable.read(Path.of("4x4.table"));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Creates a solver that uses an already loaded deadlock table
+     *
+     * @param name name of the solver
+     * @param table the deadlock table
+     */
+    protected AbstractSolver(String name, FlatDeadlockTable table) {
+        this.name = name;
+        this.table = Objects.requireNonNull(table);
     }
 
     @Override
@@ -64,6 +133,7 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
         long timeout = params.getArgument(TIMEOUT);
         long maxRam = params.getArgument(MAX_RAM);
         boolean accurate = params.getArgument(ACCURATE);
+        long seed = params.getArgument(SEED);
 
         if (accurate) {
             SizeOf.initialize();
@@ -73,6 +143,11 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
         timeEnd = -1;
         nStateProcessed = 0;
         queueSize = 0;
+        pushPatternStatistics = null;
+        corralPatternStatistics = null;
+        corralCacheStatistics = null;
+        corralBudgetStatistics = null;
+        heuristicCacheStatistics = null;
 
         if (tracker != null) {
             tracker.reset();
@@ -82,76 +157,71 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
 
         Level level = params.getLevel();
 
-        State.initZobristValues(level.getWidth() * level.getHeight());
+        table = loadDeadlockTable(params);
+        zobrist = createZobrist(level, seed);
 
-        final State initialState = level.getInitialState();
+        final State initialState = level.getInitialState(zobrist);
         State finalState = null;
 
-        board = new MutableBoard(level);
-        board.removeStateCrates(initialState);
-        board.initForSolver();
-        board.getCorralDetector().setDeadlockTable(table);
-
+        initBoard(level, initialState);
+        initCorralBudget(params);
+        initLevelDeadlocks(params);
         init(params);
         processed.clear();
+        processed.setEncoding(CratesEncoding.smallest(board, initialState.numberOfCrates()));
 
-        addInitialState(level);
-
-        if (level.getPack().name().equals("XSokoban_90") && level.getIndex() == 3) {
-            board.getAt(9, 10).setDeadTile(true);
-        }
-
-        while (!toProcess.isEmpty() && !stopped) {
-            if (hasTimedOut(timeout)) {
-                endStatus = SolverReport.TIMEOUT;
-                break;
-            }
+        try {
+            addInitialState(level);
 
-            if (hasRamExceeded(maxRam, accurate)) {
-                endStatus = SolverReport.RAM_EXCEED;
-                break;
+            if (level.getPack().name().equals("XSokoban_90") && level.getIndex() == 3) {
+                board.getAt(9, 10).setDeadTile(true);
             }
 
-            S state = toProcess.peekAndCacheState();
-            board.addStateCrates(state);
-
-            if (board.isCompletedWith(state)) {
-                finalState = state;
-                break;
-            }
+            while (hasStateToProcess() && !stopped) {
+                if (hasTimedOut(timeout)) {
+                    endStatus = SolverReport.TIMEOUT;
+                    break;
+                }
 
-            int playerX = board.getX(state.playerPos());
-            int playerY = board.getY(state.playerPos());
+                if (hasRamExceeded(maxRam, accurate)) {
+                    endStatus = SolverReport.RAM_EXCEED;
+                    break;
+                }
 
-            CorralDetector detector = board.getCorralDetector();
-            detector.findCorral(board, playerX, playerY);
+                S state = toProcess.peekAndCacheState();
 
-            if (checkPICorralDeadlock(state)) {
-                board.removeStateCrates(state);
-                continue;
+                if (expand(state)) {
+                    finalState = withParents(state);
+                    break;
+                }
             }
-
-            // compute after checking for corral deadlock, as corral deadlock deals with tunnels
-            board.computeTunnelStatus(state);
-            board.computePackingOrderProgress(state);
-
-            addChildrenStates(board.getAt(playerX, playerY));
-            board.removeStateCrates(state);
+        } finally {
+            // END OF RESEARCH, also when the research throws: the queue may have files to delete
+
+            timeEnd = System.currentTimeMillis();
+            nStateProcessed = countProcessedStates();
+            queueSize = toProcess.size();
+            pushPatternStatistics = patterns.getPushStatistics();
+            corralPatternStatistics = patterns.getCorralStatistics();
+            corralCacheStatistics = corralCache.getStatistics();
+            corralBudgetStatistics = corralBudget.getStatistics();
+            heuristicCacheStatistics = heuristic == null ? null : heuristic.getStatistics();
+
+            // 'free' ram
+            processed.clear();
+            toProcess.clear();
+            board = null;
+            freezeDetector = null;
+            patterns = null;
+            corralCache = null;
+            corralBudget = null;
+            levelDeadlocks = null;
+            zobrist = null;
+            heuristic = null;
+
+            running = false;
         }
 
-        // END OF RESEARCH
-
-        timeEnd = System.currentTimeMillis();
-        nStateProcessed = processed.size();
-        queueSize = toProcess.size();
-
-        // 'free' ram
-        processed.clear();
-        toProcess.clear();
-        board = null;
-
-        running = false;
-
         System.out.println("END: " + finalState + " - " + endStatus);
 
         if (endStatus != null) {
@@ -165,6 +235,169 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
         }
     }
 
+    /**
+     * Called before each state is polled from {@link #toProcess}
+     *
+     * @return true if there is a state to process
+     */
+    protected boolean hasStateToProcess() {
+        return !toProcess.isEmpty();
+    }
+
+    /**
+     * Returns the solution found by the solver with all its parents, which are
+     * used to build the solution. By default, a state keeps its parents.
+     *
+     * @param finalState the solution, which is the cached state of {@link #toProcess}
+     * @return the solution with its parents
+     */
+    protected State withParents(S finalState) {
+        return finalState;
+    }
+
+    /**
+     * Creates the values used to hash the states of a level
+     *
+     * @param level the level to solve
+     * @param seed the seed of the values or a negative number for random values
+     * @return the values used to hash the states of the level
+     */
+    protected static Zobrist createZobrist(Level level, long seed) {
+        int size = level.getWidth() * level.getHeight();
+
+        if (seed < 0) {
+            return new Zobrist(size);
+        } else {
+            return new Zobrist(size, seed);
+        }
+    }
+
+    /**
+     * Creates the board used during the research and initializes it for the solver.
+     *
+     * @param level the level to solve
+     * @param initialState the initial state of the level
+     */
+    protected void initBoard(Level level, State initialState) {
+        board = new MutableBoard(level);
+        board.removeStateCrates(initialState);
+        board.initForSolver();
+        initDetectors();
+    }
+
+    /**
+     * Creates the board used during the research by copying a board of the same level initialized for the solver.
+     * Unlike {@link #initBoard(Level, State)}, the level isn't analyzed again.
+     *
+     * @param level the level to solve
+     * @param initialState the initial state of the level
+     * @param initialized a board of the level initialized for the solver, without crates
+     * @see MutableBoard#initForSolver(MutableBoard)
+     */
+    protected void initBoard(Level level, State initialState, MutableBoard initialized) {
+        board = new MutableBoard(level);
+        board.removeStateCrates(initialState);
+        board.initForSolver(initialized);
+        initDetectors();
+    }
+
+    private void initDetectors() {
+        board.getCorralDetector().setDeadlockTable(table);
+
+        freezeDetector = new FreezeDeadlockDetector(board);
+
+        patterns = new DeadlockPatternStore(board);
+        board.getCorralDetector().setDeadlockPatternStore(patterns);
+
+        corralCache = new ClockCache(CORRAL_CACHE_SIZE);
+        board.getCorralDetector().setNotDeadlockCache(corralCache);
+    }
+
+    /**
+     * Creates the budget of the corral researches. The board must be initialized.
+     *
+     * @param params parameters of the solver
+     */
+    protected void initCorralBudget(SolverParameters params) {
+        corralBudget = CorralBudget.of(params);
+        board.getCorralDetector().setBudget(corralBudget);
+    }
+
+    /**
+     * Loads the table given by the {@link #DEADLOCK_TABLE} parameter. Tables are shared by all solvers.
+     *
+     * @param params parameters of the solver
+     * @return the deadlock table
+     * @throws RuntimeException if the table can't be loaded
+     */
+    static FlatDeadlockTable loadDeadlockTable(SolverParameters params) {
+        String path = params.getArgument(DEADLOCK_TABLE);
+
+        try {
+            return FlatDeadlockTable.get(Path.of(path));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Computes or loads the deadlocks of two and three crates of the level if they are enabled.
+     * The board must be initialized.
+     *
+     * @param params parameters of the solver
+     * @throws RuntimeException if the pattern databases can't be read or written
+     */
+    protected void initLevelDeadlocks(SolverParameters params) {
+        boolean enabled = params.getArgument(LEVEL_DEADLOCKS);
+
+        if (enabled) {
+            String directory = params.getArgument(LEVEL_DEADLOCKS_CACHE);
+
+            try {
+                levelDeadlocks = LevelDeadlockTable.getOrCreate(board, params.getLevel().getNumberOfCrates(),
+                        LevelDeadlockTable.DEFAULT_MAX_STATES, SolverParameter.Directory.toPath(directory));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            levelDeadlocks = null;
+        }
+    }
+
+    /**
+     * Expands a state: checks if the state is a solution or a PI corral deadlock.
+     * Otherwise, all children of the state are added with {@link #addState(TileInfo, TileInfo, Direction)}.
+     * The state must be the cached state of {@link #toProcess}
+     *
+     * @param state the state to expand
+     * @return true if the state is a solution
+     */
+    protected boolean expand(S state) {
+        board.addStateCrates(state);
+
+        if (board.isCompletedWith(state)) {
+            board.removeStateCrates(state);
+            return true;
+        }
+
+        int playerX = board.getX(state.playerPos());
+        int playerY = board.getY(state.playerPos());
+
+        CorralDetector detector = board.getCorralDetector();
+        detector.findCorral(board, playerX, playerY, state.cratesIndices());
+
+        if (!checkPICorralDeadlock(state)) {
+            // compute after checking for corral deadlock, as corral deadlock deals with tunnels
+            board.computeTunnelStatus(state);
+            board.computePackingOrderProgress(state);
+
+            addChildrenStates(board.getAt(playerX, playerY));
+        }
+
+        board.removeStateCrates(state);
+        return false;
+    }
+
     /**
      * Initialize the solver. This method is called after the initialization of
      * the board
@@ -174,6 +407,10 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
     protected abstract void addInitialState(Level level);
 
     protected boolean checkPICorralDeadlock(State state) {
+        if (patterns.isDeadlock(board, state.cratesIndices(), state.playerPos())) {
+            return true;
+        }
+
         CorralDetector detector = board.getCorralDetector();
         detector.findPICorral(board, state.cratesIndices());
 
@@ -214,7 +451,7 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
     }
 
     protected void tryGoalCut(TileInfo crate) {
-        TileInfo player = board.getAt(currentState().playerPos());
+        TileInfo player = board.getAt(toProcess.cachedState().playerPos());
 
         // only works because rooms have one entry
         CrateAStar crateAStar = board.getCrateAStar();
@@ -343,19 +580,59 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
      * @return true if deadlock
      */
     protected boolean checkDeadlockBeforeAdding(TileInfo crate, TileInfo crateDest, Direction pushDir) {
-        crate.removeCrate();
-        crateDest.addCrate();
+        // the freeze detector doesn't need the move to be done
+        if (freezeDetector.checkFreezeDeadlock(crate.getIndex(), crateDest.getIndex())) {
+            return true;
+        }
+
+        if (levelDeadlocks != null &&
+                levelDeadlocks.isDeadlock(toProcess.cachedState().cratesIndices(),
+                        crate.getIndex(), crateDest.getIndex(), levelDeadlockPlacement)) {
+            return true;
+        }
+
+        // the table and the patterns read the board as if the move was done
+        if (pushDir != null &&
+                table.isDeadlock(crateDest.adjacent(pushDir.negate()), pushDir, crate.getIndex(), crateDest.getIndex())) {
+            return true;
+        }
+
+        // after a goal macro, the player is in the area of the start of the crate, see topLeftReachablePosition
+        int player = pushDir == null ? crate.getIndex() : crateDest.adjacent(pushDir.negate()).getIndex();
+
+        return patterns.isDeadlock(board, crate.getIndex(), crateDest.getIndex(), player);
+    }
 
-        boolean deadlock = FreezeDeadlockDetector.checkFreezeDeadlock(crateDest);
+    /**
+     * Computes the number of pushes done by a move. A macro move in a tunnel pushes
+     * the crate in a straight line. Otherwise, the pushes of a goal macro are the pushes
+     * of the path found by {@link CrateAStar}, like when the solution is built.
+     *
+     * @param crate crate to move
+     * @param crateDest crate destination
+     * @param pushDir push dir of the player. If the move is a macro move,
+     *                it is the last push done by the player. It can be null
+     * @return the number of pushes done by the move
+     */
+    protected int numberOfPushes(TileInfo crate, TileInfo crateDest, Direction pushDir) {
+        if (pushDir != null) {
+            return Math.abs(crateDest.getX() - crate.getX()) + Math.abs(crateDest.getY() - crate.getY());
+        }
 
-        if (!deadlock && pushDir != null) {
-            deadlock = table.isDeadlock(crateDest.adjacent(pushDir.negate()), pushDir);
+        TileInfo player = board.getAt(toProcess.cachedState().playerPos());
+        Node node = board.getCrateAStar().findPath(player, null, crate, crateDest);
+        if (node == null) {
+            return 1;
         }
 
-        crate.addCrate();
-        crateDest.removeCrate();
+        int pushes = 0;
+        for (; node.getParent() != null; node = node.getParent()) {
+            if (!node.getCrate().isAt(node.getParent().getCrate())) {
+                pushes++;
+            }
+        }
 
-        return deadlock;
+        return pushes;
     }
 
     /**
@@ -379,16 +656,13 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
 
             if (curr != null) {
                 long stateSize;
-                long ramUsed;
                 if (accurate) {
                     stateSize = curr.approxSizeOfAccurate();
-                    ramUsed = SizeOf.approxSizeOfAccurate(processed, stateSize);
                 } else {
                     stateSize = curr.approxSizeOf();
-                    ramUsed = SizeOf.approxSizeOf(processed, stateSize);
                 }
 
-                return ramUsed + toProcess.size() * stateSize >= maxRam;
+                return processed.memoryUsage() + toProcess.size() * stateSize >= maxRam;
             }
         }
 
@@ -427,6 +701,48 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
         parameters.add(new SolverParameter.Long(TIMEOUT, "Maximal runtime of the solver", -1));
         parameters.add(new SolverParameter.RamParameter(MAX_RAM, -1));
         parameters.add(new SolverParameter.Boolean(ACCURATE, "Use a more accurate method to calculate ram usage", false));
+        parameters.add(new SolverParameter.Long(SEED, "Seed used to hash the states. Random if negative", -1));
+        addDeadlockTableParameter(parameters);
+        addLevelDeadlocksParameters(parameters);
+        addCorralParameters(parameters);
+    }
+
+    /**
+     * Adds the {@link #DEADLOCK_TABLE} parameter
+     *
+     * @param parameters the list of parameters
+     */
+    protected static void addDeadlockTableParameter(List<SolverParameter> parameters) {
+        parameters.add(new SolverParameter.File(DEADLOCK_TABLE,
+                "Deadlock table used by the solver, see generate-table",
+                FlatDeadlockTable.DEFAULT_PATH.toString()));
+    }
+
+    /**
+     * Adds the parameters of the {@link LevelDeadlockTable}
+     *
+     * @param parameters the list of parameters
+     */
+    protected static void addLevelDeadlocksParameters(List<SolverParameter> parameters) {
+        parameters.add(new SolverParameter.Boolean(LEVEL_DEADLOCKS,
+                "Precompute the deadlocks of two and three crates of the level", true));
+        parameters.add(new SolverParameter.Directory(LEVEL_DEADLOCKS_CACHE,
+                "Directory where the deadlocks and the pattern databases of the levels are cached or 'none' to disable the cache",
+                PatternDatabase.DEFAULT_DIRECTORY.toString()));
+    }
+
+    /**
+     * Adds the parameters of the {@link CorralBudget}
+     *
+     * @param parameters the list of parameters
+     */
+    protected static void addCorralParameters(List<SolverParameter> parameters) {
+        parameters.add(new SolverParameter.Integer(CorralBudget.MAX_STATES,
+                "Maximal number of states visited to prove a corral deadlock. Initial value if the budget is adaptive",
+                Corral.DEFAULT_MAX_STATES));
+        parameters.add(new SolverParameter.Boolean(CorralBudget.ADAPTIVE,
+                "Adapt the maximal number of states visited to prove a corral deadlock and skip corral researches if they don't find deadlocks",
+                true));
     }
 
     private ISolverStatistics getStatistics() {
@@ -464,12 +780,86 @@ public abstract class AbstractSolver<S extends State> implements Trackable, Solv
         if (timeStart < 0) {
             return -1;
         } else if (timeEnd < 0) {
-            return processed.size();
+            return countProcessedStates();
         } else {
             return nStateProcessed;
         }
     }
 
+    /**
+     * @return the number of states found by the current research. By default,
+     * it is the number of states in {@link #processed}
+     */
+    protected int countProcessedStates() {
+        return processed.size();
+    }
+
+    @Override
+    public CacheStatistics pushPatternStatistics() {
+        DeadlockPatternStore patterns = this.patterns;
+
+        if (patterns != null && running) {
+            return patterns.getPushStatistics();
+        } else {
+            return pushPatternStatistics;
+        }
+    }
+
+    @Override
+    public CacheStatistics corralPatternStatistics() {
+        DeadlockPatternStore patterns = this.patterns;
+
+        if (patterns != null && running) {
+            return patterns.getCorralStatistics();
+        } else {
+            return corralPatternStatistics;
+        }
+    }
+
+    @Override
+    public CacheStatistics corralCacheStatistics() {
+        ClockCache corralCache = this.corralCache;
+
+        if (corralCache != null && running) {
+            return corralCache.getStatistics();
+        } else {
+            return corralCacheStatistics;
+        }
+    }
+
+    @Override
+    public CorralBudget.Statistics corralBudgetStatistics() {
+        CorralBudget corralBudget = this.corralBudget;
+
+        if (corralBudget != null && running) {
+            return corralBudget.getStatistics();
+        } else {
+            return corralBudgetStatistics;
+        }
+    }
+
+    @Override
+    public CacheStatistics heuristicCacheStatistics() {
+        CachedHeuristic heuristic = this.heuristic;
+
+        if (heuristic != null && running) {
+            return heuristic.getStatistics();
+        } else {
+            return heuristicCacheStatistics;
+        }
+    }
+
+    @Override
+    public long memoryUsage() {
+        State curr = currentState();
+
+        if (curr != null) {
+            return processed.memoryUsage() + toProcess.size() * curr.approxSizeOf();
+        } else {
+            return -1;
+        }
+    }
+
     @Override
     public int currentQueueSize() {
         if (timeStart < 0) {
@@ -2,9 +2,11 @@ package fr.valax.sokoshell.solver;
 
 import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.collections.ExternalBFSQueue;
 import fr.valax.sokoshell.solver.collections.SolverCollection;
 
 import java.util.ArrayDeque;
+import java.util.List;
 
 /**
  * This class serves as a base class for DFS and BFS solvers, as these class are nearly the same -- the only
@@ -26,7 +28,7 @@ public abstract class BruteforceSolver extends AbstractSolver<State> {
 
     @Override
     protected void addInitialState(Level level) {
-        toProcess.addState(level.getInitialState());
+        toProcess.addState(level.getInitialState(zobrist));
     }
 
     @Override
@@ -37,7 +39,7 @@ public abstract class BruteforceSolver extends AbstractSolver<State> {
 
         final int i = board.topLeftReachablePosition(crate, crateDest);
         // The new player position is the crate position
-        State s = toProcess.cachedState().child(i, crate.getCrateIndex(), crateDest.getIndex());
+        State s = toProcess.cachedState().child(zobrist, i, crate.getCrateIndex(), crateDest.getIndex());
 
         if (processed.add(s)) {
             toProcess.addState(s);
@@ -118,13 +120,96 @@ public abstract class BruteforceSolver extends AbstractSolver<State> {
 
     private static class BFSSolver extends BruteforceSolver {
 
+        private static final String BUFFER_SIZE = "buffer-size";
+
+        /**
+         * Not null if the layers are stored on disk
+         */
+        private ExternalBFSQueue external;
+
         public BFSSolver() {
             super(BFS);
         }
 
         @Override
         protected void init(SolverParameters parameters) {
-            toProcess = new BFSSolverCollection();
+            long bufferSize = parameters.getArgument(BUFFER_SIZE);
+
+            if (bufferSize > 0) {
+                external = new ExternalBFSQueue(null, zobrist, bufferSize);
+                toProcess = external;
+            } else {
+                external = null;
+                toProcess = new BFSSolverCollection();
+            }
+        }
+
+        @Override
+        protected void addState(TileInfo crate, TileInfo crateDest, Direction pushDir) {
+            if (external == null) {
+                super.addState(crate, crateDest, pushDir);
+                return;
+            }
+
+            if (checkDeadlockBeforeAdding(crate, crateDest, pushDir)) {
+                return;
+            }
+
+            // duplicates are removed by the queue when the layer is merged
+            final int i = board.topLeftReachablePosition(crate, crateDest);
+            external.addState(external.cachedState().child(zobrist, i, crate.getCrateIndex(), crateDest.getIndex()));
+        }
+
+        @Override
+        protected boolean hasStateToProcess() {
+            if (external == null) {
+                return super.hasStateToProcess();
+            } else {
+                return external.advanceLayer();
+            }
+        }
+
+        @Override
+        protected State withParents(State finalState) {
+            if (external == null) {
+                return finalState;
+            } else {
+                return external.cachedStateWithParents();
+            }
+        }
+
+        @Override
+        protected int countProcessedStates() {
+            if (external == null) {
+                return super.countProcessedStates();
+            } else {
+                return (int) Math.min(external.nStates(), Integer.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public long memoryUsage() {
+            if (external == null) {
+                return super.memoryUsage();
+            } else {
+                return external.memoryUsage();
+            }
+        }
+
+        @Override
+        protected boolean hasRamExceeded(long maxRam, boolean accurate) {
+            if (external == null) {
+                return super.hasRamExceeded(maxRam, accurate);
+            } else {
+                return maxRam > 0 && external.memoryUsage() >= maxRam;
+            }
+        }
+
+        @Override
+        protected void addParameters(List<SolverParameter> parameters) {
+            super.addParameters(parameters);
+            parameters.add(new SolverParameter.RamParameter(BUFFER_SIZE,
+                    "If positive, layers are stored on disk and at most buffer-size bytes of states are kept in ram", -1));
         }
 
         private static class BFSSolverCollection extends BasicBruteforceSolverCollection {
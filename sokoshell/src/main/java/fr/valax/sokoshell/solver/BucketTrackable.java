@@ -0,0 +1,33 @@
+package fr.valax.sokoshell.solver;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A {@link Trackable} solver whose queue is split into buckets.
+ * It allows trackers to get the size of each bucket.
+ * <br>
+ * As for {@link Trackable}, methods are non-synchronized and <strong>should not</strong>
+ * modify the state of the solver.
+ */
+public interface BucketTrackable extends Trackable {
+
+    /**
+     * Returns the size of each non-empty bucket of the queue, from the bucket
+     * that will be processed first to the one that will be processed last.
+     *
+     * @return the size of each non-empty bucket or null if the solver isn't running
+     */
+    List<Bucket> bucketSizes();
+
+    /**
+     * @param key a description of the states in the bucket
+     * @param size the number of states in the bucket
+     */
+    record Bucket(String key, int size) implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+    }
+}
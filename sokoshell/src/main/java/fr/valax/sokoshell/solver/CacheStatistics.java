@@ -0,0 +1,37 @@
+package fr.valax.sokoshell.solver;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Statistics of a cache used during a research
+ *
+ * @param size number of entries in the cache
+ * @param hits number of lookups that found an entry
+ * @param misses number of lookups that didn't find an entry
+ * @param memoryUsage estimation of the number of bytes used by the cache or -1
+ */
+public record CacheStatistics(int size, int hits, int misses, long memoryUsage) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public CacheStatistics(int size, int hits, int misses) {
+        this(size, hits, misses, -1);
+    }
+
+    public CacheStatistics add(CacheStatistics other) {
+        long memory = memoryUsage < 0 || other.memoryUsage < 0 ? -1 : memoryUsage + other.memoryUsage;
+
+        return new CacheStatistics(size + other.size, hits + other.hits, misses + other.misses, memory);
+    }
+
+    /**
+     * @return hits / (hits + misses) or 0 if the cache was never used
+     */
+    public double hitRate() {
+        int total = hits + misses;
+
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
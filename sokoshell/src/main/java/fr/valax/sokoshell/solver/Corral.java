@@ -4,6 +4,7 @@ import fr.valax.sokoshell.solver.board.Board;
 import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.Tunnel;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.collections.ClockCache;
 
 import java.util.*;
 
@@ -13,8 +14,15 @@ public class Corral {
     public static final int IS_A_PI_CORRAL = 1;
     public static final int NOT_A_PI_CORRAL = 2;
 
+    /**
+     * Maximal number of states visited by a research when there is no {@link CorralBudget}
+     */
+    public static final int DEFAULT_MAX_STATES = 1000;
+
     protected final int id;
     protected final Board board;
+    protected final Zobrist zobrist;
+    protected final FreezeDeadlockDetector freezeDetector;
 
     protected int topX;
     protected int topY;
@@ -37,11 +45,20 @@ public class Corral {
     protected final Queue<CorralState> toVisit = new ArrayDeque<>();
     protected final ReachableTiles reachable;
     protected CorralState currentState;
-    protected DeadlockTable deadlockTable;
+    protected FlatDeadlockTable deadlockTable;
+    protected DeadlockPatternStore patterns;
+
+    /**
+     * Hashes of the corrals that aren't deadlocks, see {@link #hash()}
+     */
+    protected ClockCache notDeadlocks;
+    protected CorralBudget budget;
 
-    public Corral(int id, Board board) {
+    public Corral(int id, Board board, Zobrist zobrist, FreezeDeadlockDetector freezeDetector) {
         this.id = id;
         this.board = board;
+        this.zobrist = zobrist;
+        this.freezeDetector = freezeDetector;
         this.reachable = new ReachableTiles(board);
     }
 
@@ -56,12 +73,27 @@ public class Corral {
             return false;
         }
 
+        long hash = 0;
+        if (notDeadlocks != null) {
+            hash = hash();
+
+            if (notDeadlocks.contains(hash)) {
+                return false;
+            }
+        }
+
         addFrozenCrates(originalState);
         if (!forceContainsAllCrate && crates.size() == originalState.cratesIndices().length) {
             return false;
         }
 
+        if (budget != null && !budget.shouldResearch()) {
+            return false;
+        }
+        int maxStates = budget == null ? DEFAULT_MAX_STATES : budget.maxStates();
+
         boolean deadlock = true;
+        boolean gaveUp = false;
         CorralState firstState = removeOutsideCrate(originalState);
 
         visited.add(firstState);
@@ -72,7 +104,7 @@ public class Corral {
 
             board.addStateCrates(currentState);
 
-            if (FreezeDeadlockDetector.checkFreezeDeadlock(board, currentState)) {
+            if (freezeDetector.checkFreezeDeadlock(currentState)) {
                 board.removeStateCrates(currentState);
                 continue;
             }
@@ -83,22 +115,60 @@ public class Corral {
 
             board.removeStateCrates(currentState);
 
-            if (visited.size() >= 1000) {
+            if (deadlock && visited.size() >= maxStates) {
                 deadlock = false;
+                gaveUp = true;
             }
         }
 
+        if (budget != null) {
+            budget.researchDone(deadlock, visited.size());
+        }
+
         visited.clear();
         toVisit.clear();
 
+        // a research that gave up proved nothing: a greater budget may find a deadlock
+        if (!deadlock && !gaveUp && notDeadlocks != null) {
+            notDeadlocks.add(hash);
+        }
+
+        if (deadlock && patterns != null) {
+            // the board is empty: compute the area of the player when only the crates of the corral are present
+            board.addStateCrates(firstState);
+            reachable.findReachableCases(board.getAt(firstState.playerPos()));
+            patterns.add(firstState.cratesIndices(), reachable, board);
+            board.removeStateCrates(firstState);
+        }
+
         // re-add crates
         board.addStateCrates(originalState);
 
         return deadlock;
     }
 
+    /**
+     * Hashes the crates of the corral, including the barrier, and the top left tile
+     * of the corral, which identifies the area of the corral. Crates outside the corral
+     * are removed by the research, so two corrals with the same hash are likely to have
+     * the same result. The result also depends on frozen crates outside the corral,
+     * so only corrals that aren't deadlocks are cached: at worst, a deadlock is missed.
+     * Researches that ran out of states aren't cached.
+     *
+     * @return the hash of this corral
+     */
+    private long hash() {
+        long hash = zobrist.playerValue(board.getIndex(topX, topY));
+
+        for (int i = 0; i < crates.size(); i++) {
+            hash ^= zobrist.crateValue(crates.get(i).getIndex());
+        }
+
+        return hash;
+    }
+
     private void addFrozenCrates(State state) {
-        for (int i : state.cratesIndices) {
+        for (int i : state.cratesIndices()) {
             TileInfo crate = board.getAt(i);
 
             if (crates.contains(crate)) {
@@ -264,13 +334,13 @@ public class Corral {
             }
         }
 
-        if (dest.isTarget() && n + 1 == currentState.cratesIndices.length) { // TODO: crate may be on target
+        if (dest.isTarget() && n + 1 == currentState.numberOfCrates()) { // TODO: crate may be on target
             return false;
         }
 
         // create sub state
         int newPlayerPos = board.topLeftReachablePosition(crate, dest);
-        CorralState sub = currentState.child(newPlayerPos, crateIndex, dest.getIndex());
+        CorralState sub = currentState.child(zobrist, newPlayerPos, crateIndex, dest.getIndex());
 
         if (crate.isCrate() && dest.isTarget()) {
             sub.increaseNumberOnTarget();
@@ -311,7 +381,8 @@ public class Corral {
             }
         }
 
-        CorralState corralState = new CorralState(state.playerPos(), newCrates, null);
+        CorralState corralState = new CorralState(state.playerPos(), newCrates,
+                zobrist.hash(state.playerPos(), newCrates), null);
         corralState.setNumOnTarget(numOnTarget);
         return corralState;
     }
@@ -356,14 +427,47 @@ public class Corral {
         return isPICorral == IS_A_PI_CORRAL;
     }
 
-    public DeadlockTable getDeadlockTable() {
+    public FlatDeadlockTable getDeadlockTable() {
         return deadlockTable;
     }
 
-    public void setDeadlockTable(DeadlockTable deadlockTable) {
+    public void setDeadlockTable(FlatDeadlockTable deadlockTable) {
         this.deadlockTable = deadlockTable;
     }
 
+    public DeadlockPatternStore getDeadlockPatternStore() {
+        return patterns;
+    }
+
+    /**
+     * @param patterns where deadlocks proved by this corral are stored. Can be null
+     */
+    public void setDeadlockPatternStore(DeadlockPatternStore patterns) {
+        this.patterns = patterns;
+    }
+
+    public CorralBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @param budget the budget of the researches. If null, researches are limited to {@link #DEFAULT_MAX_STATES}
+     */
+    public void setBudget(CorralBudget budget) {
+        this.budget = budget;
+    }
+
+    public ClockCache getNotDeadlockCache() {
+        return notDeadlocks;
+    }
+
+    /**
+     * @param notDeadlocks where hashes of corrals that aren't deadlocks are stored. Can be null
+     */
+    public void setNotDeadlockCache(ClockCache notDeadlocks) {
+        this.notDeadlocks = notDeadlocks;
+    }
+
     @Override
     public int hashCode() {
         return id;
@@ -381,21 +485,17 @@ public class Corral {
 
         private int numOnTarget;
 
-        public CorralState(int playerPos, int[] cratesIndices, State parent) {
-            super(playerPos, cratesIndices, parent);
-        }
-
-        public CorralState(int playerPos, int[] cratesIndices, int hash, State parent) {
+        public CorralState(int playerPos, int[] cratesIndices, long hash, State parent) {
             super(playerPos, cratesIndices, hash, parent);
         }
 
-        private CorralState(State state) {
-            super(state.playerPos, state.cratesIndices, state.hash, state.parent);
+        private CorralState(CorralState parent, Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+            super(parent, zobrist, newPlayerPos, crateToMove, crateDestination);
         }
 
         @Override
-        public CorralState child(int newPlayerPos, int crateToMove, int crateDestination) {
-            return new CorralState(super.child(newPlayerPos, crateToMove, crateDestination));
+        public CorralState child(Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+            return new CorralState(this, zobrist, newPlayerPos, crateToMove, crateDestination);
         }
 
         public void increaseNumberOnTarget() {
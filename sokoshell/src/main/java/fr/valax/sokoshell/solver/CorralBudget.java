@@ -0,0 +1,190 @@
+package fr.valax.sokoshell.solver;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Controls how many states a {@link Corral} can visit to prove a deadlock.
+ * The budget measures the researches by windows of {@link #WINDOW} researches.
+ * At the end of each window:
+ * <ul>
+ *     <li>if at least {@link #GAVE_UP_RATE} of the researches give up and at least
+ *     {@link #HIGH_DEADLOCK_RATE} find a deadlock, the maximal number of states is doubled</li>
+ *     <li>if at least {@link #GAVE_UP_RATE} of the researches give up and less than
+ *     {@link #LOW_DEADLOCK_RATE} find a deadlock, it is halved</li>
+ *     <li>if no research found a deadlock, the budget stops corral researches:
+ *     only one research every {@link #PROBE_PERIOD} is done, to measure the success
+ *     rate. Researches restart as soon as one of them finds a deadlock</li>
+ * </ul>
+ * The budget isn't thread-safe.
+ *
+ * @see Corral#isDeadlock(State)
+ */
+public class CorralBudget {
+
+    public static final String MAX_STATES = "corral-max-states";
+    public static final String ADAPTIVE = "adaptive-corral-budget";
+
+    private static final int WINDOW = 128;
+    private static final int PROBE_PERIOD = 16;
+    private static final int MIN_STATES = 64;
+
+    /**
+     * Researches of a window often give up if at least 10% of them give up
+     */
+    private static final double GAVE_UP_RATE = 0.1;
+
+    /**
+     * The maximal number of states is doubled if at least 2% of the researches
+     * of a window find a deadlock, i.e. 3 researches of 128
+     */
+    private static final double HIGH_DEADLOCK_RATE = 0.02;
+
+    /**
+     * The maximal number of states is halved if less than 1.5% of the researches
+     * of a window find a deadlock, i.e. 1 research of 128
+     */
+    private static final double LOW_DEADLOCK_RATE = 0.015;
+
+    private final boolean adaptive;
+    private final int upperBound;
+    private int maxStates;
+
+    // current window
+    private int windowResearches;
+    private int windowDeadlocks;
+    private int windowGaveUp;
+
+    private boolean paused;
+    private int pausedCounter;
+
+    // whole research
+    private int researches;
+    private int deadlocks;
+    private int skipped;
+    private long visitedStates;
+
+    /**
+     * @param maxStates initial maximal number of states visited by a research
+     * @param adaptive true to adapt the maximal number of states and to pause
+     *                 researches. Otherwise, the maximal number of states is constant
+     */
+    public CorralBudget(int maxStates, boolean adaptive) {
+        if (maxStates <= 0) {
+            throw new IllegalArgumentException("Maximal number of states must be positive");
+        }
+
+        this.maxStates = maxStates;
+        this.adaptive = adaptive;
+        this.upperBound = 32 * maxStates;
+    }
+
+    /**
+     * Creates a budget from the {@link #MAX_STATES} and {@link #ADAPTIVE} parameters
+     *
+     * @param params parameters of the solver
+     * @return a new budget
+     */
+    public static CorralBudget of(SolverParameters params) {
+        int maxStates = params.getArgument(MAX_STATES);
+        boolean adaptive = params.getArgument(ADAPTIVE);
+
+        return new CorralBudget(maxStates, adaptive);
+    }
+
+    /**
+     * @return true if a corral research should be done
+     */
+    public boolean shouldResearch() {
+        if (!paused || ++pausedCounter % PROBE_PERIOD == 0) {
+            return true;
+        }
+
+        skipped++;
+        return false;
+    }
+
+    /**
+     * @return the maximal number of states a research can visit
+     */
+    public int maxStates() {
+        return maxStates;
+    }
+
+    /**
+     * Called after each research
+     *
+     * @param deadlock true if the research proved a deadlock
+     * @param visited number of states visited by the research
+     */
+    public void researchDone(boolean deadlock, int visited) {
+        researches++;
+        visitedStates += visited;
+        windowResearches++;
+
+        if (deadlock) {
+            deadlocks++;
+            windowDeadlocks++;
+            paused = false; // researches pay off again
+        } else if (visited >= maxStates) {
+            windowGaveUp++;
+        }
+
+        if (adaptive && windowResearches == WINDOW) {
+            adapt();
+
+            windowResearches = 0;
+            windowDeadlocks = 0;
+            windowGaveUp = 0;
+        }
+    }
+
+    private void adapt() {
+        if (windowDeadlocks == 0) {
+            paused = true;
+            return;
+        }
+
+        double gaveUpRate = (double) windowGaveUp / WINDOW;
+        double deadlockRate = (double) windowDeadlocks / WINDOW;
+
+        if (gaveUpRate >= GAVE_UP_RATE) {
+            if (deadlockRate >= HIGH_DEADLOCK_RATE) {
+                maxStates = Math.min(2 * maxStates, upperBound);
+            } else if (deadlockRate < LOW_DEADLOCK_RATE) {
+                maxStates = Math.max(maxStates / 2, MIN_STATES);
+            }
+        }
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(researches, deadlocks, skipped, visitedStates, maxStates);
+    }
+
+    /**
+     * @param researches number of corral researches
+     * @param deadlocks number of researches that proved a deadlock
+     * @param skipped number of researches skipped because they weren't paying off
+     * @param visitedStates number of states visited by all researches
+     * @param maxStates maximal number of states a research could visit at the end of the solver research
+     */
+    public record Statistics(int researches, int deadlocks, int skipped, long visitedStates, int maxStates)
+            implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        public Statistics add(Statistics other) {
+            return new Statistics(researches + other.researches, deadlocks + other.deadlocks,
+                    skipped + other.skipped, visitedStates + other.visitedStates,
+                    Math.max(maxStates, other.maxStates));
+        }
+
+        /**
+         * @return average number of states visited by a research
+         */
+        public long averageCost() {
+            return researches == 0 ? 0 : visitedStates / researches;
+        }
+    }
+}
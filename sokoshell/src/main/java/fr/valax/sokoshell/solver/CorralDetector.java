@@ -3,6 +3,7 @@ package fr.valax.sokoshell.solver;
 import fr.valax.sokoshell.solver.board.Board;
 import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.collections.ClockCache;
 
 import java.util.*;
 
@@ -22,18 +23,27 @@ public class CorralDetector {
 
     private int realNumberOfCorral;
 
+    private final CorralLabels labels;
+
+    private final FreezeDeadlockDetector freezeDetector;
+
     public CorralDetector(Board board) {
         int size = board.getWidth() * board.getHeight();
         parent = new int[size];
         rank = new int[size];
         corrals = new Corral[size];
 
+        // states of the sub-researches are only compared with each other
+        Zobrist zobrist = new Zobrist(size);
+        freezeDetector = new FreezeDeadlockDetector(board);
         for (int i = 0; i < parent.length; i++) {
             parent[i] = i;
-            corrals[i] = new Corral(i, board);
+            corrals[i] = new Corral(i, board, zobrist, freezeDetector);
         }
 
         currentCorrals = new HashSet<>(size);
+
+        labels = new CorralLabels(board);
     }
 
     /**
@@ -48,6 +58,7 @@ public class CorralDetector {
      * @param playerY player position y
      */
     public void findCorral(Board board, int playerX, int playerY) {
+        labels.invalidate();
         currentCorrals.clear();
 
         int h = board.getHeight();
@@ -89,6 +100,36 @@ public class CorralDetector {
         realNumberOfCorral = currentCorrals.size();
     }
 
+    /**
+     * Same as {@link #findCorral(Board, int, int)} but the corrals are updated from the
+     * previous call to this method: only the tiles around the crates that were added
+     * or removed since are looked at. Unlike {@link #findCorral(Board, int, int)}, the
+     * id of a corral is always its top-left tile.
+     * The board must contain only the crates and the walls of the state
+     * and walls must not change between two calls.
+     *
+     * @param board the board
+     * @param playerX player position x
+     * @param playerY player position y
+     * @param crates crates on the board
+     * @see CorralLabels
+     */
+    public void findCorral(Board board, int playerX, int playerY, int[] crates) {
+        labels.update(board, crates);
+
+        // parent and rank are also rebuilt as findPICorral modifies them
+        labels.fill(parent, rank);
+
+        currentCorrals.clear();
+        for (int i = 0; i < labels.size(); i++) {
+            int topLeft = labels.topLeft(i);
+            resetCorral(corrals[topLeft], board.getX(topLeft), board.getY(topLeft));
+        }
+
+        corrals[parent[board.getIndex(playerX, playerY)]].containsPlayer = true;
+        realNumberOfCorral = labels.size();
+    }
+
     /**
      * Find PI corral
      * @param board the board
@@ -379,7 +420,10 @@ public class CorralDetector {
         parent[i] = i;
         rank[i] = 0;
 
-        Corral corral = corrals[i];
+        resetCorral(corrals[i], tile.getX(), tile.getY());
+    }
+
+    private void resetCorral(Corral corral, int topX, int topY) {
         corral.containsPlayer = false;
         corral.isPICorral = Corral.POTENTIAL_PI_CORRAL;
         corral.onlyCrateOnTarget = true;
@@ -387,8 +431,8 @@ public class CorralDetector {
         corral.crates.clear();
         corral.barrier.clear();
         corral.adjacentCorrals.clear();
-        corral.topX = tile.getX();
-        corral.topY = tile.getY();
+        corral.topX = topX;
+        corral.topY = topY;
 
         currentCorrals.add(corral);
     }
@@ -467,9 +511,31 @@ public class CorralDetector {
         return realNumberOfCorral;
     }
 
-    public void setDeadlockTable(DeadlockTable table) {
+    CorralLabels getLabels() {
+        return labels;
+    }
+
+    public void setDeadlockTable(FlatDeadlockTable table) {
         for (Corral c : corrals) {
             c.setDeadlockTable(table);
         }
     }
+
+    public void setDeadlockPatternStore(DeadlockPatternStore patterns) {
+        for (Corral c : corrals) {
+            c.setDeadlockPatternStore(patterns);
+        }
+    }
+
+    public void setBudget(CorralBudget budget) {
+        for (Corral c : corrals) {
+            c.setBudget(budget);
+        }
+    }
+
+    public void setNotDeadlockCache(ClockCache notDeadlocks) {
+        for (Corral c : corrals) {
+            c.setNotDeadlockCache(notDeadlocks);
+        }
+    }
 }
@@ -0,0 +1,642 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.solver.board.Board;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of the floor of a board, updated from one state to another.
+ * Between two states, usually only a few crates move: when a crate is added, the
+ * component around it may be split and when a crate is removed, the components around
+ * it are merged. Only the tiles near the crates that moved are looked at, unless a
+ * component is split or merged: in this case, only the smallest components are visited.
+ * When too many tiles would be visited, labels are fully recomputed.
+ * <br>
+ * Each component has a label, which is an arbitrary integer, and a top-left tile.
+ * Top-left tiles are the ids of the {@link Corral}s.
+ *
+ * @see CorralDetector#findCorral(Board, int, int, int[])
+ */
+class CorralLabels {
+
+    /**
+     * Maximal number of crates added or removed between two states for the
+     * incremental update to be used. Above, a full rebuild is cheaper
+     */
+    private static final int MAX_CHANGES = 8;
+
+    /**
+     * An update can visit at most floor / FLOOD_RATIO tiles, where floor is the
+     * number of non-wall tiles. Above, a full rebuild is cheaper
+     */
+    private static final int FLOOD_RATIO = 2;
+
+    private final int width;
+    private final int height;
+    private final int[] neighbors;
+
+    /**
+     * labels[i] is the label of the component of i, -1 if i is solid
+     */
+    private final int[] labels;
+    private final int[] topLeft;
+    private final int[] count;
+
+    // unused labels
+    private final int[] freeLabels;
+    private int nFreeLabels;
+
+    // top-left tiles of all components, sorted
+    private final int[] topLefts;
+    private int nComponents;
+
+    private final boolean[] wall;
+    private final boolean[] lastCrate;
+    private final boolean[] crate;
+    private int[] lastCrates;
+    private boolean valid;
+    private boolean wallsValid;
+
+    // changes between two updates
+    private final int[] added = new int[MAX_CHANGES];
+    private final int[] removed = new int[MAX_CHANGES];
+    private int nAdded;
+    private int nRemoved;
+
+    // flood fills. When a component is split, up to four flood fills are done at the same time
+    private final int[][] queues = new int[4][];
+    private final int[] heads = new int[4];
+    private final int[] sizes = new int[4];
+    private final int[] groups = new int[4];
+    private final int[] visited;
+    private int mark;
+    private int floodBudget;
+    private int maxFlood;
+
+    private int incrementalUpdates;
+    private int fullUpdates;
+
+    CorralLabels(Board board) {
+        width = board.getWidth();
+        height = board.getHeight();
+        neighbors = new int[] {-width, 1, width, -1};
+
+        int size = width * height;
+        labels = new int[size];
+        topLeft = new int[size];
+        count = new int[size];
+        freeLabels = new int[size];
+        topLefts = new int[size];
+        wall = new boolean[size];
+        lastCrate = new boolean[size];
+        crate = new boolean[size];
+        visited = new int[size];
+
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new int[size];
+        }
+    }
+
+    /**
+     * Forces a full rebuild at the next update. Must be called when walls change
+     */
+    void invalidate() {
+        valid = false;
+        wallsValid = false;
+    }
+
+    /**
+     * Updates the labels. The board must contain only the crates and the walls of the state
+     *
+     * @param board the board
+     * @param crates crates on the board
+     */
+    void update(Board board, int[] crates) {
+        if (valid && updateIncrementally(crates)) {
+            incrementalUpdates++;
+        } else {
+            rebuild(board, crates);
+            fullUpdates++;
+        }
+    }
+
+    /**
+     * Copies the components in a union find structure: the parent of a tile
+     * is the top-left tile of its component.
+     */
+    void fill(int[] parent, int[] rank) {
+        for (int i = 0; i < labels.length; i++) {
+            int label = labels[i];
+
+            if (label < 0) {
+                parent[i] = -1;
+                rank[i] = -1;
+            } else {
+                parent[i] = topLeft[label];
+                rank[i] = topLeft[label] == i ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of components
+     */
+    int size() {
+        return nComponents;
+    }
+
+    /**
+     * @param n a number between 0 and {@link #size()} (exclusive)
+     * @return the top-left tile of the n-th component. Components are sorted by top-left tile
+     */
+    int topLeft(int n) {
+        return topLefts[n];
+    }
+
+    /**
+     * @return the number of updates that didn't need a full rebuild
+     */
+    int getIncrementalUpdates() {
+        return incrementalUpdates;
+    }
+
+    /**
+     * @return the number of full rebuilds
+     */
+    int getFullUpdates() {
+        return fullUpdates;
+    }
+
+    private void rebuild(Board board, int[] crates) {
+        if (!wallsValid) {
+            for (int i = 0; i < wall.length; i++) {
+                wall[i] = board.getAt(i).isWall();
+            }
+            wallsValid = true;
+        }
+
+        Arrays.fill(lastCrate, false);
+        for (int crate : crates) {
+            lastCrate[crate] = true;
+        }
+        lastCrates = crates.clone();
+
+        Arrays.fill(labels, -1);
+        nComponents = 0;
+        nFreeLabels = 0;
+
+        int floor = crates.length;
+        int[] queue = queues[0];
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+
+                if (wall[i] || lastCrate[i]) {
+                    continue;
+                }
+
+                floor++;
+                if (labels[i] < 0) {
+                    // tiles are visited from top to bottom and from left to right:
+                    // i is the top-left tile of its component and is used as label
+                    labels[i] = i;
+
+                    int size = 1;
+                    queue[0] = i;
+                    for (int head = 0; head < size; head++) {
+                        int tile = queue[head];
+
+                        for (int dir = 0; dir < 4; dir++) {
+                            int adj = tile + neighbors[dir];
+
+                            if (labels[adj] < 0 && !wall[adj] && !lastCrate[adj]) {
+                                labels[adj] = i;
+                                queue[size++] = adj;
+                            }
+                        }
+                    }
+
+                    topLeft[i] = i;
+                    count[i] = size;
+                    topLefts[nComponents++] = i;
+                }
+            }
+        }
+
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (labels[i] != i) {
+                freeLabels[nFreeLabels++] = i;
+            }
+        }
+
+        maxFlood = floor / FLOOD_RATIO;
+        valid = true;
+    }
+
+    /**
+     * @return false if a full rebuild is needed
+     */
+    private boolean updateIncrementally(int[] crates) {
+        if (!diff(crates)) {
+            return false;
+        }
+
+        // labels are modified: if the update fails, they must be recomputed
+        valid = false;
+        floodBudget = maxFlood;
+
+        // Crates are processed one by one, so labels are valid after each step.
+        // Additions first: a crate is often pushed next to its old position,
+        // adding it after the removal would merge two components and split them just after
+        for (int i = 0; i < nAdded; i++) {
+            if (!addCrate(added[i])) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < nRemoved; i++) {
+            if (!removeCrate(removed[i])) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < nRemoved; i++) {
+            lastCrate[removed[i]] = false;
+        }
+        for (int i = 0; i < nAdded; i++) {
+            lastCrate[added[i]] = true;
+        }
+        System.arraycopy(crates, 0, lastCrates, 0, crates.length);
+        valid = true;
+
+        return true;
+    }
+
+    /**
+     * Computes the crates added and removed since the last update
+     *
+     * @return false if too many crates changed
+     */
+    private boolean diff(int[] crates) {
+        nAdded = 0;
+        nRemoved = 0;
+
+        boolean success = true;
+        for (int c : crates) {
+            crate[c] = true;
+
+            if (!lastCrate[c]) {
+                if (nAdded == MAX_CHANGES) {
+                    success = false;
+                    break;
+                }
+                added[nAdded++] = c;
+            }
+        }
+
+        for (int i = 0; i < lastCrates.length && success; i++) {
+            if (!crate[lastCrates[i]]) {
+                if (nRemoved == MAX_CHANGES) {
+                    success = false;
+                    break;
+                }
+                removed[nRemoved++] = lastCrates[i];
+            }
+        }
+
+        for (int c : crates) {
+            crate[c] = false;
+        }
+
+        return success;
+    }
+
+    /**
+     * The tile at i becomes solid. If the neighbors of i are still connected
+     * by looking only at the 8 tiles around i, the component isn't split.
+     * Otherwise, a flood fill is started from each neighbor.
+     */
+    private boolean addCrate(int i) {
+        int label = labels[i];
+        labels[i] = -1;
+        count[label]--;
+
+        int n = localGroups(i);
+        if (n == 0) {
+            removeTopLeft(i);
+            freeLabels[nFreeLabels++] = label;
+            return true;
+        } else if (n == 1 && topLeft[label] != i) {
+            return true;
+        }
+
+        return split(i, label, n);
+    }
+
+    /**
+     * Groups the open neighbors of i: two neighbors are in the same group if they
+     * are connected by the 8 tiles around i. The first tile of each group is put
+     * at the beginning of a queue.
+     *
+     * @return the number of groups
+     */
+    private int localGroups(int i) {
+        for (int dir = 0; dir < 4; dir++) {
+            groups[dir] = labels[i + neighbors[dir]] >= 0 ? dir : -1;
+        }
+
+        for (int dir = 0; dir < 4; dir++) {
+            int next = (dir + 1) % 4;
+
+            if (groups[dir] >= 0 && groups[next] >= 0 && labels[i + neighbors[dir] + neighbors[next]] >= 0) {
+                union(dir, next);
+            }
+        }
+
+        int n = 0;
+        for (int dir = 0; dir < 4; dir++) {
+            if (groups[dir] >= 0 && find(dir) == dir) {
+                queues[n][0] = i + neighbors[dir];
+                n++;
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Flood fills from the n groups at the same time, until all groups but one are
+     * fully visited or are connected: the component is split in the fully visited
+     * groups and the remaining group. The remaining group keeps the label.
+     */
+    private boolean split(int i, int label, int n) {
+        int oldTopLeft = topLeft[label];
+        removeTopLeft(oldTopLeft);
+
+        nextMark();
+        for (int g = 0; g < n; g++) {
+            heads[g] = 0;
+            sizes[g] = 1;
+            groups[g] = g;
+            visited[queues[g][0]] = mark + g;
+        }
+
+        // the number of unfinished groups changes only when two groups are merged or
+        // when a group is finished
+        int unfinished = n;
+        while (unfinished > 1) {
+            boolean changed = false;
+
+            for (int g = 0; g < n; g++) {
+                if (heads[g] < sizes[g]) {
+                    int root = find(g);
+                    if (!visitNext(g, label)) {
+                        return false;
+                    }
+
+                    changed |= heads[g] == sizes[g] || find(g) != root;
+                }
+            }
+
+            if (changed) {
+                unfinished = unfinishedGroups(n);
+            }
+        }
+
+        // the remaining group or the first group if all groups are finished
+        int remaining = -1;
+        for (int g = 0; g < n; g++) {
+            if (find(g) == g && !isFinished(g, n)) {
+                remaining = g;
+            }
+        }
+        if (remaining < 0) {
+            remaining = find(0);
+        }
+
+        for (int g = 0; g < n; g++) {
+            if (find(g) == g && g != remaining) {
+                int newLabel = freeLabels[--nFreeLabels];
+
+                int min = Integer.MAX_VALUE;
+                int size = 0;
+                for (int g2 = 0; g2 < n; g2++) {
+                    if (find(g2) == g) {
+                        for (int j = 0; j < sizes[g2]; j++) {
+                            int tile = queues[g2][j];
+                            labels[tile] = newLabel;
+                            min = Math.min(min, tile);
+                        }
+                        size += sizes[g2];
+                    }
+                }
+
+                topLeft[newLabel] = min;
+                count[newLabel] = size;
+                count[label] -= size;
+                addTopLeft(min);
+            }
+        }
+
+        // the top-left tile of the remaining group is known only if it is the old one
+        if (oldTopLeft == i || labels[oldTopLeft] != label) {
+            int min = Integer.MAX_VALUE;
+
+            for (int g = 0; g < n; g++) {
+                if (find(g) == remaining) {
+                    while (heads[g] < sizes[g]) {
+                        if (!visitNext(g, label)) {
+                            return false;
+                        }
+                    }
+
+                    for (int j = 0; j < sizes[g]; j++) {
+                        min = Math.min(min, queues[g][j]);
+                    }
+                }
+            }
+
+            topLeft[label] = min;
+        }
+        addTopLeft(topLeft[label]);
+
+        return true;
+    }
+
+    /**
+     * Visits the next tile in the queue of group g. If a tile visited by
+     * another group is found, the two groups are merged.
+     *
+     * @return false if the budget is exceeded
+     */
+    private boolean visitNext(int g, int label) {
+        if (--floodBudget < 0) {
+            return false;
+        }
+
+        int[] queue = queues[g];
+        int tile = queue[heads[g]++];
+        for (int dir = 0; dir < 4; dir++) {
+            int adj = tile + neighbors[dir];
+
+            if (labels[adj] == label) {
+                int other = visited[adj] - mark;
+
+                if (other < 0 || other >= 4) {
+                    visited[adj] = mark + g;
+                    queue[sizes[g]++] = adj;
+                } else {
+                    union(g, other);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of groups that are not fully visited. Merged groups count for one
+     */
+    private int unfinishedGroups(int n) {
+        int unfinished = 0;
+        for (int g = 0; g < n; g++) {
+            if (find(g) == g && !isFinished(g, n)) {
+                unfinished++;
+            }
+        }
+
+        return unfinished;
+    }
+
+    private boolean isFinished(int root, int n) {
+        for (int g = 0; g < n; g++) {
+            if (find(g) == root && heads[g] < sizes[g]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The tile at i becomes a floor. The components around i are merged in the
+     * biggest one: only the tiles of the smallest are relabeled.
+     */
+    private boolean removeCrate(int i) {
+        int biggest = -1;
+        for (int dir = 0; dir < 4; dir++) {
+            int label = labels[i + neighbors[dir]];
+
+            if (label >= 0 && (biggest < 0 || count[label] > count[biggest])) {
+                biggest = label;
+            }
+        }
+
+        if (biggest < 0) {
+            int label = freeLabels[--nFreeLabels];
+            labels[i] = label;
+            topLeft[label] = i;
+            count[label] = 1;
+            addTopLeft(i);
+            return true;
+        }
+
+        for (int dir = 0; dir < 4; dir++) {
+            int adj = i + neighbors[dir];
+            int label = labels[adj];
+
+            if (label >= 0 && label != biggest) {
+                floodBudget -= count[label];
+                if (floodBudget < 0) {
+                    return false;
+                }
+
+                relabel(adj, label, biggest);
+
+                count[biggest] += count[label];
+                removeTopLeft(Math.max(topLeft[biggest], topLeft[label]));
+                topLeft[biggest] = Math.min(topLeft[biggest], topLeft[label]);
+                freeLabels[nFreeLabels++] = label;
+            }
+        }
+
+        labels[i] = biggest;
+        count[biggest]++;
+        if (i < topLeft[biggest]) {
+            removeTopLeft(topLeft[biggest]);
+            topLeft[biggest] = i;
+            addTopLeft(i);
+        }
+
+        return true;
+    }
+
+    private void relabel(int start, int oldLabel, int newLabel) {
+        int[] queue = queues[0];
+        int size = 1;
+        queue[0] = start;
+        labels[start] = newLabel;
+
+        for (int head = 0; head < size; head++) {
+            int tile = queue[head];
+
+            for (int dir = 0; dir < 4; dir++) {
+                int adj = tile + neighbors[dir];
+
+                if (labels[adj] == oldLabel) {
+                    labels[adj] = newLabel;
+                    queue[size++] = adj;
+                }
+            }
+        }
+    }
+
+    private void addTopLeft(int i) {
+        int j = nComponents;
+        while (j > 0 && topLefts[j - 1] > i) {
+            topLefts[j] = topLefts[j - 1];
+            j--;
+        }
+
+        topLefts[j] = i;
+        nComponents++;
+    }
+
+    private void removeTopLeft(int i) {
+        int j = Arrays.binarySearch(topLefts, 0, nComponents, i);
+
+        System.arraycopy(topLefts, j + 1, topLefts, j, nComponents - j - 1);
+        nComponents--;
+    }
+
+    private void nextMark() {
+        if (mark >= Integer.MAX_VALUE - 8) {
+            Arrays.fill(visited, 0);
+            mark = 0;
+        }
+
+        mark += 4;
+    }
+
+    // union find on the four groups
+
+    private int find(int g) {
+        while (groups[g] != g) {
+            g = groups[g];
+        }
+
+        return g;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+
+        // the smallest root is kept
+        if (rootA < rootB) {
+            groups[rootB] = rootA;
+        } else if (rootB < rootA) {
+            groups[rootA] = rootB;
+        }
+    }
+}
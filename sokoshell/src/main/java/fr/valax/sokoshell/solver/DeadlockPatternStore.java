@@ -0,0 +1,206 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deadlock patterns learned during the research of a level. When a {@link Corral}
+ * proves a deadlock, the crates of the corral and the area of the player form a
+ * pattern: the crates are a deadlock whatever the other crates are, as long as the
+ * player is in the same area. The area is computed on a board where the only crates
+ * are the crates of the pattern. As walls never move, they don't need to be stored.
+ * <br>
+ * Patterns are indexed by crate: for each tile, the store knows the patterns
+ * that contain a crate on this tile. The store isn't thread-safe.
+ *
+ * @see Corral#isDeadlock(State)
+ */
+public class DeadlockPatternStore {
+
+    /**
+     * Maximal number of patterns, to bound the memory used by the store
+     */
+    private static final int MAX_PATTERNS = 1 << 16;
+
+    /**
+     * byCrate[i] contains all patterns with a crate at i. Lists are created lazily
+     */
+    private final List<Pattern>[] byCrate;
+    private final int areaLength;
+
+    private int size;
+
+    // lookups done when a crate is pushed
+    private int pushHits;
+    private int pushMisses;
+
+    // lookups done before researching PI corrals
+    private int corralHits;
+    private int corralMisses;
+
+    public DeadlockPatternStore(Board board) {
+        int boardSize = board.getWidth() * board.getHeight();
+
+        byCrate = newLists(boardSize);
+        areaLength = (boardSize + 63) / 64;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Pattern>[] newLists(int length) {
+        return (List<Pattern>[]) new List<?>[length];
+    }
+
+    /**
+     * Adds a pattern. The board must contain only the crates of the pattern.
+     *
+     * @param crates crates of the pattern
+     * @param playerArea tiles reachable by the player
+     */
+    public void add(int[] crates, ReachableTiles playerArea, Board board) {
+        if (size >= MAX_PATTERNS || crates.length == 0) {
+            return;
+        }
+
+        long[] area = new long[areaLength];
+        for (int y = 0; y < board.getHeight(); y++) {
+            for (int x = 0; x < board.getWidth(); x++) {
+                TileInfo tile = board.getAt(x, y);
+
+                if (playerArea.isReachable(tile)) {
+                    area[tile.getIndex() >> 6] |= 1L << tile.getIndex();
+                }
+            }
+        }
+
+        Pattern pattern = new Pattern(crates.clone(), area);
+        for (int crate : crates) {
+            List<Pattern> list = byCrate[crate];
+
+            if (list == null) {
+                list = new ArrayList<>();
+                byCrate[crate] = list;
+            }
+
+            list.add(pattern);
+        }
+
+        size++;
+    }
+
+    /**
+     * Checks if a state matches a pattern. The crates of the state must be on the board.
+     *
+     * @param board the board
+     * @param crates crates of the state
+     * @param playerPos position of the player
+     * @return true if the state matches a pattern
+     */
+    public boolean isDeadlock(Board board, int[] crates, int playerPos) {
+        for (int crate : crates) {
+            List<Pattern> patterns = byCrate[crate];
+
+            if (patterns != null) {
+                for (int i = 0; i < patterns.size(); i++) {
+                    Pattern p = patterns.get(i);
+
+                    // each pattern is checked once, from its first crate
+                    if (p.crates[0] == crate && p.matches(board, playerPos, -1, -1)) {
+                        corralHits++;
+                        return true;
+                    }
+                }
+            }
+        }
+
+        corralMisses++;
+        return false;
+    }
+
+    /**
+     * Checks if pushing a crate creates a pattern. The crate must be
+     * at its destination on the board. Only the patterns containing the
+     * crate are checked.
+     *
+     * @param board the board
+     * @param crate destination of the pushed crate
+     * @param playerPos position of the player after the push
+     * @return true if the board matches a pattern
+     */
+    public boolean isDeadlock(Board board, TileInfo crate, int playerPos) {
+        return isDeadlock(board, -1, crate.getIndex(), playerPos);
+    }
+
+    /**
+     * Checks if moving a crate creates a pattern. The move isn't done on the board:
+     * the board is read as if the crate at {@code removed} was at {@code added}.
+     * Only the patterns containing the moved crate are checked.
+     *
+     * @param board the board
+     * @param removed index of the moved crate, -1 if the crate is already at its destination
+     * @param added destination of the moved crate
+     * @param playerPos position of the player after the move
+     * @return true if the board after the move matches a pattern
+     */
+    public boolean isDeadlock(Board board, int removed, int added, int playerPos) {
+        List<Pattern> patterns = byCrate[added];
+
+        if (patterns != null) {
+            for (int i = 0; i < patterns.size(); i++) {
+                if (patterns.get(i).matches(board, playerPos, removed, added)) {
+                    pushHits++;
+                    return true;
+                }
+            }
+        }
+
+        pushMisses++;
+        return false;
+    }
+
+    /**
+     * @return the number of patterns
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Statistics of the lookups done when a crate is pushed,
+     * see {@link #isDeadlock(Board, int, int, int)}
+     *
+     * @return the number of patterns, of lookups that found a pattern and of lookups that didn't
+     */
+    public CacheStatistics getPushStatistics() {
+        return new CacheStatistics(size, pushHits, pushMisses);
+    }
+
+    /**
+     * Statistics of the lookups done by {@link AbstractSolver#checkPICorralDeadlock(State)}.
+     * Each hit is a corral research saved
+     *
+     * @return the number of patterns, of lookups that found a pattern and of lookups that didn't
+     */
+    public CacheStatistics getCorralStatistics() {
+        return new CacheStatistics(size, corralHits, corralMisses);
+    }
+
+    private record Pattern(int[] crates, long[] playerArea) {
+
+        private boolean matches(Board board, int playerPos, int removed, int added) {
+            if ((playerArea[playerPos >> 6] & (1L << playerPos)) == 0) {
+                return false;
+            }
+
+            for (int crate : crates) {
+                if (crate != added && (crate == removed || !board.getAt(crate).anyCrate())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -160,15 +160,16 @@ public class DeadlockTable {
         board.computeDeadTiles();
         board.setAt(board.getWidth() / 2, board.getHeight() - 4, Tile.CRATE);
 
-        return countNotDetectedDeadlock(table, board, board.getWidth() / 2, board.getHeight() - 3);
+        Zobrist zobrist = new Zobrist(board.getWidth() * board.getHeight());
+        return countNotDetectedDeadlock(table, board, zobrist, board.getWidth() / 2, board.getHeight() - 3);
     }
 
-    private static int countNotDetectedDeadlock(DeadlockTable table, Board board, int playerX, int playerY) {
+    private static int countNotDetectedDeadlock(DeadlockTable table, Board board, Zobrist zobrist, int playerX, int playerY) {
         if (table.deadlock == A_DEADLOCK) {
-            State state = createState(board, playerX, playerY);
+            State state = createState(board, zobrist, playerX, playerY);
 
             // but dead tiles aren't computed...
-            if (FreezeDeadlockDetector.checkFreezeDeadlock(board, state)) {
+            if (new FreezeDeadlockDetector(board).checkFreezeDeadlock(state)) {
                 return 0;
             }
 
@@ -192,13 +193,13 @@ public class DeadlockTable {
                 return 1; // not detected !
             }
         } else if (table.deadlock == MAYBE_A_DEADLOCK) {
-            int n = countNotDetectedDeadlock(table.floorChild, board, playerX, playerY);
+            int n = countNotDetectedDeadlock(table.floorChild, board, zobrist, playerX, playerY);
 
             board.setAt(playerX + table.x, playerY + table.y, Tile.WALL);
-            n += countNotDetectedDeadlock(table.wallChild, board, playerX, playerY);
+            n += countNotDetectedDeadlock(table.wallChild, board, zobrist, playerX, playerY);
 
             board.setAt(playerX + table.x, playerY + table.y, Tile.CRATE);
-            n += countNotDetectedDeadlock(table.crateChild, board, playerX, playerY);
+            n += countNotDetectedDeadlock(table.crateChild, board, zobrist, playerX, playerY);
 
             board.setAt(playerX + table.x, playerY + table.y, Tile.FLOOR);
 
@@ -222,7 +223,8 @@ public class DeadlockTable {
 
         board.setAt(board.getWidth() / 2, board.getHeight() - 4, Tile.CRATE);
 
-        return generate(board, createOrder(size), 0, board.getWidth() / 2, board.getHeight() - 3);
+        Zobrist zobrist = new Zobrist(board.getWidth() * board.getHeight());
+        return generate(board, zobrist, createOrder(size), 0, board.getWidth() / 2, board.getHeight() - 3);
     }
 
     public static DeadlockTable generate2(int size, int nThread) {
@@ -231,7 +233,8 @@ public class DeadlockTable {
         board.setAt(board.getWidth() / 2, board.getHeight() - 4, Tile.CRATE);
 
         ForkJoinPool pool = new ForkJoinPool(nThread <= 0 ? Runtime.getRuntime().availableProcessors() :  nThread);
-        GenerateDeadlockTableTask task = new GenerateDeadlockTableTask(board, createOrder(size), 0, board.getWidth() / 2, board.getHeight() - 3, false);
+        Zobrist zobrist = new Zobrist(board.getWidth() * board.getHeight());
+        GenerateDeadlockTableTask task = new GenerateDeadlockTableTask(board, zobrist, createOrder(size), 0, board.getWidth() / 2, board.getHeight() - 3, false);
 
         DeadlockTable table = pool.invoke(task);
         pool.shutdown();
@@ -240,27 +243,27 @@ public class DeadlockTable {
     }
 
 
-    private static DeadlockTable generate(Board board, int[][] order, int index, int playerX, int playerY) {
+    static DeadlockTable generate(Board board, Zobrist zobrist, int[][] order, int index, int playerX, int playerY) {
         // BasicStyle.XSB_STYLE.print(board, playerX, playerY);
 
-        if (isDeadlock_(board, playerX, playerY)) {
+        if (isDeadlock_(board, zobrist, playerX, playerY)) {
             return DEADLOCK;
         } else if (index < order.length) {
             int relativeX = order[index][0];
             int relativeY = order[index][1];
 
             board.setAt(playerX + relativeX, playerY + relativeY, Tile.WALL);
-            DeadlockTable wallChild = generate(board, order, index + 1, playerX, playerY);
+            DeadlockTable wallChild = generate(board, zobrist, order, index + 1, playerX, playerY);
 
             board.setAt(playerX + relativeX, playerY + relativeY, Tile.CRATE);
-            DeadlockTable crateChild = generate(board, order, index + 1, playerX, playerY);
+            DeadlockTable crateChild = generate(board, zobrist, order, index + 1, playerX, playerY);
 
             board.setAt(playerX + relativeX, playerY + relativeY, Tile.FLOOR);
             if (wallChild == NOT_DEADLOCK && crateChild == NOT_DEADLOCK) {
                 return NOT_DEADLOCK;
             }
 
-            DeadlockTable floorChild = generate(board, order, index + 1, playerX, playerY);
+            DeadlockTable floorChild = generate(board, zobrist, order, index + 1, playerX, playerY);
 
             return new DeadlockTable(MAYBE_A_DEADLOCK, relativeX, relativeY, floorChild, wallChild, crateChild);
         } else {
@@ -268,9 +271,8 @@ public class DeadlockTable {
         }
     }
 
-    private static Board createBoard(int size) {
+    static Board createBoard(int size) {
         Board board = new MutableBoard(size + 4, size + 4);
-        State.initZobristValues(board.getWidth() * board.getHeight());
 
         for (int x = 0; x < board.getWidth(); x++) {
             board.setAt(x, 0, Tile.WALL);
@@ -312,14 +314,16 @@ public class DeadlockTable {
         private static final int total = 4_782_969;
 
         private final Board board;
+        private final Zobrist zobrist;
         private final int[][] order;
         private final int index;
         private final int playerX;
         private final int playerY;
         private final boolean check;
 
-        public GenerateDeadlockTableTask(Board board, int[][] order, int index, int playerX, int playerY, boolean check) {
+        public GenerateDeadlockTableTask(Board board, Zobrist zobrist, int[][] order, int index, int playerX, int playerY, boolean check) {
             this.board = board;
+            this.zobrist = zobrist;
             this.order = order;
             this.index = index;
             this.playerX = playerX;
@@ -335,7 +339,7 @@ public class DeadlockTable {
                 System.out.printf("%.2f%% - %d%n", 100f * n / total, n);
             }
 
-            if (check && isDeadlock_(board, playerX, playerY)) {
+            if (check && isDeadlock_(board, zobrist, playerX, playerY)) {
                 return DEADLOCK;
             } else if (index < order.length) {
                 int relativeX = order[index][0];
@@ -374,7 +378,7 @@ public class DeadlockTable {
 
             board.setAt(playerX + relativeX, playerY + relativeY, replacement);
 
-            return new GenerateDeadlockTableTask(board, order, index + 1, playerX, playerY, check);
+            return new GenerateDeadlockTableTask(board, zobrist, order, index + 1, playerX, playerY, check);
         }
     }
 
@@ -382,10 +386,11 @@ public class DeadlockTable {
 
 
 
-    private static boolean isDeadlock_(Board board, int playerX, int playerY) {
-        State first = createState(board, playerX, playerY);
+    static boolean isDeadlock_(Board board, Zobrist zobrist, int playerX, int playerY) {
+        State first = createState(board, zobrist, playerX, playerY);
 
         ReachableTiles reachableTiles = new ReachableTiles(board);
+        FreezeDeadlockDetector freezeDetector = new FreezeDeadlockDetector(board);
         HashSet<State> visited = new HashSet<>();
         Queue<State> toVisit = new ArrayDeque<>();
 
@@ -398,13 +403,13 @@ public class DeadlockTable {
 
             board.addStateCrates(parent);
 
-            if (FreezeDeadlockDetector.checkFreezeDeadlock(board, parent)) {
+            if (freezeDetector.checkFreezeDeadlock(parent)) {
                 board.removeStateCrates(parent);
                 continue;
             }
 
             reachableTiles.findReachableCases(board.getAt(parent.playerPos()));
-            deadlock = addChildrenStates(reachableTiles, parent, board, visited, toVisit);
+            deadlock = addChildrenStates(reachableTiles, parent, board, zobrist, visited, toVisit);
             board.removeStateCrates(parent);
         }
 
@@ -414,7 +419,7 @@ public class DeadlockTable {
     }
 
     private static boolean addChildrenStates(ReachableTiles reachableTiles, State parent,
-                                             Board board, Set<State> visited, Queue<State> toVisit) {
+                                             Board board, Zobrist zobrist, Set<State> visited, Queue<State> toVisit) {
         for (int i = 0; i < parent.cratesIndices().length; i++) {
             TileInfo crate = board.getAt(parent.cratesIndices()[i]);
 
@@ -439,11 +444,12 @@ public class DeadlockTable {
 
                     int topLeft = board.topLeftReachablePosition(crate, board.getAt(0, 0));
 
-                    child = new State(topLeft, copyRemoveOneElement(parent.cratesIndices(), i), parent);
+                    int[] crates = copyRemoveOneElement(parent.cratesIndices(), i);
+                    child = new State(topLeft, crates, zobrist.hash(topLeft, crates), parent);
 
                 } else {
                     int topLeft = board.topLeftReachablePosition(crate, dest);
-                    child = parent.child(topLeft, i, dest.getIndex());
+                    child = parent.child(zobrist, topLeft, i, dest.getIndex());
                 }
 
                 if (visited.add(child)) {
@@ -470,7 +476,7 @@ public class DeadlockTable {
         return newArray;
     }
 
-    private static State createState(Board board, int playerX, int playerY) {
+    private static State createState(Board board, Zobrist zobrist, int playerX, int playerY) {
         List<Integer> ints = new ArrayList<>();
 
         board.forEach(t -> {
@@ -479,6 +485,9 @@ public class DeadlockTable {
             }
         });
 
-        return new State(playerY * board.getWidth() + playerX, ints.stream().mapToInt(i -> i).toArray(), null);
+        int playerPos = playerY * board.getWidth() + playerX;
+        int[] crates = ints.stream().mapToInt(i -> i).toArray();
+
+        return new State(playerPos, crates, zobrist.hash(playerPos, crates), null);
     }
 }
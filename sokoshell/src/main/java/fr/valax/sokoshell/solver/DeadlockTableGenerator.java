@@ -0,0 +1,233 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.tiles.Tile;
+import fr.valax.sokoshell.utils.Utils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Generates a deadlock table that may be too big to be generated in one run.
+ * The first {@code splitDepth} tiles of the pattern split the table into subtrees.
+ * Each subtree is generated independently and written to the checkpoint directory
+ * once finished. When the generation is restarted, only the missing subtrees are generated.
+ * Then, {@link #write(Path)} assembles the subtrees into a {@link FlatDeadlockTable},
+ * reading one subtree at a time.
+ * <br>
+ * The table is the same as the one generated by {@link DeadlockTable#generate(int)}.
+ *
+ * @see DeadlockTable
+ * @see FlatDeadlockTable
+ * @author PoulpoGaz
+ */
+public class DeadlockTableGenerator {
+
+    private static final char[] TILE_CHARS = new char[] {'f', 'w', 'c'};
+
+    private final int size;
+    private final int splitDepth;
+    private final Path checkpoints;
+
+    private final int[][] order;
+    private final Zobrist zobrist;
+
+    /**
+     * @param size size of the pattern
+     * @param splitDepth number of tiles used to split the table into subtrees.
+     *                   There are at most {@code 3^splitDepth} subtrees
+     * @param checkpoints directory where finished subtrees are written
+     */
+    public DeadlockTableGenerator(int size, int splitDepth, Path checkpoints) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Size must be at least 2");
+        }
+
+        this.size = size;
+        this.order = DeadlockTable.createOrder(size);
+        this.splitDepth = Math.max(0, Math.min(splitDepth, order.length));
+        this.checkpoints = checkpoints;
+
+        Board board = createBoard();
+        this.zobrist = new Zobrist(board.getWidth() * board.getHeight());
+    }
+
+    /**
+     * Generates all subtrees that don't have a checkpoint. Progress is printed to out.
+     *
+     * @param nThreads number of threads. Use all cores if negative or zero
+     * @param out where progress is printed
+     * @throws IOException if a checkpoint can't be written
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public void generate(int nThreads, PrintStream out) throws IOException, InterruptedException {
+        Files.createDirectories(checkpoints);
+
+        List<String> subtrees = new ArrayList<>();
+        collectSubtrees(createBoard(), 0, new StringBuilder(), subtrees);
+
+        List<String> missing = new ArrayList<>();
+        for (String subtree : subtrees) {
+            if (!Files.exists(checkpoint(subtree))) {
+                missing.add(subtree);
+            }
+        }
+
+        int total = subtrees.size();
+        int done = total - missing.size();
+        out.printf("%d/%d subtrees already generated%n", done, total);
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                nThreads <= 0 ? Runtime.getRuntime().availableProcessors() : nThreads);
+        try {
+            CompletionService<String> service = new ExecutorCompletionService<>(executor);
+            for (String subtree : missing) {
+                service.submit(() -> generateSubtree(subtree));
+            }
+
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < missing.size(); i++) {
+                try {
+                    service.take().get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+
+                done++;
+                long elapsed = System.currentTimeMillis() - start;
+                long eta = elapsed * (missing.size() - i - 1) / (i + 1);
+                out.printf("%d/%d subtrees (%.2f%%) - elapsed: %s - ETA: %s%n",
+                        done, total, 100f * done / total, Utils.prettyDate(elapsed), Utils.prettyDate(eta));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Assembles the subtrees into a flat table. All subtrees must be generated.
+     *
+     * @param out where the flat table is written
+     * @throws IOException if a checkpoint is missing or can't be read or if the table can't be written
+     */
+    public void write(Path out) throws IOException {
+        try (FlatDeadlockTable.Writer writer = new FlatDeadlockTable.Writer(out)) {
+            int root = assemble(createBoard(), 0, new StringBuilder(), writer);
+            writer.finish(root);
+        }
+    }
+
+    /**
+     * Same as {@link DeadlockTable#generate(Board, Zobrist, int[][], int, int, int)},
+     * until the subtrees are reached.
+     */
+    private void collectSubtrees(Board board, int index, StringBuilder prefix, List<String> subtrees) {
+        if (index == splitDepth) {
+            subtrees.add(prefix.toString());
+        } else if (!DeadlockTable.isDeadlock_(board, zobrist, playerX(board), playerY(board))) {
+            for (int tile = 0; tile < 3; tile++) {
+                setTile(board, index, tile);
+
+                prefix.append(TILE_CHARS[tile]);
+                collectSubtrees(board, index + 1, prefix, subtrees);
+                prefix.setLength(prefix.length() - 1);
+            }
+
+            setTile(board, index, 0);
+        }
+    }
+
+    private int assemble(Board board, int index, StringBuilder prefix, FlatDeadlockTable.Writer writer) throws IOException {
+        if (index == splitDepth) {
+            Path checkpoint = checkpoint(prefix.toString());
+            if (!Files.exists(checkpoint)) {
+                throw new IOException("Missing subtree: " + checkpoint);
+            }
+
+            return writer.addTree(DeadlockTable.read(checkpoint));
+        } else if (DeadlockTable.isDeadlock_(board, zobrist, playerX(board), playerY(board))) {
+            return FlatDeadlockTable.DEADLOCK;
+        }
+
+        int[] children = new int[3];
+        for (int tile : new int[] {1, 2, 0}) { // wall, crate then floor, as DeadlockTable#generate
+            setTile(board, index, tile);
+
+            prefix.append(TILE_CHARS[tile]);
+            children[tile] = assemble(board, index + 1, prefix, writer);
+            prefix.setLength(prefix.length() - 1);
+
+            if (tile == 2 && children[1] == FlatDeadlockTable.NOT_DEADLOCK && children[2] == FlatDeadlockTable.NOT_DEADLOCK) {
+                setTile(board, index, 0);
+                return FlatDeadlockTable.NOT_DEADLOCK;
+            }
+        }
+
+        return writer.addNode(order[index][0], order[index][1], children[0], children[1], children[2]);
+    }
+
+    private String generateSubtree(String prefix) throws IOException {
+        Board board = createBoard();
+        for (int i = 0; i < prefix.length(); i++) {
+            setTile(board, i, switch (prefix.charAt(i)) {
+                case 'w' -> 1;
+                case 'c' -> 2;
+                default -> 0;
+            });
+        }
+
+        DeadlockTable subtree = DeadlockTable.generate(board, zobrist, order, splitDepth, playerX(board), playerY(board));
+
+        // write then move, so a checkpoint is never partially written
+        Path checkpoint = checkpoint(prefix);
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        DeadlockTable.write(subtree, tmp);
+        Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return prefix;
+    }
+
+    private Path checkpoint(String prefix) {
+        return checkpoints.resolve("subtree-" + size + "-" + prefix + ".table");
+    }
+
+    /**
+     * @param tile 0 for floor, 1 for wall and 2 for crate
+     */
+    private void setTile(Board board, int index, int tile) {
+        Tile t = switch (tile) {
+            case 1 -> Tile.WALL;
+            case 2 -> Tile.CRATE;
+            default -> Tile.FLOOR;
+        };
+
+        board.setAt(playerX(board) + order[index][0], playerY(board) + order[index][1], t);
+    }
+
+    private Board createBoard() {
+        Board board = DeadlockTable.createBoard(size);
+        board.setAt(playerX(board), playerY(board) - 1, Tile.CRATE);
+
+        return board;
+    }
+
+    private int playerX(Board board) {
+        return board.getWidth() / 2;
+    }
+
+    private int playerY(Board board) {
+        return board.getHeight() - 3;
+    }
+}
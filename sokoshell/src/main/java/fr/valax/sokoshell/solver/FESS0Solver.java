@@ -2,15 +2,17 @@ package fr.valax.sokoshell.solver;
 
 import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.collections.BucketPriorityQueue;
 import fr.valax.sokoshell.solver.collections.SolverCollection;
+import fr.valax.sokoshell.solver.heuristic.CachedHeuristic;
 import fr.valax.sokoshell.solver.heuristic.GreedyHeuristic;
-import fr.valax.sokoshell.solver.heuristic.Heuristic;
 
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> {
+public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> implements BucketTrackable {
 
-    private Heuristic heuristic;
     private int lowerBound;
 
     public FESS0Solver() {
@@ -19,14 +21,14 @@ public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> {
 
     @Override
     protected void init(SolverParameters parameters) {
-        heuristic = new GreedyHeuristic(board);
-        toProcess = new SolverPriorityQueue();
+        heuristic = new CachedHeuristic(new GreedyHeuristic(board), zobrist);
+        toProcess = new FESS0Queue();
     }
 
     @Override
     protected void addInitialState(Level level) {
         CorralDetector detector = board.getCorralDetector();
-        State s = level.getInitialState();
+        State s = level.getInitialState(zobrist);
 
         board.addStateCrates(s);
         detector.findCorral(board, s.playerPos() % level.getWidth(), s.playerPos() / level.getWidth());
@@ -47,10 +49,20 @@ public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> {
 
         final int i = board.topLeftReachablePosition(crate, crateDest);
         // The new player position is the crate position
-        FESS0State s = toProcess.cachedState().child(i, crate.getCrateIndex(), crateDest.getIndex());
-        s.setHeuristic(heuristic.compute(s));
+        FESS0State parent = toProcess.cachedState();
+        FESS0State s = parent.child(zobrist, i, crate.getCrateIndex(), crateDest.getIndex());
+        s.setHeuristic(heuristic.compute(parent, parent.heuristic(), crate.getCrateIndex(), crate.getIndex(), crateDest.getIndex()));
         s.setConnectivity(board.getCorralDetector().getRealNumberOfCorral());
-        s.setPacking(countPackedCrate(s));
+
+        // computed from the parent, so the crates of the child aren't needed
+        int packing = parent.getPacking();
+        if (crate.isCrateOnTarget()) {
+            packing--;
+        }
+        if (crateDest.isTarget()) {
+            packing++;
+        }
+        s.setPacking(packing);
 
         if (processed.add(s)) {
             toProcess.addState(s);
@@ -74,24 +86,163 @@ public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> {
         return lowerBound;
     }
 
-    private static class SolverPriorityQueue extends PriorityQueue<FESS0State>
-            implements SolverCollection<FESS0State> {
+    @Override
+    public List<Bucket> bucketSizes() {
+        if (toProcess instanceof FESS0Queue queue && isRunning()) {
+            return queue.bucketSizes();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * The states are stored in buckets indexed by (packing, connectivity). Inside a bucket,
+     * states are ordered by weight with a {@link BucketPriorityQueue}. The best state is in
+     * the bucket with the highest packing and then the lowest connectivity. All keys are
+     * small non-negative integers, so the best state is found without comparing states.
+     */
+    static class FESS0Queue implements SolverCollection<FESS0State> {
+
+        /**
+         * buckets[packing][connectivity]. Buckets are created lazily
+         */
+        private BucketPriorityQueue<FESS0State>[][] buckets = newRows(8);
+
+        /**
+         * packingSizes[packing] is the number of states with this packing
+         */
+        private int[] packingSizes = new int[8];
+
+        /**
+         * Highest packing which may have a non-empty bucket. All buckets after are empty.
+         */
+        private int maxPacking = 0;
+        private int size = 0;
 
         private FESS0State cachedState;
 
+        @SuppressWarnings("unchecked")
+        private static BucketPriorityQueue<FESS0State>[][] newRows(int length) {
+            return (BucketPriorityQueue<FESS0State>[][]) new BucketPriorityQueue<?>[length][];
+        }
+
+        @SuppressWarnings("unchecked")
+        private static BucketPriorityQueue<FESS0State>[] newRow(int length) {
+            return (BucketPriorityQueue<FESS0State>[]) new BucketPriorityQueue<?>[length];
+        }
+
         @Override
         public void addState(FESS0State state) {
-            offer(state);
+            int packing = state.getPacking();
+            int connectivity = state.getConnectivity();
+
+            if (packing >= buckets.length) {
+                int newLength = Math.max(packing + 1, 2 * buckets.length);
+                buckets = Arrays.copyOf(buckets, newLength);
+                packingSizes = Arrays.copyOf(packingSizes, newLength);
+            }
+
+            BucketPriorityQueue<FESS0State>[] row = buckets[packing];
+            if (row == null) {
+                row = newRow(Math.max(connectivity + 1, 4));
+                buckets[packing] = row;
+            } else if (connectivity >= row.length) {
+                row = Arrays.copyOf(row, Math.max(connectivity + 1, 2 * row.length));
+                buckets[packing] = row;
+            }
+
+            BucketPriorityQueue<FESS0State> bucket = row[connectivity];
+            if (bucket == null) {
+                bucket = new BucketPriorityQueue<>();
+                row[connectivity] = bucket;
+            }
+
+            bucket.addState(state);
+            packingSizes[packing]++;
+            size++;
+
+            if (packing > maxPacking) {
+                maxPacking = packing;
+            }
         }
 
         @Override
         public FESS0State popState() {
-            return poll();
+            BucketPriorityQueue<FESS0State> bucket = bestBucket();
+
+            if (bucket == null) {
+                return null;
+            } else {
+                packingSizes[maxPacking]--;
+                size--;
+                return bucket.popState();
+            }
         }
 
         @Override
         public FESS0State peekState() {
-            return peek();
+            BucketPriorityQueue<FESS0State> bucket = bestBucket();
+
+            if (bucket == null) {
+                return null;
+            } else {
+                return bucket.peekState();
+            }
+        }
+
+        /**
+         * Moves {@link #maxPacking} to the highest non-empty packing and
+         * returns its non-empty bucket with the lowest connectivity
+         *
+         * @return the bucket containing the best state or null if the queue is empty
+         */
+        private BucketPriorityQueue<FESS0State> bestBucket() {
+            if (size == 0) {
+                return null;
+            }
+
+            while (packingSizes[maxPacking] == 0) {
+                maxPacking--;
+            }
+
+            for (BucketPriorityQueue<FESS0State> bucket : buckets[maxPacking]) {
+                if (bucket != null && !bucket.isEmpty()) {
+                    return bucket;
+                }
+            }
+
+            throw new IllegalStateException(); // packingSizes[maxPacking] > 0
+        }
+
+        /**
+         * Returns the size of each non-empty bucket, from the best bucket to the worst one.
+         * As {@link Trackable}, this method is non-synchronized: when the solver is running,
+         * the sizes may be slightly outdated.
+         *
+         * @return the size of each non-empty bucket
+         */
+        public List<BucketTrackable.Bucket> bucketSizes() {
+            List<BucketTrackable.Bucket> sizes = new ArrayList<>();
+
+            BucketPriorityQueue<FESS0State>[][] buckets = this.buckets;
+            for (int packing = buckets.length - 1; packing >= 0; packing--) {
+                BucketPriorityQueue<FESS0State>[] row = buckets[packing];
+                if (row == null) {
+                    continue;
+                }
+
+                for (int connectivity = 0; connectivity < row.length; connectivity++) {
+                    BucketPriorityQueue<FESS0State> bucket = row[connectivity];
+
+                    if (bucket != null && !bucket.isEmpty()) {
+                        sizes.add(new BucketTrackable.Bucket(
+                                "packing=" + packing + ", connectivity=" + connectivity,
+                                bucket.size()));
+                    }
+                }
+            }
+
+            return sizes;
         }
 
         @Override
@@ -104,14 +255,42 @@ public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> {
         public FESS0State cachedState() {
             return cachedState;
         }
+
+        @Override
+        public void clear() {
+            for (BucketPriorityQueue<FESS0State>[] row : buckets) {
+                if (row != null) {
+                    for (BucketPriorityQueue<FESS0State> bucket : row) {
+                        if (bucket != null) {
+                            bucket.clear();
+                        }
+                    }
+                }
+            }
+
+            Arrays.fill(packingSizes, 0);
+            maxPacking = 0;
+            size = 0;
+            cachedState = null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
-    protected static class FESS0State extends WeightedState implements Comparable<FESS0State> {
+    protected static class FESS0State extends WeightedState {
 
         private int connectivity;
         private int packing;
 
-        public FESS0State(int playerPos, int[] cratesIndices, int hash, State parent, int cost, int heuristic) {
+        public FESS0State(int playerPos, int[] cratesIndices, long hash, State parent, int cost, int heuristic) {
             super(playerPos, cratesIndices, hash, parent, cost, heuristic);
         }
 
@@ -121,10 +300,13 @@ public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> {
             this.packing = packing;
         }
 
+        private FESS0State(FESS0State parent, Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+            super(parent, zobrist, newPlayerPos, crateToMove, crateDestination);
+        }
+
         @Override
-        public FESS0State child(int newPlayerPos, int crateToMove, int crateDestination) {
-            return new FESS0State(super.child(newPlayerPos, crateToMove, crateDestination),
-                    cost(), 0, 0, 0);
+        public FESS0State child(Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+            return new FESS0State(this, zobrist, newPlayerPos, crateToMove, crateDestination);
         }
 
         public int getConnectivity() {
@@ -142,31 +324,5 @@ public class FESS0Solver extends AbstractSolver<FESS0Solver.FESS0State> {
         public void setPacking(int packing) {
             this.packing = packing;
         }
-
-        @Override
-        public int compareTo(FESS0State o) {
-            // compare in reverse order because
-            // java PriorityQueue is a min-queue
-            return compare(o, this);
-        }
-
-        private static int compare(FESS0State a, FESS0State b) {
-            // -1 if this < o
-            //  0 if this = o
-            //  1 if this > o
-            if (a.packing > b.packing) {
-                return 1; // we want to maximize packing
-            } else if (a.packing < b.packing) {
-                return -1;
-            } else {
-                if (a.connectivity < b.connectivity) {
-                    return 1; // we want to minimize connectivity
-                } else if (a.connectivity > b.connectivity) {
-                    return -1;
-                } else {
-                    return Integer.compare(a.weight(), b.weight());
-                }
-            }
-        }
     }
 }
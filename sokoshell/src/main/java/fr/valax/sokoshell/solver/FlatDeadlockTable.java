@@ -0,0 +1,390 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.Direction;
+import fr.valax.sokoshell.solver.board.tiles.Tile;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link DeadlockTable} stored in a flat array of ints, which can be memory-mapped.
+ * The file starts with a header of three ints: {@link #MAGIC}, the number of nodes
+ * and a reference to the root. Then, each node is made of five ints: the position
+ * of the tile to check, relative to the player (x and y), and a reference to the
+ * floor, wall and crate children. A reference is either the index of a node,
+ * {@link #NOT_DEADLOCK} or {@link #DEADLOCK}. All ints are little-endian.
+ * <br>
+ * The table is immutable: lookups don't allocate and can be done by multiple threads.
+ * Use {@link #getDefault()} to get the table shared by all solvers.
+ * <br>
+ * Tables in the tree format of {@link DeadlockTable} can still be read: they are
+ * converted when loaded. Use {@link #convert(Path, Path)} to convert them once for all.
+ *
+ * @see DeadlockTable
+ * @author PoulpoGaz
+ */
+public final class FlatDeadlockTable {
+
+    /**
+     * 'DLT1' in ASCII
+     */
+    public static final int MAGIC = 0x444C5431;
+
+    public static final Path DEFAULT_PATH = Path.of("4x4.table");
+
+    static final int NOT_DEADLOCK = -1;
+    static final int DEADLOCK = -2;
+
+    private static final int HEADER_SIZE = 3;
+    private static final int NODE_SIZE = 5;
+
+    /**
+     * Coordinate transforms: the tile at (x, y) in the table is at
+     * {@code (playerX + TRANSFORMS[dir][0] * x + TRANSFORMS[dir][1] * y,
+     *         playerY + TRANSFORMS[dir][2] * x + TRANSFORMS[dir][3] * y)}
+     * on the board, when pushing in the direction dir. Indexed by {@link Direction#ordinal()}
+     */
+    private static final int[][] TRANSFORMS = createTransforms();
+
+    /**
+     * Tables loaded by {@link #get(Path)}, indexed by their absolute path
+     */
+    private static final Map<Path, FlatDeadlockTable> TABLES = new HashMap<>();
+
+    private final IntBuffer nodes;
+    private final int root;
+
+    private FlatDeadlockTable(IntBuffer nodes) throws IOException {
+        if (nodes.limit() < HEADER_SIZE || nodes.get(0) != MAGIC) {
+            throw new IOException("Not a flat deadlock table");
+        }
+
+        int nNodes = nodes.get(1);
+        if (nNodes < 0 || nodes.limit() != HEADER_SIZE + (long) nNodes * NODE_SIZE) {
+            throw new IOException("Malformed table");
+        }
+
+        this.nodes = nodes;
+        this.root = nodes.get(2);
+    }
+
+    private static int[][] createTransforms() {
+        int[][] transforms = new int[Direction.VALUES.length][];
+        transforms[Direction.LEFT.ordinal()] = new int[] {0, 1, 1, 0};
+        transforms[Direction.UP.ordinal()] = new int[] {1, 0, 0, 1};
+        transforms[Direction.RIGHT.ordinal()] = new int[] {0, -1, -1, 0};
+        transforms[Direction.DOWN.ordinal()] = new int[] {-1, 0, 0, -1};
+
+        return transforms;
+    }
+
+    /**
+     * Returns the table at {@link #DEFAULT_PATH}. It is loaded once and shared by all solvers.
+     *
+     * @return the default table
+     * @throws IOException if the table can't be loaded
+     * @see #get(Path)
+     */
+    public static FlatDeadlockTable getDefault() throws IOException {
+        return get(DEFAULT_PATH);
+    }
+
+    /**
+     * Returns the table at the specified path. A table is loaded once and shared
+     * by all solvers that use the same path.
+     *
+     * @param path path to the table
+     * @return the table
+     * @throws IOException if the table can't be loaded
+     */
+    public static synchronized FlatDeadlockTable get(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+
+        FlatDeadlockTable table = TABLES.get(key);
+        if (table == null) {
+            table = load(key);
+            TABLES.put(key, table);
+        }
+
+        return table;
+    }
+
+    /**
+     * Loads a table. If the table is in the flat format, it is memory-mapped.
+     * Otherwise, it is read in the tree format and converted in memory.
+     *
+     * @param path path to the table
+     * @return the table
+     * @throws IOException if an I/O error occurs or the table is malformed
+     */
+    public static FlatDeadlockTable load(Path path) throws IOException {
+        if (isFlat(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                return new FlatDeadlockTable(buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+            }
+        } else {
+            return of(DeadlockTable.read(path));
+        }
+    }
+
+    /**
+     * Converts a table in the tree format to the flat format
+     *
+     * @param tree path to the table in the tree format
+     * @param out path where the flat table is written
+     * @throws IOException if an I/O error occurs or the tree is malformed
+     */
+    public static void convert(Path tree, Path out) throws IOException {
+        of(DeadlockTable.read(tree)).write(out);
+    }
+
+    private static boolean isFlat(Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            byte[] bytes = is.readNBytes(4);
+
+            return bytes.length == 4 &&
+                    ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Flattens a table in the tree format
+     *
+     * @param root the root of the tree
+     * @return the flat table
+     */
+    public static FlatDeadlockTable of(DeadlockTable root) {
+        int nNodes = countNodes(root);
+
+        int[] array = new int[HEADER_SIZE + nNodes * NODE_SIZE];
+        array[0] = MAGIC;
+        array[1] = nNodes;
+        array[2] = flatten(root, array, new int[1]);
+
+        try {
+            return new FlatDeadlockTable(IntBuffer.wrap(array));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // never happens
+        }
+    }
+
+    private static int countNodes(DeadlockTable table) {
+        if (table.deadlock != DeadlockTable.MAYBE_A_DEADLOCK) {
+            return 0;
+        }
+
+        return 1 + countNodes(table.floorChild) + countNodes(table.wallChild) + countNodes(table.crateChild);
+    }
+
+    /**
+     * Writes the nodes in pre-order
+     *
+     * @return a reference to table
+     */
+    private static int flatten(DeadlockTable table, int[] array, int[] nextNode) {
+        if (table.deadlock == DeadlockTable.A_DEADLOCK) {
+            return DEADLOCK;
+        } else if (table.deadlock == DeadlockTable.NOT_A_DEADLOCK) {
+            return NOT_DEADLOCK;
+        }
+
+        int node = nextNode[0]++;
+        int offset = HEADER_SIZE + node * NODE_SIZE;
+        array[offset] = table.x;
+        array[offset + 1] = table.y;
+        array[offset + 2] = flatten(table.floorChild, array, nextNode);
+        array[offset + 3] = flatten(table.wallChild, array, nextNode);
+        array[offset + 4] = flatten(table.crateChild, array, nextNode);
+
+        return node;
+    }
+
+    /**
+     * Writes this table in the flat format
+     *
+     * @param out the destination
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(Path out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * nodes.limit()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < nodes.limit(); i++) {
+            buffer.putInt(nodes.get(i));
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @param player position of the player before the push
+     * @param pushDir direction of the push
+     * @return true if pushing the crate next to the player leads to a deadlock
+     */
+    public boolean isDeadlock(TileInfo player, Direction pushDir) {
+        return isDeadlock(player, pushDir, -1, -1);
+    }
+
+    /**
+     * Same as {@link #isDeadlock(TileInfo, Direction)} but the board is read as if
+     * the crate at {@code removed} was moved to {@code added}. The board isn't modified,
+     * so the children of a state can be checked concurrently.
+     *
+     * @param player position of the player before the push
+     * @param pushDir direction of the push
+     * @param removed index of the moved crate, -1 if none
+     * @param added destination of the moved crate, -1 if none
+     * @return true if pushing the crate next to the player leads to a deadlock
+     */
+    public boolean isDeadlock(TileInfo player, Direction pushDir, int removed, int added) {
+        if (tileAt(player.adjacent(pushDir), removed, added) == Tile.CRATE_ON_TARGET) {
+            return false;
+        }
+
+        Board board = player.getBoard();
+        int playerX = player.getX();
+        int playerY = player.getY();
+        int[] t = TRANSFORMS[pushDir.ordinal()];
+
+        int node = root;
+        while (node >= 0) {
+            int offset = HEADER_SIZE + node * NODE_SIZE;
+            int x = nodes.get(offset);
+            int y = nodes.get(offset + 1);
+
+            int boardX = playerX + t[0] * x + t[1] * y;
+            int boardY = playerY + t[2] * x + t[3] * y;
+            if (!board.caseExists(boardX, boardY)) {
+                return false;
+            }
+
+            node = switch (tileAt(board.getAt(boardX, boardY), removed, added)) {
+                case FLOOR -> nodes.get(offset + 2);
+                case WALL -> nodes.get(offset + 3);
+                case CRATE -> nodes.get(offset + 4);
+                default -> NOT_DEADLOCK;
+            };
+        }
+
+        return node == DEADLOCK;
+    }
+
+    private static Tile tileAt(TileInfo tile, int removed, int added) {
+        if (tile.getIndex() == added) {
+            return tile.isTarget() ? Tile.CRATE_ON_TARGET : Tile.CRATE;
+        } else if (tile.getIndex() == removed) {
+            return tile.isCrateOnTarget() ? Tile.TARGET : Tile.FLOOR;
+        } else {
+            return tile.getTile();
+        }
+    }
+
+    /**
+     * @return the number of nodes, excluding leaves
+     */
+    public int nNodes() {
+        return nodes.get(1);
+    }
+
+    /**
+     * Writes a flat table node by node, so the whole tree never needs to be in memory.
+     * Children must be added before their parent.
+     */
+    public static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private int nNodes;
+
+        /**
+         * @param out the destination
+         * @throws IOException if an I/O error occurs
+         */
+        public Writer(Path out) throws IOException {
+            channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            channel.position(4L * HEADER_SIZE); // header is written at the end
+        }
+
+        /**
+         * Adds a node
+         *
+         * @return a reference to the node
+         */
+        public int addNode(int x, int y, int floorChild, int wallChild, int crateChild) throws IOException {
+            if (buffer.remaining() < 4 * NODE_SIZE) {
+                flush();
+            }
+
+            buffer.putInt(x).putInt(y).putInt(floorChild).putInt(wallChild).putInt(crateChild);
+            return nNodes++;
+        }
+
+        /**
+         * Adds all the nodes of a tree
+         *
+         * @return a reference to the root of the tree
+         */
+        public int addTree(DeadlockTable table) throws IOException {
+            if (table.deadlock == DeadlockTable.A_DEADLOCK) {
+                return DEADLOCK;
+            } else if (table.deadlock == DeadlockTable.NOT_A_DEADLOCK) {
+                return NOT_DEADLOCK;
+            }
+
+            int floor = addTree(table.floorChild);
+            int wall = addTree(table.wallChild);
+            int crate = addTree(table.crateChild);
+
+            return addNode(table.x, table.y, floor, wall, crate);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Writes the header
+         *
+         * @param root a reference to the root
+         * @throws IOException if an I/O error occurs
+         */
+        public void finish(int root) throws IOException {
+            flush();
+
+            buffer.putInt(MAGIC).putInt(nNodes).putInt(root).flip();
+            channel.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
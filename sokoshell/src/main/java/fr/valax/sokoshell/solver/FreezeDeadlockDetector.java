@@ -2,19 +2,42 @@ package fr.valax.sokoshell.solver;
 
 import fr.valax.sokoshell.solver.board.Board;
 import fr.valax.sokoshell.solver.board.Direction;
-import fr.valax.sokoshell.solver.board.tiles.Tile;
-import fr.valax.sokoshell.solver.board.tiles.TileInfo;
-
+import fr.valax.sokoshell.solver.board.PackedBoard;
+
+/**
+ * Freeze deadlock detection on the {@link PackedBoard} of a board. The detector never
+ * modifies the board: crates considered as walls during the research are stored in
+ * a local visited set and a move can be checked without being played, see
+ * {@link #checkFreezeDeadlock(int, int)}. Hence, many detectors can read the same board
+ * at the same time as long as nobody modifies it. A detector isn't thread-safe:
+ * each thread must use its own detector.
+ *
+ * @see <a href="http://www.sokobano.de/wiki/index.php?title=How_to_detect_deadlocks">How to detect deadlocks</a>
+ */
 public class FreezeDeadlockDetector {
 
-    // http://www.sokobano.de/wiki/index.php?title=How_to_detect_deadlocks
-    public static boolean checkFreezeDeadlock(Board board, State state) {
-        int[] crates = state.cratesIndices();
+    private final PackedBoard board;
+
+    // crates considered as walls
+    private final boolean[] visited;
+
+    // move checked by checkFreezeDeadlock(int, int), -1 if none
+    private int removed = -1;
+    private int added = -1;
 
-        for (int crate : crates) {
-            TileInfo info = board.getAt(crate);
+    public FreezeDeadlockDetector(Board board) {
+        this.board = board.getPackedBoard();
 
-            if (checkFreezeDeadlock(info)) {
+        visited = new boolean[board.getWidth() * board.getHeight()];
+    }
+
+    /**
+     * @param state a state whose crates are on the board
+     * @return true if a crate that isn't on a target is frozen
+     */
+    public boolean checkFreezeDeadlock(State state) {
+        for (int crate : state.cratesIndices()) {
+            if (checkFreezeDeadlock(crate)) {
                 return true;
             }
         }
@@ -22,44 +45,89 @@ public class FreezeDeadlockDetector {
         return false;
     }
 
-    public static boolean checkFreezeDeadlock(TileInfo crate) {
-        return crate.isCrate() &&
-                checkFreezeDeadlockRec(crate, Direction.LEFT) &&
-                checkFreezeDeadlockRec(crate, Direction.UP);
+    /**
+     * @param crate index of a crate on the board
+     * @return true if the crate isn't on a target and is frozen
+     */
+    public boolean checkFreezeDeadlock(int crate) {
+        return isCrate(crate) && isFrozen(crate);
+    }
+
+    /**
+     * Checks if moving a crate leads to a freeze deadlock. The move isn't
+     * done on the board.
+     *
+     * @param crate index of the crate to move
+     * @param dest destination of the crate, must be empty
+     * @return true if the crate at dest isn't on a target and is frozen
+     */
+    public boolean checkFreezeDeadlock(int crate, int dest) {
+        removed = crate;
+        added = dest;
+
+        boolean deadlock = checkFreezeDeadlock(dest);
+
+        removed = -1;
+        added = -1;
+
+        return deadlock;
     }
 
-    private static boolean checkFreezeDeadlockRec(TileInfo crate) {
-        return checkFreezeDeadlockRec(crate, Direction.LEFT) &&
-                checkFreezeDeadlockRec(crate, Direction.UP);
+    private boolean isFrozen(int crate) {
+        return isFrozenRec(crate, Direction.LEFT) && isFrozenRec(crate, Direction.UP);
     }
 
-    private static boolean checkFreezeDeadlockRec(TileInfo current, Direction axis) {
+    private boolean isFrozenRec(int current, Direction axis) {
         boolean deadlock = false;
 
-        TileInfo left = current.adjacent(axis);
-        TileInfo right = current.adjacent(axis.negate());
+        int left = board.adjacent(current, axis);
+        int right = board.adjacent(current, axis.negate());
 
-        if (left.isWall() || right.isWall()) { // rule 1
+        if (isWall(left) || isWall(right)) { // rule 1
             deadlock = true;
 
-        } else if (left.isDeadTile() && right.isDeadTile()) { // rule 2
+        } else if (board.isDeadTile(left) && board.isDeadTile(right)) { // rule 2
             deadlock = true;
 
         } else { // rule 3
-            Tile oldCurr = current.getTile();
-            current.setTile(Tile.WALL);
+            visited[current] = true;
 
-            if (left.anyCrate()) {
-                deadlock = checkFreezeDeadlockRec(left);
+            if (anyCrate(left)) {
+                deadlock = isFrozen(left);
             }
 
-            if (!deadlock && right.anyCrate()) {
-                deadlock = checkFreezeDeadlockRec(right);
+            if (!deadlock && anyCrate(right)) {
+                deadlock = isFrozen(right);
             }
 
-            current.setTile(oldCurr);
+            visited[current] = false;
         }
 
         return deadlock;
     }
+
+    // view of the board after the move being checked //
+
+    private boolean isCrateOrVisited(int index) {
+        return index == added || index != removed && board.anyCrate(index);
+    }
+
+    private boolean isWall(int index) {
+        return visited[index] || board.isWall(index);
+    }
+
+    private boolean anyCrate(int index) {
+        return !visited[index] && isCrateOrVisited(index);
+    }
+
+    /**
+     * @return true if there is a crate that isn't on a target at index
+     */
+    private boolean isCrate(int index) {
+        if (index == added) {
+            return !board.isTarget(index);
+        }
+
+        return index != removed && board.isCrate(index);
+    }
 }
@@ -0,0 +1,787 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.Direction;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.collections.ClockCache;
+import fr.valax.sokoshell.solver.collections.CratesEncoding;
+import fr.valax.sokoshell.solver.heuristic.CachedHeuristic;
+import fr.valax.sokoshell.solver.heuristic.Heuristic;
+import fr.valax.sokoshell.utils.SizeOf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * A parallel version of {@link AStarSolver} based on hash distributed A* (HDA*).
+ * The research is split between workers. Each worker owns a board, an open list
+ * and a slice of the processed states: a state belongs to the worker given by
+ * {@link #owner(State)}. When a worker generates a child, the child is sent to
+ * its owner, which adds it to its open list if the state wasn't already reached with a lower
+ * or equal cost. A state reached again with a lower cost is processed again.
+ * <br>
+ * A solution found by a worker becomes the incumbent: it is only replaced by a cheaper one
+ * and states whose weight isn't lower than its cost are dropped. The research ends when
+ * there is no more state to process, i.e. all open lists and inboxes are empty and no worker
+ * is expanding a state. The incumbent is then at most the minimal weight of all open lists.
+ * Idle workers are parked until a state is sent to them or the research ends.
+ *
+ * @author PoulpoGaz
+ */
+public class HDAStarSolver implements ParallelTrackable {
+
+    public static final String THREADS = "threads";
+
+    private FlatDeadlockTable table;
+
+    private volatile Worker[] workers;
+
+    /**
+     * Number of states that were sent to a worker and which weren't entirely processed.
+     */
+    private final AtomicLong pending = new AtomicLong();
+    private volatile boolean halt = false;
+    private volatile WeightedState finalState;
+    private volatile int incumbentCost = Integer.MAX_VALUE;
+    private volatile Throwable error;
+
+    /**
+     * Approximate size of a state, used to compute the ram usage
+     */
+    private long stateSize;
+
+    private volatile boolean running = false;
+    private volatile boolean stopped = false;
+
+    // statistics
+    private long timeStart = -1;
+    private long timeEnd = -1;
+    private int nStateProcessed = -1;
+    private int queueSize = -1;
+    private int[] nStateProcessedByWorker;
+    private CacheStatistics pushPatternStatistics;
+    private CacheStatistics corralPatternStatistics;
+    private CacheStatistics corralCacheStatistics;
+    private CorralBudget.Statistics corralBudgetStatistics;
+    private CacheStatistics heuristicCacheStatistics;
+    private int lowerBound;
+    private Tracker tracker;
+
+    /**
+     * @param argument the argument of the {@link #THREADS} parameter
+     * @return the number of workers: all cores if the argument is negative or zero
+     */
+    public static int threads(int argument) {
+        return argument <= 0 ? Runtime.getRuntime().availableProcessors() : argument;
+    }
+
+    @Override
+    public SolverReport solve(SolverParameters params) {
+        Objects.requireNonNull(params);
+
+        running = true;
+        stopped = false;
+        halt = false;
+        finalState = null;
+        incumbentCost = Integer.MAX_VALUE;
+        error = null;
+        pending.set(0);
+
+        long timeout = params.getArgument(AbstractSolver.TIMEOUT);
+        long maxRam = params.getArgument(AbstractSolver.MAX_RAM);
+        boolean accurate = params.getArgument(AbstractSolver.ACCURATE);
+        long seed = params.getArgument(AbstractSolver.SEED);
+        int nThreads = threads(params.getArgument(THREADS));
+
+        if (accurate) {
+            SizeOf.initialize();
+        }
+
+        timeStart = System.currentTimeMillis();
+        timeEnd = -1;
+        nStateProcessed = 0;
+        queueSize = 0;
+        nStateProcessedByWorker = null;
+        pushPatternStatistics = null;
+        corralPatternStatistics = null;
+        corralCacheStatistics = null;
+        corralBudgetStatistics = null;
+        heuristicCacheStatistics = null;
+
+        if (tracker != null) {
+            tracker.reset();
+        }
+
+        // init the research
+
+        Level level = params.getLevel();
+        table = AbstractSolver.loadDeadlockTable(params);
+        // all workers must hash states with the same values
+        Zobrist zobrist = AbstractSolver.createZobrist(level, seed);
+        State initialState = level.getInitialState(zobrist);
+
+        Worker[] workers = new Worker[nThreads];
+        CratesEncoding encoding = null;
+        for (int i = 0; i < nThreads; i++) {
+            workers[i] = new Worker(zobrist);
+            if (i == 0) {
+                workers[i].initBoard(level, initialState);
+                workers[i].initCorralBudget(params);
+                workers[i].initLevelDeadlocks(params);
+                workers[i].init(params);
+            } else {
+                // the level is analyzed once
+                workers[i].initBoard(level, initialState, workers[0].board);
+                workers[i].initCorralBudget(params);
+                workers[i].levelDeadlocks = workers[0].levelDeadlocks; // immutable
+                workers[i].init(params, workers[0]);
+            }
+
+            if (encoding == null) {
+                encoding = CratesEncoding.smallest(workers[i].board, initialState.numberOfCrates());
+            }
+            workers[i].processed.setEncoding(encoding);
+        }
+        this.workers = workers;
+
+        workers[0].addInitialState(level);
+
+        Thread[] threads = new Thread[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            threads[i] = new Thread(workers[i], "HDA*-worker-" + i);
+            workers[i].thread = threads[i];
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        String endStatus = null;
+        WeightedState sizeRef = new WeightedState(initialState, 0, 0);
+        stateSize = accurate ? sizeRef.approxSizeOfAccurate() : sizeRef.approxSizeOf();
+        try {
+            while (!halt && isAlive(threads)) {
+                if (hasTimedOut(timeout)) {
+                    endStatus = SolverReport.TIMEOUT;
+                    break;
+                }
+
+                if (hasRamExceeded(maxRam)) {
+                    endStatus = SolverReport.RAM_EXCEED;
+                    break;
+                }
+
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            stopped = true;
+        } finally {
+            halt = true;
+            wakeUpAll();
+            join(threads);
+        }
+
+        // END OF RESEARCH
+
+        timeEnd = System.currentTimeMillis();
+        nStateProcessed = nStateExplored();
+        queueSize = currentQueueSize();
+
+        nStateProcessedByWorker = new int[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            nStateProcessedByWorker[i] = workers[i].nStateExplored();
+        }
+        pushPatternStatistics = patternStatistics(workers, DeadlockPatternStore::getPushStatistics);
+        corralPatternStatistics = patternStatistics(workers, DeadlockPatternStore::getCorralStatistics);
+        corralCacheStatistics = corralCacheStatistics(workers);
+        corralBudgetStatistics = corralBudgetStatistics(workers);
+        heuristicCacheStatistics = heuristicCacheStatistics(workers);
+
+        // 'free' ram
+        this.workers = null;
+        for (Worker worker : workers) {
+            worker.clear();
+        }
+
+        running = false;
+
+        if (error != null) {
+            throw new RuntimeException(error);
+        }
+
+        WeightedState finalState = this.finalState;
+        if (finalState != null) {
+            return SolverReport.withSolution(finalState, params, getStatistics());
+        } else if (endStatus != null) {
+            return SolverReport.withoutSolution(params, getStatistics(), endStatus);
+        } else if (stopped) {
+            return SolverReport.withoutSolution(params, getStatistics(), SolverReport.STOPPED);
+        } else {
+            return SolverReport.withoutSolution(params, getStatistics(), SolverReport.NO_SOLUTION);
+        }
+    }
+
+    private boolean isAlive(Thread[] threads) {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void join(Thread[] threads) {
+        for (Thread thread : threads) {
+            boolean interrupted = false;
+
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean hasTimedOut(long timeout) {
+        return timeout > 0 && timeout + timeStart < System.currentTimeMillis();
+    }
+
+    private boolean hasRamExceeded(long maxRam) {
+        return maxRam > 0 && memoryUsage() >= maxRam;
+    }
+
+    /**
+     * Returns the index of the worker that owns the state.
+     * The hash is mixed before taking its high bits because {@link fr.valax.sokoshell.solver.collections.TranspositionTable}
+     * uses the low bits of the hash.
+     *
+     * @param state a state
+     * @return the index of the worker owning the state
+     */
+    private int owner(State state) {
+        long h = (state.hash() * 0x9E3779B97F4A7C15L) >>> 32;
+
+        return (int) ((h * workers.length) >>> 32);
+    }
+
+    private void send(WeightedState state) {
+        pending.incrementAndGet();
+
+        Worker owner = workers[owner(state)];
+        owner.inbox.add(state);
+        if (owner.idle) {
+            LockSupport.unpark(owner.thread);
+        }
+    }
+
+    /**
+     * Called when states sent to a worker were entirely processed.
+     * Wakes up all workers when there is no more state to process.
+     *
+     * @param n number of states
+     */
+    private void processed(int n) {
+        if (pending.addAndGet(-n) == 0) {
+            wakeUpAll();
+        }
+    }
+
+    private void wakeUpAll() {
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    private synchronized void solutionFound(WeightedState state) {
+        if (state.cost() < incumbentCost) {
+            finalState = state;
+            incumbentCost = state.cost();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return HDA_STAR;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean stop() {
+        stopped = true;
+        halt = true;
+        return true;
+    }
+
+    @Override
+    public List<SolverParameter> getParameters() {
+        List<SolverParameter> params = new ArrayList<>();
+        params.add(new SolverParameter.Long(AbstractSolver.TIMEOUT, "Maximal runtime of the solver", -1));
+        params.add(new SolverParameter.RamParameter(AbstractSolver.MAX_RAM, -1));
+        params.add(new SolverParameter.Boolean(AbstractSolver.ACCURATE, "Use a more accurate method to calculate ram usage", false));
+        params.add(new SolverParameter.Long(AbstractSolver.SEED, "Seed used to hash the states. Random if negative", -1));
+        AbstractSolver.addDeadlockTableParameter(params);
+        AbstractSolver.addLevelDeadlocksParameters(params);
+        params.add(new AStarSolver.HeuristicParameter());
+        params.add(new AStarSolver.QueueParameter());
+        params.add(new SolverParameter.Integer(THREADS, "Number of workers. Use all cores if negative or zero", -1));
+        AbstractSolver.addCorralParameters(params);
+
+        return params;
+    }
+
+    private ISolverStatistics getStatistics() {
+        ISolverStatistics stats;
+
+        if (tracker != null) {
+            stats = Objects.requireNonNull(tracker.getStatistics(this));
+        } else {
+            stats = new ISolverStatistics.Basic(timeStart, timeEnd);
+        }
+
+        return stats;
+    }
+
+    @Override
+    public int nWorkers() {
+        Worker[] workers = this.workers;
+
+        if (workers != null) {
+            return workers.length;
+        } else if (nStateProcessedByWorker != null) {
+            return nStateProcessedByWorker.length;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int nStateExplored(int worker) {
+        Worker[] workers = this.workers;
+
+        if (timeStart < 0) {
+            return -1;
+        } else if (timeEnd < 0 && workers != null) {
+            return workers[worker].nStateExplored();
+        } else if (nStateProcessedByWorker != null) {
+            return nStateProcessedByWorker[worker];
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int nStateExplored() {
+        Worker[] workers = this.workers;
+
+        if (timeStart < 0) {
+            return -1;
+        } else if (timeEnd < 0 && workers != null) {
+            int n = 0;
+            for (Worker worker : workers) {
+                n += worker.nStateExplored();
+            }
+
+            return n;
+        } else {
+            return nStateProcessed;
+        }
+    }
+
+    @Override
+    public long memoryUsage() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            long ramUsed = 0;
+            for (Worker worker : workers) {
+                ramUsed += worker.memoryUsage(stateSize);
+            }
+
+            return ramUsed;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int currentQueueSize() {
+        Worker[] workers = this.workers;
+
+        if (timeStart < 0) {
+            return -1;
+        } else if (timeEnd < 0 && workers != null) {
+            int n = 0;
+            for (Worker worker : workers) {
+                n += worker.currentQueueSize();
+            }
+
+            return n;
+        } else {
+            return queueSize;
+        }
+    }
+
+    @Override
+    public int lowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Each worker learns its own deadlock patterns: the statistics are the sum of the statistics of the workers
+     */
+    @Override
+    public CacheStatistics pushPatternStatistics() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            return patternStatistics(workers, DeadlockPatternStore::getPushStatistics);
+        } else {
+            return pushPatternStatistics;
+        }
+    }
+
+    /**
+     * Each worker learns its own deadlock patterns: the statistics are the sum of the statistics of the workers
+     */
+    @Override
+    public CacheStatistics corralPatternStatistics() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            return patternStatistics(workers, DeadlockPatternStore::getCorralStatistics);
+        } else {
+            return corralPatternStatistics;
+        }
+    }
+
+    /**
+     * Each worker has its own cache: the statistics are the sum of the statistics of the workers
+     */
+    @Override
+    public CacheStatistics corralCacheStatistics() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            return corralCacheStatistics(workers);
+        } else {
+            return corralCacheStatistics;
+        }
+    }
+
+    /**
+     * Each worker has its own budget: the statistics are the sum of the statistics of the workers
+     */
+    @Override
+    public CorralBudget.Statistics corralBudgetStatistics() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            return corralBudgetStatistics(workers);
+        } else {
+            return corralBudgetStatistics;
+        }
+    }
+
+    /**
+     * Each worker has its own cache: the statistics are the sum of the statistics of the workers
+     */
+    @Override
+    public CacheStatistics heuristicCacheStatistics() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            return heuristicCacheStatistics(workers);
+        } else {
+            return heuristicCacheStatistics;
+        }
+    }
+
+    private CacheStatistics patternStatistics(Worker[] workers, Function<DeadlockPatternStore, CacheStatistics> statistics) {
+        CacheStatistics stats = new CacheStatistics(0, 0, 0);
+
+        for (Worker worker : workers) {
+            DeadlockPatternStore patterns = worker.patterns;
+
+            if (patterns != null) {
+                stats = stats.add(statistics.apply(patterns));
+            }
+        }
+
+        return stats;
+    }
+
+    private CorralBudget.Statistics corralBudgetStatistics(Worker[] workers) {
+        CorralBudget.Statistics stats = new CorralBudget.Statistics(0, 0, 0, 0, 0);
+
+        for (Worker worker : workers) {
+            CorralBudget corralBudget = worker.corralBudget;
+
+            if (corralBudget != null) {
+                stats = stats.add(corralBudget.getStatistics());
+            }
+        }
+
+        return stats;
+    }
+
+    private CacheStatistics corralCacheStatistics(Worker[] workers) {
+        CacheStatistics stats = new CacheStatistics(0, 0, 0, 0);
+
+        for (Worker worker : workers) {
+            ClockCache corralCache = worker.corralCache;
+
+            if (corralCache != null) {
+                stats = stats.add(corralCache.getStatistics());
+            }
+        }
+
+        return stats;
+    }
+
+    private CacheStatistics heuristicCacheStatistics(Worker[] workers) {
+        CacheStatistics stats = new CacheStatistics(0, 0, 0, 0);
+
+        for (Worker worker : workers) {
+            CachedHeuristic heuristic = worker.heuristic;
+
+            if (heuristic != null) {
+                stats = stats.add(heuristic.getStatistics());
+            }
+        }
+
+        return stats;
+    }
+
+    @Override
+    public long timeStarted() {
+        return timeStart;
+    }
+
+    @Override
+    public long timeEnded() {
+        return timeEnd;
+    }
+
+    @Override
+    public State currentState() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            return workers[0].currentState();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public Board staticBoard() {
+        Worker[] workers = this.workers;
+
+        if (workers != null && running) {
+            return workers[0].staticBoard();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public void setTacker(Tracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public Tracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * A worker reuses the expansion of {@link AbstractSolver} but its research loop
+     * is {@link #run()}. Its open list is {@link #toProcess} and its slice of the
+     * processed states is {@link #processed}.
+     */
+    private class Worker extends AbstractSolver<WeightedState> implements Runnable {
+
+        private final Queue<WeightedState> inbox = new ConcurrentLinkedQueue<>();
+        private Thread thread;
+        private volatile boolean idle;
+
+        /**
+         * The heuristic without cache, its immutable data are shared with the other workers
+         */
+        private Heuristic uncachedHeuristic;
+
+        public Worker(Zobrist zobrist) {
+            super(HDA_STAR, HDAStarSolver.this.table);
+            this.zobrist = zobrist;
+            processed.setRememberCosts(true);
+        }
+
+        @Override
+        protected void init(SolverParameters parameters) {
+            init(parameters, null);
+        }
+
+        /**
+         * @param parameters parameters of the solver
+         * @param first the first worker, whose heuristic is already created, or null
+         */
+        private void init(SolverParameters parameters, Worker first) {
+            uncachedHeuristic = AStarSolver.createHeuristic(parameters, board,
+                    first == null ? null : first.uncachedHeuristic);
+            heuristic = new CachedHeuristic(uncachedHeuristic, zobrist);
+            toProcess = AStarSolver.createQueue(parameters.getArgument("queue"));
+        }
+
+        @Override
+        protected void addInitialState(Level level) {
+            State s = level.getInitialState(zobrist);
+            lowerBound = heuristic.compute(s);
+
+            // the level can't be solved
+            if (lowerBound != Heuristic.INFINITY) {
+                send(new WeightedState(s, 0, lowerBound));
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!halt) {
+                    WeightedState s;
+                    while ((s = inbox.poll()) != null) {
+                        if (s.weight() < incumbentCost && processed.add(s, s.cost())) {
+                            toProcess.addState(s);
+                        } else {
+                            processed(1);
+                        }
+                    }
+
+                    // the open list can't lead to a cheaper solution than the incumbent
+                    if (!toProcess.isEmpty() && toProcess.peekState().weight() >= incumbentCost) {
+                        int n = toProcess.size();
+                        toProcess.clear();
+                        processed(n);
+                    }
+
+                    if (toProcess.isEmpty()) {
+                        if (pending.get() == 0) {
+                            break;
+                        }
+
+                        park();
+                        continue;
+                    }
+
+                    WeightedState state = toProcess.peekAndCacheState();
+                    // a cheaper path to this state was found after it was added to the open list
+                    if (processed.cost(state) < state.cost()) {
+                        processed(1);
+                        continue;
+                    }
+
+                    if (expand(state)) {
+                        solutionFound(state);
+                    }
+
+                    processed(1);
+                }
+            } catch (Throwable t) {
+                error = t;
+                halt = true;
+            }
+        }
+
+        /**
+         * Parks the worker until a state is sent to it or the research ends.
+         * {@link #idle} is set before checking the inbox, so a sender either
+         * sees the worker idle and unparks it or adds its state before the check.
+         */
+        private void park() {
+            idle = true;
+
+            if (inbox.isEmpty() && pending.get() != 0 && !halt) {
+                LockSupport.park(this);
+            }
+
+            idle = false;
+        }
+
+        @Override
+        protected void addState(TileInfo crate, TileInfo crateDest, Direction pushDir) {
+            if (checkDeadlockBeforeAdding(crate, crateDest, pushDir)) {
+                return;
+            }
+
+            final int i = board.topLeftReachablePosition(crate, crateDest);
+            // The new player position is the crate position
+            WeightedState parent = toProcess.cachedState();
+            WeightedState s = parent.child(zobrist, i, crate.getCrateIndex(), crateDest.getIndex());
+            s.setCost(parent.cost() + numberOfPushes(crate, crateDest, pushDir));
+            s.setHeuristic(heuristic.compute(parent, parent.heuristic(), crate.getCrateIndex(), crate.getIndex(), crateDest.getIndex()));
+
+            if (s.heuristic() != Heuristic.INFINITY) {
+                send(s);
+            }
+        }
+
+        private long memoryUsage(long stateSize) {
+            return processed.memoryUsage() + toProcess.size() * stateSize;
+        }
+
+        @Override
+        public int nStateExplored() {
+            return processed.size();
+        }
+
+        @Override
+        public int currentQueueSize() {
+            return toProcess.size();
+        }
+
+        @Override
+        public State currentState() {
+            return toProcess.cachedState();
+        }
+
+        @Override
+        public Board staticBoard() {
+            return board.staticBoard();
+        }
+
+        private void clear() {
+            processed.clear();
+            toProcess.clear();
+            inbox.clear();
+            board = null;
+            freezeDetector = null;
+            patterns = null;
+            corralCache = null;
+            corralBudget = null;
+            levelDeadlocks = null;
+            zobrist = null;
+            heuristic = null;
+            uncachedHeuristic = null;
+        }
+
+        @Override
+        public int lowerBound() {
+            return lowerBound;
+        }
+    }
+}
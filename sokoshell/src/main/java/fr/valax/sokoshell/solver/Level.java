@@ -84,13 +84,23 @@ public class Level extends ImmutableBoard {
     }
 
     /**
-     * Returns the initial state i.e. a state representing the level at the beginning
+     * Returns the initial state i.e. a state representing the level at the beginning.
+     * The hash of the returned state is zero, use {@link #getInitialState(Zobrist)}
+     * if the state is used in a hash-based structure.
      *
      * @return the initial state
      */
     public State getInitialState() {
-        State.initZobristValues(getWidth() * getHeight()); // TODO
+        return getInitialState(null);
+    }
 
+    /**
+     * Returns the initial state i.e. a state representing the level at the beginning
+     *
+     * @param zobrist values used to compute the hash of the state. If null, the hash is zero
+     * @return the initial state
+     */
+    public State getInitialState(Zobrist zobrist) {
         List<Integer> cratesIndices = new ArrayList<>();
 
         for (int y = 0; y < getHeight(); y++) {
@@ -106,7 +116,9 @@ public class Level extends ImmutableBoard {
             cratesIndicesArray[i] = cratesIndices.get(i);
         }
 
-        return new State(playerPos, cratesIndicesArray, null);
+        long hash = zobrist == null ? 0 : zobrist.hash(playerPos, cratesIndicesArray);
+
+        return new State(playerPos, cratesIndicesArray, hash, null);
     }
 
     public BigInteger estimateNumberOfState() {
@@ -0,0 +1,169 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.heuristic.PatternDatabase;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Deadlocks of two and three crates of a level. Unlike {@link FlatDeadlockTable}, which
+ * only looks at the 4x4 area around a pushed crate, the table knows all placements of
+ * two crates (and of three crates if the level is small enough) on the tiles that aren't
+ * dead that can't be solved, whatever the position of the player. The other crates can
+ * only block the crates of a placement, so a state with such a placement is a deadlock.
+ * <br>
+ * Placements that can't be solved are found by the retrograde analysis of a
+ * {@link PatternDatabase}, which is computed in parallel and cached on disk. Placements of
+ * two crates are stored in a bitset indexed by {@code a * n + b} where a and b are the numbers
+ * of the tiles of the crates among the n tiles that aren't dead. Placements of three crates
+ * are read from the pattern database.
+ * <br>
+ * A table is immutable and can be shared by threads.
+ */
+public class LevelDeadlockTable {
+
+    /**
+     * Default maximal number of states of the retrograde analysis of the placements of three crates
+     */
+    public static final long DEFAULT_MAX_STATES = 1L << 24;
+
+    private final PatternDatabase pairs;
+    private final int n;
+    private final long[] pairDeadlocks;
+
+    // null if the placements of three crates aren't computed
+    private final PatternDatabase triples;
+
+    private LevelDeadlockTable(Board board, PatternDatabase pairs, PatternDatabase triples) {
+        this.pairs = pairs;
+        this.n = pairs.getCrateTileCount();
+        this.pairDeadlocks = new long[(int) (((long) n * n + 63) >>> 6)];
+        this.triples = triples;
+
+        int size = board.getWidth() * board.getHeight();
+        int[] placement = new int[2];
+        for (int i = 0; i < size; i++) {
+            int a = pairs.getCrateNumber(i);
+            if (a < 0) {
+                continue;
+            }
+
+            for (int j = i + 1; j < size; j++) {
+                int b = pairs.getCrateNumber(j);
+                if (b < 0) {
+                    continue;
+                }
+
+                placement[0] = i;
+                placement[1] = j;
+                if (pairs.distance(placement, 0) == PatternDatabase.UNSOLVABLE) {
+                    set((long) a * n + b);
+                    set((long) b * n + a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes or loads the table of a level. The board must be initialized for solvers
+     * and must not contain crates.
+     *
+     * @param board the board
+     * @param nCrates number of crates of the level
+     * @param maxStates maximal number of states of the retrograde analysis of the placements of three crates
+     * @param directory the directory where pattern databases are cached or null
+     * @return the table or null if the level has less than two crates
+     * @throws IOException if a pattern database can't be read from or written to the directory
+     */
+    public static LevelDeadlockTable getOrCreate(Board board, int nCrates, long maxStates, Path directory) throws IOException {
+        if (nCrates < 2 || PatternDatabase.stateCount(board, 2) > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        PatternDatabase pairs = PatternDatabase.getOrCreate(board, 2, directory);
+        PatternDatabase triples = null;
+        if (nCrates >= 3 && PatternDatabase.stateCount(board, 3) <= maxStates) {
+            triples = PatternDatabase.getOrCreate(board, 3, directory);
+        }
+
+        return new LevelDeadlockTable(board, pairs, triples);
+    }
+
+    /**
+     * Checks if moving a crate creates a placement of two or three crates that can't be solved.
+     * Placements of two crates are checked in O(crates) and placements of three crates in O(crates²).
+     *
+     * @param crates crates before the move, sorted in ascending order
+     * @param crate position of the crate to move
+     * @param dest destination of the crate
+     * @param placement array of at least three elements used to check placements of three crates.
+     *                  The table is shared, so the caller owns this buffer
+     * @return true if the crate at dest and one or two other crates can't be solved
+     */
+    public boolean isDeadlock(int[] crates, int crate, int dest, int[] placement) {
+        int d = pairs.getCrateNumber(dest);
+        if (d < 0) {
+            return false;
+        }
+
+        long row = (long) d * n;
+        for (int c : crates) {
+            if (c != crate && pairs.getCrateNumber(c) >= 0 && get(row + pairs.getCrateNumber(c))) {
+                return true;
+            }
+        }
+
+        return triples != null && isTripleDeadlock(crates, crate, dest, placement);
+    }
+
+    private boolean isTripleDeadlock(int[] crates, int crate, int dest, int[] placement) {
+        for (int i = 0; i < crates.length; i++) {
+            if (crates[i] == crate || pairs.getCrateNumber(crates[i]) < 0) {
+                continue;
+            }
+
+            for (int j = i + 1; j < crates.length; j++) {
+                if (crates[j] == crate || pairs.getCrateNumber(crates[j]) < 0) {
+                    continue;
+                }
+
+                // crates[i] < crates[j]: inserts dest
+                if (dest < crates[i]) {
+                    placement[0] = dest;
+                    placement[1] = crates[i];
+                    placement[2] = crates[j];
+                } else if (dest < crates[j]) {
+                    placement[0] = crates[i];
+                    placement[1] = dest;
+                    placement[2] = crates[j];
+                } else {
+                    placement[0] = crates[i];
+                    placement[1] = crates[j];
+                    placement[2] = dest;
+                }
+
+                if (triples.distance(placement, 0) == PatternDatabase.UNSOLVABLE) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void set(long bit) {
+        pairDeadlocks[(int) (bit >>> 6)] |= 1L << bit;
+    }
+
+    private boolean get(long bit) {
+        return (pairDeadlocks[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return true if the placements of three crates are checked
+     */
+    public boolean hasTriples() {
+        return triples != null;
+    }
+}
@@ -0,0 +1,22 @@
+package fr.valax.sokoshell.solver;
+
+/**
+ * A {@link Trackable} solver that splits the research between multiple workers.
+ * It allows trackers to get information about each worker.
+ * <br>
+ * As for {@link Trackable}, methods are non-synchronized and <strong>should not</strong>
+ * modify the state of the solver.
+ */
+public interface ParallelTrackable extends Trackable {
+
+    /**
+     * @return the number of workers used by the current or last research or -1
+     */
+    int nWorkers();
+
+    /**
+     * @param worker the index of a worker, between 0 and {@link #nWorkers()} (exclusive)
+     * @return the number of state explored by the worker or -1
+     */
+    int nStateExplored(int worker);
+}
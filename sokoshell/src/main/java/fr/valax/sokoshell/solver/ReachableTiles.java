@@ -1,36 +1,32 @@
 package fr.valax.sokoshell.solver;
 
+import fr.valax.sokoshell.solver.board.Bitboard;
 import fr.valax.sokoshell.solver.board.Board;
-import fr.valax.sokoshell.solver.board.Direction;
-import fr.valax.sokoshell.solver.board.mark.FixedSizeMarkSystem;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
 
+/**
+ * Tiles reachable by the player, stored in a bitset of the {@link Bitboard} of the board.
+ * The board must be intended for solvers.
+ */
 public class ReachableTiles {
 
-    protected final FixedSizeMarkSystem reachable;
+    protected final Bitboard bitboard;
+    protected final long[] reachable;
 
     public ReachableTiles(Board board) {
-        reachable = new FixedSizeMarkSystem(board.getWidth() * board.getHeight());
+        bitboard = board.getBitboard();
+        reachable = bitboard.newBitset();
     }
 
     public boolean isReachable(TileInfo tile) {
-        return reachable.isMarked(tile.getIndex());
+        return bitboard.isSet(reachable, tile.getX(), tile.getY());
     }
 
-    public void findReachableCases(TileInfo origin) {
-        reachable.unmarkAll();
-        findReachableCases_aux(origin);
-    }
-
-    private void findReachableCases_aux(TileInfo tile) {
-        reachable.mark(tile.getIndex());
-        for (Direction d : Direction.VALUES) {
-            TileInfo adjacent = tile.adjacent(d);
-
-            // the second part of the condition avoids to check already processed cases
-            if (!adjacent.isSolid() && !isReachable(adjacent)) {
-                findReachableCases_aux(adjacent);
-            }
-        }
+    /**
+     * @param origin position of the player
+     * @return the index of the top-left reachable tile
+     */
+    public int findReachableCases(TileInfo origin) {
+        return bitboard.findReachable(origin.getX(), origin.getY(), reachable);
     }
 }
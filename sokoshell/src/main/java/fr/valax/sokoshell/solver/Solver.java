@@ -13,6 +13,7 @@ public interface Solver {
     String DFS = "DFS";
     String BFS = "BFS";
     String A_STAR = "A*";
+    String HDA_STAR = "HDA*";
 
     /**
      * Try to solve the sokoban that is in the {@link SolverParameters}.
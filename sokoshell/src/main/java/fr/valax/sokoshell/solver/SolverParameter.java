@@ -8,6 +8,7 @@ import org.jline.reader.Candidate;
 import org.jline.reader.LineReader;
 
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
 import java.util.List;
 import java.util.Objects;
 import java.util.regex.Matcher;
@@ -217,6 +218,115 @@ public abstract class SolverParameter {
         }
     }
 
+    /**
+     * A directory used as a cache. The value "none" disables the cache
+     */
+    public static class Directory extends SolverParameter {
+
+        public static final String NONE = "none";
+
+        protected final String defaultValue;
+        protected String value = null;
+
+        public Directory(String name, String description, String defaultValue) {
+            super(name, description);
+            this.defaultValue = Objects.requireNonNull(defaultValue);
+        }
+
+        @Override
+        public void set(String argument) throws AbstractCommand.InvalidArgument {
+            try {
+                if (!argument.equalsIgnoreCase(NONE)) {
+                    java.nio.file.Path.of(argument);
+                }
+            } catch (InvalidPathException e) {
+                throw new AbstractCommand.InvalidArgument(e);
+            }
+
+            value = argument;
+        }
+
+        @Override
+        public Object get() {
+            return value;
+        }
+
+        @Override
+        public Object getDefaultValue() {
+            return defaultValue;
+        }
+
+        @Override
+        public void toJson(IJsonWriter jw) throws JsonException, IOException {
+            if (value != null) {
+                jw.value(value);
+            }
+        }
+
+        @Override
+        public void fromJson(IJsonReader jr) throws JsonException, IOException {
+            value = jr.nextString();
+        }
+
+        /**
+         * @param value the value of a directory parameter
+         * @return the directory or null if the cache is disabled
+         */
+        public static java.nio.file.Path toPath(String value) {
+            if (value.equalsIgnoreCase(NONE)) {
+                return null;
+            } else {
+                return java.nio.file.Path.of(value);
+            }
+        }
+    }
+
+    /**
+     * A path to a file
+     */
+    public static class File extends SolverParameter {
+
+        protected final String defaultValue;
+        protected String value = null;
+
+        public File(String name, String description, String defaultValue) {
+            super(name, description);
+            this.defaultValue = Objects.requireNonNull(defaultValue);
+        }
+
+        @Override
+        public void set(String argument) throws AbstractCommand.InvalidArgument {
+            try {
+                java.nio.file.Path.of(argument);
+            } catch (InvalidPathException e) {
+                throw new AbstractCommand.InvalidArgument(e);
+            }
+
+            value = argument;
+        }
+
+        @Override
+        public Object get() {
+            return value;
+        }
+
+        @Override
+        public Object getDefaultValue() {
+            return defaultValue;
+        }
+
+        @Override
+        public void toJson(IJsonWriter jw) throws JsonException, IOException {
+            if (value != null) {
+                jw.value(value);
+            }
+        }
+
+        @Override
+        public void fromJson(IJsonReader jr) throws JsonException, IOException {
+            value = jr.nextString();
+        }
+    }
 
 
     public static class RamParameter extends Long {
@@ -233,6 +343,17 @@ public abstract class SolverParameter {
 
         @Override
         public void set(String argument) throws AbstractCommand.InvalidArgument {
+            value = parse(argument);
+        }
+
+        /**
+         * Parses a quantity of ram like 512mb, 4gb or 1024b
+         *
+         * @param argument the string to parse
+         * @return the number of bytes
+         * @throws AbstractCommand.InvalidArgument if the argument isn't a quantity of ram
+         */
+        public static long parse(String argument) throws AbstractCommand.InvalidArgument {
             Matcher matcher = PATTERN.matcher(argument);
 
             if (matcher.matches() && matcher.groupCount() >= 1 && matcher.groupCount() <= 2) {
@@ -249,7 +370,7 @@ public abstract class SolverParameter {
                     };
                 }
 
-                value = r;
+                return r;
             } else {
                 throw new AbstractCommand.InvalidArgument("Invalid ram argument");
             }
@@ -14,7 +14,6 @@ import fr.valax.sokoshell.solver.pathfinder.Node;
 
 import java.io.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * An object representing the output of a solver. It contains the parameters given to the solver,
@@ -206,17 +205,36 @@ public class SolverReport {
      * @return a {@link StateDiff}
      */
     private StateDiff getStateDiff(Board board, State from, State to) {
-        List<Integer> state1Crates = Arrays.stream(from.cratesIndices()).boxed().collect(Collectors.toList());
-        List<Integer> state2Crates = Arrays.stream(to.cratesIndices()).boxed().collect(Collectors.toList());
+        // crates are sorted: walk the two arrays together
+        int[] fromCrates = from.cratesIndices();
+        int[] toCrates = to.cratesIndices();
+
+        int crate = -1;
+        int crateDest = -1;
+        int i = 0;
+        int j = 0;
+        while (i < fromCrates.length && j < toCrates.length) {
+            if (fromCrates[i] == toCrates[j]) {
+                i++;
+                j++;
+            } else if (fromCrates[i] < toCrates[j]) {
+                crate = fromCrates[i++];
+            } else {
+                crateDest = toCrates[j++];
+            }
+        }
 
-        List<Integer> state1Copy = state1Crates.stream().toList();
-        state1Crates.removeAll(state2Crates);
-        state2Crates.removeAll(state1Copy);
+        if (i < fromCrates.length) {
+            crate = fromCrates[i];
+        }
+        if (j < toCrates.length) {
+            crateDest = toCrates[j];
+        }
 
         return new StateDiff(
                 board.getAt(to.playerPos()),
-                board.getAt(state1Crates.get(0)),  // original crate pos
-                board.getAt(state2Crates.get(0))); // where it goes
+                board.getAt(crate),      // original crate pos
+                board.getAt(crateDest)); // where it goes
     }
 
     /**
@@ -3,10 +3,15 @@ package fr.valax.sokoshell.solver;
 import fr.valax.sokoshell.utils.SizeOf;
 
 import java.util.Arrays;
-import java.util.Random;
+import java.util.Objects;
 
 /**
  * A state represents an arrangement of the crates in the board and the location of the player.
+ * The crates are sorted in ascending order, so two states with the same arrangement have the same array.
+ * <br>
+ * A child only stores the push that created it. Its crates are computed from the crates of its parent
+ * the first time {@link #cratesIndices()} is called, usually when the state is expanded. Until then,
+ * {@link #cratesIndices(int[])} gives the crates without keeping them.
  *
  * @implNote <strong>DO NOT MODIFY THE ARRAY AFTER THE INITIALIZATION. THE HASH WON'T BE RECALCULATED</strong>
  * @author darth-mole
@@ -14,81 +19,148 @@ import java.util.Random;
  */
 public class State {
 
-    // http://sokobano.de/wiki/index.php?title=Solver#Hash_Function
-    // https://en.wikipedia.org/wiki/Zobrist_hashing
-    protected static int[][] zobristValues;
+    protected final int playerPos;
+    protected final long hash;
+    protected final State parent;
 
     /**
-     * @param minSize minSize is the number of tile in the board
+     * The crates, null until they are computed from the parent
      */
-    public static void initZobristValues(int minSize) {
-        int i;
-        if (zobristValues == null) {
-            i = 0;
-            zobristValues = new int[minSize][2];
-        } else if (zobristValues.length < minSize) {
-            i = zobristValues.length;
-            zobristValues = Arrays.copyOf(zobristValues, minSize);
-        } else {
-            i = zobristValues.length;
-        }
+    private int[] cratesIndices;
 
-        Random random = new Random();
-        for (; i < zobristValues.length; i++) {
-            if (zobristValues[i] == null) {
-                zobristValues[i] = new int[2];
-            }
+    /**
+     * Index in the crates of the parent of the pushed crate or -1
+     * if the state was created with its crates
+     */
+    private final int movedCrate;
+    private final int crateDestination;
 
-            zobristValues[i][0] = random.nextInt();
-            zobristValues[i][1] = random.nextInt();
-        }
+    /**
+     * @param playerPos the player position
+     * @param cratesIndices the crates position, sorted in ascending order
+     * @param hash the hash of the state, see {@link Zobrist#hash(int, int[])}
+     * @param parent the parent of the state
+     */
+    public State(int playerPos, int[] cratesIndices, long hash, State parent) {
+        this.playerPos = playerPos;
+        this.cratesIndices = Objects.requireNonNull(cratesIndices);
+        this.hash = hash;
+        this.parent = parent;
+        this.movedCrate = -1;
+        this.crateDestination = -1;
     }
 
+    /**
+     * Creates a child of a state. Used by {@link #child(Zobrist, int, int, int)}
+     * and by the subclasses, so a child is allocated once.
+     *
+     * @param parent the parent of the state
+     * @param zobrist the values used to compute the hash of the parent
+     * @param newPlayerPos the new player position
+     * @param crateToMove the index of the crate to move in the crates of the parent
+     * @param crateDestination the new position of the crate to move
+     */
+    protected State(State parent, Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+        int crate = parent.cratesIndices()[crateToMove];
 
-
-    protected final int playerPos;
-    protected final int[] cratesIndices;
-    protected final int hash;
-    protected final State parent;
-
-    public State(int playerPos, int[] cratesIndices, State parent) {
-        this(playerPos, cratesIndices, hashCode(playerPos, cratesIndices), parent);
+        this.playerPos = newPlayerPos;
+        this.hash = zobrist.childHash(parent.hash, parent.playerPos, newPlayerPos, crate, crateDestination);
+        this.parent = parent;
+        this.movedCrate = crateToMove;
+        this.crateDestination = crateDestination;
     }
 
-    public State(int playerPos, int[] cratesIndices, int hash, State parent) {
-        this.playerPos = playerPos;
-        this.cratesIndices = cratesIndices;
-        this.hash = hash;
-        this.parent = parent;
+    /**
+     * Copy constructor used by subclasses. The crates aren't computed
+     *
+     * @param state the state to copy
+     */
+    protected State(State state) {
+        this.playerPos = state.playerPos;
+        this.cratesIndices = state.cratesIndices;
+        this.hash = state.hash;
+        this.parent = state.parent;
+        this.movedCrate = state.movedCrate;
+        this.crateDestination = state.crateDestination;
     }
 
     /**
      * Creates a child of the state.
-     * It uses property of XOR to compute efficiently the hash of the child state
+     * It uses property of XOR to compute efficiently the hash of the child state.
+     * The crates of the child aren't computed. The moved crate will be inserted at
+     * its place in the crates of the child, so the index of the other crates may change.
+     * @param zobrist the values used to compute the hash of this state
      * @param newPlayerPos the new player position
      * @param crateToMove the index of the crate to move
      * @param crateDestination the new position of the crate to move
      * @return the child state
      */
-    public State child(int newPlayerPos, int crateToMove, int crateDestination) {
-        int[] newCrates = this.cratesIndices().clone();
-        int hash = this.hash ^ zobristValues[this.playerPos][0] ^ zobristValues[newPlayerPos][0] // 'moves' the player in the hash
-                ^ zobristValues[newCrates[crateToMove]][1] ^ zobristValues[crateDestination][1]; // 'moves' the crate in the hash
-        newCrates[crateToMove] = crateDestination;
+    public State child(Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+        return new State(this, zobrist, newPlayerPos, crateToMove, crateDestination);
+    }
+
+    /**
+     * Writes in {@code dest} the crates of {@code crates} after the move of one crate.
+     * A push moves a crate by one tile, so only a few crates are shifted.
+     *
+     * @param crates sorted crates
+     * @param crateToMove index of the crate to move
+     * @param crateDestination new position of the crate
+     * @param dest the array where the crates are written
+     * @return dest
+     */
+    private static int[] move(int[] crates, int crateToMove, int crateDestination, int[] dest) {
+        int i = crateToMove;
+        if (crateDestination > crates[crateToMove]) {
+            System.arraycopy(crates, 0, dest, 0, crateToMove);
+
+            for (; i + 1 < crates.length && crates[i + 1] < crateDestination; i++) {
+                dest[i] = crates[i + 1];
+            }
+            dest[i] = crateDestination;
 
-        return new State(newPlayerPos, newCrates, hash, this);
+            System.arraycopy(crates, i + 1, dest, i + 1, crates.length - i - 1);
+        } else {
+            System.arraycopy(crates, crateToMove + 1, dest, crateToMove + 1, crates.length - crateToMove - 1);
+
+            for (; i > 0 && crates[i - 1] > crateDestination; i--) {
+                dest[i] = crates[i - 1];
+            }
+            dest[i] = crateDestination;
+
+            System.arraycopy(crates, 0, dest, 0, i);
+        }
+
+        return dest;
     }
 
+    /**
+     * Approximate size of the state, excluding the parent. The crates are only
+     * counted for a state created with its crates: a child waiting to be expanded
+     * doesn't store them.
+     */
     public long approxSizeOfAccurate() {
-        return SizeOf.getStateLayout().instanceSize() +
-                SizeOf.getIntArrayLayout().instanceSize() +
-                (long) Integer.BYTES * cratesIndices.length;
+        return SizeOf.getStateLayout().instanceSize() + cratesSizeOfAccurate();
     }
 
     public long approxSizeOf() {
-        return 32 +
-                16 +
-                (long) Integer.BYTES * cratesIndices.length;
+        return 40 + cratesSizeOf();
+    }
+
+    protected long cratesSizeOfAccurate() {
+        if (movedCrate >= 0) {
+            return 0;
+        } else {
+            return SizeOf.getIntArrayLayout().instanceSize() + (long) Integer.BYTES * cratesIndices.length;
+        }
+    }
+
+    protected long cratesSizeOf() {
+        if (movedCrate >= 0) {
+            return 0;
+        } else {
+            return 16 + (long) Integer.BYTES * cratesIndices.length;
+        }
     }
 
     /**
@@ -100,12 +172,61 @@ public class State {
 
     /**
      * The index of the cases of the board on which the crates are.
+     * The crates are computed and kept by the state if needed.
      */
     public int[] cratesIndices() {
+        if (cratesIndices == null) {
+            int[] parentCrates = parent.cratesIndices();
+            cratesIndices = move(parentCrates, movedCrate, crateDestination, new int[parentCrates.length]);
+        }
+
         return cratesIndices;
     }
 
-    public int hash() {
+    /**
+     * Returns the crates of this state without keeping them if they weren't computed.
+     *
+     * @param buffer an array of length {@link #numberOfCrates()}, where the crates are
+     *               written if they weren't computed
+     * @return the crates of this state, which are either in buffer or in the state
+     * @see #cratesIndices()
+     */
+    public int[] cratesIndices(int[] buffer) {
+        if (cratesIndices == null) {
+            return move(parent.cratesIndices(), movedCrate, crateDestination, buffer);
+        } else {
+            return cratesIndices;
+        }
+    }
+
+    /**
+     * Writes in {@code buffer} the crates of the child of this state obtained by moving
+     * a crate, without creating the child.
+     *
+     * @param crateToMove index of the crate to move
+     * @param crateDestination new position of the crate
+     * @param buffer an array of length {@link #numberOfCrates()}
+     * @return buffer
+     */
+    public int[] childCratesIndices(int crateToMove, int crateDestination, int[] buffer) {
+        return move(cratesIndices(), crateToMove, crateDestination, buffer);
+    }
+
+    /**
+     * @return the number of crates of this state
+     */
+    public int numberOfCrates() {
+        if (cratesIndices == null) {
+            return parent.numberOfCrates();
+        } else {
+            return cratesIndices.length;
+        }
+    }
+
+    /**
+     * The 64-bits Zobrist hash of this state
+     */
+    public long hash() {
         return hash;
     }
 
@@ -125,51 +246,12 @@ public class State {
         State state = (State) o;
 
         if (playerPos != state.playerPos) return false;
-        return equals(cratesIndices, state.cratesIndices);
-    }
-
-    /**
-     * Returns true if all elements of array1 are included in array2 and vice-versa.
-     * However, because there is no duplicate and the two array have the same length,
-     * it is only necessary to check if array1 is included in array2.
-     *
-     * @param array1 the first array
-     * @param array2 the second array
-     * @return true if all elements are included in the second one
-     */
-    private boolean equals(int[] array1, int[] array2) {
-        for (int a : array1) {
-            if (!contains(a, array2)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    private boolean contains(int a, int[] array) {
-        for (int b : array) {
-            if (a == b) {
-                return true;
-            }
-        }
-
-        return false;
+        return Arrays.equals(cratesIndices(), state.cratesIndices());
     }
 
     @Override
     public int hashCode() {
-        return hash;
-    }
-
-    public static int hashCode(int playerPos, int[] cratesIndices) {
-        int hash = zobristValues[playerPos][0];
-
-        for (int crate : cratesIndices) {
-            hash ^= zobristValues[crate][1];
-        }
-
-        return hash;
+        return Long.hashCode(hash);
     }
 
     @Override
@@ -177,6 +259,7 @@ public class State {
         StringBuilder sb = new StringBuilder();
         sb.append("Player: ").append(playerPos).append(", Crates: [");
 
+        int[] cratesIndices = cratesIndices();
         for (int i = 0; i < cratesIndices.length; i++) {
             int crate = cratesIndices[i];
             sb.append(crate);
@@ -28,6 +28,53 @@ public interface Trackable extends Solver {
      */
     int currentQueueSize();
 
+    /**
+     * Returns an estimation of the number of bytes used by the research,
+     * mainly the states that were processed and that will be processed.
+     * It may return {@code -1} when the solver isn't running or when it is
+     * impossible to get this information.
+     *
+     * @return an estimation of the number of bytes used by the research or -1
+     */
+    default long memoryUsage() {
+        return -1;
+    }
+
+    /**
+     * @return statistics about the deadlock patterns looked up when a crate is pushed or null
+     */
+    default CacheStatistics pushPatternStatistics() {
+        return null;
+    }
+
+    /**
+     * @return statistics about the deadlock patterns looked up before researching PI corrals or null
+     */
+    default CacheStatistics corralPatternStatistics() {
+        return null;
+    }
+
+    /**
+     * @return statistics about the cache of corrals that aren't deadlocks or null
+     */
+    default CacheStatistics corralCacheStatistics() {
+        return null;
+    }
+
+    /**
+     * @return statistics about the cache of heuristics or null
+     */
+    default CacheStatistics heuristicCacheStatistics() {
+        return null;
+    }
+
+    /**
+     * @return statistics about the corral researches or null
+     */
+    default CorralBudget.Statistics corralBudgetStatistics() {
+        return null;
+    }
+
     /**
      * @return lower bound from initial state
      */
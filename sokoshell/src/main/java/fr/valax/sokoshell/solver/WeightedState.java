@@ -12,37 +12,44 @@ public class WeightedState extends State {
 
     private int heuristic = 0;
 
-    public WeightedState(int playerPos, int[] cratesIndices, int hash, State parent, int cost, int heuristic) {
+    public WeightedState(int playerPos, int[] cratesIndices, long hash, State parent, int cost, int heuristic) {
         super(playerPos, cratesIndices, hash, parent);
         this.setCost(cost);
         this.setHeuristic(heuristic);
     }
 
     public WeightedState(State state, int cost, int heuristic) {
-        this(state.playerPos(), state.cratesIndices(), state.hash(), state.parent(), cost, heuristic);
+        super(state);
+        this.setCost(cost);
+        this.setHeuristic(heuristic);
+    }
+
+    /**
+     * Creates a child with the cost of its parent and no heuristic
+     *
+     * @see State#State(State, Zobrist, int, int, int)
+     */
+    protected WeightedState(WeightedState parent, Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+        super(parent, zobrist, newPlayerPos, crateToMove, crateDestination);
+        this.setCost(parent.cost());
     }
 
     /**
      * <strong>This function does NOT compute the heuristic of the child state.</strong>
      * Use {@link WeightedState#setHeuristic(int)} to set it after calling this method.
      */
-    public WeightedState child(int newPlayerPos, int crateToMove, int crateDestination) {
-        return new WeightedState(super.child(newPlayerPos, crateToMove, crateDestination),
-                cost(), 0);
+    public WeightedState child(Zobrist zobrist, int newPlayerPos, int crateToMove, int crateDestination) {
+        return new WeightedState(this, zobrist, newPlayerPos, crateToMove, crateDestination);
     }
 
     @Override
     public long approxSizeOfAccurate() {
-        return SizeOf.getWeightedStateLayout().instanceSize() +
-                SizeOf.getIntArrayLayout().instanceSize() +
-                (long) Integer.BYTES * cratesIndices.length;
+        return SizeOf.getWeightedStateLayout().instanceSize() + cratesSizeOfAccurate();
     }
 
     @Override
     public long approxSizeOf() {
-        return 40 +
-                16 +
-                (long) Integer.BYTES * cratesIndices.length;
+        return 48 + cratesSizeOf();
     }
 
     /**
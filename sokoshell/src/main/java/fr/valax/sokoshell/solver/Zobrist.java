@@ -0,0 +1,110 @@
+package fr.valax.sokoshell.solver;
+
+import java.util.Random;
+
+/**
+ * Random values used to compute the 64-bits Zobrist hash of a {@link State}.
+ * The hash of a state is the XOR of the value of the player position and of the values
+ * of all crates. Therefore, the hash of a child is computed from the hash of its
+ * parent in constant time.
+ * <br>
+ * A Zobrist object is created per research: two solvers running at the same time
+ * don't share their values. Once created, the object is immutable and can be shared
+ * between threads.
+ *
+ * @see <a href="http://sokobano.de/wiki/index.php?title=Solver#Hash_Function">Hash function</a>
+ * @see <a href="https://en.wikipedia.org/wiki/Zobrist_hashing">Zobrist hashing</a>
+ * @author PoulpoGaz
+ */
+public final class Zobrist {
+
+    /**
+     * values[2 * i] is the value of the player at index i
+     * values[2 * i + 1] is the value of a crate at index i
+     */
+    private final long[] values;
+
+    /**
+     * Creates random values
+     *
+     * @param size number of tiles in the board
+     */
+    public Zobrist(int size) {
+        this(size, new Random());
+    }
+
+    /**
+     * Creates values generated from a seed. Two objects created with the same
+     * size and the same seed compute the same hashes
+     *
+     * @param size number of tiles in the board
+     * @param seed the seed of the random generator
+     */
+    public Zobrist(int size, long seed) {
+        this(size, new Random(seed));
+    }
+
+    private Zobrist(int size, Random random) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+
+        values = new long[2 * size];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * @param playerPos position of the player
+     * @param cratesIndices position of the crates
+     * @return the hash of the state made of these positions
+     */
+    public long hash(int playerPos, int[] cratesIndices) {
+        long hash = values[2 * playerPos];
+
+        for (int crate : cratesIndices) {
+            hash ^= values[2 * crate + 1];
+        }
+
+        return hash;
+    }
+
+    /**
+     * @param playerPos position of the player
+     * @return the value of the player at this position
+     */
+    public long playerValue(int playerPos) {
+        return values[2 * playerPos];
+    }
+
+    /**
+     * @param crate position of the crate
+     * @return the value of a crate at this position
+     */
+    public long crateValue(int crate) {
+        return values[2 * crate + 1];
+    }
+
+    /**
+     * Computes the hash of a child from the hash of its parent.
+     *
+     * @param hash hash of the parent
+     * @param playerPos player position in the parent
+     * @param newPlayerPos player position in the child
+     * @param crate position of the moved crate in the parent
+     * @param crateDestination position of the moved crate in the child
+     * @return the hash of the child
+     */
+    public long childHash(long hash, int playerPos, int newPlayerPos, int crate, int crateDestination) {
+        return hash ^ values[2 * playerPos] ^ values[2 * newPlayerPos] // 'moves' the player in the hash
+                ^ values[2 * crate + 1] ^ values[2 * crateDestination + 1]; // 'moves' the crate in the hash
+    }
+
+    /**
+     * @return the number of tiles supported by this object
+     */
+    public int size() {
+        return values.length / 2;
+    }
+}
@@ -0,0 +1,280 @@
+package fr.valax.sokoshell.solver.board;
+
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+
+import java.util.Arrays;
+
+/**
+ * Walls and crates of a {@link MutableBoard} stored as row bitsets: bit x of row y
+ * is set if there is a wall (or a crate) at (x, y). A row is made of {@link #getRowLength()}
+ * longs. Reachable tiles are also stored as row bitsets and are computed with shifts
+ * and masks, a row at a time, instead of visiting tiles one by one.
+ * <br>
+ * The board updates the bitboard when a tile changes. The bitboard isn't thread-safe.
+ *
+ * @see MutableBoard#topLeftReachablePosition(TileInfo, TileInfo)
+ */
+public class Bitboard {
+
+    private final int width;
+    private final int height;
+    private final int rowLength;
+
+    private final long[] walls;
+    private final long[] crates;
+
+    /**
+     * For each tile index: the index of the long containing the tile, shifted by 6,
+     * and the position of the bit in the long in the lowest 6 bits
+     */
+    private final int[] positions;
+
+    // rows to expand by findReachable
+    private final int[] rows;
+    private final boolean[] pending;
+
+    Bitboard(Board board) {
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+        this.rowLength = (width + 63) >>> 6;
+
+        walls = new long[height * rowLength];
+        crates = new long[height * rowLength];
+        rows = new int[height];
+        pending = new boolean[height];
+
+        positions = new int[width * height];
+        for (int i = 0; i < positions.length; i++) {
+            int x = i % width;
+            positions[i] = ((i / width) * rowLength + (x >>> 6)) << 6 | (x & 63);
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                update(board.getAt(x, y));
+            }
+
+            // bits after the end of the row are walls
+            if ((width & 63) != 0) {
+                walls[(y + 1) * rowLength - 1] |= -1L << width;
+            }
+        }
+    }
+
+    /**
+     * Updates the wall and the crate at the position of the tile
+     *
+     * @param tile the tile that changed
+     */
+    public void update(TileInfo tile) {
+        int i = tile.getY() * rowLength + (tile.getX() >>> 6);
+        long bit = 1L << tile.getX();
+
+        if (tile.isWall()) {
+            walls[i] |= bit;
+        } else {
+            walls[i] &= ~bit;
+        }
+
+        if (tile.anyCrate()) {
+            crates[i] |= bit;
+        } else {
+            crates[i] &= ~bit;
+        }
+    }
+
+    public void addCrate(int x, int y) {
+        crates[y * rowLength + (x >>> 6)] |= 1L << x;
+    }
+
+    public void removeCrate(int x, int y) {
+        crates[y * rowLength + (x >>> 6)] &= ~(1L << x);
+    }
+
+    /**
+     * @param index index of a tile
+     * @return true if there is a crate on the tile
+     */
+    public boolean anyCrate(int index) {
+        int p = positions[index];
+        return (crates[p >>> 6] & (1L << p)) != 0;
+    }
+
+    /**
+     * @return an empty bitset of the size of the board
+     */
+    public long[] newBitset() {
+        return new long[height * rowLength];
+    }
+
+    /**
+     * @param bitset a bitset created by {@link #newBitset()}
+     * @return true if the bit at (x, y) is set
+     */
+    public boolean isSet(long[] bitset, int x, int y) {
+        return (bitset[y * rowLength + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Computes the tiles reachable by the player. Rows are filled horizontally with
+     * shifts and masks. When a row changes, the rows above and below are expanded
+     * from it, so a row is only visited when one of its neighbors changed.
+     *
+     * @param x x of the player
+     * @param y y of the player
+     * @param reachable a bitset created by {@link #newBitset()} that will contain the reachable tiles
+     * @return the index of the top-left reachable tile
+     */
+    public int findReachable(int x, int y, long[] reachable) {
+        Arrays.fill(reachable, 0);
+        reachable[y * rowLength + (x >>> 6)] = 1L << x;
+        fillRow(y, reachable);
+
+        int top = y;
+        int size = 1;
+        rows[0] = y;
+        pending[y] = true;
+        while (size > 0) {
+            int row = rows[--size];
+            pending[row] = false;
+
+            if (row > 0 && expandRow(row - 1, row, reachable)) {
+                top = Math.min(top, row - 1);
+
+                if (!pending[row - 1]) {
+                    pending[row - 1] = true;
+                    rows[size++] = row - 1;
+                }
+            }
+
+            if (row < height - 1 && expandRow(row + 1, row, reachable) && !pending[row + 1]) {
+                pending[row + 1] = true;
+                rows[size++] = row + 1;
+            }
+        }
+
+        // top is the first row with a reachable tile
+        int start = top * rowLength;
+        for (int k = 0; k < rowLength; k++) {
+            if (reachable[start + k] != 0) {
+                return top * width + (k << 6) + Long.numberOfTrailingZeros(reachable[start + k]);
+            }
+        }
+
+        throw new IllegalStateException("Player is on a solid tile");
+    }
+
+    /**
+     * Adds to a row the tiles next to a reachable tile of an adjacent row
+     * and fills the row if at least one tile was added
+     *
+     * @param row the row to expand
+     * @param from the row above or below
+     * @return true if the row changed
+     */
+    private boolean expandRow(int row, int from, long[] reachable) {
+        int start = row * rowLength;
+        int fromStart = from * rowLength;
+
+        boolean changed = false;
+        for (int k = 0; k < rowLength; k++) {
+            long added = reachable[fromStart + k] & ~(walls[start + k] | crates[start + k] | reachable[start + k]);
+
+            if (added != 0) {
+                reachable[start + k] |= added;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            fillRow(row, reachable);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Extends the reachable tiles of a row to the right and then to the left,
+     * until a wall or a crate is met
+     */
+    private void fillRow(int row, long[] reachable) {
+        if (rowLength == 1) {
+            long free = ~(walls[row] | crates[row]);
+            reachable[row] = fillLeft(fillRight(reachable[row], free), free);
+            return;
+        }
+
+        int start = row * rowLength;
+
+        long carry = 0;
+        for (int k = 0; k < rowLength; k++) {
+            long free = ~(walls[start + k] | crates[start + k]);
+            long r = fillRight(reachable[start + k] | (carry & free), free);
+
+            reachable[start + k] = r;
+            carry = r >>> 63;
+        }
+
+        carry = 0;
+        for (int k = rowLength - 1; k >= 0; k--) {
+            long free = ~(walls[start + k] | crates[start + k]);
+            long r = fillLeft(reachable[start + k] | ((carry << 63) & free), free);
+
+            reachable[start + k] = r;
+            carry = r & 1;
+        }
+    }
+
+    /**
+     * Kogge-Stone fill: propagates the bits of r to the higher bits of free
+     */
+    private static long fillRight(long r, long free) {
+        r |= free & (r << 1);
+        free &= free << 1;
+        r |= free & (r << 2);
+        free &= free << 2;
+        r |= free & (r << 4);
+        free &= free << 4;
+        r |= free & (r << 8);
+        free &= free << 8;
+        r |= free & (r << 16);
+        free &= free << 16;
+        r |= free & (r << 32);
+
+        return r;
+    }
+
+    /**
+     * Kogge-Stone fill: propagates the bits of r to the lower bits of free
+     */
+    private static long fillLeft(long r, long free) {
+        r |= free & (r >>> 1);
+        free &= free >>> 1;
+        r |= free & (r >>> 2);
+        free &= free >>> 2;
+        r |= free & (r >>> 4);
+        free &= free >>> 4;
+        r |= free & (r >>> 8);
+        free &= free >>> 8;
+        r |= free & (r >>> 16);
+        free &= free >>> 16;
+        r |= free & (r >>> 32);
+
+        return r;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return number of longs in a row
+     */
+    public int getRowLength() {
+        return rowLength;
+    }
+}
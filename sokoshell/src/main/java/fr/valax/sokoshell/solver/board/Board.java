@@ -416,4 +416,16 @@ public interface Board {
      * @return the {@link CorralDetector} used to find corrals
      */
     CorralDetector getCorralDetector();
+
+    /**
+     * @return the walls and the crates of the board as bitsets,
+     * or {@code null} if the board is not intended for solvers
+     */
+    Bitboard getBitboard();
+
+    /**
+     * @return the board as parallel primitive arrays,
+     * or {@code null} if the board is not intended for solvers
+     */
+    PackedBoard getPackedBoard();
 }
@@ -162,4 +162,14 @@ public abstract class GenericBoard implements Board {
     public CorralDetector getCorralDetector() {
         return null;
     }
+
+    @Override
+    public Bitboard getBitboard() {
+        return null;
+    }
+
+    @Override
+    public PackedBoard getPackedBoard() {
+        return null;
+    }
 }
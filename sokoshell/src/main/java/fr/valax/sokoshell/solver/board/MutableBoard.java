@@ -57,6 +57,18 @@ public class MutableBoard extends GenericBoard {
     private CratePlayerAStar cratePlayerAStar;
 
     private final CorralDetector corralDetector;
+    private final Bitboard bitboard;
+    private final PackedBoard packedBoard;
+
+    /**
+     * Tiles of the board by index, to avoid a division in {@link #getAt(int)}
+     */
+    private final TileInfo[] tiles;
+
+    /**
+     * Bitset used by {@link #findReachableCases(TileInfo)} and {@link #topLeftReachablePosition(TileInfo, TileInfo)}
+     */
+    private final long[] reachable;
 
     private StaticBoard staticBoard;
 
@@ -78,6 +90,10 @@ public class MutableBoard extends GenericBoard {
             }
         }
 
+        tiles = flatten();
+        bitboard = new Bitboard(this);
+        reachable = bitboard.newBitset();
+        packedBoard = new PackedBoard(this, bitboard);
         corralDetector = new CorralDetector(this);
     }
 
@@ -91,6 +107,10 @@ public class MutableBoard extends GenericBoard {
             }
         }
 
+        tiles = flatten();
+        bitboard = new Bitboard(this);
+        reachable = bitboard.newBitset();
+        packedBoard = new PackedBoard(this, bitboard);
         corralDetector = new CorralDetector(this);
     }
 
@@ -113,11 +133,33 @@ public class MutableBoard extends GenericBoard {
             }
         }
 
-        corralDetector = new CorralDetector(this);
+        tiles = flatten();
+        bitboard = new Bitboard(this);
+        reachable = bitboard.newBitset();
 
-        if (copyStatic) {
+        if (copyStatic && other.getPackedBoard() != null) {
+            // distance rows are shared
+            packedBoard = other.getPackedBoard().copy(bitboard);
             copyStaticInformation(other);
+        } else {
+            packedBoard = new PackedBoard(this, bitboard);
+
+            if (copyStatic) {
+                copyStaticInformation(other);
+                packedBoard.computeStaticInformation(this);
+            }
         }
+
+        corralDetector = new CorralDetector(this);
+    }
+
+    private TileInfo[] flatten() {
+        TileInfo[] tiles = new TileInfo[width * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(content[y], 0, tiles, y * width, width);
+        }
+
+        return tiles;
     }
 
     private void copyStaticInformation(Board other) {
@@ -125,6 +167,8 @@ public class MutableBoard extends GenericBoard {
         Map<Room, Room> roomMap = new HashMap<>(rooms.size());
         Map<Tunnel, Tunnel> tunnelMap = new HashMap<>(rooms.size());
 
+        targetCount = other.getTargetCount();
+
         // copy tunnels, rooms
         for (Room room : other.getRooms()) {
             Room copy = copyRoom(room);
@@ -144,11 +188,6 @@ public class MutableBoard extends GenericBoard {
                 TileInfo tile = content[y][x];
                 tile.setDeadTile(otherTile.isDeadTile());
 
-                if (tile.getTargets() != null) {
-                    tile.setTargets(Arrays.copyOf(tile.getTargets(), tile.getTargets().length));
-                }
-                tile.setNearestTarget(otherTile.getNearestTarget());
-
                 tile.setTunnel(tunnelMap.get(otherTile.getTunnel()));
                 tile.setRoom(roomMap.get(otherTile.getRoom()));
                 if (otherTile.getTunnelExit() != null) {
@@ -217,6 +256,11 @@ public class MutableBoard extends GenericBoard {
         }
     }
 
+    @Override
+    public TileInfo getAt(int index) {
+        return tiles[index];
+    }
+
     /**
      * Set at tile at the specified index. The index will be converted to
      * cartesian coordinate with {@link #getX(int)} and {@link  #getY(int)}
@@ -309,6 +353,7 @@ public class MutableBoard extends GenericBoard {
      *     <li>compute floor tiles: an array containing all non-wall tile</li>
      *     <li>compute {@linkplain #computeDeadTiles() dead tiles}</li>
      *     <li>find {@linkplain #findTunnels() tunnels}</li>
+     *     <li>compute the {@linkplain PushDistances push distances} to targets</li>
      * </ul>
      * <strong>The board must have no crate inside</strong>
      * @see Tunnel
@@ -325,7 +370,7 @@ public class MutableBoard extends GenericBoard {
         removeUselessTunnels();
         finishComputingTunnels();
         tryComputePackingOrder();
-        computeTileToTargetsDistances();
+        countTargets();
 
         // we must compute the static board here
         // this is the unique point where the board
@@ -334,6 +379,71 @@ public class MutableBoard extends GenericBoard {
         // places wall on the map but this object
         // has no information about this.
         staticBoard = new StaticBoard();
+        packedBoard.computeStaticInformation(this);
+    }
+
+    /**
+     * Initialize the board for solving by copying the information computed by {@link #initForSolver()}
+     * on another board of the same level. It is much faster than {@link #initForSolver()}: the
+     * {@linkplain PushDistances push distances} and the distance rows aren't computed again but shared.
+     * <strong>Both boards must have no crate inside</strong>
+     *
+     * @param other a board of the same level initialized for solving
+     */
+    public void initForSolver(MutableBoard other) {
+        playerAStar = new PlayerAStar(this);
+        crateAStar = new CrateAStar(this);
+        cratePlayerAStar = new CratePlayerAStar(this);
+
+        computeFloors();
+
+        Map<Room, Room> roomMap = new HashMap<>(other.rooms.size());
+        Map<Tunnel, Tunnel> tunnelMap = new HashMap<>(other.tunnels.size());
+        for (Room room : other.rooms) {
+            Room copy = copyRoom(room);
+            roomMap.put(room, copy);
+            rooms.add(copy);
+        }
+        for (Tunnel tunnel : other.tunnels) {
+            Tunnel copy = copyTunnel(tunnel);
+            tunnelMap.put(tunnel, copy);
+            tunnels.add(copy);
+        }
+
+        // tunnels and rooms aren't always linked both ways and a room
+        // may still be linked to a tunnel removed by removeUselessTunnels()
+        for (Tunnel tunnel : other.tunnels) {
+            if (tunnel.getRooms() != null) {
+                for (Room room : tunnel.getRooms()) {
+                    tunnelMap.get(tunnel).addRoom(roomMap.get(room));
+                }
+            }
+        }
+        for (Room room : other.rooms) {
+            if (room.getTunnels() != null) {
+                for (Tunnel tunnel : room.getTunnels()) {
+                    roomMap.get(room).addTunnel(tunnelMap.computeIfAbsent(tunnel, this::copyTunnel));
+                }
+            }
+        }
+
+        for (int i = 0; i < tiles.length; i++) {
+            TileInfo otherTile = other.tiles[i];
+            tiles[i].setDeadTile(otherTile.isDeadTile());
+            tiles[i].setTunnel(tunnelMap.get(otherTile.getTunnel()));
+            tiles[i].setRoom(roomMap.get(otherTile.getRoom()));
+        }
+
+        // exits contain tiles, they can't be shared
+        for (Tunnel tunnel : tunnels) {
+            tunnel.createTunnelExits();
+        }
+
+        isGoalRoomLevel = other.isGoalRoomLevel;
+        targetCount = other.targetCount;
+
+        staticBoard = new StaticBoard();
+        packedBoard.copyStaticInformation(other.packedBoard);
     }
 
     /**
@@ -996,49 +1106,15 @@ public class MutableBoard extends GenericBoard {
         }
     }
 
-    private void computeTileToTargetsDistances() {
-
-        List<Integer> targetIndices = new ArrayList<>();
-
+    private void countTargets() {
         targetCount = 0;
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 if (this.content[y][x].isTarget() || this.content[y][x].isCrateOnTarget()) {
                     targetCount++;
-                    targetIndices.add(getIndex(x, y));
                 }
             }
         }
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-
-                final TileInfo t = getAt(x, y);
-
-                int minDistToTarget = Integer.MAX_VALUE;
-                int minDistToTargetIndex = -1;
-
-                getAt(x, y).setTargets(new TileInfo.TargetRemoteness[targetIndices.size()]);
-
-                for (int j = 0; j < targetIndices.size(); j++) {
-
-                    final int targetIndex = targetIndices.get(j);
-                    final int d = (t.isFloor() || t.isTarget()
-                                   ? playerAStar.findPath(t, getAt(targetIndex), null, null).getDist()
-                                   : 0);
-
-
-                    if (d < minDistToTarget) {
-                        minDistToTarget = d;
-                        minDistToTargetIndex = j;
-                    }
-
-                    getAt(x, y).getTargets()[j] = new TileInfo.TargetRemoteness(targetIndex, d);
-                }
-                Arrays.sort(getAt(x, y).getTargets());
-                getAt(x, y).setNearestTarget(new TileInfo.TargetRemoteness(minDistToTargetIndex, minDistToTarget));
-            }
-        }
     }
 
 
@@ -1057,35 +1133,27 @@ public class MutableBoard extends GenericBoard {
 
     public void findReachableCases(TileInfo tile) {
         reachableMarkSystem.unmarkAll();
-        findReachableCases_aux(tile);
-    }
+        bitboard.findReachable(tile.getX(), tile.getY(), reachable);
 
-    private void findReachableCases_aux(TileInfo tile) {
-        tile.setReachable(true);
-        for (Direction d : Direction.VALUES) {
-            TileInfo adjacent = tile.adjacent(d);
+        int rowLength = bitboard.getRowLength();
+        for (int i = 0; i < reachable.length; i++) {
+            long bits = reachable[i];
 
-            // the second part of the condition avoids to check already processed cases
-            if (!adjacent.isSolid() && !adjacent.isReachable()) {
-                findReachableCases_aux(adjacent);
+            while (bits != 0) {
+                int x = ((i % rowLength) << 6) + Long.numberOfTrailingZeros(bits);
+                getAt(x, i / rowLength).setReachable(true);
+                bits &= bits - 1;
             }
         }
     }
 
-
-
-    private int topX = 0;
-    private int topY = 0;
-
     /**
      * This method compute the top left reachable position of the player of pushing a crate
      * at (crateToMoveX, crateToMoveY) to (destX, destY). It is used to calculate the position
      * of the player in a {@link State}.
-     * This is also an example of use of {@link MarkSystem}
      *
      * @return the top left reachable position after pushing the crate
-     * @see MarkSystem
-     * @see Mark
+     * @see Bitboard#findReachable(int, int, long[])
      */
     @Override
     public int topLeftReachablePosition(TileInfo crate, TileInfo crateDest) {
@@ -1093,33 +1161,13 @@ public class MutableBoard extends GenericBoard {
         crate.removeCrate();
         crateDest.addCrate();
 
-        topX = width;
-        topY = height;
-
-        markSystem.unmarkAll();
-        topLeftReachablePosition_aux(crate);
+        int topLeft = bitboard.findReachable(crate.getX(), crate.getY(), reachable);
 
         // undo
         crate.addCrate();
         crateDest.removeCrate();
 
-        return topY * width + topX;
-    }
-
-    private void topLeftReachablePosition_aux(TileInfo tile) {
-        if (tile.getY() < topY || (tile.getY() == topY && tile.getX() < topX)) {
-            topX = tile.getX();
-            topY = tile.getY();
-        }
-
-        tile.mark();
-        for (Direction d : Direction.VALUES) {
-            TileInfo adjacent = tile.adjacent(d);
-
-            if (!adjacent.isSolid() && !adjacent.isMarked()) {
-                topLeftReachablePosition_aux(adjacent);
-            }
-        }
+        return topLeft;
     }
 
 
@@ -1184,6 +1232,16 @@ public class MutableBoard extends GenericBoard {
         return corralDetector;
     }
 
+    @Override
+    public Bitboard getBitboard() {
+        return bitboard;
+    }
+
+    @Override
+    public PackedBoard getPackedBoard() {
+        return packedBoard;
+    }
+
     /**
      * Returns a {@linkplain MarkSystem mark system} that can be used to avoid checking twice  a tile
      *
@@ -1346,9 +1404,6 @@ public class MutableBoard extends GenericBoard {
 
         private final boolean deadTile;
 
-        private final TargetRemoteness[] targets;
-        private final TargetRemoteness nearestTarget;
-
         private ImmutableTunnel tunnel;
         private ImmutableRoom room;
         private Tunnel.Exit exit;
@@ -1356,14 +1411,6 @@ public class MutableBoard extends GenericBoard {
         public StaticTile(StaticBoard staticBoard, TileInfo tile) {
             super(staticBoard, removeCrate(tile.getTile()), tile.getX(), tile.getY());
             this.deadTile = tile.isDeadTile();
-
-            if (tile.getTargets() == null) {
-                targets = null;
-            } else {
-                targets = Arrays.copyOf(tile.getTargets(), tile.getTargets().length);
-            }
-
-            this.nearestTarget = tile.getNearestTarget();
         }
 
         private static Tile removeCrate(Tile tile) {
@@ -1420,16 +1467,6 @@ public class MutableBoard extends GenericBoard {
         public int getCrateIndex() {
             return -1;
         }
-
-        @Override
-        public TargetRemoteness getNearestTarget() {
-            return nearestTarget;
-        }
-
-        @Override
-        public TargetRemoteness[] getTargets() {
-            return targets;
-        }
     }
 
     private static class ImmutableTunnel extends Tunnel {
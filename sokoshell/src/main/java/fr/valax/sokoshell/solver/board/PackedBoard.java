@@ -0,0 +1,347 @@
+package fr.valax.sokoshell.solver.board;
+
+import fr.valax.sokoshell.solver.board.tiles.Tile;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solver-internal view of a {@link MutableBoard} made of parallel primitive arrays indexed
+ * by tile index. Hot loops (freeze deadlock detection, heuristics) read these arrays instead
+ * of following {@link TileInfo} references. The tiles of the board stay the reference
+ * for the UI and the tools.
+ * <br>
+ * The packed board only stores the static part of the tiles: walls, floors and targets.
+ * Crates are read from the {@link Bitboard} of the board, so pushing a crate doesn't
+ * write the packed board.
+ * <br>
+ * Push distances and distance rows are computed by {@link #computeStaticInformation(MutableBoard)}
+ * once the board is initialized for solvers and are shared by copies. Other arrays are copied.
+ * A packed board isn't thread-safe: each thread must use its own {@link #copy()}.
+ */
+public class PackedBoard {
+
+    private static final Tile[] TILES = Tile.values();
+
+    private final int width;
+    private final int height;
+
+    /**
+     * Offsets of adjacent tiles, in the order of {@link Direction#VALUES}
+     */
+    private final int[] neighbors;
+
+    private final Bitboard bitboard;
+
+    /**
+     * Tiles without crates: {@link Tile#FLOOR}, {@link Tile#WALL} or {@link Tile#TARGET}
+     */
+    private final byte[] tiles;
+    private final boolean[] deadTiles;
+
+    // -1 if the tile isn't in a tunnel (room)
+    private final int[] tunnels;
+    private final int[] rooms;
+
+    private final int[] marks;
+    private int markEpoch = 1;
+
+    private PushDistances pushDistances;
+
+    private int targetCount;
+    private int[] nearestTargetDistance;
+
+    /**
+     * The distance rows: target numbers sorted by push distance for each non-wall tile.
+     * The targets of the floor f (see {@link PushDistances#getFloor(int)}) are stored
+     * from f * targetCount to (f + 1) * targetCount
+     */
+    private short[] sortedTargets;
+    private short[] sortedDistances;
+
+    PackedBoard(Board board, Bitboard bitboard) {
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+        this.neighbors = new int[] {-1, -width, 1, width};
+        this.bitboard = bitboard;
+
+        int size = width * height;
+        tiles = new byte[size];
+        deadTiles = new boolean[size];
+        tunnels = new int[size];
+        rooms = new int[size];
+        marks = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            TileInfo tile = board.getAt(i);
+
+            tiles[i] = withoutCrate(tile.getTile());
+            deadTiles[i] = tile.isDeadTile();
+        }
+        Arrays.fill(tunnels, -1);
+        Arrays.fill(rooms, -1);
+    }
+
+    private PackedBoard(PackedBoard other, Bitboard bitboard) {
+        this.width = other.width;
+        this.height = other.height;
+        this.neighbors = other.neighbors;
+        this.bitboard = bitboard;
+
+        tiles = other.tiles.clone();
+        deadTiles = other.deadTiles.clone();
+        tunnels = other.tunnels.clone();
+        rooms = other.rooms.clone();
+        marks = new int[other.marks.length];
+
+        pushDistances = other.pushDistances;
+        targetCount = other.targetCount;
+        nearestTargetDistance = other.nearestTargetDistance;
+        sortedTargets = other.sortedTargets;
+        sortedDistances = other.sortedDistances;
+    }
+
+    /**
+     * Copies this packed board for another board of the same level. Distance rows are shared.
+     *
+     * @param bitboard the bitboard of the other board, where crates are read
+     * @return a copy of this packed board
+     */
+    PackedBoard copy(Bitboard bitboard) {
+        return new PackedBoard(this, bitboard);
+    }
+
+    private static byte withoutCrate(Tile tile) {
+        if (tile == Tile.CRATE) {
+            return (byte) Tile.FLOOR.ordinal();
+        } else if (tile == Tile.CRATE_ON_TARGET) {
+            return (byte) Tile.TARGET.ordinal();
+        } else {
+            return (byte) tile.ordinal();
+        }
+    }
+
+    /**
+     * Copies the tunnels and the rooms of the board and computes the push distances
+     * to targets. The board must be initialized for solvers.
+     *
+     * @param board the board
+     */
+    void computeStaticInformation(MutableBoard board) {
+        Map<Tunnel, Integer> tunnelIds = new IdentityHashMap<>();
+        Map<Room, Integer> roomIds = new IdentityHashMap<>();
+        List<Tunnel> tunnelList = board.getTunnels();
+        List<Room> roomList = board.getRooms();
+
+        for (int i = 0; i < tunnelList.size(); i++) {
+            tunnelIds.put(tunnelList.get(i), i);
+        }
+        for (int i = 0; i < roomList.size(); i++) {
+            roomIds.put(roomList.get(i), i);
+        }
+
+        int size = width * height;
+        for (int i = 0; i < size; i++) {
+            TileInfo tile = board.getAt(i);
+
+            tunnels[i] = tile.getTunnel() == null ? -1 : tunnelIds.get(tile.getTunnel());
+            rooms[i] = tile.getRoom() == null ? -1 : roomIds.get(tile.getRoom());
+        }
+
+        pushDistances = new PushDistances(this);
+        targetCount = pushDistances.getTargetCount();
+        nearestTargetDistance = new int[size];
+        sortedTargets = new short[pushDistances.getFloorCount() * targetCount];
+        sortedDistances = new short[pushDistances.getFloorCount() * targetCount];
+
+        // distance in the high bits, target number in the low bits
+        long[] row = new long[targetCount];
+        for (int i = 0; i < size; i++) {
+            int floor = pushDistances.getFloor(i);
+            if (floor < 0) {
+                continue;
+            }
+
+            for (int t = 0; t < targetCount; t++) {
+                row[t] = (long) pushDistances.distance(i, t) << 32 | t;
+            }
+            Arrays.sort(row);
+
+            for (int k = 0; k < targetCount; k++) {
+                sortedTargets[floor * targetCount + k] = (short) row[k];
+                sortedDistances[floor * targetCount + k] = (short) (row[k] >>> 32);
+            }
+
+            nearestTargetDistance[i] = targetCount == 0 ? 0 : sortedDistances[floor * targetCount];
+        }
+    }
+
+    /**
+     * Copies the tunnels and the rooms of another packed board of the same level and shares
+     * its push distances to targets and its distance rows.
+     *
+     * @param other a packed board whose static information is computed
+     */
+    void copyStaticInformation(PackedBoard other) {
+        System.arraycopy(other.tunnels, 0, tunnels, 0, tunnels.length);
+        System.arraycopy(other.rooms, 0, rooms, 0, rooms.length);
+
+        pushDistances = other.pushDistances;
+        targetCount = other.targetCount;
+        nearestTargetDistance = other.nearestTargetDistance;
+        sortedTargets = other.sortedTargets;
+        sortedDistances = other.sortedDistances;
+    }
+
+    /**
+     * Changes the tile at the specified index. Only the static part of the tile is stored:
+     * crates are read from the bitboard. Called by the tiles of the board when they change
+     *
+     * @param index index of the tile
+     * @param tile the new tile
+     */
+    public void setTile(int index, Tile tile) {
+        tiles[index] = withoutCrate(tile);
+    }
+
+    public void setDeadTile(int index, boolean deadTile) {
+        deadTiles[index] = deadTile;
+    }
+
+
+    // GETTERS //
+
+    public Tile getTile(int index) {
+        if (bitboard.anyCrate(index)) {
+            return isTarget(index) ? Tile.CRATE_ON_TARGET : Tile.CRATE;
+        } else {
+            return TILES[tiles[index]];
+        }
+    }
+
+    public boolean isWall(int index) {
+        return tiles[index] == Tile.WALL.ordinal();
+    }
+
+    /**
+     * @return true if the tile is a crate that isn't on a target
+     */
+    public boolean isCrate(int index) {
+        return !isTarget(index) && bitboard.anyCrate(index);
+    }
+
+    public boolean isCrateOnTarget(int index) {
+        return isTarget(index) && bitboard.anyCrate(index);
+    }
+
+    /**
+     * @return true if the tile is a target, with or without a crate
+     */
+    public boolean isTarget(int index) {
+        return tiles[index] == Tile.TARGET.ordinal();
+    }
+
+    public boolean anyCrate(int index) {
+        return bitboard.anyCrate(index);
+    }
+
+    public boolean isDeadTile(int index) {
+        return deadTiles[index];
+    }
+
+    /**
+     * @return the index of the tunnel in {@link MutableBoard#getTunnels()} or -1
+     */
+    public int getTunnel(int index) {
+        return tunnels[index];
+    }
+
+    /**
+     * @return the index of the room in {@link MutableBoard#getRooms()} or -1
+     */
+    public int getRoom(int index) {
+        return rooms[index];
+    }
+
+    /**
+     * @param index index of a tile
+     * @param dir direction
+     * @return the index of the adjacent tile in the direction dir
+     */
+    public int adjacent(int index, Direction dir) {
+        return index + neighbors[dir.ordinal()];
+    }
+
+    /**
+     * @return the push distances of the board or null if the board isn't initialized for solvers
+     */
+    public PushDistances getPushDistances() {
+        return pushDistances;
+    }
+
+    /**
+     * @return the minimal push distance from the tile to a target
+     */
+    public int getNearestTargetDistance(int index) {
+        return nearestTargetDistance[index];
+    }
+
+    /**
+     * @return the number of targets in a distance row
+     */
+    public int getTargetCount() {
+        return targetCount;
+    }
+
+    /**
+     * @param index index of a tile that isn't a wall
+     * @param n a number between 0 and {@link #getTargetCount()} (exclusive)
+     * @return the index of the n-th nearest target of the tile
+     */
+    public int getSortedTarget(int index, int n) {
+        return pushDistances.getTarget(sortedTargets[pushDistances.getFloor(index) * targetCount + n]);
+    }
+
+    /**
+     * @param index index of a tile that isn't a wall
+     * @param n a number between 0 and {@link #getTargetCount()} (exclusive)
+     * @return the push distance to the n-th nearest target of the tile
+     */
+    public int getSortedDistance(int index, int n) {
+        return sortedDistances[pushDistances.getFloor(index) * targetCount + n];
+    }
+
+
+    // MARKS //
+
+    /**
+     * Unmarks all tiles in constant time
+     */
+    public void unmarkAll() {
+        markEpoch++;
+
+        if (markEpoch == 0) {
+            Arrays.fill(marks, 0);
+            markEpoch = 1;
+        }
+    }
+
+    public void mark(int index) {
+        marks[index] = markEpoch;
+    }
+
+    public boolean isMarked(int index) {
+        return marks[index] == markEpoch;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
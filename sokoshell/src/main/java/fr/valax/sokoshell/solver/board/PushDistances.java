@@ -0,0 +1,354 @@
+package fr.valax.sokoshell.solver.board;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Minimal number of pushes needed to move a crate alone on the board to each target.
+ * Unlike a walking distance, it takes into account the side of the crate the player
+ * stands on: a crate can only be pushed from a side the player can reach when walking
+ * around the crate.
+ * <br>
+ * Distances are stored in a {@code short[]} indexed by (floor, side, target) where floor
+ * is the number of the tile among the non-wall tiles, side the {@link Direction} from
+ * the crate to the player and target the number of the target in row-major order.
+ * The sides of the tiles the player can walk between are found in linear time, then
+ * distances are computed by a backward breadth-first search from each target, in parallel.
+ * Other crates are ignored, so a distance is a lower bound of the number of pushes.
+ * <br>
+ * A push distances table is immutable and can be shared by threads.
+ */
+public class PushDistances {
+
+    /**
+     * Distance of a target that can't be reached
+     */
+    public static final int INFINITY = Short.MAX_VALUE;
+
+    private static final int SIDES = 4;
+    private static final int NO_SIDE = -1;
+
+    private final int width;
+    private final int height;
+
+    /**
+     * Index of the tile of each target
+     */
+    private final int[] targets;
+
+    /**
+     * Number of each tile among the non-wall tiles, -1 for walls
+     */
+    private final int[] floors;
+    private final int floorCount;
+
+    /**
+     * Distance from the tile of floor f with the player on side s to target t
+     * is stored at (f * 4 + s) * targets.length + t
+     */
+    private final short[] distances;
+
+    /**
+     * The sides of a crate share the same group if the player can walk from one to the
+     * other while the crate is on the tile. Stored at tile * 4 + side, -1 if the side is a wall
+     */
+    private final byte[] groups;
+
+    PushDistances(PackedBoard board) {
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+
+        int size = width * height;
+        floors = new int[size];
+
+        int nFloors = 0;
+        int nTargets = 0;
+        for (int i = 0; i < size; i++) {
+            if (board.isWall(i)) {
+                floors[i] = -1;
+            } else {
+                floors[i] = nFloors++;
+
+                if (board.isTarget(i)) {
+                    nTargets++;
+                }
+            }
+        }
+
+        targets = new int[nTargets];
+        for (int i = 0, t = 0; i < size; i++) {
+            if (floors[i] >= 0 && board.isTarget(i)) {
+                targets[t++] = i;
+            }
+        }
+
+        floorCount = nFloors;
+        groups = computeGroups();
+        distances = new short[nFloors * SIDES * nTargets];
+        Arrays.fill(distances, (short) INFINITY);
+
+        IntStream.range(0, nTargets).parallel().forEach(this::computeDistances);
+    }
+
+    /**
+     * For each tile, finds the sides of the tile the player can walk between
+     * when a crate is on the tile, i.e. the sides that are connected in the graph
+     * of the floors without the tile.
+     * <br>
+     * All tiles are done by a single depth-first search which finds the articulation
+     * points of the graph: when v is removed, the subtree of a child c of v is cut from
+     * the rest of the graph if and only if no tile of the subtree is adjacent to a
+     * proper ancestor of v, i.e. low(c) &ge; disc(v). The other neighbors of v are
+     * connected through the parent of v.
+     */
+    private byte[] computeGroups() {
+        int size = floors.length;
+        byte[] groups = new byte[size * SIDES];
+        Arrays.fill(groups, (byte) NO_SIDE);
+
+        // discovery time, 0 if not visited
+        int[] disc = new int[size];
+        // lowest discovery time adjacent to the subtree
+        int[] low = new int[size];
+        // highest discovery time of the subtree
+        int[] last = new int[size];
+        int[] parent = new int[size];
+        int[] nextSide = new int[size];
+        int[] stack = new int[size];
+        int time = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (floors[root] < 0 || disc[root] != 0) {
+                continue;
+            }
+
+            int sp = 0;
+            stack[sp++] = root;
+            parent[root] = -1;
+            disc[root] = low[root] = ++time;
+
+            while (sp > 0) {
+                int v = stack[sp - 1];
+
+                if (nextSide[v] < SIDES) {
+                    int w = adjacent(v, nextSide[v]++);
+
+                    if (w < 0) {
+                        continue;
+                    }
+
+                    if (disc[w] == 0) {
+                        parent[w] = v;
+                        disc[w] = low[w] = ++time;
+                        stack[sp++] = w;
+                    } else if (w != parent[v]) {
+                        low[v] = Math.min(low[v], disc[w]);
+                    }
+                } else {
+                    sp--;
+                    last[v] = time;
+
+                    if (parent[v] >= 0) {
+                        low[parent[v]] = Math.min(low[parent[v]], low[v]);
+                    }
+                }
+            }
+        }
+
+        int[] components = new int[SIDES];
+        for (int crate = 0; crate < size; crate++) {
+            if (floors[crate] < 0) {
+                continue;
+            }
+
+            for (int side = 0; side < SIDES; side++) {
+                int tile = adjacent(crate, side);
+                if (tile < 0) {
+                    continue;
+                }
+
+                components[side] = component(crate, tile, disc, low, last, parent);
+                for (int other = 0; other <= side; other++) {
+                    if (adjacent(crate, other) >= 0 && components[other] == components[side]) {
+                        groups[crate * SIDES + side] = (byte) other;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return groups;
+    }
+
+    /**
+     * @return the child of v whose subtree contains the neighbor n of v, if this subtree is
+     * cut from the rest of the graph when v is removed. Otherwise, -1: n is connected to the parent of v
+     */
+    private int component(int v, int n, int[] disc, int[] low, int[] last, int[] parent) {
+        if (disc[n] < disc[v] || disc[n] > last[v]) {
+            return -1; // not a descendant of v
+        }
+
+        for (int side = 0; side < SIDES; side++) {
+            int child = adjacent(v, side);
+
+            if (child >= 0 && parent[child] == v && disc[child] <= disc[n] && disc[n] <= last[child]) {
+                return low[child] >= disc[v] ? child : -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Backward breadth-first search from a target: a crate at c with the player on side s
+     * was pushed from the tile on side s of c, by a player standing on side s of this tile
+     */
+    private void computeDistances(int target) {
+        int[] queue = new int[(distances.length / targets.length)];
+        int head = 0;
+        int tail = 0;
+
+        int tile = targets[target];
+        for (int side = 0; side < SIDES; side++) {
+            if (adjacent(tile, side) >= 0) {
+                setDistance(tile, side, target, 0);
+                queue[tail++] = tile * SIDES + side;
+            }
+        }
+
+        while (head < tail) {
+            int crate = queue[head] / SIDES;
+            int side = queue[head] % SIDES;
+            head++;
+
+            int previous = adjacent(crate, side);
+            if (previous < 0 || adjacent(previous, side) < 0) {
+                continue;
+            }
+
+            int dist = getDistance(crate, side, target) + 1;
+            int group = groups[previous * SIDES + side];
+            for (int s = 0; s < SIDES; s++) {
+                if (groups[previous * SIDES + s] == group && getDistance(previous, s, target) == INFINITY) {
+                    setDistance(previous, s, target, dist);
+                    queue[tail++] = previous * SIDES + s;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the adjacent tile if it isn't a wall, otherwise -1
+     */
+    private int adjacent(int tile, int dir) {
+        int x = tile % width + Direction.VALUES[dir].dirX();
+        int y = tile / width + Direction.VALUES[dir].dirY();
+
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return -1;
+        }
+
+        int adj = y * width + x;
+        return floors[adj] < 0 ? -1 : adj;
+    }
+
+    private int getDistance(int tile, int side, int target) {
+        return distances[(floors[tile] * SIDES + side) * targets.length + target];
+    }
+
+    private void setDistance(int tile, int side, int target, int distance) {
+        distances[(floors[tile] * SIDES + side) * targets.length + target] = (short) Math.min(distance, INFINITY);
+    }
+
+    /**
+     * @param tile index of a tile
+     * @param side side of the crate on which the player is
+     * @param target number of a target
+     * @return the minimal number of pushes needed to move a crate from the tile to
+     * the target when the player is on the specified side of the crate or {@link #INFINITY}
+     */
+    public int distance(int tile, Direction side, int target) {
+        if (floors[tile] < 0) {
+            return INFINITY;
+        }
+
+        return getDistance(tile, side.ordinal(), target);
+    }
+
+    /**
+     * @param tile index of a tile
+     * @param target number of a target
+     * @return the minimal number of pushes needed to move a crate from the tile to
+     * the target, wherever the player is, or {@link #INFINITY}
+     */
+    public int distance(int tile, int target) {
+        if (floors[tile] < 0) {
+            return INFINITY;
+        }
+
+        int min = INFINITY;
+        for (int side = 0; side < SIDES; side++) {
+            min = Math.min(min, getDistance(tile, side, target));
+        }
+
+        return min;
+    }
+
+    /**
+     * @param tile index of a tile
+     * @return the number of the tile among the non-wall tiles or -1 if the tile is a wall
+     */
+    public int getFloor(int tile) {
+        return floors[tile];
+    }
+
+    /**
+     * @return the number of non-wall tiles
+     */
+    public int getFloorCount() {
+        return floorCount;
+    }
+
+    /**
+     * @return the number of targets
+     */
+    public int getTargetCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param target number of a target
+     * @return the index of the tile of the target
+     */
+    public int getTarget(int target) {
+        return targets[target];
+    }
+
+    /**
+     * @param tile index of a tile
+     * @return the number of the target at this tile or -1 if the tile isn't a target
+     */
+    public int getTargetNumber(int tile) {
+        int n = Arrays.binarySearch(targets, tile);
+
+        return n < 0 ? -1 : n;
+    }
+
+    /**
+     * Returns the number of bytes used by the tables, assuming a 64-bits JVM
+     * with compressed oops: 16 bytes of header per array and 8 bytes alignment
+     *
+     * @return the number of bytes used by the tables
+     */
+    public long memoryUsage() {
+        return align(16 + 2L * distances.length)
+                + align(16 + (long) groups.length)
+                + align(16 + 4L * floors.length)
+                + align(16 + 4L * targets.length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
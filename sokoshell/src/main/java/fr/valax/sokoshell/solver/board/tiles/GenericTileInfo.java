@@ -124,16 +124,6 @@ public abstract class GenericTileInfo implements TileInfo {
         throw new UnsupportedOperationException("Immutable object");
     }
 
-    @Override
-    public void setTargets(TargetRemoteness[] targets) {
-        throw new UnsupportedOperationException("Immutable object");
-    }
-
-    @Override
-    public void setNearestTarget(TargetRemoteness nearestTarget) {
-        throw new UnsupportedOperationException("Immutable object");
-    }
-
     @Override
     public void setCrateIndex(int index) {
         throw new UnsupportedOperationException("Immutable object");
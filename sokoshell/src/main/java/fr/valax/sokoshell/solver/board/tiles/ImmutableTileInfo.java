@@ -73,16 +73,6 @@ public class ImmutableTileInfo extends GenericTileInfo {
         return tile.toString();
     }
 
-    @Override
-    public TargetRemoteness getNearestTarget() {
-        return null;
-    }
-
-    @Override
-    public TargetRemoteness[] getTargets() {
-        return null;
-    }
-
     @Override
     public int getCrateIndex() {
         return -1;
@@ -31,16 +31,6 @@ public class MutableTileInfo extends GenericTileInfo {
     protected Tunnel.Exit tunnelExit;
     protected Room room;
 
-    /**
-     * Remoteness data from this tile to every target on the board.
-     */
-    protected TargetRemoteness[] targets;
-
-    /**
-     * Nearest target on the board.
-     */
-    protected TargetRemoteness nearestTarget;
-
     /**
      * The index of this crate in the {@link State#cratesIndices()} array
      */
@@ -108,16 +98,6 @@ public class MutableTileInfo extends GenericTileInfo {
         return mark.isMarked();
     }
 
-    @Override
-    public TargetRemoteness getNearestTarget() {
-        return nearestTarget;
-    }
-
-    @Override
-    public TargetRemoteness[] getTargets() {
-        return targets;
-    }
-
 
     // SETTERS //
 
@@ -125,8 +105,10 @@ public class MutableTileInfo extends GenericTileInfo {
     public void addCrate() {
         if (tile == Tile.FLOOR) {
             tile = Tile.CRATE;
+            board.getBitboard().addCrate(x, y);
         } else if (tile == Tile.TARGET) {
             tile = Tile.CRATE_ON_TARGET;
+            board.getBitboard().addCrate(x, y);
         }
     }
 
@@ -134,19 +116,24 @@ public class MutableTileInfo extends GenericTileInfo {
     public void removeCrate() {
         if (tile == Tile.CRATE) {
             tile = Tile.FLOOR;
+            board.getBitboard().removeCrate(x, y);
         } else if (tile == Tile.CRATE_ON_TARGET) {
             tile = Tile.TARGET;
+            board.getBitboard().removeCrate(x, y);
         }
     }
 
     @Override
     public void setTile(Tile tile) {
         this.tile = tile;
+        board.getBitboard().update(this);
+        board.getPackedBoard().setTile(getIndex(), tile);
     }
 
     @Override
     public void setDeadTile(boolean deadTile) {
         this.deadTile = deadTile;
+        board.getPackedBoard().setDeadTile(getIndex(), deadTile);
     }
 
     @Override
@@ -185,13 +172,8 @@ public class MutableTileInfo extends GenericTileInfo {
     }
 
     @Override
-    public void setTargets(TargetRemoteness[] targets) {
-        this.targets = targets;
-    }
-
-    @Override
-    public void setNearestTarget(TargetRemoteness nearestTarget) {
-        this.nearestTarget = nearestTarget;
+    public int getIndex() {
+        return y * board.getWidth() + x;
     }
 
     @Override
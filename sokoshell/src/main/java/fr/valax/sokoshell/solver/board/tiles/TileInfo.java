@@ -221,27 +221,6 @@ public interface TileInfo {
      */
     int getCrateIndex();
 
-    TargetRemoteness getNearestTarget();
-
-    TargetRemoteness[] getTargets();
-
-    /**
-     * @implNote If you replace index by TileInfo, you will need to modify MutableBoard#StaticTile.
-     * If you are too lazy to do that, create an issue on github
-     */
-    record TargetRemoteness(int index, int distance) implements Comparable<TargetRemoteness> {
-
-        @Override
-        public int compareTo(TargetRemoteness other) {
-            return this.distance - other.distance;
-        }
-
-        @Override
-        public String toString() {
-            return "TR[d=" + distance + ", i=" + index + "]";
-        }
-    }
-
 
     // SETTERS //
 
@@ -334,22 +313,6 @@ public interface TileInfo {
      */
     void setMarked(boolean marked);
 
-    /**
-     * Set the distance to every targets
-     * @param targets distance to every targets
-     * @throws UnsupportedOperationException if the {@code setTargets} operation isn't
-     * supported by this TileInfo
-     */
-    void setTargets(TargetRemoteness[] targets);
-
-    /**
-     * Set the nearest target
-     * @param nearestTarget nearest target
-     * @throws UnsupportedOperationException if the {@code setNearestTarget} operation isn't
-     * supported by this TileInfo
-     */
-    void setNearestTarget(TargetRemoteness nearestTarget);
-
     /**
      * @see #getCrateIndex()
      */
@@ -0,0 +1,50 @@
+package fr.valax.sokoshell.solver.collections;
+
+import fr.valax.sokoshell.solver.board.Board;
+
+import java.util.Arrays;
+
+/**
+ * Crates are stored as a bitset over the floors of the board: the i-th bit is set if there is
+ * a crate on the i-th floor. It uses {@code ceil(number of floors / 32)} ints, whatever
+ * the number of crates is.
+ *
+ * @author PoulpoGaz
+ */
+public final class BitsetEncoding implements CratesEncoding {
+
+    /**
+     * Floor index of each tile or -1 if the tile is a wall
+     */
+    private final int[] floorIndex;
+    private final int size;
+
+    /**
+     * @param board the board. Its floors must be computed
+     * @see Board#computeFloors()
+     */
+    public BitsetEncoding(Board board) {
+        floorIndex = new int[board.getWidth() * board.getHeight()];
+        Arrays.fill(floorIndex, -1);
+
+        int[] nFloors = new int[1];
+        board.forEachNotWall((t) -> floorIndex[t.getIndex()] = nFloors[0]++);
+
+        size = (nFloors[0] + 31) >>> 5;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void encode(int[] crates, int[] dest, int offset) {
+        Arrays.fill(dest, offset, offset + size, 0);
+
+        for (int crate : crates) {
+            int i = floorIndex[crate];
+            dest[offset + (i >>> 5)] |= 1 << (i & 31);
+        }
+    }
+}
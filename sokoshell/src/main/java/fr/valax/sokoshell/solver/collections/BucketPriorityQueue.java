@@ -0,0 +1,147 @@
+package fr.valax.sokoshell.solver.collections;
+
+import fr.valax.sokoshell.solver.WeightedState;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of dynamic capacity, specialized for small integer priorities.
+ * The priority are in <strong>ASCENDANT</strong> order, i.e. the element returned
+ * by {@link BucketPriorityQueue#popState()} has the <strong>LOWEST</strong> weight.
+ * <br>
+ * There is one bucket per weight: adding and removing a state are done in constant time
+ * (amortized), instead of logarithmic time with {@link SolverPriorityQueue}.
+ * States of the same weight are returned in LIFO order, which favors the states
+ * the solver has just found, i.e. the deepest ones.
+ *
+ * @param <S> type of the states
+ * @see SolverPriorityQueue
+ */
+public class BucketPriorityQueue<S extends WeightedState> implements SolverCollection<S> {
+
+    private static final int DEFAULT_BUCKET_CAPACITY = 16;
+
+    /**
+     * buckets[w] contains the states of weight w. Buckets are created lazily
+     */
+    private WeightedState[][] buckets = new WeightedState[64][];
+
+    /**
+     * sizes[w] is the number of states in buckets[w]
+     */
+    private int[] sizes = new int[64];
+
+    /**
+     * Lowest weight which may have a non-empty bucket. All buckets before are empty.
+     */
+    private int minWeight = 0;
+    private int size = 0;
+
+    private S cachedState;
+
+    @Override
+    public void addState(S state) {
+        int weight = state.weight();
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight: " + weight);
+        }
+
+        if (weight >= buckets.length) {
+            int newLength = Math.max(weight + 1, 2 * buckets.length);
+            buckets = Arrays.copyOf(buckets, newLength);
+            sizes = Arrays.copyOf(sizes, newLength);
+        }
+
+        WeightedState[] bucket = buckets[weight];
+        int bucketSize = sizes[weight];
+        if (bucket == null) {
+            bucket = new WeightedState[DEFAULT_BUCKET_CAPACITY];
+            buckets[weight] = bucket;
+        } else if (bucketSize == bucket.length) {
+            bucket = Arrays.copyOf(bucket, 2 * bucketSize);
+            buckets[weight] = bucket;
+        }
+
+        bucket[bucketSize] = state;
+        sizes[weight] = bucketSize + 1;
+        size++;
+
+        if (weight < minWeight) {
+            minWeight = weight;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public S popState() {
+        if (size == 0) {
+            return null;
+        }
+
+        int weight = findMinWeight();
+        int i = --sizes[weight];
+        S state = (S) buckets[weight][i];
+        buckets[weight][i] = null; // allow gc
+        size--;
+
+        return state;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public S peekState() {
+        if (size == 0) {
+            return null;
+        }
+
+        int weight = findMinWeight();
+        return (S) buckets[weight][sizes[weight] - 1];
+    }
+
+    /**
+     * Moves {@link #minWeight} to the first non-empty bucket.
+     * The queue must not be empty
+     */
+    private int findMinWeight() {
+        while (sizes[minWeight] == 0) {
+            minWeight++;
+        }
+
+        return minWeight;
+    }
+
+    @Override
+    public S peekAndCacheState() {
+        cachedState = popState();
+        return cachedState;
+    }
+
+    @Override
+    public S cachedState() {
+        return cachedState;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < buckets.length; i++) {
+            if (sizes[i] > 0) {
+                Arrays.fill(buckets[i], 0, sizes[i], null);
+                sizes[i] = 0;
+            }
+        }
+
+        minWeight = 0;
+        size = 0;
+        cachedState = null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
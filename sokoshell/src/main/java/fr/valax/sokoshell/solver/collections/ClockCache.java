@@ -0,0 +1,168 @@
+package fr.valax.sokoshell.solver.collections;
+
+import fr.valax.sokoshell.solver.CacheStatistics;
+
+import java.util.Arrays;
+
+/**
+ * A bounded set of 64-bits keys, typically Zobrist hashes. When the cache is full,
+ * keys are evicted with the CLOCK algorithm: a key that was found since the last
+ * time the hand passed over it gets a second chance.
+ * <br>
+ * The cache is set-associative: a key can only be stored in the {@link #WAYS} slots
+ * of its set, chosen by the low bits of the key. Each set has its own hand. Therefore,
+ * lookups and insertions don't allocate and check at most {@link #WAYS} slots.
+ * Zero is used to mark empty slots, so the key zero is never stored.
+ *
+ * @implNote This class isn't thread safe
+ */
+public class ClockCache {
+
+    public static final int WAYS = 4;
+
+    private final long[] keys;
+    private final boolean[] referenced;
+    private final byte[] hands;
+    private final int setMask;
+
+    private int size;
+    private int hits;
+    private int misses;
+
+    /**
+     * @param capacity maximal number of keys. Rounded to a power of two, at least {@link #WAYS}
+     */
+    public ClockCache(int capacity) {
+        int nSets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+
+        keys = new long[nSets * WAYS];
+        referenced = new boolean[nSets * WAYS];
+        hands = new byte[nSets];
+        setMask = nSets - 1;
+    }
+
+    /**
+     * @param key the key
+     * @return true if the key is in the cache
+     */
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Adds a key. If the set of the key is full, a key of the set is evicted.
+     * The key must not be in the cache.
+     *
+     * @param key the key
+     */
+    public void add(long key) {
+        insert(key);
+    }
+
+    /**
+     * Searches a key and marks it as referenced
+     *
+     * @param key the key
+     * @return the slot of the key or -1 if the key isn't in the cache
+     */
+    protected int find(long key) {
+        if (key != 0) {
+            int start = set(key) * WAYS;
+
+            for (int i = start; i < start + WAYS; i++) {
+                if (keys[i] == key) {
+                    referenced[i] = true;
+                    hits++;
+                    return i;
+                }
+            }
+        }
+
+        misses++;
+        return -1;
+    }
+
+    /**
+     * Stores a key that isn't in the cache, evicting a key of its set if needed
+     *
+     * @param key the key
+     * @return the slot of the key or -1 if the key is zero
+     */
+    protected int insert(long key) {
+        if (key == 0) {
+            return -1;
+        }
+
+        int set = set(key);
+        int start = set * WAYS;
+
+        for (int i = start; i < start + WAYS; i++) {
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+                return i;
+            }
+        }
+
+        // the set is full: give a second chance to referenced keys
+        int hand = hands[set];
+        while (referenced[start + hand]) {
+            referenced[start + hand] = false;
+            hand = (hand + 1) % WAYS;
+        }
+
+        keys[start + hand] = key;
+        hands[set] = (byte) ((hand + 1) % WAYS);
+
+        return start + hand;
+    }
+
+    private int set(long key) {
+        // low bits of a Zobrist hash are as random as the high bits
+        return (int) key & setMask;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(referenced, false);
+        Arrays.fill(hands, (byte) 0);
+        size = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return the number of keys in the cache
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximal number of keys in the cache
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the number of bytes used by this cache, assuming a 64-bits JVM
+     * with compressed oops: 16 bytes of header per array and 8 bytes alignment.
+     *
+     * @return the number of bytes used by this cache
+     */
+    public long memoryUsage() {
+        return align(12 + 4 * 3 + 4 * 4) // header and fields of this object
+                + align(16 + 8L * keys.length)
+                + align(16 + (long) referenced.length)
+                + align(16 + (long) hands.length);
+    }
+
+    protected static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(size, hits, misses, memoryUsage());
+    }
+}
@@ -0,0 +1,46 @@
+package fr.valax.sokoshell.solver.collections;
+
+import fr.valax.sokoshell.solver.board.Board;
+
+/**
+ * Describes how the crates of a state are stored in a {@link TranspositionTable}.
+ * Two states have the same crates if and only if their encodings are equal.
+ *
+ * @see IndicesEncoding
+ * @see BitsetEncoding
+ * @author PoulpoGaz
+ */
+public interface CratesEncoding {
+
+    /**
+     * Returns the encoding that uses the fewest ints for a board.
+     * The floors of the board must be computed.
+     *
+     * @param board the board
+     * @param nCrates the number of crates of the states
+     * @return the smallest encoding
+     */
+    static CratesEncoding smallest(Board board, int nCrates) {
+        BitsetEncoding bitset = new BitsetEncoding(board);
+
+        if (bitset.size() < nCrates) {
+            return bitset;
+        } else {
+            return new IndicesEncoding(nCrates);
+        }
+    }
+
+    /**
+     * @return the number of ints used to encode the crates of a state
+     */
+    int size();
+
+    /**
+     * Encodes the crates of a state. Exactly {@link #size()} ints are written.
+     *
+     * @param crates the crates of a state, sorted in ascending order
+     * @param dest the array in which the crates are encoded
+     * @param offset the position in dest of the first int
+     */
+    void encode(int[] crates, int[] dest, int offset);
+}
@@ -0,0 +1,557 @@
+package fr.valax.sokoshell.solver.collections;
+
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.Zobrist;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A FIFO queue for breadth-first search that stores its states on disk, layer by layer.
+ * Duplicates are removed with <i>delayed duplicate detection</i>: the children of the current
+ * layer are buffered in memory. When the buffer is full, it is sorted and written to a run file.
+ * When the current layer is exhausted, the runs are merged into the next layer, removing the
+ * states that are in the runs more than once or that are in a previous layer.
+ * <br>
+ * A state is stored as a record of {@code number of crates + 2} ints:
+ * the player position, the crates and the index of the parent in the previous layer.
+ * Records of a layer are sorted by player position then by crates, so duplicates
+ * are found by merging sorted files. The ram used by this queue is bounded by the size
+ * of the buffer, and by a few buffered streams per layer.
+ * <br>
+ * The queue doesn't keep the parents of the states in memory: use {@link #cachedStateWithParents()}
+ * to get them. The next layer is only merged by {@link #advanceLayer()}: states can't be popped
+ * until the current layer is exhausted and {@link #advanceLayer()} is called.
+ *
+ * @author PoulpoGaz
+ */
+public class ExternalBFSQueue implements SolverCollection<State> {
+
+    /**
+     * Size in bytes of the header of an int[] record in the buffer
+     */
+    private static final int ARRAY_HEADER = 16;
+
+    private final Path tmpDirectory;
+    private final Zobrist zobrist;
+    private final long bufferSize;
+
+    /**
+     * Directory in which runs and layers are written. Created when the first state is added
+     */
+    private Path directory;
+
+    private int nCrates = -1;
+
+    /**
+     * Number of ints in a record. The key of a record (player and crates) is
+     * made of the first {@code recordLength - 1} ints
+     */
+    private int recordLength;
+
+    private int[][] buffer;
+    private int bufferCount;
+
+    /**
+     * Runs of the next layer
+     */
+    private final List<Path> runs = new ArrayList<>();
+    private long runsSize;
+
+    /**
+     * Layers that were merged. The last one is the current layer
+     */
+    private final List<Path> layers = new ArrayList<>();
+
+    /**
+     * Number of states in all layers
+     */
+    private long nStates;
+
+    private RecordReader current;
+
+    /**
+     * Index in the current layer of the cached state
+     */
+    private int cachedIndex = -1;
+    private State cachedState;
+
+    /**
+     * @param tmpDirectory the directory in which a temporary directory containing the layers
+     *                     is created. If null, the default temporary-file directory is used
+     * @param zobrist the values used to hash the states read from the disk
+     * @param bufferSize the maximal number of bytes used to buffer states in memory
+     */
+    public ExternalBFSQueue(Path tmpDirectory, Zobrist zobrist, long bufferSize) {
+        this.tmpDirectory = tmpDirectory;
+        this.zobrist = zobrist;
+        this.bufferSize = bufferSize;
+    }
+
+    private void init(int nCrates) {
+        try {
+            if (tmpDirectory == null) {
+                directory = Files.createTempDirectory("sokoshell-bfs");
+            } else {
+                directory = Files.createTempDirectory(tmpDirectory, "sokoshell-bfs");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.nCrates = nCrates;
+        this.recordLength = nCrates + 2;
+
+        long bytesPerRecord = ARRAY_HEADER + 4L * recordLength + 8; // + 8 for the reference
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, bufferSize / bytesPerRecord));
+
+        buffer = new int[capacity][];
+    }
+
+    @Override
+    public void addState(State state) {
+        if (nCrates < 0) {
+            init(state.numberOfCrates());
+        }
+
+        int[] record = buffer[bufferCount];
+        if (record == null) {
+            record = new int[recordLength];
+            buffer[bufferCount] = record;
+        }
+
+        record[0] = state.playerPos();
+        System.arraycopy(state.cratesIndices(), 0, record, 1, nCrates);
+        record[recordLength - 1] = cachedIndex;
+        bufferCount++;
+
+        if (bufferCount == buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Sorts the buffer, removes duplicates and writes it to a new run
+     */
+    private void flushBuffer() {
+        if (bufferCount == 0) {
+            return;
+        }
+
+        Arrays.sort(buffer, 0, bufferCount, this::compareKeys);
+
+        Path run = directory.resolve("run-" + layers.size() + "-" + runs.size());
+        try (DataOutputStream dos = newOutput(run)) {
+            int[] last = null;
+
+            for (int i = 0; i < bufferCount; i++) {
+                int[] record = buffer[i];
+
+                if (last == null || compareKeys(last, record) != 0) {
+                    writeRecord(dos, record);
+                    runsSize++;
+                }
+
+                last = record;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        runs.add(run);
+        bufferCount = 0;
+    }
+
+    /**
+     * Merges the runs into a new layer. Duplicates and states that are in
+     * a previous layer are removed. The new layer becomes the current layer.
+     *
+     * @return true if the new layer isn't empty
+     */
+    private boolean nextLayer() throws IOException {
+        flushBuffer();
+        if (runs.isEmpty()) {
+            return false;
+        }
+
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+
+        Path layer = directory.resolve("layer-" + layers.size());
+        int layerSize = 0;
+
+        List<RecordReader> previous = new ArrayList<>();
+        PriorityQueue<RecordReader> queue = new PriorityQueue<>((a, b) -> compareKeys(a.record, b.record));
+        try (DataOutputStream dos = newOutput(layer)) {
+            for (Path p : layers) {
+                RecordReader r = new RecordReader(p);
+                if (r.next()) {
+                    previous.add(r);
+                } else {
+                    r.close();
+                }
+            }
+            for (Path run : runs) {
+                RecordReader r = new RecordReader(run);
+                if (r.next()) {
+                    queue.offer(r);
+                } else {
+                    r.close();
+                }
+            }
+
+            int[] last = new int[recordLength];
+            boolean first = true;
+            while (!queue.isEmpty()) {
+                RecordReader r = queue.poll();
+
+                if ((first || compareKeys(last, r.record) != 0) && !isInPreviousLayers(previous, r.record)) {
+                    writeRecord(dos, r.record);
+                    layerSize++;
+                }
+                System.arraycopy(r.record, 0, last, 0, recordLength);
+                first = false;
+
+                if (r.next()) {
+                    queue.offer(r);
+                } else {
+                    r.close();
+                }
+            }
+        } finally {
+            for (RecordReader r : previous) {
+                r.close();
+            }
+            for (RecordReader r : queue) {
+                r.close();
+            }
+        }
+
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        runsSize = 0;
+
+        layers.add(layer);
+        nStates += layerSize;
+        current = new RecordReader(layer, layerSize);
+        cachedIndex = -1;
+
+        return layerSize > 0;
+    }
+
+    /**
+     * Records are checked in ascending order, so each reader of a previous layer
+     * only moves forward.
+     */
+    private boolean isInPreviousLayers(List<RecordReader> previous, int[] record) throws IOException {
+        for (int i = 0; i < previous.size(); i++) {
+            RecordReader r = previous.get(i);
+
+            int cmp;
+            while ((cmp = compareKeys(r.record, record)) < 0) {
+                if (!r.next()) {
+                    r.close();
+                    previous.remove(i);
+                    i--;
+                    break;
+                }
+            }
+
+            if (cmp == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the next state of the current layer or null if the current layer is exhausted
+     */
+    @Override
+    public State popState() {
+        if (!hasStateInLayer()) {
+            return null;
+        }
+
+        try {
+            current.next();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cachedIndex++;
+
+        return toState(current.record, null);
+    }
+
+    /**
+     * Returns the next state of the current layer without its parent
+     * or null if the current layer is exhausted
+     */
+    @Override
+    public State peekState() {
+        if (!hasStateInLayer()) {
+            return null;
+        }
+
+        try {
+            int[] record = new int[recordLength];
+            current.peek(record);
+
+            return toState(record, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public State peekAndCacheState() {
+        cachedState = popState();
+        return cachedState;
+    }
+
+    /**
+     * Returns the cached state without its parent
+     */
+    @Override
+    public State cachedState() {
+        return cachedState;
+    }
+
+    /**
+     * Reads the parents of the cached state from the previous layers.
+     *
+     * @return the cached state with its parents
+     */
+    public State cachedStateWithParents() {
+        if (cachedState == null) {
+            return null;
+        }
+
+        int[][] path = new int[layers.size()][];
+        int index = cachedIndex;
+
+        try {
+            for (int i = layers.size() - 1; i >= 0; i--) {
+                try (RandomAccessFile raf = new RandomAccessFile(layers.get(i).toFile(), "r")) {
+                    raf.seek(4L * recordLength * index);
+
+                    int[] record = new int[recordLength];
+                    for (int j = 0; j < recordLength; j++) {
+                        record[j] = raf.readInt();
+                    }
+
+                    path[i] = record;
+                    index = record[recordLength - 1];
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        State state = null;
+        for (int[] record : path) {
+            state = toState(record, state);
+        }
+
+        return state;
+    }
+
+    private State toState(int[] record, State parent) {
+        int[] crates = Arrays.copyOfRange(record, 1, 1 + nCrates);
+
+        return new State(record[0], crates, zobrist.hash(record[0], crates), parent);
+    }
+
+    private int compareKeys(int[] a, int[] b) {
+        return Arrays.compare(a, 0, recordLength - 1, b, 0, recordLength - 1);
+    }
+
+    private void writeRecord(DataOutputStream dos, int[] record) throws IOException {
+        for (int i = 0; i < recordLength; i++) {
+            dos.writeInt(record[i]);
+        }
+    }
+
+    private DataOutputStream newOutput(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    @Override
+    public void clear() {
+        try {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+
+            for (Path p : runs) {
+                Files.deleteIfExists(p);
+            }
+            for (Path p : layers) {
+                Files.deleteIfExists(p);
+            }
+            if (directory != null) {
+                Files.deleteIfExists(directory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        runs.clear();
+        layers.clear();
+        directory = null;
+        nCrates = -1;
+        buffer = null;
+        runsSize = 0;
+        nStates = 0;
+        bufferCount = 0;
+        cachedIndex = -1;
+        cachedState = null;
+    }
+
+    /**
+     * Merges the next layer if the current one is exhausted.
+     * Therefore, it may take some time.
+     *
+     * @return true if a state can be popped
+     */
+    public boolean advanceLayer() {
+        if (hasStateInLayer()) {
+            return true;
+        }
+
+        try {
+            return nextLayer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean hasStateInLayer() {
+        return current != null && current.remaining() > 0;
+    }
+
+    /**
+     * The next layer isn't merged: once merged, it may be empty
+     * if all its states are in the previous layers.
+     *
+     * @return true if the current layer is exhausted and no state was added to the next layer
+     */
+    @Override
+    public boolean isEmpty() {
+        return !hasStateInLayer() && bufferCount == 0 && runs.isEmpty();
+    }
+
+    /**
+     * @return the number of states in the current layer that weren't popped plus
+     * the number of states in the next layer. Duplicates of the next layer are counted
+     */
+    @Override
+    public int size() {
+        long size = bufferCount + runsSize;
+        if (current != null) {
+            size += current.remaining();
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return an estimation of the number of bytes used by the buffer
+     */
+    public long memoryUsage() {
+        if (buffer == null) {
+            return 0;
+        } else {
+            return (ARRAY_HEADER + 4L * recordLength + 8) * buffer.length;
+        }
+    }
+
+    /**
+     * @return the number of states in all layers, without duplicates
+     */
+    public long nStates() {
+        return nStates;
+    }
+
+    /**
+     * @return the number of layers that were merged, i.e. the depth of the current layer plus one
+     */
+    public int nLayers() {
+        return layers.size();
+    }
+
+    /**
+     * Reads records of a layer or a run sequentially
+     */
+    private class RecordReader implements Closeable {
+
+        private final DataInputStream dis;
+        private final int[] record = new int[recordLength];
+        private int remaining;
+
+        /**
+         * @param path a run
+         */
+        public RecordReader(Path path) throws IOException {
+            this(path, (int) (Files.size(path) / (4L * recordLength)));
+        }
+
+        /**
+         * @param path a layer
+         * @param size number of records in the layer
+         */
+        public RecordReader(Path path, int size) throws IOException {
+            dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            remaining = size;
+        }
+
+        /**
+         * Reads the next record in {@link #record}
+         *
+         * @return false if there is no more record
+         */
+        public boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+
+            for (int i = 0; i < recordLength; i++) {
+                record[i] = dis.readInt();
+            }
+            remaining--;
+
+            return true;
+        }
+
+        /**
+         * Reads the next record in dest without consuming it
+         */
+        public void peek(int[] dest) throws IOException {
+            dis.mark(4 * recordLength);
+            for (int i = 0; i < recordLength; i++) {
+                dest[i] = dis.readInt();
+            }
+            dis.reset();
+        }
+
+        public int remaining() {
+            return remaining;
+        }
+
+        @Override
+        public void close() throws IOException {
+            dis.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package fr.valax.sokoshell.solver.collections;
+
+/**
+ * Crates are stored as their tile index. It uses one int per crate.
+ *
+ * @author PoulpoGaz
+ */
+public final class IndicesEncoding implements CratesEncoding {
+
+    private final int nCrates;
+
+    public IndicesEncoding(int nCrates) {
+        this.nCrates = nCrates;
+    }
+
+    @Override
+    public int size() {
+        return nCrates;
+    }
+
+    @Override
+    public void encode(int[] crates, int[] dest, int offset) {
+        System.arraycopy(crates, 0, dest, offset, nCrates);
+    }
+}
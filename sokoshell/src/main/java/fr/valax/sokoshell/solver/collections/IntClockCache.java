@@ -0,0 +1,50 @@
+package fr.valax.sokoshell.solver.collections;
+
+/**
+ * A {@link ClockCache} that associates an int to each key
+ *
+ * @implNote This class isn't thread safe
+ */
+public class IntClockCache extends ClockCache {
+
+    private final int[] values;
+
+    /**
+     * @param capacity maximal number of keys. Rounded to a power of two, at least {@link #WAYS}
+     */
+    public IntClockCache(int capacity) {
+        super(capacity);
+        values = new int[capacity()];
+    }
+
+    /**
+     * @param key the key
+     * @param missingValue value returned if the key isn't in the cache
+     * @return the value associated with the key or missingValue
+     */
+    public int get(long key, int missingValue) {
+        int slot = find(key);
+
+        return slot < 0 ? missingValue : values[slot];
+    }
+
+    /**
+     * Associates a value to a key. If the set of the key is full, a key of the set is evicted.
+     * The key must not be in the cache.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(long key, int value) {
+        int slot = insert(key);
+
+        if (slot >= 0) {
+            values[slot] = value;
+        }
+    }
+
+    @Override
+    public long memoryUsage() {
+        return super.memoryUsage() + align(16 + 4L * values.length);
+    }
+}
@@ -61,7 +61,7 @@ public class MinHeap<T> {
         if (l < size() && nodes.get(l).hasPriorityOver(nodes.get(i))) {
             j = l;
         }
-        if (r < size() && nodes.get(r).hasPriorityOver(nodes.get(l))) {
+        if (r < size() && nodes.get(r).hasPriorityOver(nodes.get(j))) {
             j = r;
         }
 
@@ -0,0 +1,371 @@
+package fr.valax.sokoshell.solver.collections;
+
+import fr.valax.sokoshell.solver.State;
+
+import java.util.Arrays;
+
+/**
+ * A set of states that only remembers the position of the player and of the crates.
+ * It replaces a {@code HashSet<State>}, which costs a node, a {@link State} and
+ * an {@code int[]} per state, by open addressing (linear probing) over primitive arrays.
+ * A slot is made of {@code 2 + encoding size} ints:
+ * <ul>
+ *     <li>the Zobrist hash of the state folded to 32 bits, see {@link State#hash()}.
+ *     The table has at most {@code 2^30} slots, so the index of a slot never needs more bits</li>
+ *     <li>the player position plus one. Zero means that the slot is empty</li>
+ *     <li>the crates, encoded with a {@link CratesEncoding}. By default, the crates are
+ *     copied from {@link State#cratesIndices()}, see {@link IndicesEncoding}</li>
+ *     <li>the cost of the state, only if the table remembers costs, see {@link #setRememberCosts(boolean)}</li>
+ * </ul>
+ * Slots are stored in pages of at most {@code 2^16} slots, so the table isn't limited
+ * by the maximal length of an array.
+ * <br>
+ * The number of crates is determined by the first state added to the table and all states
+ * must have the same number of crates until {@link #clear()} is called.
+ *
+ * @implNote This class isn't thread safe
+ * @author PoulpoGaz
+ */
+public class TranspositionTable {
+
+    private static final int MAX_PAGE_SHIFT = 16;
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[][] pages;
+
+    /**
+     * Number of slots. Always a power of two
+     */
+    private int capacity;
+    private int pageShift;
+    private int pageMask;
+    private int threshold;
+
+    private int nCrates = -1;
+    private CratesEncoding encoding;
+    private int stride;
+
+    /**
+     * If true, the last int of a slot is the cost of the state
+     */
+    private boolean rememberCosts;
+
+    private int size;
+
+    /**
+     * Number of bytes used by the arrays of this table, updated when
+     * the table is allocated, so it can be read by another thread
+     */
+    private volatile long arraysSize;
+
+    /**
+     * Crates of the state being added or searched, if they weren't computed by the state
+     */
+    private int[] buffer;
+
+    /**
+     * Encoded crates of the state being added or searched
+     */
+    private int[] key;
+
+    public TranspositionTable() {
+
+    }
+
+    private void init(int nCrates) {
+        if (encoding == null) {
+            encoding = new IndicesEncoding(nCrates);
+        }
+
+        this.nCrates = nCrates;
+        this.stride = encoding.size() + (rememberCosts ? 3 : 2);
+        this.buffer = new int[nCrates];
+        this.key = new int[encoding.size()];
+
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        this.pageShift = Math.min(MAX_PAGE_SHIFT, Integer.numberOfTrailingZeros(capacity));
+        this.pageMask = (1 << pageShift) - 1;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+
+        int slotsPerPage = 1 << pageShift;
+        pages = new int[capacity >>> pageShift][];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new int[slotsPerPage * stride];
+        }
+
+        arraysSize = arraySize(pages.length) + pages.length * arraySize(slotsPerPage * stride)
+                + arraySize(nCrates) + arraySize(key.length);
+    }
+
+    /**
+     * Adds the state to the table if it isn't already present.
+     * If the table remembers costs, the state is added with a cost of zero
+     *
+     * @param state the state to add
+     * @return true if the state wasn't in the table
+     * @throws IllegalArgumentException if the state doesn't have the same number of crates
+     * as the states already in the table
+     */
+    public boolean add(State state) {
+        return add(state, 0);
+    }
+
+    /**
+     * Adds the state to the table if it isn't already present or if it was added
+     * with a higher cost. In the latter case, the cost of the state is replaced.
+     * If the table doesn't remember costs, the cost is ignored
+     *
+     * @param state the state to add
+     * @param cost the cost to come to this state
+     * @return true if the state wasn't in the table or if its cost was lowered
+     * @throws IllegalArgumentException if the state doesn't have the same number of crates
+     * as the states already in the table
+     */
+    public boolean add(State state, int cost) {
+        int[] key = encode(state);
+        int slot = find(state, key);
+
+        if (slot >= 0) {
+            if (rememberCosts) {
+                int[] page = pages[slot >>> pageShift];
+                int offset = (slot & pageMask) * stride + stride - 1;
+
+                if (cost < page[offset]) {
+                    page[offset] = cost;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        write(-slot - 1, fold(state.hash()), state.playerPos() + 1, key, cost);
+        size++;
+
+        if (size > threshold) {
+            grow();
+        }
+
+        return true;
+    }
+
+    /**
+     * @param state the state to search
+     * @return true if the state is in the table
+     * @throws IllegalArgumentException if the state doesn't have the same number of crates
+     * as the states already in the table
+     */
+    public boolean contains(State state) {
+        return find(state, encode(state)) >= 0;
+    }
+
+    /**
+     * @param state the state to search
+     * @return the cost of the state or -1 if the state isn't in the table
+     * @throws IllegalStateException if the table doesn't remember costs
+     * @throws IllegalArgumentException if the state doesn't have the same number of crates
+     * as the states already in the table
+     */
+    public int cost(State state) {
+        if (!rememberCosts) {
+            throw new IllegalStateException("Table doesn't remember costs");
+        }
+
+        int slot = find(state, encode(state));
+        if (slot < 0) {
+            return -1;
+        }
+
+        return pages[slot >>> pageShift][(slot & pageMask) * stride + stride - 1];
+    }
+
+    /**
+     * Encodes the crates of the state in {@link #key}, without forcing the state to keep them.
+     *
+     * @throws IllegalArgumentException if the state doesn't have the same number of crates
+     * as the states already in the table
+     */
+    private int[] encode(State state) {
+        int n = state.numberOfCrates();
+
+        if (nCrates < 0) {
+            init(n);
+        } else if (n != nCrates) {
+            throw new IllegalArgumentException("Expected " + nCrates + " crates but got " + n);
+        }
+
+        encoding.encode(state.cratesIndices(buffer), key, 0);
+        return key;
+    }
+
+    /**
+     * Search the state in the table.
+     *
+     * @param state the state to search
+     * @param key the encoded crates of the state
+     * @return the slot containing the state or {@code -(insertion slot) - 1}
+     */
+    private int find(State state, int[] key) {
+        int hash = fold(state.hash());
+        int player = state.playerPos() + 1;
+
+        int slot = spread(hash) & (capacity - 1);
+        while (true) {
+            int[] page = pages[slot >>> pageShift];
+            int offset = (slot & pageMask) * stride;
+
+            if (page[offset + 1] == 0) {
+                return -slot - 1;
+            } else if (page[offset] == hash && page[offset + 1] == player &&
+                    Arrays.equals(page, offset + 2, offset + 2 + key.length, key, 0, key.length)) {
+                return slot;
+            }
+
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private void write(int slot, int hash, int player, int[] key, int cost) {
+        int[] page = pages[slot >>> pageShift];
+        int offset = (slot & pageMask) * stride;
+
+        page[offset] = hash;
+        page[offset + 1] = player;
+        System.arraycopy(key, 0, page, offset + 2, key.length);
+
+        if (rememberCosts) {
+            page[offset + stride - 1] = cost;
+        }
+    }
+
+    private void grow() {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Transposition table is full");
+        }
+
+        int[][] oldPages = pages;
+
+        allocate(capacity << 1);
+
+        for (int[] page : oldPages) {
+            for (int offset = 0; offset < page.length; offset += stride) {
+                if (page[offset + 1] != 0) {
+                    int slot = spread(page[offset]) & (capacity - 1);
+
+                    int[] newPage;
+                    int newOffset;
+                    while (true) {
+                        newPage = pages[slot >>> pageShift];
+                        newOffset = (slot & pageMask) * stride;
+
+                        if (newPage[newOffset + 1] == 0) {
+                            break;
+                        }
+
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+
+                    System.arraycopy(page, offset, newPage, newOffset, stride);
+                }
+            }
+        }
+    }
+
+    private static int fold(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Removes all states and releases the memory used by the table.
+     * After a call to this method, states with a different number of crates
+     * can be added and the encoding is reset
+     */
+    public void clear() {
+        pages = null;
+        buffer = null;
+        key = null;
+        encoding = null;
+        capacity = 0;
+        threshold = 0;
+        nCrates = -1;
+        stride = 0;
+        size = 0;
+        arraysSize = 0;
+    }
+
+    /**
+     * Sets how the crates are stored. It can only be changed when the table is empty
+     * and is reset by {@link #clear()}.
+     *
+     * @param encoding the encoding or null to use {@link IndicesEncoding}
+     * @throws IllegalStateException if the table isn't empty
+     */
+    public void setEncoding(CratesEncoding encoding) {
+        if (nCrates >= 0) {
+            throw new IllegalStateException("Table isn't empty");
+        }
+
+        this.encoding = encoding;
+    }
+
+    public CratesEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets if the table remembers the cost of each state, see {@link #add(State, int)}.
+     * It costs one int per slot. It can only be changed when the table is empty
+     * and, unlike the encoding, it isn't reset by {@link #clear()}.
+     *
+     * @param rememberCosts true to remember the costs
+     * @throws IllegalStateException if the table isn't empty
+     */
+    public void setRememberCosts(boolean rememberCosts) {
+        if (nCrates >= 0) {
+            throw new IllegalStateException("Table isn't empty");
+        }
+
+        this.rememberCosts = rememberCosts;
+    }
+
+    public boolean remembersCosts() {
+        return rememberCosts;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes used by this table, assuming a 64-bits JVM
+     * with compressed oops: 16 bytes of header per array, 4 bytes per int or reference
+     * and 8 bytes alignment. This method can be called from any thread.
+     *
+     * @return the number of bytes used by this table
+     */
+    public long memoryUsage() {
+        return align(12 + 4 * 11 + 8 + 1) + arraysSize; // header and fields of this object
+    }
+
+    private static long arraySize(int length) {
+        return align(16 + 4L * length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.valax.sokoshell.solver.heuristic;
 
+import fr.valax.sokoshell.solver.State;
 import fr.valax.sokoshell.solver.board.Board;
 
 /**
@@ -11,7 +12,66 @@ public abstract class AbstractHeuristic implements Heuristic {
 
     protected final Board board;
 
+    private int[] buffer;
+
     public AbstractHeuristic(Board board) {
         this.board = board;
     }
+
+    @Override
+    public int compute(State s) {
+        return compute(cratesOf(s));
+    }
+
+    /**
+     * Computes the heuristic of the child without using the parent
+     */
+    @Override
+    public int compute(State parent, int parentHeuristic, int crate, int from, int to) {
+        return compute(childCratesOf(parent, crate, to));
+    }
+
+    /**
+     * Computes the heuristic of a state
+     *
+     * @param crates the crates of the state
+     * @return the heuristic of the state
+     */
+    protected abstract int compute(int[] crates);
+
+    /**
+     * Returns the crates of the state without forcing the state to keep them.
+     * The returned array must not be modified and is only valid until the next call.
+     *
+     * @param state a state
+     * @return the crates of the state
+     * @see State#cratesIndices(int[])
+     */
+    protected int[] cratesOf(State state) {
+        int n = state.numberOfCrates();
+        if (buffer == null || buffer.length != n) {
+            buffer = new int[n];
+        }
+
+        return state.cratesIndices(buffer);
+    }
+
+    /**
+     * Returns the crates of the child of a state without creating the child.
+     * The returned array must not be modified and is only valid until the next call.
+     *
+     * @param parent a state
+     * @param crate index of the moved crate in the crates of the parent
+     * @param dest destination of the crate
+     * @return the crates of the child
+     * @see State#childCratesIndices(int, int, int[])
+     */
+    protected int[] childCratesOf(State parent, int crate, int dest) {
+        int n = parent.numberOfCrates();
+        if (buffer == null || buffer.length != n) {
+            buffer = new int[n];
+        }
+
+        return parent.childCratesIndices(crate, dest, buffer);
+    }
 }
@@ -0,0 +1,82 @@
+package fr.valax.sokoshell.solver.heuristic;
+
+import fr.valax.sokoshell.solver.CacheStatistics;
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.Zobrist;
+import fr.valax.sokoshell.solver.collections.IntClockCache;
+
+/**
+ * A heuristic that caches the values computed by another heuristic. A heuristic only
+ * depends on the crates, so states that differ only by the position of the player
+ * share the same entry. Entries are keyed by the Zobrist hash of the crates, that is
+ * the hash of the state without the value of the player, and are evicted with the
+ * CLOCK algorithm when the cache is full.
+ * <br>
+ * The wrapped heuristic must be positive or zero.
+ *
+ * @implNote This class isn't thread safe
+ */
+public class CachedHeuristic implements Heuristic {
+
+    /**
+     * Default maximal number of cached heuristics
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+
+    private final Heuristic heuristic;
+    private final Zobrist zobrist;
+    private final IntClockCache cache;
+
+    public CachedHeuristic(Heuristic heuristic, Zobrist zobrist) {
+        this(heuristic, zobrist, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param heuristic the heuristic to cache
+     * @param zobrist the values used to hash the states
+     * @param capacity maximal number of cached heuristics
+     */
+    public CachedHeuristic(Heuristic heuristic, Zobrist zobrist, int capacity) {
+        this.heuristic = heuristic;
+        this.zobrist = zobrist;
+        this.cache = new IntClockCache(capacity);
+    }
+
+    @Override
+    public int compute(State s) {
+        long key = s.hash() ^ zobrist.playerValue(s.playerPos());
+
+        int h = cache.get(key, -1);
+        if (h < 0) {
+            h = heuristic.compute(s);
+            cache.put(key, h);
+        }
+
+        return h;
+    }
+
+    @Override
+    public int compute(State parent, int parentHeuristic, int crate, int from, int to) {
+        long key = parent.hash() ^ zobrist.playerValue(parent.playerPos())
+                ^ zobrist.crateValue(from) ^ zobrist.crateValue(to);
+
+        int h = cache.get(key, -1);
+        if (h < 0) {
+            h = heuristic.compute(parent, parentHeuristic, crate, from, to);
+            cache.put(key, h);
+        }
+
+        return h;
+    }
+
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    /**
+     * @return the cached heuristic
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+}
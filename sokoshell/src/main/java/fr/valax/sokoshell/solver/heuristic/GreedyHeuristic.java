@@ -1,37 +1,36 @@
 package fr.valax.sokoshell.solver.heuristic;
 
-import fr.valax.sokoshell.solver.State;
 import fr.valax.sokoshell.solver.board.Board;
-import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.board.PackedBoard;
 
 /**
  * According to <a href="http://sokobano.de/wiki/index.php?title=Solver#Greedy_approach">this article</a>
  */
 public class GreedyHeuristic extends AbstractHeuristic {
 
+    private final PackedBoard packed;
     private final LinkedList list;
 
     public GreedyHeuristic(Board board) {
         super(board);
         final int n = board.getTargetCount();
 
+        packed = board.getPackedBoard();
         list = new LinkedList(n);
     }
 
     @Override
-    public int compute(State s) {
+    protected int compute(int[] crates) {
         int heuristic = 0;
 
-        board.getMarkSystem().unmarkAll();
+        packed.unmarkAll();
 
         int n = 0;
-        for (int crate : s.cratesIndices()) {
-            TileInfo tile = board.getAt(crate);
-
-            if (tile.isCrateOnTarget()) {
-                tile.mark();
+        for (int crate : crates) {
+            if (packed.isCrateOnTarget(crate)) {
+                packed.mark(crate);
             } else {
-                list.add(tile);
+                list.add(crate);
 
                 n++;
             }
@@ -40,13 +39,13 @@ public class GreedyHeuristic extends AbstractHeuristic {
 
         for (int i = 0; i < n; i++) {
             Node minNode = list.getHead();
-            TileInfo.TargetRemoteness minDist = minNode.getNearestNotAttributedTarget();
+            int minDist = minNode.getNearestNotAttributedTarget();
 
             Node node = minNode.nextNode();
             while (node != null) {
-                TileInfo.TargetRemoteness nearest = node.getNearestNotAttributedTarget();
+                int nearest = node.getNearestNotAttributedTarget();
 
-                if (nearest.distance() < minDist.distance()) {
+                if (node.distance(nearest) < minNode.distance(minDist)) {
                     minNode = node;
                     minDist = nearest;
                 }
@@ -54,9 +53,9 @@ public class GreedyHeuristic extends AbstractHeuristic {
                 node = node.nextNode();
             }
 
-            board.getAt(minDist.index()).mark();
-            minNode.getCrate().mark();
-            heuristic += minDist.distance();
+            packed.mark(minNode.target(minDist));
+            packed.mark(minNode.getCrate());
+            heuristic += minNode.distance(minDist);
 
             minNode.remove();
         }
@@ -64,7 +63,7 @@ public class GreedyHeuristic extends AbstractHeuristic {
         return heuristic;
     }
 
-    private static class LinkedList {
+    private class LinkedList {
 
         private final Node[] nodeCache;
         private int size = 0;
@@ -79,7 +78,7 @@ public class GreedyHeuristic extends AbstractHeuristic {
             }
         }
 
-        public void add(TileInfo crate) {
+        public void add(int crate) {
             Node newHead = nodeCache[size];
             newHead.set(crate);
 
@@ -115,16 +114,16 @@ public class GreedyHeuristic extends AbstractHeuristic {
         }
     }
 
-    private static class Node {
+    private class Node {
 
         private final LinkedList list;
-        private TileInfo crate;
+        private int crate;
 
         private Node previous;
         private Node next;
 
         /**
-         * Index in crate's target remoteness
+         * Index in crate's distance row
          */
         private int index = 0;
 
@@ -132,8 +131,8 @@ public class GreedyHeuristic extends AbstractHeuristic {
             this.list = list;
         }
 
-        public void set(TileInfo tile) {
-            crate = tile;
+        public void set(int crate) {
+            this.crate = crate;
             index = 0;
         }
 
@@ -145,19 +144,27 @@ public class GreedyHeuristic extends AbstractHeuristic {
             return next;
         }
 
-        public TileInfo getCrate() {
+        public int getCrate() {
             return crate;
         }
 
-        public TileInfo.TargetRemoteness getNearestNotAttributedTarget() {
-            TileInfo.TargetRemoteness[] remoteness = crate.getTargets();
+        public int target(int n) {
+            return packed.getSortedTarget(crate, n);
+        }
+
+        public int distance(int n) {
+            return packed.getSortedDistance(crate, n);
+        }
 
-            Board b = crate.getBoard();
-            while (b.getAt(remoteness[index].index()).isMarked()) {
+        /**
+         * @return the position in the distance row of the crate of the nearest target that isn't attributed
+         */
+        public int getNearestNotAttributedTarget() {
+            while (packed.isMarked(packed.getSortedTarget(crate, index))) {
                 index++;
             }
 
-            return remoteness[index];
+            return index;
         }
     }
 }
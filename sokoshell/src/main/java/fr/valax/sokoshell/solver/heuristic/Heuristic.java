@@ -7,6 +7,11 @@ import fr.valax.sokoshell.solver.State;
  */
 public interface Heuristic {
 
+    /**
+     * Heuristic of a state that can't be solved: the state is a deadlock
+     */
+    int INFINITY = Integer.MAX_VALUE;
+
     /**
      * Computes the heuristic of the given state.
      * @param s the state to compute the heuristic
@@ -14,4 +19,16 @@ public interface Heuristic {
      */
     int compute(State s);
 
+    /**
+     * Computes the heuristic of the child of a state obtained by moving one crate.
+     * The crates of the parent must be on the board.
+     *
+     * @param parent the parent state
+     * @param parentHeuristic the heuristic of the parent
+     * @param crate index of the moved crate in the crates of the parent
+     * @param from position of the crate in the parent
+     * @param to position of the crate in the child
+     * @return the heuristic of the child
+     */
+    int compute(State parent, int parentHeuristic, int crate, int from, int to);
 }
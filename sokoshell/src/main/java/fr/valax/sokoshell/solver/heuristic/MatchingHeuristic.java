@@ -0,0 +1,208 @@
+package fr.valax.sokoshell.solver.heuristic;
+
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.PushDistances;
+
+import java.util.Arrays;
+
+/**
+ * Minimum cost perfect matching between crates and targets, computed with the
+ * Hungarian algorithm (shortest augmenting paths with potentials) over the
+ * {@linkplain PushDistances push distances}. Unlike
+ * {@link GreedyHeuristic}, it never overestimates the sum of the distances of
+ * an assignment of the crates to the targets.
+ * <br>
+ * The matching of a parent is kept: a child differs by one crate, so its matching
+ * is repaired by freeing the target of the moved crate and by searching one augmenting
+ * path, in O(n²) instead of O(n³).
+ *
+ * @see <a href="http://sokobano.de/wiki/index.php?title=Solver#Minimum_Matching_Lower_Bound">Minimum matching lower bound</a>
+ */
+public class MatchingHeuristic extends AbstractHeuristic {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    // number of targets
+    private final int n;
+
+    private final PushDistances distances;
+
+    // the algorithm uses 1-based indices: row and column 0 are the virtual start of augmenting paths
+
+    // tile of the crate of each row. Rows are crates and columns are targets
+    private final int[] rows;
+    // potentials of the rows and of the columns
+    private final int[] u;
+    private final int[] v;
+    // row assigned to each column, 0 if none
+    private final int[] p;
+
+    private final int[] way;
+    private final int[] minv;
+    private final boolean[] used;
+
+    // matching of the last parent
+    private State parent;
+    private final int[] parentRows;
+    private final int[] parentU;
+    private final int[] parentV;
+    private final int[] parentP;
+
+    public MatchingHeuristic(Board board) {
+        super(board);
+        distances = board.getPackedBoard().getPushDistances();
+        n = distances.getTargetCount();
+
+        rows = new int[n + 1];
+        u = new int[n + 1];
+        v = new int[n + 1];
+        p = new int[n + 1];
+        way = new int[n + 1];
+        minv = new int[n + 1];
+        used = new boolean[n + 1];
+
+        parentRows = new int[n + 1];
+        parentU = new int[n + 1];
+        parentV = new int[n + 1];
+        parentP = new int[n + 1];
+    }
+
+    @Override
+    protected int compute(int[] crates) {
+        int m = crates.length;
+        System.arraycopy(crates, 0, rows, 1, m);
+        Arrays.fill(u, 0);
+        Arrays.fill(v, 0);
+        Arrays.fill(p, 0);
+
+        for (int i = 1; i <= m; i++) {
+            augment(i);
+        }
+
+        return cost();
+    }
+
+    /**
+     * Repairs the matching of the parent. The matching of the parent is computed
+     * if the parent isn't the parent of the previous call. When there are more
+     * targets than crates, a target freed by the repair may keep a potential that
+     * isn't zero, so the matching is computed from scratch.
+     */
+    @Override
+    public int compute(State parent, int parentHeuristic, int crate, int from, int to) {
+        if (parent.numberOfCrates() < n) {
+            return compute(childCratesOf(parent, crate, to));
+        }
+
+        if (parent != this.parent) {
+            compute(cratesOf(parent));
+            save(parent);
+        } else {
+            restore();
+        }
+
+        int row = crate + 1;
+        rows[row] = to;
+
+        for (int j = 1; j <= n; j++) {
+            if (p[j] == row) {
+                p[j] = 0;
+                break;
+            }
+        }
+
+        // keeps the potentials feasible for the new distances of the row
+        int min = INF;
+        for (int j = 1; j <= n; j++) {
+            min = Math.min(min, cost(row, j) - v[j]);
+        }
+        u[row] = min;
+
+        augment(row);
+
+        return cost();
+    }
+
+    /**
+     * Assigns a row to a column by searching the shortest augmenting path from the row.
+     * The potentials stay feasible and the edges of the matching stay tight.
+     */
+    private void augment(int row) {
+        p[0] = row;
+        int j0 = 0;
+
+        Arrays.fill(minv, INF);
+        Arrays.fill(used, false);
+
+        do {
+            used[j0] = true;
+            int i0 = p[j0];
+            int delta = INF;
+            int j1 = 0;
+
+            for (int j = 1; j <= n; j++) {
+                if (!used[j]) {
+                    int cur = cost(i0, j) - u[i0] - v[j];
+
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+            }
+
+            for (int j = 0; j <= n; j++) {
+                if (used[j]) {
+                    u[p[j]] += delta;
+                    v[j] -= delta;
+                } else {
+                    minv[j] -= delta;
+                }
+            }
+
+            j0 = j1;
+        } while (p[j0] != 0);
+
+        // reverses the augmenting path
+        do {
+            int j1 = way[j0];
+            p[j0] = p[j1];
+            j0 = j1;
+        } while (j0 != 0);
+    }
+
+    private int cost(int row, int column) {
+        return distances.distance(rows[row], column - 1);
+    }
+
+    private int cost() {
+        int cost = 0;
+        for (int j = 1; j <= n; j++) {
+            if (p[j] != 0) {
+                cost += cost(p[j], j);
+            }
+        }
+
+        return cost;
+    }
+
+    private void save(State parent) {
+        this.parent = parent;
+        System.arraycopy(rows, 0, parentRows, 0, n + 1);
+        System.arraycopy(u, 0, parentU, 0, n + 1);
+        System.arraycopy(v, 0, parentV, 0, n + 1);
+        System.arraycopy(p, 0, parentP, 0, n + 1);
+    }
+
+    private void restore() {
+        System.arraycopy(parentRows, 0, rows, 0, n + 1);
+        System.arraycopy(parentU, 0, u, 0, n + 1);
+        System.arraycopy(parentV, 0, v, 0, n + 1);
+        System.arraycopy(parentP, 0, p, 0, n + 1);
+    }
+}
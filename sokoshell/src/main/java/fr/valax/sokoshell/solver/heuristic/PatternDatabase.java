@@ -0,0 +1,649 @@
+package fr.valax.sokoshell.solver.heuristic;
+
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.Direction;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Minimal number of pushes needed to move {@code size} crates, alone on the board, to any
+ * {@code size} targets, for every placement of the crates on the tiles that aren't dead.
+ * The distance of a placement is the minimum over all positions of the player, so a
+ * pattern database doesn't depend on the player.
+ * <br>
+ * The database is computed by an exact retrograde analysis: a breadth-first search from
+ * all placements of the crates on targets that pulls the crates instead of pushing them.
+ * A state of the search is a placement and a position of the player. Walking doesn't cost
+ * a push: the states reached by walking are in the same layer. Layers are expanded in parallel.
+ * <br>
+ * Distances are stored in a byte array indexed by the rank of the placement in the
+ * combinatorial number system: the crates c<sub>0</sub> &lt; ... &lt; c<sub>size-1</sub>,
+ * numbered among the tiles that aren't dead, have rank
+ * C(c<sub>0</sub>, 1) + C(c<sub>1</sub>, 2) + ... + C(c<sub>size-1</sub>, size).
+ * {@link #UNSOLVABLE} marks a placement that can't be solved. Distances greater than
+ * {@link #MAX_DISTANCE} are truncated, so they stay lower bounds.
+ * <br>
+ * A pattern database is immutable and can be shared by threads. Databases can be cached
+ * on disk by {@link #getOrCreate(Board, int, Path)}: a file is identified by the
+ * {@linkplain #hash(Board) hash} of the level and the size of the pattern.
+ *
+ * @see <a href="http://sokobano.de/wiki/index.php?title=Solver#Pattern_Databases">Pattern databases</a>
+ */
+public class PatternDatabase {
+
+    /**
+     * 'PDB1' in ASCII
+     */
+    public static final int MAGIC = 0x50444231;
+
+    /**
+     * Directory where pattern databases are cached
+     */
+    public static final Path DEFAULT_DIRECTORY = Path.of("patterns");
+
+    /**
+     * Distance of a placement that can't be solved
+     */
+    public static final int UNSOLVABLE = 255;
+
+    public static final int MAX_DISTANCE = 254;
+
+    /**
+     * Maximal size of a pattern: crates of a state of the research are stored in a long
+     */
+    public static final int MAX_SIZE = 4;
+
+    /**
+     * Maximal number of tiles that aren't dead: a crate is stored in 8 bits
+     */
+    private static final int MAX_CRATE_TILES = 255;
+
+    private final int size;
+
+    /**
+     * Number of each tile among the tiles that aren't dead (crate tiles), -1 for other tiles
+     */
+    private final int[] crateNumbers;
+    private final int nCrateTiles;
+
+    /**
+     * binomial[r][n] is C(n, r)
+     */
+    private final long[][] binomial;
+
+    private final byte[] distances;
+
+    private PatternDatabase(Board board, int size, byte[] distances) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_SIZE);
+        }
+
+        this.size = size;
+        this.crateNumbers = new int[board.getWidth() * board.getHeight()];
+
+        int n = 0;
+        for (int i = 0; i < crateNumbers.length; i++) {
+            TileInfo tile = board.getAt(i);
+
+            if (!tile.isWall() && !tile.isDeadTile()) {
+                crateNumbers[i] = n++;
+            } else {
+                crateNumbers[i] = -1;
+            }
+        }
+        this.nCrateTiles = n;
+        this.binomial = binomial(size, n);
+
+        if (distances == null) {
+            this.distances = new byte[Math.toIntExact(placementCount())];
+            Arrays.fill(this.distances, (byte) UNSOLVABLE);
+            new Builder(board).build();
+        } else if (distances.length != placementCount()) {
+            throw new IllegalArgumentException("Invalid number of placements");
+        } else {
+            this.distances = distances;
+        }
+    }
+
+    private static long[][] binomial(int size, int n) {
+        long[][] binomial = new long[size + 1][n + 1];
+
+        for (int j = 0; j <= n; j++) {
+            binomial[0][j] = 1;
+        }
+        for (int r = 1; r <= size; r++) {
+            for (int j = 1; j <= n; j++) {
+                binomial[r][j] = binomial[r - 1][j - 1] + binomial[r][j - 1];
+            }
+        }
+
+        return binomial;
+    }
+
+    /**
+     * Computes the pattern database of a board. The board must be initialized for solvers
+     * and must not contain crates.
+     *
+     * @param board the board
+     * @param size number of crates of a pattern, between 1 and {@link #MAX_SIZE}
+     * @return the pattern database
+     * @throws IllegalArgumentException if the database is too big, see {@link #stateCount(Board, int)}
+     */
+    public static PatternDatabase create(Board board, int size) {
+        if (stateCount(board, size) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Pattern database too big");
+        }
+
+        return new PatternDatabase(board, size, null);
+    }
+
+    /**
+     * Loads the pattern database of the board from the directory. If there is no
+     * such database, it is created and written to the directory.
+     *
+     * @param board the board
+     * @param size number of crates of a pattern, between 1 and {@link #MAX_SIZE}
+     * @param directory the directory where databases are cached, or null to disable the cache
+     * @return the pattern database
+     * @throws IOException if the database can't be read or written or if the file isn't
+     * the database of the board
+     * @throws IllegalArgumentException if the database is too big, see {@link #stateCount(Board, int)}
+     */
+    public static PatternDatabase getOrCreate(Board board, int size, Path directory) throws IOException {
+        if (directory == null) {
+            return create(board, size);
+        }
+
+        long hash = hash(board);
+        Path path = directory.resolve("%016x-%d.pdb".formatted(hash, size));
+
+        if (Files.exists(path)) {
+            return read(board, size, hash, path);
+        }
+
+        PatternDatabase database = create(board, size);
+        database.write(hash, path);
+
+        return database;
+    }
+
+    private static PatternDatabase read(Board board, int size, long hash, Path path) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (dis.readInt() != MAGIC || dis.readLong() != hash || dis.readInt() != size) {
+                throw new IOException("Not the pattern database of the level: " + path);
+            }
+
+            int length = dis.readInt();
+            if (length != placementCount(board, size)) {
+                throw new IOException("Malformed pattern database: " + path);
+            }
+
+            byte[] distances = new byte[length];
+            dis.readFully(distances);
+
+            try {
+                return new PatternDatabase(board, size, distances);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed pattern database: " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the database, then moves it to path, so a database is never partially written
+     */
+    private void write(long hash, Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        // a unique file: solvers of the same level may write the same database at the same time
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeLong(hash);
+                dos.writeInt(size);
+                dos.writeInt(distances.length);
+                dos.write(distances);
+            }
+
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Hashes the walls and the targets of a board with FNV-1a. The dead tiles and
+     * the pattern databases only depend on them.
+     *
+     * @param board the board
+     * @return the hash of the board
+     */
+    public static long hash(Board board) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ board.getWidth()) * 0x100000001b3L;
+        hash = (hash ^ board.getHeight()) * 0x100000001b3L;
+
+        for (int i = 0; i < board.getWidth() * board.getHeight(); i++) {
+            TileInfo tile = board.getAt(i);
+
+            int value = tile.isWall() ? 1 : (tile.isTarget() ? 2 : 0);
+            hash = (hash ^ value) * 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns the number of states of the research done to compute a pattern database,
+     * that is the number of placements multiplied by the number of positions of the player.
+     * It is an estimation of the time needed to compute the database.
+     *
+     * @param board the board
+     * @param size number of crates of a pattern
+     * @return the number of states or {@link Long#MAX_VALUE} if a database can't be computed
+     */
+    public static long stateCount(Board board, int size) {
+        long placements = placementCount(board, size);
+        if (placements == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+
+        int floors = 0;
+        for (int i = 0; i < board.getWidth() * board.getHeight(); i++) {
+            if (!board.getAt(i).isWall()) {
+                floors++;
+            }
+        }
+
+        return placements * floors;
+    }
+
+    /**
+     * @param board the board
+     * @param size number of crates of a pattern
+     * @return the number of placements of a database of the board or {@link Long#MAX_VALUE}
+     * if a database can't be computed
+     */
+    private static long placementCount(Board board, int size) {
+        int crateTiles = 0;
+        for (int i = 0; i < board.getWidth() * board.getHeight(); i++) {
+            TileInfo tile = board.getAt(i);
+
+            if (!tile.isWall() && !tile.isDeadTile()) {
+                crateTiles++;
+            }
+        }
+
+        if (size < 1 || size > MAX_SIZE || crateTiles > MAX_CRATE_TILES) {
+            return Long.MAX_VALUE;
+        }
+
+        return binomial(size, crateTiles)[size][crateTiles];
+    }
+
+    /**
+     * Returns the distance of the placement of {@code size} crates of a state. The
+     * crates must be sorted in ascending order.
+     *
+     * @param crates crates of a state
+     * @param from index in crates of the first crate of the placement
+     * @return the minimal number of pushes needed to move the crates to targets or
+     * {@link #UNSOLVABLE} if it is impossible, e.g. if a crate is on a dead tile
+     */
+    public int distance(int[] crates, int from) {
+        long rank = 0;
+        for (int i = 0; i < size; i++) {
+            int n = crateNumbers[crates[from + i]];
+
+            if (n < 0) {
+                return UNSOLVABLE;
+            }
+
+            rank += binomial[i + 1][n];
+        }
+
+        return Byte.toUnsignedInt(distances[(int) rank]);
+    }
+
+    /**
+     * @param tile index of a tile
+     * @return the number of the tile among the tiles that aren't dead or -1 if the tile is dead or a wall
+     */
+    public int getCrateNumber(int tile) {
+        return crateNumbers[tile];
+    }
+
+    /**
+     * @return the number of tiles that aren't dead
+     */
+    public int getCrateTileCount() {
+        return nCrateTiles;
+    }
+
+    /**
+     * @return the number of placements of the crates of a pattern on the tiles that aren't dead
+     */
+    public long placementCount() {
+        return binomial[size][nCrateTiles];
+    }
+
+    /**
+     * @return the number of crates of a pattern
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes used by the distances, assuming a 64-bits JVM
+     * with compressed oops: 16 bytes of header and 8 bytes alignment
+     *
+     * @return the number of bytes used by the distances
+     */
+    public long memoryUsage() {
+        return (16L + distances.length + 7) & ~7L;
+    }
+
+    /**
+     * The retrograde analysis. A state is stored in a long: crate i in bits 8i to 8i + 7
+     * and the player from bit 32. Crates are sorted in ascending order.
+     */
+    private class Builder {
+
+        private final int width;
+        private final int height;
+
+        /**
+         * Number of each floor among the non-wall tiles, -1 for walls
+         */
+        private final int[] floors;
+        private final int nFloors;
+
+        // tile of each floor number and of each crate number
+        private final int[] floorTiles;
+        private final int[] crateTiles;
+
+        private final boolean[] targets;
+
+        /**
+         * A bit per state, indexed by rank * nFloors + floor of the player
+         */
+        private final AtomicLongArray visited;
+
+        public Builder(Board board) {
+            this.width = board.getWidth();
+            this.height = board.getHeight();
+
+            floors = new int[crateNumbers.length];
+            floorTiles = new int[crateNumbers.length];
+            crateTiles = new int[nCrateTiles];
+            targets = new boolean[crateNumbers.length];
+
+            int n = 0;
+            for (int i = 0; i < floors.length; i++) {
+                TileInfo tile = board.getAt(i);
+
+                if (tile.isWall()) {
+                    floors[i] = -1;
+                } else {
+                    floorTiles[n] = i;
+                    floors[i] = n++;
+                }
+
+                if (crateNumbers[i] >= 0) {
+                    crateTiles[crateNumbers[i]] = i;
+                }
+                targets[i] = tile.isTarget();
+            }
+            nFloors = n;
+
+            visited = new AtomicLongArray((int) ((placementCount() * nFloors + 63) >>> 6));
+        }
+
+        public void build() {
+            LongList layer = goals();
+
+            for (int distance = 0; layer.size() > 0; distance++) {
+                LongList current = layer;
+                int d = Math.min(distance, MAX_DISTANCE);
+
+                int nChunks = Math.max(1, Math.min(64, current.size() / 1024));
+                List<LongList> next = IntStream.range(0, nChunks)
+                        .parallel()
+                        .mapToObj((c) -> expand(current,
+                                (int) ((long) current.size() * c / nChunks),
+                                (int) ((long) current.size() * (c + 1) / nChunks),
+                                d))
+                        .toList();
+
+                layer = LongList.concat(next);
+            }
+        }
+
+        /**
+         * @return all placements of the crates on targets with the player anywhere
+         */
+        private LongList goals() {
+            int[] targets = IntStream.range(0, crateNumbers.length)
+                    .filter((i) -> crateNumbers[i] >= 0 && this.targets[i])
+                    .toArray();
+
+            LongList goals = new LongList();
+            if (targets.length >= size) {
+                goals(targets, new int[size], 0, 0, goals);
+            }
+
+            return goals;
+        }
+
+        private void goals(int[] targets, int[] crates, int crate, int start, LongList goals) {
+            if (crate == size) {
+                for (int player = 0; player < floors.length; player++) {
+                    if (floors[player] >= 0 && indexOf(crates, player) < 0) {
+                        goals.add(encode(crates, player));
+                    }
+                }
+
+                return;
+            }
+
+            for (int i = start; i < targets.length; i++) {
+                crates[crate] = targets[i];
+                goals(targets, crates, crate + 1, i + 1, goals);
+            }
+        }
+
+        /**
+         * Expands the states of a layer from start to end (exclusive). States reached by
+         * walking are expanded too. States reached by pulling a crate are returned.
+         */
+        private LongList expand(LongList layer, int start, int end, int distance) {
+            LongList next = new LongList();
+            LongList stack = new LongList();
+            int[] crates = new int[size];
+            int[] pulled = new int[size];
+
+            for (int i = start; i < end; i++) {
+                if (visit(layer.get(i), distance)) {
+                    stack.add(layer.get(i));
+                }
+
+                while (stack.size() > 0) {
+                    long state = stack.pop();
+                    int player = decode(state, crates);
+
+                    for (Direction dir : Direction.VALUES) {
+                        int adj = adjacent(player, dir);
+                        if (adj < 0) {
+                            continue;
+                        }
+
+                        int crate = indexOf(crates, adj);
+                        if (crate < 0) {
+                            // walk
+                            long child = encode(crates, adj);
+
+                            if (visit(child, distance)) {
+                                stack.add(child);
+                            }
+                        } else {
+                            // pull the crate: the player moves away from the crate
+                            int dest = adjacent(player, dir.negate());
+
+                            if (dest >= 0 && indexOf(crates, dest) < 0 && crateNumbers[player] >= 0) {
+                                System.arraycopy(crates, 0, pulled, 0, size);
+                                pulled[crate] = player;
+                                Arrays.sort(pulled);
+
+                                long child = encode(pulled, dest);
+                                if (!isVisited(child)) {
+                                    next.add(child);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            return next;
+        }
+
+        /**
+         * Marks the state as visited
+         *
+         * @return true if the state wasn't visited
+         */
+        private boolean visit(long state, int distance) {
+            long rank = rank(state);
+            long index = rank * nFloors + (state >>> 32);
+            long bit = 1L << index;
+
+            long old = visited.getAndAccumulate((int) (index >>> 6), bit, (a, b) -> a | b);
+            if ((old & bit) != 0) {
+                return false;
+            }
+
+            // a state of the same placement may be visited at the same time,
+            // but only by a state of the same layer
+            if (distances[(int) rank] == (byte) UNSOLVABLE) {
+                distances[(int) rank] = (byte) distance;
+            }
+
+            return true;
+        }
+
+        private boolean isVisited(long state) {
+            long index = rank(state) * nFloors + (state >>> 32);
+
+            return (visited.get((int) (index >>> 6)) & (1L << index)) != 0;
+        }
+
+        private long rank(long state) {
+            long rank = 0;
+            for (int i = 0; i < size; i++) {
+                rank += binomial[i + 1][(int) ((state >>> (8 * i)) & 0xFF)];
+            }
+
+            return rank;
+        }
+
+        private long encode(int[] crates, int player) {
+            long state = (long) floors[player] << 32;
+            for (int i = 0; i < size; i++) {
+                state |= (long) crateNumbers[crates[i]] << (8 * i);
+            }
+
+            return state;
+        }
+
+        /**
+         * Writes the tiles of the crates of the state in crates
+         *
+         * @return the tile of the player
+         */
+        private int decode(long state, int[] crates) {
+            for (int i = 0; i < size; i++) {
+                crates[i] = crateTiles[(int) ((state >>> (8 * i)) & 0xFF)];
+            }
+
+            return floorTiles[(int) (state >>> 32)];
+        }
+
+        /**
+         * @return the adjacent tile if it isn't a wall, otherwise -1
+         */
+        private int adjacent(int tile, Direction dir) {
+            int x = tile % width + dir.dirX();
+            int y = tile / width + dir.dirY();
+
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                return -1;
+            }
+
+            int adj = y * width + x;
+            return floors[adj] < 0 ? -1 : adj;
+        }
+    }
+
+    private static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * A growable array of longs
+     */
+    private static class LongList {
+
+        private long[] array = new long[16];
+        private int size;
+
+        public void add(long value) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, 2 * size);
+            }
+
+            array[size++] = value;
+        }
+
+        public long pop() {
+            return array[--size];
+        }
+
+        public long get(int index) {
+            return array[index];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public static LongList concat(List<LongList> lists) {
+            LongList list = new LongList();
+            list.array = new long[Math.max(16, lists.stream().mapToInt(LongList::size).sum())];
+
+            for (LongList l : lists) {
+                System.arraycopy(l.array, 0, list.array, list.size, l.size);
+                list.size += l.size;
+            }
+
+            return list;
+        }
+    }
+}
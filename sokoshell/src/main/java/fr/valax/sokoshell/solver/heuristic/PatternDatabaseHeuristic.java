@@ -0,0 +1,170 @@
+package fr.valax.sokoshell.solver.heuristic;
+
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.PackedBoard;
+import fr.valax.sokoshell.solver.board.PushDistances;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Additive pattern database heuristic. The crates of a state, sorted in ascending order,
+ * are split in disjoint groups of consecutive crates, so crates of a group are usually close.
+ * The heuristic is the sum of the {@linkplain PatternDatabase distances} of the groups.
+ * A push only moves one crate, so the sum is a lower bound. The last group may be
+ * smaller: a group of one crate uses the distance to the nearest target.
+ * <br>
+ * Two groups may use the same targets, which the {@link MatchingHeuristic} forbids,
+ * so the heuristic is the maximum of both lower bounds. If a group can't be solved,
+ * the heuristic is {@link Heuristic#INFINITY}.
+ * <br>
+ * The size of the groups is the greatest size, up to a maximal size, whose database
+ * can be computed in less than a maximal number of states. Databases of all sizes
+ * from 2 to this size are loaded from or cached in a directory.
+ *
+ * @see PatternDatabase
+ */
+public class PatternDatabaseHeuristic extends AbstractHeuristic {
+
+    public static final int DEFAULT_MAX_SIZE = PatternDatabase.MAX_SIZE;
+
+    /**
+     * Default maximal number of states of the research of a database: the visited states
+     * of 2^24 states use 2 MB
+     */
+    public static final long DEFAULT_MAX_STATES = 1L << 24;
+
+    private final PackedBoard packed;
+    private final MatchingHeuristic matching;
+
+    /**
+     * databases[k] is the database of groups of k crates, null for k < 2
+     */
+    private final PatternDatabase[] databases;
+    private final int size;
+
+    /**
+     * @param board the board. It must be initialized for solvers and must not contain crates
+     * @param directory where databases are cached or null
+     * @throws IOException if a database can't be read from or written to the directory
+     */
+    public PatternDatabaseHeuristic(Board board, Path directory) throws IOException {
+        this(board, DEFAULT_MAX_SIZE, DEFAULT_MAX_STATES, directory);
+    }
+
+    /**
+     * @param board the board. It must be initialized for solvers and must not contain crates
+     * @param maxSize maximal size of a group
+     * @param maxStates maximal number of states of the research of a database
+     * @param directory where databases are cached or null
+     * @throws IOException if a database can't be read from or written to the directory
+     */
+    public PatternDatabaseHeuristic(Board board, int maxSize, long maxStates, Path directory) throws IOException {
+        super(board);
+        packed = board.getPackedBoard();
+        matching = new MatchingHeuristic(board);
+
+        int size = 1;
+        while (size < Math.min(maxSize, board.getTargetCount())
+                && PatternDatabase.stateCount(board, size + 1) <= maxStates) {
+            size++;
+        }
+
+        this.size = size;
+        this.databases = new PatternDatabase[size + 1];
+        for (int k = 2; k <= size; k++) {
+            databases[k] = PatternDatabase.getOrCreate(board, k, directory);
+        }
+    }
+
+    /**
+     * Creates a heuristic for another board of the same level. The databases are immutable
+     * and shared with the other heuristic.
+     *
+     * @param board the board. It must be initialized for solvers and must not contain crates
+     * @param other a heuristic of the same level
+     */
+    public PatternDatabaseHeuristic(Board board, PatternDatabaseHeuristic other) {
+        super(board);
+        packed = board.getPackedBoard();
+        matching = new MatchingHeuristic(board);
+        size = other.size;
+        databases = other.databases;
+    }
+
+    @Override
+    protected int compute(int[] crates) {
+        int sum = sum(crates);
+        if (sum == INFINITY) {
+            return INFINITY;
+        }
+
+        return Math.max(matching.compute(crates), sum);
+    }
+
+    /**
+     * The matching of the child is repaired from the matching of the parent
+     */
+    @Override
+    public int compute(State parent, int parentHeuristic, int crate, int from, int to) {
+        int h = matching.compute(parent, parentHeuristic, crate, from, to);
+        int sum = sum(childCratesOf(parent, crate, to));
+        if (sum == INFINITY) {
+            return INFINITY;
+        }
+
+        return Math.max(h, sum);
+    }
+
+    /**
+     * @return the sum of the distances of the groups or {@link #INFINITY} if a group can't be solved
+     */
+    private int sum(int[] crates) {
+        int h = 0;
+
+        int i = 0;
+        for (; i < crates.length; i += size) {
+            int d = distance(crates, i, Math.min(size, crates.length - i));
+
+            if (d == INFINITY) {
+                return INFINITY;
+            }
+            h += d;
+        }
+
+        return h;
+    }
+
+    /**
+     * @return the distance of a group or {@link #INFINITY} if it can't be solved
+     */
+    private int distance(int[] crates, int from, int size) {
+        if (size == 1) {
+            int d = packed.getNearestTargetDistance(crates[from]);
+            return d >= PushDistances.INFINITY ? INFINITY : d;
+        } else {
+            int d = databases[size].distance(crates, from);
+            return d == PatternDatabase.UNSOLVABLE ? INFINITY : d;
+        }
+    }
+
+    /**
+     * @return the number of crates of a group
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes used by the databases
+     */
+    public long memoryUsage() {
+        long memory = 0;
+        for (int k = 2; k <= size; k++) {
+            memory += databases[k].memoryUsage();
+        }
+
+        return memory;
+    }
+}
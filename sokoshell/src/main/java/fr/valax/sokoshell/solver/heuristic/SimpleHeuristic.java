@@ -2,24 +2,37 @@ package fr.valax.sokoshell.solver.heuristic;
 
 import fr.valax.sokoshell.solver.State;
 import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.PackedBoard;
 
 /**
  * According to <a href="http://sokobano.de/wiki/index.php?title=Solver#Simple_Lower_Bound">this article</a>
  */
 public class SimpleHeuristic extends AbstractHeuristic {
 
+    private final PackedBoard packed;
+
     public SimpleHeuristic(Board board) {
         super(board);
+        packed = board.getPackedBoard();
     }
 
     /**
      * Sums the distances to the nearest goal of each of the crates of the state.
      */
-    public int compute(State s) {
+    @Override
+    protected int compute(int[] crates) {
         int h = 0;
-        for (int i : s.cratesIndices()) {
-            h += board.getAt(i).getNearestTarget().distance();
+        for (int i : crates) {
+            h += packed.getNearestTargetDistance(i);
         }
         return h;
     }
+
+    /**
+     * Only the distance of the moved crate changes
+     */
+    @Override
+    public int compute(State parent, int parentHeuristic, int crate, int from, int to) {
+        return parentHeuristic - packed.getNearestTargetDistance(from) + packed.getNearestTargetDistance(to);
+    }
 }
@@ -2,12 +2,17 @@ package fr.valax.sokoshell.solver.pathfinder;
 
 import fr.valax.sokoshell.solver.board.Board;
 import fr.valax.sokoshell.solver.board.Direction;
+import fr.valax.sokoshell.solver.board.PackedBoard;
+import fr.valax.sokoshell.solver.board.PushDistances;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
 
 import java.util.PriorityQueue;
 
 /**
- * Moves a crate from a start position to a destination.
+ * Moves a crate from a start position to a destination. When the destination is a target
+ * and the board is initialized for solvers, the {@linkplain PushDistances push distances}
+ * are used as heuristic and positions from which the crate can't reach the destination
+ * are discarded.
  */
 public class CrateAStar extends AbstractAStar {
 
@@ -17,6 +22,12 @@ public class CrateAStar extends AbstractAStar {
     private final AStarMarkSystem markSystem;
     private final Node[] nodes;
 
+    private final PackedBoard packedBoard;
+
+    // push distances and number of the target at crateDest. Null and -1 if not used
+    protected PushDistances pushDistances;
+    protected int target;
+
     public CrateAStar(Board board) {
         super(new PriorityQueue<>(2 * board.getWidth() * board.getHeight()));
         this.boardWidth = board.getWidth();
@@ -25,6 +36,7 @@ public class CrateAStar extends AbstractAStar {
         markSystem = new AStarMarkSystem(area * area);
 
         nodes = new Node[area * area];
+        packedBoard = board.getPackedBoard();
 
         for (int i = 0; i < nodes.length; i++) {
             nodes[i] = new Node();
@@ -40,6 +52,9 @@ public class CrateAStar extends AbstractAStar {
         markSystem.unmarkAll();
         queue.clear();
         crateStart.removeCrate();
+
+        pushDistances = packedBoard == null ? null : packedBoard.getPushDistances();
+        target = pushDistances == null ? -1 : pushDistances.getTargetNumber(crateDest.getIndex());
     }
 
     @Override
@@ -81,6 +96,10 @@ public class CrateAStar extends AbstractAStar {
             return null;
         }
 
+        if (crateDest != crate && pushes(playerDest, crateDest) >= PushDistances.INFINITY) {
+            return null;
+        }
+
         int i = toIndex(playerDest, crateDest);
         Node node = nodes[i];
 
@@ -114,8 +133,21 @@ public class CrateAStar extends AbstractAStar {
         return node.getCrate().isAt(crateDest);
     }
 
+    /**
+     * @return a lower bound of the number of pushes needed to move the crate to {@link #crateDest}
+     */
+    protected int pushes(TileInfo player, TileInfo crate) {
+        if (target < 0) {
+            return crate.manhattanDistance(crateDest);
+        } else if (player.manhattanDistance(crate) == 1) {
+            return pushDistances.distance(crate.getIndex(), crate.direction(player), target);
+        } else {
+            return pushDistances.distance(crate.getIndex(), target);
+        }
+    }
+
     protected int heuristic(TileInfo newPlayer, TileInfo newCrate) {
-        int h = newCrate.manhattanDistance(crateDest);
+        int h = pushes(newPlayer, newCrate);
 
         /* the player first need to move near the crate to push it
            may not be optimal for level like this:
@@ -25,7 +25,7 @@ public class CratePlayerAStar extends CrateAStar {
             Then push the crate to his destination
             Finally moves the player to his destination
          */
-        int remaining = newCrate.manhattanDistance(crateDest);
+        int remaining = pushes(newPlayer, newCrate);
         if (remaining == 0) {
             remaining = newPlayer.manhattanDistance(playerDest);
         } else {
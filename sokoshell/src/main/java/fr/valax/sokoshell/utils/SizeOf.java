@@ -5,8 +5,6 @@ import fr.valax.sokoshell.solver.WeightedState;
 import org.openjdk.jol.info.ClassLayout;
 
 import java.util.HashMap;
-import java.util.List;
-import java.util.Set;
 
 public class SizeOf {
 
@@ -38,14 +36,6 @@ public class SizeOf {
         initialized = true;
     }
 
-    public static long approxSizeOfAccurate(Set<?> set, long contentSize) {
-        return set.size() * (HASH_MAP_NODE_LAYOUT.instanceSize() + contentSize);
-    }
-
-    public static long approxSizeOf(Set<?> set, long contentSize) {
-        return set.size() * (32 + contentSize);
-    }
-
     public static ClassLayout getHashMapLayout() {
         return HASH_MAP_LAYOUT;
     }
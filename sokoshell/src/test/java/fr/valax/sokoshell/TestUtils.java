@@ -2,21 +2,45 @@ package fr.valax.sokoshell;
 
 import fr.poulpogaz.json.JsonException;
 import fr.valax.sokoshell.graphics.style.BoardStyle;
+import fr.valax.sokoshell.commands.AbstractCommand;
 import fr.valax.sokoshell.graphics.style.BoardStyleReader;
 import fr.valax.sokoshell.readers.PackReaders;
 import fr.valax.sokoshell.readers.XSBReader;
+import fr.valax.sokoshell.solver.AbstractSolver;
 import fr.valax.sokoshell.solver.Level;
 import fr.valax.sokoshell.solver.Pack;
+import fr.valax.sokoshell.solver.Solver;
+import fr.valax.sokoshell.solver.SolverParameter;
+import fr.valax.sokoshell.solver.SolverParameters;
+import fr.valax.sokoshell.solver.SolverReport;
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.Direction;
+import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import fr.valax.sokoshell.solver.heuristic.Heuristic;
+import org.junit.jupiter.api.Assertions;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
- * Load and cache packs and styles
+ * Load and cache packs and styles. Also contains a reference solver for two crates,
+ * a checker for incremental heuristics and a helper to run solvers
  */
 public class TestUtils {
 
@@ -94,4 +118,160 @@ public class TestUtils {
 
         return s;
     }
+
+
+    /**
+     * @param level a level
+     * @return a board of the level without crates, initialized for solvers
+     */
+    public static Board createBoard(Level level) {
+        Board board = new MutableBoard(level);
+        board.removeStateCrates(level.getInitialState());
+        board.initForSolver();
+
+        return board;
+    }
+
+    /**
+     * Breadth-first search from all positions of the player where a push costs 1 and walking costs 0.
+     * The board mustn't contain crates.
+     *
+     * @param board the board
+     * @param crate1 position of the first crate
+     * @param crate2 position of the second crate
+     * @return the minimal number of pushes needed to move both crates to targets
+     * or {@link Integer#MAX_VALUE} if it is impossible
+     */
+    public static int pushes(Board board, int crate1, int crate2) {
+        int size = board.getWidth() * board.getHeight();
+        Set<Long> visited = new HashSet<>();
+        Deque<int[]> queue = new ArrayDeque<>();
+
+        for (int player = 0; player < size; player++) {
+            if (!board.getAt(player).isWall() && player != crate1 && player != crate2) {
+                queue.add(new int[] {crate1, crate2, player, 0});
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int[] state = queue.pollFirst();
+            int c1 = state[0];
+            int c2 = state[1];
+            int player = state[2];
+            int dist = state[3];
+
+            if (!visited.add(((long) Math.min(c1, c2) * size + Math.max(c1, c2)) * size + player)) {
+                continue;
+            }
+            if (board.getAt(c1).isTarget() && board.getAt(c2).isTarget()) {
+                return dist;
+            }
+
+            for (Direction dir : Direction.VALUES) {
+                TileInfo adj = board.getAt(player).adjacent(dir);
+                if (adj.isWall()) {
+                    continue;
+                }
+
+                int a = adj.getIndex();
+                if (a != c1 && a != c2) {
+                    queue.addFirst(new int[] {c1, c2, a, dist});
+                } else {
+                    TileInfo dest = adj.adjacent(dir);
+                    int d = dest.getIndex();
+
+                    if (!dest.isWall() && d != c1 && d != c2) {
+                        queue.addLast(a == c1 ? new int[] {d, c2, a, dist + 1} : new int[] {c1, d, a, dist + 1});
+                    }
+                }
+            }
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Places the crates randomly on the first 20 levels of Original and checks that the
+     * heuristic of each child computed from its parent is the heuristic computed from scratch
+     *
+     * @param factory creates the heuristic of a board
+     */
+    public static void assertIncremental(Function<Board, Heuristic> factory) {
+        Pack pack = getPack(Path.of("levels8xv/Original.8xv"));
+        Random random = new Random(42);
+
+        for (int l = 0; l < 20; l++) {
+            Level level = pack.getLevel(l);
+            Board board = createBoard(level);
+
+            List<TileInfo> floors = new ArrayList<>();
+            board.forEachNotWall(floors::add);
+
+            Heuristic h = factory.apply(board);
+            for (int i = 0; i < 20; i++) {
+                Collections.shuffle(floors, random);
+
+                int[] crates = new int[level.getInitialState().numberOfCrates()];
+                for (int j = 0; j < crates.length; j++) {
+                    crates[j] = floors.get(j).getIndex();
+                }
+                Arrays.sort(crates);
+
+                State parent = new State(0, crates, 0, null);
+                int parentHeuristic = h.compute(parent);
+
+                for (int j = 0; j < crates.length; j++) {
+                    TileInfo crate = board.getAt(crates[j]);
+
+                    for (Direction dir : Direction.VALUES) {
+                        TileInfo dest = crate.adjacent(dir);
+                        if (dest.isSolid() || Arrays.binarySearch(crates, dest.getIndex()) >= 0) {
+                            continue;
+                        }
+
+                        int[] childCrates = crates.clone();
+                        childCrates[j] = dest.getIndex();
+                        Arrays.sort(childCrates);
+
+                        int expected = h.compute(new State(0, childCrates, 0, null));
+                        int actual = h.compute(parent, parentHeuristic, j, crate.getIndex(), dest.getIndex());
+                        Assertions.assertEquals(expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves a level with the deadlock table at the root of the repository.
+     * The deadlocks of the level aren't cached.
+     *
+     * @param solver the solver
+     * @param level the level to solve
+     * @param arguments pairs of parameter name and argument, they override the defaults
+     * @return the report of the solver
+     */
+    public static SolverReport solve(Solver solver, Level level, String... arguments) {
+        Map<String, String> args = new HashMap<>();
+        args.put(AbstractSolver.DEADLOCK_TABLE, "../4x4.table");
+        args.put(AbstractSolver.LEVEL_DEADLOCKS_CACHE, SolverParameter.Directory.NONE);
+        for (int i = 0; i + 1 < arguments.length; i += 2) {
+            args.put(arguments[i], arguments[i + 1]);
+        }
+
+        List<SolverParameter> params = solver.getParameters();
+        for (SolverParameter p : params) {
+            String arg = args.get(p.getName());
+
+            if (arg != null) {
+                try {
+                    p.set(arg);
+                } catch (AbstractCommand.InvalidArgument e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        return solver.solve(new SolverParameters(solver.getName(), level, params));
+    }
 }
@@ -4,11 +4,16 @@ import fr.valax.sokoshell.TestUtils;
 import fr.valax.sokoshell.graphics.style.BasicStyle;
 import fr.valax.sokoshell.graphics.style.BoardStyle;
 import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 public class AbstractSolverTest {
 
@@ -75,7 +80,7 @@ public class AbstractSolverTest {
             board.computeDeadTiles();
             board.addStateCrates(init);
 
-            System.out.println(FreezeDeadlockDetector.checkFreezeDeadlock(board, level.getInitialState()));
+            System.out.println(new FreezeDeadlockDetector(board).checkFreezeDeadlock(level.getInitialState()));
 
         }
     }
@@ -93,12 +98,12 @@ public class AbstractSolverTest {
         board.removeStateCrates(init);
         board.computeDeadTiles();
 
-        State myState = new State(275, new int[] {91, 122, 184, 182, 181, 180, 198, 178, 108, 176, 177, 199, 146, 147, 148, 215, 237, 127, 221, 230, 231, 232, 233, 234, 216, 236, 238, 239, 240, 241, 242, 243, 244, 268, 269, 270, 271, 272, 253, 251, 254, 202, 280, 260, 261, 281, 282}, null);
+        State myState = new State(275, new int[] {91, 108, 122, 127, 146, 147, 148, 176, 177, 178, 180, 181, 182, 184, 198, 199, 202, 215, 216, 221, 230, 231, 232, 233, 234, 236, 237, 238, 239, 240, 241, 242, 243, 244, 251, 253, 254, 260, 261, 268, 269, 270, 271, 272, 280, 281, 282}, 0, null);
 
         board.addStateCrates(myState);
 
         style.print(board, myState.playerPos() % board.getWidth(), myState.playerPos() / board.getWidth());
-        System.out.println(FreezeDeadlockDetector.checkFreezeDeadlock(board, myState));
+        System.out.println(new FreezeDeadlockDetector(board).checkFreezeDeadlock(myState));
     }
 
     @Test
@@ -114,10 +119,67 @@ public class AbstractSolverTest {
         board.removeStateCrates(init);
         board.computeDeadTiles();
 
-        State myState = new State(33, new int[] {16, 18, 20, 22, 17, 32, 21, 29, 31, 43, 48, 122, 30, 61, 68, 83, 73, 74, 127, 150, 162, 139, 140, 172, 176, 151, 152, 158, 163, 177, 165, 166, 171, 179}, null);
+        State myState = new State(33, new int[] {16, 17, 18, 20, 21, 22, 29, 30, 31, 32, 43, 48, 61, 68, 73, 74, 83, 122, 127, 139, 140, 150, 151, 152, 158, 162, 163, 165, 166, 171, 172, 176, 177, 179}, 0, null);
         board.addStateCrates(myState);
 
         style.print(board, myState.playerPos() % board.getWidth(), myState.playerPos() / board.getWidth());
-        System.out.println(FreezeDeadlockDetector.checkFreezeDeadlock(board, myState));
+        System.out.println(new FreezeDeadlockDetector(board).checkFreezeDeadlock(myState));
+    }
+
+    /**
+     * Compares a detector that checks moves without doing them
+     * with a new detector used after the move is done
+     */
+    @Test
+    void freezeDeadlockMoveTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Original.8xv"));
+        Random random = new Random(42);
+
+        for (int l = 0; l < 10; l++) {
+            Level level = pack.levels().get(l);
+            Board board = new MutableBoard(level);
+            State init = level.getInitialState();
+
+            board.computeFloors();
+            board.removeStateCrates(init);
+            board.computeDeadTiles();
+
+            List<TileInfo> floors = new ArrayList<>();
+            board.forEachNotWall(floors::add);
+
+            FreezeDeadlockDetector detector = new FreezeDeadlockDetector(board);
+            for (int i = 0; i < 200; i++) {
+                List<TileInfo> crates = new ArrayList<>();
+                for (TileInfo floor : floors) {
+                    if (random.nextInt(3) == 0) {
+                        floor.addCrate();
+                        crates.add(floor);
+                    }
+                }
+
+                for (TileInfo crate : crates) {
+                    for (Direction dir : Direction.VALUES) {
+                        TileInfo dest = crate.adjacent(dir);
+                        if (dest.isSolid()) {
+                            continue;
+                        }
+
+                        boolean deadlock = detector.checkFreezeDeadlock(crate.getIndex(), dest.getIndex());
+
+                        crate.removeCrate();
+                        dest.addCrate();
+                        boolean expected = new FreezeDeadlockDetector(board).checkFreezeDeadlock(dest.getIndex());
+                        dest.removeCrate();
+                        crate.addCrate();
+
+                        Assertions.assertEquals(expected, deadlock);
+                    }
+                }
+
+                for (TileInfo crate : crates) {
+                    crate.removeCrate();
+                }
+            }
+        }
     }
 }
@@ -3,7 +3,10 @@ package fr.valax.sokoshell.solver;
 import fr.valax.sokoshell.TestUtils;
 import fr.valax.sokoshell.graphics.style.BoardStyle;
 import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.board.PackedBoard;
+import fr.valax.sokoshell.solver.board.PushDistances;
 import fr.valax.sokoshell.solver.board.Room;
 import fr.valax.sokoshell.solver.board.Tunnel;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
@@ -11,9 +14,14 @@ import org.junit.jupiter.api.Test;
 import org.opentest4j.AssertionFailedError;
 
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,6 +39,77 @@ public class BoardTest {
         assertEquals(4, i / board.getWidth());
     }
 
+    @Test
+    void bitboardTest() {
+        // a level wider than 64 tiles: rows are made of two longs
+        StringBuilder wide = new StringBuilder();
+        wide.append("#".repeat(70)).append('\n');
+        for (int y = 0; y < 6; y++) {
+            wide.append('#');
+            for (int x = 1; x < 69; x++) {
+                wide.append(x == 1 && y == 0 ? '@' : (x % 7 == 3 && y % 3 != 1) ? '#' : ' ');
+            }
+            wide.append("#\n");
+        }
+        wide.append("#".repeat(70)).append('\n');
+
+        Random random = new Random(42);
+        checkBitboard(new MutableBoard(TestUtils.getLevel(wide.toString())), random);
+        for (int i = 0; i < 5; i++) {
+            checkBitboard(new MutableBoard(TestUtils.getLevel(Path.of("levels8xv/Original.8xv"), i)), random);
+        }
+    }
+
+    private void checkBitboard(MutableBoard board, Random random) {
+        ReachableTiles reachable = new ReachableTiles(board);
+        int size = board.getWidth() * board.getHeight();
+
+        for (int i = 0; i < 200; i++) {
+            // random crates
+            for (int j = 0; j < size; j++) {
+                TileInfo tile = board.getAt(j);
+
+                if (!tile.isWall()) {
+                    tile.removeCrate();
+
+                    if (random.nextInt(4) == 0) {
+                        tile.addCrate();
+                    }
+                }
+            }
+
+            TileInfo player = board.getAt(random.nextInt(size));
+            if (player.isSolid()) {
+                continue;
+            }
+
+            // flood fill
+            boolean[] expected = new boolean[size];
+            int expectedTopLeft = player.getIndex();
+            Deque<TileInfo> queue = new ArrayDeque<>();
+            queue.add(player);
+            expected[player.getIndex()] = true;
+            while (!queue.isEmpty()) {
+                TileInfo tile = queue.poll();
+                expectedTopLeft = Math.min(expectedTopLeft, tile.getIndex());
+
+                for (Direction dir : Direction.VALUES) {
+                    TileInfo adj = tile.adjacent(dir);
+
+                    if (!adj.isSolid() && !expected[adj.getIndex()]) {
+                        expected[adj.getIndex()] = true;
+                        queue.add(adj);
+                    }
+                }
+            }
+
+            assertEquals(expectedTopLeft, reachable.findReachableCases(player));
+            for (int j = 0; j < size; j++) {
+                assertEquals(expected[j], reachable.isReachable(board.getAt(j)));
+            }
+        }
+    }
+
     // ***************
     // * TUNNEL TEST *
     // ***************
@@ -48,7 +127,6 @@ public class BoardTest {
 
         Level level = TestUtils.getLevel(Path.of("levels8xv/Original.8xv"));
         Board board = new MutableBoard(level);
-        State.initZobristValues(board.getWidth() * board.getHeight());
         board.removeStateCrates(level.getInitialState());
         board.initForSolver();
 
@@ -428,6 +506,132 @@ public class BoardTest {
         }
     }
 
+    /**
+     * A board initialized by copying another board must be the same as a board initialized from scratch
+     */
+    @Test
+    void initForSolverCopyTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Original.8xv"));
+
+        for (int l = 0; l < 20; l++) {
+            Level level = pack.getLevel(l);
+            MutableBoard expected = new MutableBoard(level);
+            expected.removeStateCrates(level.getInitialState());
+            expected.initForSolver();
+
+            MutableBoard board = new MutableBoard(level);
+            board.removeStateCrates(level.getInitialState());
+            board.initForSolver(expected);
+
+            assertEquals(expected.getTargetCount(), board.getTargetCount());
+            assertEquals(expected.isGoalRoomLevel(), board.isGoalRoomLevel());
+            assertEquals(expected.getTunnels().size(), board.getTunnels().size());
+            assertEquals(expected.getRooms().size(), board.getRooms().size());
+            assertSame(expected.getPackedBoard().getPushDistances(), board.getPackedBoard().getPushDistances());
+
+            for (int i = 0; i < expected.getWidth() * expected.getHeight(); i++) {
+                TileInfo e = expected.getAt(i);
+                TileInfo t = board.getAt(i);
+
+                assertEquals(e.isDeadTile(), t.isDeadTile());
+                assertEquals(expected.getTunnels().indexOf(e.getTunnel()), board.getTunnels().indexOf(t.getTunnel()));
+                assertEquals(expected.getRooms().indexOf(e.getRoom()), board.getRooms().indexOf(t.getRoom()));
+                assertEquals(expected.getPackedBoard().isDeadTile(i), board.getPackedBoard().isDeadTile(i));
+
+                for (Direction dir : Direction.VALUES) {
+                    TileInfo eExit = e.getTunnelExit() == null ? null : e.getTunnelExit().getExit(dir);
+                    TileInfo tExit = t.getTunnelExit() == null ? null : t.getTunnelExit().getExit(dir);
+
+                    assertEquals(eExit == null ? -1 : eExit.getIndex(), tExit == null ? -1 : tExit.getIndex());
+                    if (tExit != null) {
+                        assertSame(board, tExit.getBoard());
+                    }
+                }
+            }
+
+            for (int r = 0; r < expected.getRooms().size(); r++) {
+                Room e = expected.getRooms().get(r);
+                Room room = board.getRooms().get(r);
+
+                assertEquals(e.isGoalRoom(), room.isGoalRoom());
+                assertEquals(Objects.requireNonNullElse(e.getTunnels(), List.of()).size(),
+                        Objects.requireNonNullElse(room.getTunnels(), List.of()).size());
+                assertEquals(e.getPackingOrder() == null, room.getPackingOrder() == null);
+                for (int t = 0; room.getTunnels() != null && t < room.getTunnels().size(); t++) {
+                    assertEquals(expected.getTunnels().contains(e.getTunnels().get(t)),
+                            board.getTunnels().contains(room.getTunnels().get(t)));
+                }
+            }
+        }
+    }
+
+    /**
+     * The packed board must describe the same tiles as the board after pushes, and a copy
+     * of a board must have its own packed board
+     */
+    @Test
+    void packedBoardTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Original.8xv"));
+        Random random = new Random(42);
+
+        for (int l = 0; l < 20; l++) {
+            Level level = pack.getLevel(l);
+            MutableBoard board = new MutableBoard(level);
+            State init = level.getInitialState();
+            board.removeStateCrates(init);
+            board.initForSolver();
+            board.addStateCrates(init);
+
+            assertPackedBoardEquals(board);
+
+            List<TileInfo> crates = new ArrayList<>();
+            board.forEachNotWall((t) -> {
+                if (t.anyCrate()) {
+                    crates.add(t);
+                }
+            });
+
+            MutableBoard copy = null;
+            for (int i = 0; i < 200; i++) {
+                int c = random.nextInt(crates.size());
+                TileInfo crate = crates.get(c);
+                TileInfo dest = crate.adjacent(Direction.VALUES[random.nextInt(4)]);
+
+                if (!dest.isSolid()) {
+                    crate.removeCrate();
+                    dest.addCrate();
+                    crates.set(c, dest);
+                }
+
+                if (i == 100) {
+                    copy = new MutableBoard(board, true);
+                }
+            }
+
+            assertPackedBoardEquals(board);
+            assertNotNull(copy);
+            assertNotSame(board.getPackedBoard(), copy.getPackedBoard());
+            assertSame(board.getPackedBoard().getPushDistances(), copy.getPackedBoard().getPushDistances());
+            assertPackedBoardEquals(copy);
+        }
+    }
+
+    private void assertPackedBoardEquals(Board board) {
+        PackedBoard packed = board.getPackedBoard();
+
+        for (int i = 0; i < board.getWidth() * board.getHeight(); i++) {
+            TileInfo t = board.getAt(i);
+
+            assertEquals(t.getTile(), packed.getTile(i));
+            assertEquals(t.isWall(), packed.isWall(i));
+            assertEquals(t.isTarget() || t.isCrateOnTarget(), packed.isTarget(i));
+            assertEquals(t.anyCrate(), packed.anyCrate(i));
+            assertEquals(t.isCrate(), packed.isCrate(i));
+            assertEquals(t.isCrateOnTarget(), packed.isCrateOnTarget(i));
+            assertEquals(t.isDeadTile(), packed.isDeadTile(i));
+        }
+    }
+
     @Test
     void tileToTargetsDistancesTest() {
         Level level = TestUtils.getLevel(Path.of("TIPEex.8xv"), 0);
@@ -441,10 +645,121 @@ public class BoardTest {
 
         for (int y = 0; y < board.getHeight(); y++) {
             for (int x = 0; x < board.getWidth(); x++) {
-                //System.out.printf("(%d,%d) : %s%n", x, y, Arrays.toString(map.getAt(x, y).getTargets()));
-                System.out.printf("%d", board.getAt(x, y).getNearestTarget().distance());
+                System.out.printf("%d", board.getPackedBoard().getNearestTargetDistance(board.getIndex(x, y)));
             }
             System.out.println();
         }
     }
+
+    @Test
+    void pushDistancesTest() {
+        Level level = TestUtils.getLevel("""
+                #######
+                #@$  .#
+                ### ###
+                  ###
+                """);
+
+        Board board = new MutableBoard(level);
+        board.removeStateCrates(level.getInitialState());
+        board.initForSolver();
+
+        PushDistances distances = board.getPackedBoard().getPushDistances();
+        assertEquals(1, distances.getTargetCount());
+        assertEquals(board.getIndex(5, 1), distances.getTarget(0));
+        assertEquals(0, distances.getTargetNumber(board.getIndex(5, 1)));
+        assertEquals(-1, distances.getTargetNumber(board.getIndex(2, 1)));
+
+        int crate = board.getIndex(2, 1);
+        assertEquals(3, distances.distance(crate, Direction.LEFT, 0));
+        // the player can't walk around the crate
+        assertEquals(PushDistances.INFINITY, distances.distance(crate, Direction.RIGHT, 0));
+        assertEquals(3, distances.distance(crate, 0));
+
+        // the tile below is a dead end
+        int crate2 = board.getIndex(3, 1);
+        assertEquals(2, distances.distance(crate2, Direction.LEFT, 0));
+        assertEquals(PushDistances.INFINITY, distances.distance(crate2, Direction.DOWN, 0));
+
+        assertEquals(0, distances.distance(board.getIndex(5, 1), 0));
+        assertEquals(PushDistances.INFINITY, distances.distance(board.getIndex(1, 1), 0));
+        assertEquals(PushDistances.INFINITY, distances.distance(board.getIndex(0, 0), 0));
+        assertEquals(3, board.getPackedBoard().getNearestTargetDistance(crate));
+    }
+
+    /**
+     * Push distances must be the ones found by a forward research of a crate alone on the board
+     */
+    @Test
+    void pushDistancesResearchTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+
+        for (int l = 0; l < 10; l++) {
+            Level level = pack.getLevel(l);
+            Board board = new MutableBoard(level);
+            board.removeStateCrates(level.getInitialState());
+            board.initForSolver();
+
+            PushDistances distances = board.getPackedBoard().getPushDistances();
+            board.forEachNotWall((tile) -> {
+                for (Direction side : Direction.VALUES) {
+                    TileInfo player = tile.adjacent(side);
+                    if (player.isWall()) {
+                        continue;
+                    }
+
+                    int[] expected = pushes(board, tile.getIndex(), player.getIndex(), distances);
+                    for (int t = 0; t < distances.getTargetCount(); t++) {
+                        assertEquals(expected[t], distances.distance(tile.getIndex(), side, t));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 0-1 breadth-first search where a push costs 1 and walking costs 0
+     *
+     * @return the number of pushes to move the crate to each target
+     */
+    private int[] pushes(Board board, int crate, int player, PushDistances distances) {
+        int size = board.getWidth() * board.getHeight();
+        int[] result = new int[distances.getTargetCount()];
+        Arrays.fill(result, PushDistances.INFINITY);
+
+        boolean[] visited = new boolean[size * size];
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] {crate, player, 0});
+
+        while (!queue.isEmpty()) {
+            int[] state = queue.pollFirst();
+            int c = state[0];
+            int p = state[1];
+
+            if (visited[c * size + p]) {
+                continue;
+            }
+            visited[c * size + p] = true;
+
+            int target = distances.getTargetNumber(c);
+            if (target >= 0) {
+                result[target] = Math.min(result[target], state[2]);
+            }
+
+            for (Direction dir : Direction.VALUES) {
+                TileInfo adj = board.getAt(p).adjacent(dir);
+                if (adj.isWall()) {
+                    continue;
+                }
+
+                if (adj.getIndex() != c) {
+                    queue.addFirst(new int[] {c, adj.getIndex(), state[2]});
+                } else if (!adj.adjacent(dir).isWall()) {
+                    queue.addLast(new int[] {adj.adjacent(dir).getIndex(), c, state[2] + 1});
+                }
+            }
+        }
+
+        return result;
+    }
 }
@@ -0,0 +1,83 @@
+package fr.valax.sokoshell.solver;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CorralBudgetTest {
+
+    @Test
+    void adaptTest() {
+        CorralBudget budget = new CorralBudget(1000, true);
+
+        // a quarter of the researches find a deadlock, the others give up: raise the budget
+        window(budget, 4, 1000);
+        assertEquals(2000, budget.maxStates());
+
+        // almost no deadlock and researches give up: lower the budget
+        window(budget, 1000, 2000);
+        assertEquals(1000, budget.maxStates());
+
+        // no deadlock: pause researches
+        window(budget, -1, 10);
+        int researches = 0;
+        for (int i = 0; i < 160; i++) {
+            if (budget.shouldResearch()) {
+                researches++;
+            }
+        }
+        assertEquals(10, researches);
+
+        // a probe finds a deadlock: restart researches without waiting the end of the window
+        budget.researchDone(true, 10);
+        assertTrue(budget.shouldResearch());
+        assertTrue(budget.shouldResearch());
+
+        CorralBudget.Statistics stats = budget.getStatistics();
+        assertEquals(3 * 128 + 1, stats.researches());
+        assertEquals(32 + 1 + 1, stats.deadlocks());
+        assertEquals(150, stats.skipped());
+    }
+
+    @Test
+    void deadlockRateTest() {
+        CorralBudget budget = new CorralBudget(1000, true);
+
+        // 2 deadlocks of 128: between both rates, the budget doesn't change
+        window(budget, 100, 1000);
+        assertEquals(1000, budget.maxStates());
+
+        // 3 deadlocks of 128: raise the budget
+        window(budget, 50, 1000);
+        assertEquals(2000, budget.maxStates());
+
+        // researches rarely give up: the budget doesn't change
+        window(budget, 1000, 10);
+        assertEquals(2000, budget.maxStates());
+    }
+
+    @Test
+    void constantTest() {
+        CorralBudget budget = new CorralBudget(1000, false);
+
+        window(budget, -1, 1000);
+        assertEquals(1000, budget.maxStates());
+        assertTrue(budget.shouldResearch());
+    }
+
+    /**
+     * Simulates a window of 128 researches
+     *
+     * @param deadlockPeriod one research every deadlockPeriod finds a deadlock. Negative for none
+     * @param visited number of states visited by the researches that don't find a deadlock
+     */
+    private void window(CorralBudget budget, int deadlockPeriod, int visited) {
+        for (int i = 0; i < 128; i++) {
+            if (deadlockPeriod > 0 && i % deadlockPeriod == 0) {
+                budget.researchDone(true, 10);
+            } else {
+                budget.researchDone(false, visited);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package fr.valax.sokoshell.solver;
 
 import fr.valax.sokoshell.TestUtils;
 import fr.valax.sokoshell.graphics.style.BasicStyle;
+import fr.valax.sokoshell.solver.board.Direction;
 import fr.valax.sokoshell.solver.board.MutableBoard;
 import fr.valax.sokoshell.solver.board.tiles.Tile;
 import fr.valax.sokoshell.solver.board.tiles.TileInfo;
@@ -10,8 +11,11 @@ import org.junit.jupiter.api.Test;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 public class CorralDetectorTest {
 
     @Test
@@ -126,8 +130,6 @@ public class CorralDetectorTest {
                 #######
                 """);
 
-        State.initZobristValues(100);
-
         MutableBoard board = new MutableBoard(level);
         board.getCorralDetector().findCorral(board, level.getPlayerX(), level.getPlayerY());
         board.getCorralDetector().preComputePICorral(board, level.getInitialState().cratesIndices());
@@ -140,6 +142,116 @@ public class CorralDetectorTest {
         }
     }
 
+    @Test
+    void incrementalTest() {
+        Random random = new Random(42);
+
+        for (int levelI = 0; levelI < 10; levelI++) {
+            Level level = TestUtils.getLevel(Path.of("levels8xv/Original.8xv"), levelI);
+            MutableBoard board = new MutableBoard(level);
+            board.removeStateCrates(level.getInitialState());
+
+            CorralDetector incremental = new CorralDetector(board);
+            CorralDetector full = new CorralDetector(board);
+            CorralDetector unionFind = new CorralDetector(board);
+            int[] crates = level.getInitialState().cratesIndices().clone();
+
+            for (int i = 0; i < 2000; i++) {
+                // push a random crate, sometimes many times to test the fallback
+                int n = random.nextInt(10) == 0 ? 5 : 1;
+                for (int j = 0; j < n; j++) {
+                    randomPush(board, crates, random);
+                }
+
+                addCrates(board, crates);
+                TileInfo player = randomFloor(board, random);
+                incremental.findCorral(board, player.getX(), player.getY(), crates);
+                // forces a full rebuild
+                full.findCorral(board, player.getX(), player.getY());
+                full.findCorral(board, player.getX(), player.getY(), crates);
+                unionFind.findCorral(board, player.getX(), player.getY());
+
+                assertSameCorrals(board, unionFind, incremental);
+                assertSameCorrals(board, full, incremental);
+
+                incremental.findPICorral(board, crates);
+                full.findPICorral(board, crates);
+                for (int crate : crates) {
+                    for (Direction dir : Direction.VALUES) {
+                        TileInfo tile = board.getAt(crate).adjacent(dir);
+
+                        if (!tile.isSolid()) {
+                            assertEquals(full.findCorral(tile).isPICorral(), incremental.findCorral(tile).isPICorral());
+                        }
+                    }
+                }
+
+                removeCrates(board, crates);
+            }
+
+            assertTrue(incremental.getLabels().getIncrementalUpdates() > 0);
+            assertTrue(incremental.getLabels().getFullUpdates() > 0);
+        }
+    }
+
+    private static void assertSameCorrals(MutableBoard board, CorralDetector expected, CorralDetector actual) {
+        assertEquals(expected.getRealNumberOfCorral(), actual.getRealNumberOfCorral());
+
+        for (int i = 0; i < board.getWidth() * board.getHeight(); i++) {
+            TileInfo tile = board.getAt(i);
+
+            if (!tile.isSolid()) {
+                Corral e = expected.findCorral(tile);
+                Corral a = actual.findCorral(tile);
+
+                assertEquals(e.getTopX(), a.getTopX());
+                assertEquals(e.getTopY(), a.getTopY());
+                assertEquals(e.containsPlayer(), a.containsPlayer());
+            }
+        }
+    }
+
+    private static void randomPush(MutableBoard board, int[] crates, Random random) {
+        addCrates(board, crates);
+
+        for (int tries = 0; tries < 10; tries++) {
+            int crate = random.nextInt(crates.length);
+            Direction dir = Direction.VALUES[random.nextInt(4)];
+            TileInfo tile = board.getAt(crates[crate]);
+
+            if (!tile.adjacent(dir).isSolid() && !tile.adjacent(dir.negate()).isSolid()) {
+                tile.removeCrate();
+                tile.adjacent(dir).addCrate();
+                crates[crate] = tile.adjacent(dir).getIndex();
+                break;
+            }
+        }
+
+        removeCrates(board, crates);
+    }
+
+    private static void addCrates(MutableBoard board, int[] crates) {
+        for (int crate : crates) {
+            board.getAt(crate).addCrate();
+        }
+    }
+
+    private static void removeCrates(MutableBoard board, int[] crates) {
+        for (int crate : crates) {
+            board.getAt(crate).removeCrate();
+        }
+    }
+
+    private static TileInfo randomFloor(MutableBoard board, Random random) {
+        while (true) {
+            TileInfo tile = board.getAt(random.nextInt(board.getWidth() * board.getHeight()));
+
+            if (!tile.isSolid()) {
+                return tile;
+            }
+        }
+    }
+
     private static void print(Collection<Corral> corrals) {
         System.out.println("~~~~~~~~~~~~~~~~~~~~");
         System.out.printf("Number of corrals: %d%n", corrals.size());
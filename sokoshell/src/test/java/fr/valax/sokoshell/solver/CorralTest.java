@@ -3,10 +3,13 @@ package fr.valax.sokoshell.solver;
 import fr.valax.sokoshell.TestUtils;
 import fr.valax.sokoshell.graphics.style.BasicStyle;
 import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.collections.ClockCache;
 import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 public class CorralTest {
 
     @Test
@@ -353,4 +356,44 @@ public class CorralTest {
             System.out.printf("%d - %d. pi-corral? %s deadlock? %s%n", c.getTopX(), c.getTopY(), c.isPICorral(), c.isDeadlock(state));
         }
     }
+
+    @Test
+    void outOfBudgetResearchIsNotCached() {
+        Level level = TestUtils.getLevel(Path.of("levels8xv/Original.8xv"), 3);
+        MutableBoard board = new MutableBoard(level);
+        CorralDetector corralDetector = board.getCorralDetector();
+
+        int[] crates = new int[] {
+                board.getIndex(3, 7),
+                board.getIndex(3, 6),
+                board.getIndex(4, 6)
+        };
+
+        int player = board.getIndex(1, 3);
+
+        board.removeStateCrates(level.getInitialState());
+        board.computeFloors();
+        board.computeDeadTiles();
+
+        State state = new State(player, crates, 0, null);
+        board.addStateCrates(state);
+
+        ClockCache cache = new ClockCache(1024);
+        corralDetector.setDeadlockTable(FlatDeadlockTable.of(DeadlockTable.NOT_DEADLOCK));
+        corralDetector.setNotDeadlockCache(cache);
+        corralDetector.setBudget(new CorralBudget(1, false));
+
+        corralDetector.findCorral(board, 1, 3);
+        corralDetector.findPICorral(board, state.cratesIndices());
+
+        Corral corral = corralDetector.findCorral(board.getAt(4, 7));
+        assertTrue(corral.isPICorral());
+
+        // the research gives up: nothing is proved, so the corral isn't cached
+        assertFalse(corral.isDeadlock(state, true));
+        assertEquals(0, cache.size());
+
+        corralDetector.setBudget(new CorralBudget(10_000, false));
+        assertTrue(corral.isDeadlock(state, true));
+    }
 }
@@ -0,0 +1,58 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.TestUtils;
+import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlockPatternStoreTest {
+
+    @Test
+    void matchTest() {
+        Level level = TestUtils.getLevel("""
+                ########
+                #   #  #
+                #.  #  #
+                #@  $  #
+                ########
+                """);
+        MutableBoard board = new MutableBoard(level);
+        board.removeStateCrates(level.getInitialState());
+
+        TileInfo crate = board.getAt(4, 3);
+        TileInfo other = board.getAt(2, 1);
+        int left = board.getIndex(1, 3);
+        int right = board.getIndex(6, 3);
+
+        // the crate separates the left part from the right part
+        crate.addCrate();
+        ReachableTiles reachable = new ReachableTiles(board);
+        reachable.findReachableCases(board.getAt(left));
+
+        DeadlockPatternStore store = new DeadlockPatternStore(board);
+        store.add(new int[] {crate.getIndex()}, reachable, board);
+        assertEquals(1, store.size());
+
+        assertTrue(store.isDeadlock(board, new int[] {crate.getIndex()}, left));
+        assertFalse(store.isDeadlock(board, new int[] {crate.getIndex()}, right));
+        assertTrue(store.isDeadlock(board, crate, left));
+
+        // more crates
+        other.addCrate();
+        assertTrue(store.isDeadlock(board, new int[] {other.getIndex(), crate.getIndex()}, left));
+        assertFalse(store.isDeadlock(board, other, left));
+
+        // less crates
+        crate.removeCrate();
+        assertFalse(store.isDeadlock(board, new int[] {other.getIndex()}, left));
+
+        // moving a crate into the pattern, without doing the move
+        assertTrue(store.isDeadlock(board, other.getIndex(), crate.getIndex(), left));
+        assertFalse(crate.anyCrate());
+
+        assertEquals(new CacheStatistics(1, 2, 1), store.getPushStatistics());
+        assertEquals(new CacheStatistics(1, 2, 2), store.getCorralStatistics());
+    }
+}
@@ -11,9 +11,17 @@ import fr.valax.sokoshell.utils.PerformanceMeasurer;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DeadlockTableTest {
 
@@ -22,7 +30,6 @@ public class DeadlockTableTest {
 
     @Test
     void test() {
-        State.initZobristValues(100);
         DeadlockTable table = DeadlockTable.generate2(4, -1);
         //print(table, 4);
         try {
@@ -60,7 +67,6 @@ public class DeadlockTableTest {
 
     @Test
     void write() throws IOException {
-        State.initZobristValues(100);
         DeadlockTable table = DeadlockTable.generate(3);
         print(table, 3);
 
@@ -74,8 +80,6 @@ public class DeadlockTableTest {
 
     @Test
     void multithreadedVsMonoThread() {
-        State.initZobristValues(100);
-
         DeadlockTable table = DeadlockTable.generate2(3, -1);
         DeadlockTable table2 = DeadlockTable.generate(3);
 
@@ -116,11 +120,115 @@ public class DeadlockTableTest {
 
     @Test
     void countNotDetected() throws IOException {
-        State.initZobristValues(100);
         DeadlockTable table = DeadlockTable.read(Path.of("../4x4.table"));
         System.out.println(DeadlockTable.countNotDetectedDeadlock(table, 4));
     }
 
+    @Test
+    void flatTableTest() throws IOException {
+        DeadlockTable tree = DeadlockTable.generate(3);
+        FlatDeadlockTable flat = FlatDeadlockTable.of(tree);
+
+        Path tablePath = Files.createTempFile("3x3", ".table");
+        FlatDeadlockTable mapped;
+        try {
+            flat.write(tablePath);
+            mapped = FlatDeadlockTable.load(tablePath);
+        } finally {
+            Files.deleteIfExists(tablePath);
+        }
+        assertEquals(flat.nNodes(), mapped.nNodes());
+
+        assertSameDeadlocks(tree, flat, mapped);
+    }
+
+    @Test
+    void generatorTest() throws IOException, InterruptedException {
+        DeadlockTable tree = DeadlockTable.generate(3);
+
+        Path checkpoints = Files.createTempDirectory("checkpoints");
+        Path tablePath = Files.createTempFile("3x3", ".table");
+        FlatDeadlockTable generated;
+        try {
+            DeadlockTableGenerator generator = new DeadlockTableGenerator(3, 3, checkpoints);
+            generator.generate(2, new PrintStream(OutputStream.nullOutputStream()));
+
+            // resume after losing a subtree
+            Path subtree;
+            try (Stream<Path> files = Files.list(checkpoints)) {
+                subtree = files.findFirst().orElseThrow();
+            }
+            Files.delete(subtree);
+
+            generator.generate(2, new PrintStream(OutputStream.nullOutputStream()));
+            assertTrue(Files.exists(subtree));
+
+            generator.write(tablePath);
+            generated = FlatDeadlockTable.load(tablePath);
+        } finally {
+            try (Stream<Path> files = Files.list(checkpoints)) {
+                for (Path p : files.toList()) {
+                    Files.delete(p);
+                }
+            }
+            Files.delete(checkpoints);
+            Files.deleteIfExists(tablePath);
+        }
+
+        assertEquals(FlatDeadlockTable.of(tree).nNodes(), generated.nNodes());
+        assertSameDeadlocks(tree, generated);
+    }
+
+    /**
+     * Solvers must use the table given by their parameter, and the same file
+     * must be loaded once
+     */
+    @Test
+    void tableParameterTest() throws IOException {
+        Path tablePath = Files.createTempFile("3x3", ".table");
+        try {
+            FlatDeadlockTable.of(DeadlockTable.generate(3)).write(tablePath);
+
+            FlatDeadlockTable table = FlatDeadlockTable.get(tablePath);
+            assertSame(table, FlatDeadlockTable.get(tablePath.getParent().resolve(".").resolve(tablePath.getFileName())));
+            assertNotSame(table, FlatDeadlockTable.get(Path.of("../4x4.table")));
+
+            Level level = TestUtils.getLevel(Path.of("levels8xv/Original.8xv"), 0);
+            SolverReport report = TestUtils.solve(new AStarSolver(), level,
+                    AbstractSolver.DEADLOCK_TABLE, tablePath.toString());
+            assertTrue(report.isSolved());
+        } finally {
+            Files.deleteIfExists(tablePath);
+        }
+    }
+
+    private void assertSameDeadlocks(DeadlockTable tree, FlatDeadlockTable... flats) {
+        Tile[] tiles = new Tile[] {Tile.FLOOR, Tile.FLOOR, Tile.WALL, Tile.CRATE, Tile.TARGET};
+        Random random = new Random(42);
+        Board board = new MutableBoard(9, 9);
+
+        for (int i = 0; i < 1000; i++) {
+            for (int y = 0; y < board.getHeight(); y++) {
+                for (int x = 0; x < board.getWidth(); x++) {
+                    board.setAt(x, y, tiles[random.nextInt(tiles.length)]);
+                }
+            }
+
+            board.forEach((player) -> {
+                for (Direction dir : Direction.VALUES) {
+                    TileInfo crate = board.safeGetAt(player.getX() + dir.dirX(), player.getY() + dir.dirY());
+
+                    if (crate != null && crate.anyCrate()) {
+                        boolean expected = tree.isDeadlock(player, dir);
+                        for (FlatDeadlockTable flat : flats) {
+                            assertEquals(expected, flat.isDeadlock(player, dir));
+                        }
+                    }
+                }
+            });
+        }
+    }
+
     private void equals(DeadlockTable a, DeadlockTable b, int size) {
         int playerX = size / 2;
         int playerY = size - 1;
@@ -0,0 +1,53 @@
+package fr.valax.sokoshell.solver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FESS0SolverTest {
+
+    @Test
+    void queueTest() {
+        FESS0Solver.FESS0Queue q = new FESS0Solver.FESS0Queue();
+
+        assertTrue(q.isEmpty());
+        assertNull(q.popState());
+
+        q.addState(state(0, 5, 1, 10));
+        q.addState(state(1, 2, 3, 1));
+        q.addState(state(2, 2, 1, 7));
+        q.addState(state(3, 2, 1, 4));
+        q.addState(state(4, 12, 0, 0));
+        q.addState(state(5, 2, 2, 0));
+
+        assertEquals(6, q.size());
+        assertEquals(List.of(
+                new BucketTrackable.Bucket("packing=12, connectivity=0", 1),
+                new BucketTrackable.Bucket("packing=5, connectivity=1", 1),
+                new BucketTrackable.Bucket("packing=2, connectivity=1", 2),
+                new BucketTrackable.Bucket("packing=2, connectivity=2", 1),
+                new BucketTrackable.Bucket("packing=2, connectivity=3", 1)), q.bucketSizes());
+
+        // highest packing, then lowest connectivity, then lowest weight
+        assertEquals(4, q.peekState().playerPos());
+        assertEquals(4, q.popState().playerPos());
+        assertEquals(0, q.popState().playerPos());
+        assertEquals(3, q.popState().playerPos());
+
+        q.addState(state(6, 3, 5, 50));
+        assertEquals(6, q.popState().playerPos());
+
+        assertEquals(2, q.popState().playerPos());
+        assertEquals(5, q.popState().playerPos());
+        assertEquals(1, q.popState().playerPos());
+
+        assertTrue(q.isEmpty());
+        assertEquals(List.of(), q.bucketSizes());
+    }
+
+    private static FESS0Solver.FESS0State state(int playerPos, int packing, int connectivity, int weight) {
+        return new FESS0Solver.FESS0State(new State(playerPos, new int[1], 0, null), 0, weight, connectivity, packing);
+    }
+}
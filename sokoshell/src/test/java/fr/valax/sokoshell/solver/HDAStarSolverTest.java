@@ -0,0 +1,92 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.TestUtils;
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.board.Move;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HDAStarSolverTest {
+
+    @Test
+    void solveTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+
+        // small levels where the solution built from the states doesn't add pushes:
+        // the number of pushes of the report is the cost found by the solvers
+        for (int i = 0; i < 5; i++) {
+            Level level = pack.getLevel(i);
+
+            SolverReport expected = TestUtils.solve(new AStarSolver(), level, "heuristic", "matching");
+            assertTrue(expected.isSolved());
+
+            for (int threads = 2; threads <= 4; threads++) {
+                SolverReport report = TestUtils.solve(new HDAStarSolver(), level,
+                        "heuristic", "matching", HDAStarSolver.THREADS, Integer.toString(threads));
+
+                assertTrue(report.isSolved());
+                assertSolution(report);
+                assertNoWorkerAlive();
+
+                // the matching heuristic is admissible: both solvers find a solution with the minimal number of pushes
+                assertEquals(expected.numberOfPushes(), report.numberOfPushes(),
+                        "Level " + i + " with " + threads + " threads");
+            }
+        }
+    }
+
+    @Test
+    void noSolutionTest() {
+        // the crate is against a wall and can't be pushed to the target
+        Level level = TestUtils.getLevel("""
+                #####
+                #.  #
+                #  $#
+                #@  #
+                #####
+                """);
+
+        SolverReport report = TestUtils.solve(new HDAStarSolver(), level, HDAStarSolver.THREADS, "4");
+
+        assertEquals(SolverReport.NO_SOLUTION, report.getStatus());
+        assertNoWorkerAlive();
+    }
+
+    /**
+     * Plays the solution and checks that each move is legal and that the level is solved at the end
+     */
+    private static void assertSolution(SolverReport report) {
+        Level level = report.getLevel();
+        Board board = new MutableBoard(level);
+        TileInfo player = board.getAt(level.getPlayerX(), level.getPlayerY());
+
+        for (Move move : report.getFullSolution()) {
+            TileInfo dest = player.adjacent(move.direction());
+            assertFalse(dest.isSolid() && !dest.anyCrate());
+            assertEquals(move.moveCrate(), dest.anyCrate());
+
+            if (move.moveCrate()) {
+                TileInfo crateDest = dest.adjacent(move.direction());
+                assertFalse(crateDest.isSolid());
+
+                dest.removeCrate();
+                crateDest.addCrate();
+            }
+
+            player = dest;
+        }
+
+        assertTrue(board.isCompleted());
+    }
+
+    private static void assertNoWorkerAlive() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertFalse(thread.getName().startsWith("HDA*-worker-") && thread.isAlive(), thread.getName());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package fr.valax.sokoshell.solver;
+
+import fr.valax.sokoshell.TestUtils;
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+public class LevelDeadlockTableTest {
+
+    /**
+     * A placement of two crates is a deadlock if and only if a forward research can't solve it
+     */
+    @Test
+    void pairTest() throws IOException {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+        Random random = new Random(42);
+        int[] placement = new int[3];
+
+        int deadlocks = 0;
+        for (int l = 0; l < 20; l++) {
+            Level level = pack.getLevel(l);
+            Board board = TestUtils.createBoard(level);
+            LevelDeadlockTable table = LevelDeadlockTable.getOrCreate(board, level.getNumberOfCrates(), 0, null);
+            if (table == null) {
+                continue;
+            }
+
+            List<TileInfo> tiles = new ArrayList<>();
+            board.forEachNotWall((tile) -> {
+                if (!tile.isDeadTile()) {
+                    tiles.add(tile);
+                }
+            });
+
+            for (int i = 0; i < 20; i++) {
+                Collections.shuffle(tiles, random);
+                int a = tiles.get(0).getIndex();
+                int b = tiles.get(1).getIndex();
+
+                boolean expected = TestUtils.pushes(board, a, b) == Integer.MAX_VALUE;
+                Assertions.assertEquals(expected, table.isDeadlock(new int[] {a}, -1, b, placement));
+                Assertions.assertEquals(expected, table.isDeadlock(new int[] {b}, -1, a, placement));
+
+                if (expected) {
+                    // the moved crate isn't part of the placement
+                    Assertions.assertFalse(table.isDeadlock(new int[] {a}, a, b, placement));
+                    deadlocks++;
+                }
+            }
+        }
+
+        Assertions.assertTrue(deadlocks > 0);
+    }
+}
@@ -0,0 +1,53 @@
+package fr.valax.sokoshell.solver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateTest {
+
+    @Test
+    void childTest() {
+        Zobrist zobrist = new Zobrist(100, 42);
+
+        int[] crates = new int[] {5, 8, 13, 40, 41};
+        State state = new State(0, crates, zobrist.hash(0, crates), null);
+
+        State child = state.child(zobrist, 7, 1, 42);
+        assertArrayEquals(new int[] {5, 13, 40, 41, 42}, child.cratesIndices());
+        assertEquals(zobrist.hash(7, child.cratesIndices()), child.hash());
+        assertArrayEquals(new int[] {5, 8, 13, 40, 41}, state.cratesIndices());
+
+        child = state.child(zobrist, 7, 3, 0);
+        assertArrayEquals(new int[] {0, 5, 8, 13, 41}, child.cratesIndices());
+
+        child = state.child(zobrist, 7, 2, 12);
+        assertArrayEquals(new int[] {5, 8, 12, 40, 41}, child.cratesIndices());
+
+        // random moves
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int crate = random.nextInt(crates.length);
+            int dest = random.nextInt(100);
+            int player = random.nextInt(100);
+
+            if (Arrays.binarySearch(state.cratesIndices(), dest) >= 0) {
+                continue;
+            }
+
+            int[] expected = state.cratesIndices().clone();
+            expected[crate] = dest;
+            Arrays.sort(expected);
+
+            child = state.child(zobrist, player, crate, dest);
+            assertArrayEquals(expected, child.cratesIndices());
+            assertEquals(zobrist.hash(player, expected), child.hash());
+            assertEquals(new State(player, expected, zobrist.hash(player, expected), null), child);
+
+            state = child;
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package fr.valax.sokoshell.solver.collections;
 
+import fr.valax.sokoshell.solver.CacheStatistics;
 import fr.valax.sokoshell.solver.State;
 import fr.valax.sokoshell.solver.WeightedState;
+import fr.valax.sokoshell.solver.Zobrist;
+import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.board.tiles.Tile;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CollectionsTest {
@@ -15,8 +24,6 @@ public class CollectionsTest {
         assertEquals(0, h.size());
         assertTrue(h.isEmpty());
 
-        State.initZobristValues(10);
-
         h.add(0, 0);
         h.add(3, 3);
         h.add(9, 9);
@@ -78,8 +85,6 @@ public class CollectionsTest {
         assertEquals(0, q.size());
         assertTrue(q.isEmpty());
 
-        State.initZobristValues(10);
-
         q.addState(new WeightedState(0, new int[1], 0, null, 0, 0));
         q.addState(new WeightedState(3, new int[1], 0, null, 0, 3));
         q.addState(new WeightedState(9, new int[1], 0, null, 0, 9));
@@ -133,4 +138,308 @@ public class CollectionsTest {
         s = q.popState();
         assertEquals(9, s.playerPos());
     }
+
+    @Test
+    void bucketPriorityQueueTest() {
+        BucketPriorityQueue<WeightedState> q = new BucketPriorityQueue<>();
+
+        assertEquals(0, q.size());
+        assertTrue(q.isEmpty());
+        assertNull(q.popState());
+
+        q.addState(new WeightedState(3, new int[1], 0, null, 0, 3));
+        q.addState(new WeightedState(200, new int[1], 0, null, 0, 200));
+        q.addState(new WeightedState(1, new int[1], 0, null, 0, 1));
+        q.addState(new WeightedState(4, new int[1], 0, null, 1, 2));
+        q.addState(new WeightedState(5, new int[1], 0, null, 2, 1));
+
+        assertEquals(5, q.size());
+        assertEquals(1, q.peekState().playerPos());
+        assertEquals(1, q.popState().playerPos());
+
+        // same weight: last in, first out
+        assertEquals(5, q.popState().playerPos());
+        assertEquals(4, q.popState().playerPos());
+
+        // lower than the last popped weight
+        q.addState(new WeightedState(0, new int[1], 0, null, 0, 0));
+        assertEquals(0, q.popState().playerPos());
+        assertEquals(3, q.popState().playerPos());
+        assertEquals(200, q.popState().playerPos());
+
+        assertEquals(0, q.size());
+        assertTrue(q.isEmpty());
+
+        // compare with the heap
+        SolverPriorityQueue heap = new SolverPriorityQueue();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            if (random.nextInt(3) == 0 && !q.isEmpty()) {
+                assertEquals(heap.popState().weight(), q.popState().weight());
+            } else {
+                WeightedState s = new WeightedState(i, new int[1], 0, null, random.nextInt(100), random.nextInt(100));
+                q.addState(s);
+                heap.addState(s);
+            }
+
+            assertEquals(heap.size(), q.size());
+        }
+
+        q.clear();
+        assertTrue(q.isEmpty());
+        assertNull(q.peekState());
+    }
+
+    @Test
+    void transpositionTableTest() {
+        TranspositionTable table = new TranspositionTable();
+
+        assertEquals(0, table.size());
+        assertTrue(table.isEmpty());
+
+        Zobrist zobrist = new Zobrist(100, 42);
+
+        // same crates, different order
+        assertTrue(table.add(state(zobrist, 0, new int[] {5, 8, 13})));
+        assertFalse(table.add(state(zobrist, 0, new int[] {13, 5, 8})));
+        assertTrue(table.contains(state(zobrist, 0, new int[] {8, 13, 5})));
+        assertFalse(table.contains(state(zobrist, 1, new int[] {5, 8, 13})));
+        assertEquals(1, table.size());
+
+        assertThrows(IllegalArgumentException.class, () -> table.add(state(zobrist, 0, new int[] {5, 8})));
+
+        // compare with a hash set. Enough states are added to force the table to grow
+        Set<State> set = new HashSet<>();
+        set.add(state(zobrist, 0, new int[] {5, 8, 13}));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int[] crates = random.ints(0, 100).distinct().limit(3).toArray();
+            State state = state(zobrist, random.nextInt(100), crates);
+
+            assertEquals(set.add(state), table.add(state));
+        }
+
+        assertEquals(set.size(), table.size());
+        for (State state : set) {
+            assertTrue(table.contains(state));
+        }
+
+        long memory = table.memoryUsage();
+        assertTrue(memory > (long) table.size() * 5 * Integer.BYTES);
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertTrue(table.memoryUsage() < memory);
+
+        // the number of crates can change after clear
+        assertTrue(table.add(state(zobrist, 0, new int[] {5, 8})));
+    }
+
+    @Test
+    void transpositionTableCostTest() {
+        TranspositionTable table = new TranspositionTable();
+        table.setRememberCosts(true);
+
+        Zobrist zobrist = new Zobrist(100, 42);
+        State state = state(zobrist, 0, new int[] {5, 8, 13});
+
+        assertTrue(table.add(state, 10));
+        assertEquals(10, table.cost(state));
+        assertFalse(table.add(state, 10));
+        assertFalse(table.add(state, 12));
+        assertTrue(table.add(state, 7));
+        assertEquals(7, table.cost(state));
+        assertEquals(1, table.size());
+        assertEquals(-1, table.cost(state(zobrist, 1, new int[] {5, 8, 13})));
+
+        // the costs are moved when the table grows
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int[] crates = random.ints(0, 100).distinct().limit(3).toArray();
+            State s = state(zobrist, random.nextInt(100), crates);
+
+            table.add(s, table.contains(s) ? table.cost(s) : i);
+        }
+        assertEquals(7, table.cost(state));
+
+        // costs are still remembered after clear
+        table.clear();
+        assertTrue(table.remembersCosts());
+        assertTrue(table.add(state, 3));
+        assertEquals(3, table.cost(state));
+        assertThrows(IllegalStateException.class, () -> table.setRememberCosts(false));
+
+        assertThrows(IllegalStateException.class, () -> new TranspositionTable().cost(state));
+    }
+
+    @Test
+    void transpositionTableBitsetTest() {
+        // walls on the border: 64 floors, encoded in 2 ints
+        MutableBoard board = new MutableBoard(10, 10);
+        for (int i = 0; i < 10; i++) {
+            board.setAt(i, 0, Tile.WALL);
+            board.setAt(i, 9, Tile.WALL);
+            board.setAt(0, i, Tile.WALL);
+            board.setAt(9, i, Tile.WALL);
+        }
+        board.computeFloors();
+
+        assertEquals(2, new BitsetEncoding(board).size());
+        assertTrue(CratesEncoding.smallest(board, 3) instanceof BitsetEncoding);
+        assertTrue(CratesEncoding.smallest(board, 2) instanceof IndicesEncoding);
+
+        TranspositionTable table = new TranspositionTable();
+        table.setEncoding(new BitsetEncoding(board));
+
+        Zobrist zobrist = new Zobrist(100, 42);
+        Set<State> set = new HashSet<>();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int[] crates = random.ints(0, 64)
+                    .map((f) -> (f / 8 + 1) * 10 + f % 8 + 1) // floor index to tile index
+                    .distinct()
+                    .limit(3)
+                    .toArray();
+            State state = state(zobrist, random.nextInt(100), crates);
+
+            assertEquals(set.add(state), table.add(state));
+        }
+
+        assertEquals(set.size(), table.size());
+        for (State state : set) {
+            assertTrue(table.contains(state));
+        }
+
+        assertThrows(IllegalStateException.class, () -> table.setEncoding(null));
+        table.clear();
+        assertNull(table.getEncoding());
+    }
+
+    @Test
+    void externalBFSQueueTest() {
+        Zobrist zobrist = new Zobrist(100, 42);
+
+        // buffer of one state: each state is written in its own run
+        ExternalBFSQueue q = new ExternalBFSQueue(null, zobrist, 1);
+        assertTrue(q.isEmpty());
+        assertFalse(q.advanceLayer());
+
+        State initial = state(zobrist, 0, new int[] {10, 20});
+        q.addState(initial);
+        assertFalse(q.isEmpty());
+        assertNull(q.peekState()); // not merged
+        assertTrue(q.advanceLayer());
+        assertEquals(initial, q.peekAndCacheState());
+        assertTrue(q.isEmpty());
+
+        q.addState(initial.child(zobrist, 2, 1, 21));
+        q.addState(initial.child(zobrist, 1, 0, 11));
+        q.addState(initial.child(zobrist, 2, 1, 21)); // duplicate
+        assertFalse(q.isEmpty());
+        assertEquals(3, q.size()); // duplicates are removed by the merge
+        assertTrue(q.advanceLayer());
+        assertEquals(2, q.size());
+
+        // sorted by player position
+        State s = q.peekAndCacheState();
+        assertEquals(state(zobrist, 1, new int[] {11, 20}), s);
+        q.addState(s.child(zobrist, 0, 0, 10)); // in a previous layer
+        q.addState(s.child(zobrist, 5, 1, 21));
+
+        assertTrue(q.advanceLayer()); // the current layer isn't exhausted
+        s = q.peekAndCacheState();
+        assertEquals(state(zobrist, 2, new int[] {10, 21}), s);
+        q.addState(s.child(zobrist, 5, 0, 11)); // duplicate
+
+        assertFalse(q.isEmpty());
+        assertTrue(q.advanceLayer());
+        assertEquals(1, q.size());
+        s = q.peekAndCacheState();
+        assertEquals(state(zobrist, 5, new int[] {11, 21}), s);
+        assertTrue(q.isEmpty());
+        assertEquals(3, q.nLayers());
+        assertEquals(4, q.nStates());
+
+        State withParents = q.cachedStateWithParents();
+        assertEquals(s, withParents);
+        // both states of the second layer are parents of s
+        assertTrue(withParents.parent().equals(state(zobrist, 1, new int[] {11, 20})) ||
+                withParents.parent().equals(state(zobrist, 2, new int[] {10, 21})));
+        assertEquals(initial, withParents.parent().parent());
+        assertNull(withParents.parent().parent().parent());
+
+        q.clear();
+        assertTrue(q.isEmpty());
+    }
+
+    private static State state(Zobrist zobrist, int playerPos, int[] crates) {
+        int[] sorted = crates.clone();
+        Arrays.sort(sorted);
+
+        return new State(playerPos, sorted, zobrist.hash(playerPos, sorted), null);
+    }
+
+    @Test
+    void clockCacheTest() {
+        ClockCache cache = new ClockCache(4 * ClockCache.WAYS);
+        assertEquals(4 * ClockCache.WAYS, cache.capacity());
+
+        // all keys are in the same set
+        for (int i = 1; i <= ClockCache.WAYS; i++) {
+            assertFalse(cache.contains(i * 4L));
+            cache.add(i * 4L);
+        }
+        assertEquals(ClockCache.WAYS, cache.size());
+
+        // reference all keys except 8
+        for (int i = 1; i <= ClockCache.WAYS; i++) {
+            if (i != 2) {
+                assertTrue(cache.contains(i * 4L));
+            }
+        }
+
+        // 8 is evicted, the others get a second chance
+        cache.add(100);
+        assertTrue(cache.contains(100));
+        assertFalse(cache.contains(8));
+        assertTrue(cache.contains(4));
+        assertEquals(ClockCache.WAYS, cache.size());
+
+        // other sets are untouched
+        cache.add(1);
+        assertTrue(cache.contains(1));
+
+        assertFalse(cache.contains(0));
+        cache.add(0);
+        assertFalse(cache.contains(0));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(cache.contains(4));
+    }
+
+    @Test
+    void intClockCacheTest() {
+        IntClockCache cache = new IntClockCache(4 * ClockCache.WAYS);
+
+        for (int i = 1; i <= ClockCache.WAYS; i++) {
+            assertEquals(-1, cache.get(i * 4L, -1));
+            cache.put(i * 4L, i);
+        }
+        for (int i = 1; i <= ClockCache.WAYS; i++) {
+            assertEquals(i, cache.get(i * 4L, -1));
+        }
+
+        // 4 is evicted: all keys were referenced, so the hand does a full turn
+        cache.put(100, 42);
+        assertEquals(42, cache.get(100, -1));
+        assertEquals(-1, cache.get(4, -1));
+        assertEquals(2, cache.get(8, -1));
+        assertEquals(ClockCache.WAYS, cache.size());
+
+        assertEquals(new CacheStatistics(ClockCache.WAYS, ClockCache.WAYS + 2, ClockCache.WAYS + 1, cache.memoryUsage()),
+                cache.getStatistics());
+    }
 }
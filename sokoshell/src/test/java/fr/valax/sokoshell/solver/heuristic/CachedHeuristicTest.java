@@ -0,0 +1,63 @@
+package fr.valax.sokoshell.solver.heuristic;
+
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.Zobrist;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CachedHeuristicTest {
+
+    @Test
+    void cacheTest() {
+        Zobrist zobrist = new Zobrist(100, 42);
+        CountingHeuristic counting = new CountingHeuristic();
+        CachedHeuristic h = new CachedHeuristic(counting, zobrist, 64);
+
+        // same crates, different players
+        State a = newState(zobrist, 0, 10, 20, 30);
+        State b = newState(zobrist, 5, 10, 20, 30);
+        assertEquals(60, h.compute(a));
+        assertEquals(60, h.compute(b));
+        assertEquals(1, counting.count);
+
+        // child of a: the crate at 20 is moved to 21
+        assertEquals(61, h.compute(a, 60, 1, 20, 21));
+        assertEquals(2, counting.count);
+
+        // same crates as the child
+        assertEquals(61, h.compute(newState(zobrist, 20, 10, 21, 30)));
+        assertEquals(61, h.compute(b, 60, 1, 20, 21));
+        assertEquals(2, counting.count);
+
+        assertEquals(2, h.getStatistics().size());
+        assertEquals(3, h.getStatistics().hits());
+        assertEquals(2, h.getStatistics().misses());
+    }
+
+    private static State newState(Zobrist zobrist, int playerPos, int... crates) {
+        return new State(playerPos, crates, zobrist.hash(playerPos, crates), null);
+    }
+
+    /**
+     * Sum of the positions of the crates
+     */
+    private static class CountingHeuristic implements Heuristic {
+
+        private int count;
+
+        @Override
+        public int compute(State s) {
+            count++;
+            return Arrays.stream(s.cratesIndices()).sum();
+        }
+
+        @Override
+        public int compute(State parent, int parentHeuristic, int crate, int from, int to) {
+            count++;
+            return parentHeuristic - from + to;
+        }
+    }
+}
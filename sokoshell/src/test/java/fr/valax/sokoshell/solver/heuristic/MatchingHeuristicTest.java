@@ -0,0 +1,100 @@
+package fr.valax.sokoshell.solver.heuristic;
+
+import fr.valax.sokoshell.TestUtils;
+import fr.valax.sokoshell.solver.Level;
+import fr.valax.sokoshell.solver.Pack;
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.MutableBoard;
+import fr.valax.sokoshell.solver.board.PushDistances;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class MatchingHeuristicTest {
+
+    /**
+     * The matching must be the cheapest assignment of the crates to the targets
+     */
+    @Test
+    void minimumTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+        Random random = new Random(42);
+
+        for (Level level : pack.levels()) {
+            State init = level.getInitialState();
+            if (init.numberOfCrates() > 6) {
+                continue;
+            }
+
+            Board board = new MutableBoard(level);
+            board.removeStateCrates(init);
+            board.initForSolver();
+
+            List<TileInfo> floors = new ArrayList<>();
+            board.forEachNotWall(floors::add);
+
+            List<TileInfo> targets = new ArrayList<>();
+            board.forEach((t) -> {
+                if (t.isTarget()) {
+                    targets.add(t);
+                }
+            });
+
+            MatchingHeuristic h = new MatchingHeuristic(board);
+            for (int i = 0; i < 10; i++) {
+                Collections.shuffle(floors, random);
+
+                int[] crates = new int[init.numberOfCrates()];
+                for (int j = 0; j < crates.length; j++) {
+                    crates[j] = floors.get(j).getIndex();
+                }
+                Arrays.sort(crates);
+
+                int expected = minimumCost(board, crates, targets, 0, new boolean[targets.size()]);
+                Assertions.assertEquals(expected, h.compute(new State(0, crates, 0, null)));
+            }
+        }
+    }
+
+    private int minimumCost(Board board, int[] crates, List<TileInfo> targets, int crate, boolean[] used) {
+        if (crate == crates.length) {
+            return 0;
+        }
+
+        int min = Integer.MAX_VALUE;
+        for (int j = 0; j < targets.size(); j++) {
+            if (!used[j]) {
+                used[j] = true;
+                int cost = distance(board, board.getAt(crates[crate]), targets.get(j))
+                        + minimumCost(board, crates, targets, crate + 1, used);
+                min = Math.min(min, cost);
+                used[j] = false;
+            }
+        }
+
+        return min;
+    }
+
+    private int distance(Board board, TileInfo tile, TileInfo target) {
+        PushDistances distances = board.getPackedBoard().getPushDistances();
+
+        return distances.distance(tile.getIndex(), distances.getTargetNumber(target.getIndex()));
+    }
+
+    /**
+     * The heuristic of a child repaired from its parent must be the heuristic
+     * computed from scratch
+     */
+    @Test
+    void incrementalTest() {
+        TestUtils.assertIncremental(MatchingHeuristic::new);
+    }
+}
@@ -0,0 +1,189 @@
+package fr.valax.sokoshell.solver.heuristic;
+
+import fr.valax.sokoshell.TestUtils;
+import fr.valax.sokoshell.solver.AStarSolver;
+import fr.valax.sokoshell.solver.AbstractSolver;
+import fr.valax.sokoshell.solver.Level;
+import fr.valax.sokoshell.solver.Pack;
+import fr.valax.sokoshell.solver.SolverReport;
+import fr.valax.sokoshell.solver.State;
+import fr.valax.sokoshell.solver.board.Board;
+import fr.valax.sokoshell.solver.board.PushDistances;
+import fr.valax.sokoshell.solver.board.tiles.TileInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class PatternDatabaseTest {
+
+    /**
+     * With one crate, the distance is the push distance to the nearest target
+     */
+    @Test
+    void singleCrateTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+
+        for (int l = 0; l < 20; l++) {
+            Board board = TestUtils.createBoard(pack.getLevel(l));
+            PatternDatabase database = PatternDatabase.create(board, 1);
+            PushDistances distances = board.getPackedBoard().getPushDistances();
+
+            board.forEachNotWall((tile) -> {
+                if (tile.isDeadTile()) {
+                    return;
+                }
+
+                int expected = PushDistances.INFINITY;
+                for (int t = 0; t < distances.getTargetCount(); t++) {
+                    expected = Math.min(expected, distances.distance(tile.getIndex(), t));
+                }
+
+                Assertions.assertEquals(expected, database.distance(new int[] {tile.getIndex()}, 0));
+            });
+        }
+    }
+
+    /**
+     * The distance of two crates must be the one found by a forward research
+     */
+    @Test
+    void pairTest() {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+        Random random = new Random(42);
+
+        for (int l = 0; l < 10; l++) {
+            Board board = TestUtils.createBoard(pack.getLevel(l));
+            PatternDatabase database = PatternDatabase.create(board, 2);
+
+            List<TileInfo> tiles = new ArrayList<>();
+            board.forEachNotWall((tile) -> {
+                if (!tile.isDeadTile()) {
+                    tiles.add(tile);
+                }
+            });
+
+            for (int i = 0; i < 10; i++) {
+                Collections.shuffle(tiles, random);
+
+                int[] crates = new int[] {tiles.get(0).getIndex(), tiles.get(1).getIndex()};
+                Arrays.sort(crates);
+
+                int expected = Math.min(TestUtils.pushes(board, crates[0], crates[1]), PatternDatabase.UNSOLVABLE);
+                Assertions.assertEquals(expected, database.distance(crates, 0));
+            }
+        }
+    }
+
+    @Test
+    void cacheTest() throws IOException {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+        Board board = TestUtils.createBoard(pack.getLevel(3));
+        Path directory = Files.createTempDirectory("patterns");
+
+        PatternDatabase created = PatternDatabase.getOrCreate(board, 2, directory);
+        Path file = directory.resolve("%016x-2.pdb".formatted(PatternDatabase.hash(board)));
+        Assertions.assertTrue(Files.exists(file));
+
+        PatternDatabase read = PatternDatabase.getOrCreate(board, 2, directory);
+        Assertions.assertEquals(created.placementCount(), read.placementCount());
+
+        List<TileInfo> tiles = new ArrayList<>();
+        board.forEachNotWall(tiles::add);
+        for (int i = 0; i < tiles.size(); i++) {
+            for (int j = i + 1; j < tiles.size(); j++) {
+                int[] crates = new int[] {tiles.get(i).getIndex(), tiles.get(j).getIndex()};
+
+                Assertions.assertEquals(created.distance(crates, 0), read.distance(crates, 0));
+            }
+        }
+
+        // a file that isn't a database must not be silently replaced
+        Files.write(file, new byte[] {1, 2, 3, 4});
+        Assertions.assertThrows(IOException.class, () -> PatternDatabase.getOrCreate(board, 2, directory));
+
+        Files.delete(file);
+        Files.delete(directory);
+    }
+
+    /**
+     * Groups of crates are at least as good as crates alone
+     */
+    @Test
+    void heuristicTest() throws IOException {
+        Pack pack = TestUtils.getPack(Path.of("levels8xv/Microban.8xv"));
+
+        for (int l = 0; l < 20; l++) {
+            Level level = pack.getLevel(l);
+            Board board = TestUtils.createBoard(level);
+            State init = level.getInitialState();
+
+            PatternDatabaseHeuristic h = new PatternDatabaseHeuristic(board, 3, PatternDatabaseHeuristic.DEFAULT_MAX_STATES, null);
+            SimpleHeuristic simple = new SimpleHeuristic(board);
+
+            Assertions.assertEquals(Math.min(3, board.getTargetCount()), h.getSize());
+            Assertions.assertTrue(h.compute(init) >= simple.compute(init));
+
+            // the databases are shared with a heuristic of another board of the level
+            PatternDatabaseHeuristic shared = new PatternDatabaseHeuristic(TestUtils.createBoard(level), h);
+            Assertions.assertEquals(h.getSize(), shared.getSize());
+            Assertions.assertEquals(h.compute(init), shared.compute(init));
+        }
+    }
+
+    /**
+     * A group that can't be solved must make the heuristic infinite
+     */
+    @Test
+    void unsolvableTest() throws IOException {
+        Level level = TestUtils.getLevel("""
+                ########
+                #.    .#
+                # $  $ #
+                #  @   #
+                ########
+                """);
+        Board board = TestUtils.createBoard(level);
+        PatternDatabaseHeuristic h = new PatternDatabaseHeuristic(board, 2, PatternDatabaseHeuristic.DEFAULT_MAX_STATES, null);
+
+        // both crates are against the wall and block each other
+        int[] crates = new int[] {board.getIndex(3, 1), board.getIndex(4, 1)};
+        Assertions.assertFalse(board.getAt(crates[0]).isDeadTile());
+        Assertions.assertFalse(board.getAt(crates[1]).isDeadTile());
+        Assertions.assertEquals(Heuristic.INFINITY, h.compute(new State(board.getIndex(3, 3), crates, 0, null)));
+
+        Assertions.assertNotEquals(Heuristic.INFINITY, h.compute(level.getInitialState()));
+    }
+
+    /**
+     * Solvers cache the databases in the directory given by their parameters
+     */
+    @Test
+    void solverDirectoryTest() throws IOException {
+        Path directory = Files.createTempDirectory("patterns");
+
+        try {
+            Level level = TestUtils.getLevel(Path.of("levels8xv/Microban.8xv"), 0);
+            SolverReport report = TestUtils.solve(new AStarSolver(), level,
+                    "heuristic", "pattern",
+                    AbstractSolver.LEVEL_DEADLOCKS, "false",
+                    AbstractSolver.LEVEL_DEADLOCKS_CACHE, directory.toString());
+
+            Assertions.assertTrue(report.isSolved());
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertNotEquals(0, files.count());
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path p : files.toList()) {
+                    Files.delete(p);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+}
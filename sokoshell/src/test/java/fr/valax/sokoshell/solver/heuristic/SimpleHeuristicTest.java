@@ -9,7 +9,6 @@ import fr.valax.sokoshell.solver.board.MutableBoard;
 import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
-import java.util.Arrays;
 
 public class SimpleHeuristicTest {
 
@@ -26,11 +25,20 @@ public class SimpleHeuristicTest {
 
         for (int y = 0; y < board.getHeight(); y++) {
             for (int x = 0; x < board.getWidth(); x++) {
-                System.out.printf("(%d,%d) : %s%n", x, y, Arrays.toString(board.getAt(x, y).getTargets()));
+                System.out.printf("(%d,%d) : %d%n", x, y, board.getPackedBoard().getNearestTargetDistance(board.getIndex(x, y)));
             }
         }
 
         SimpleHeuristic h = new SimpleHeuristic(board);
         System.out.println(h);
     }
+
+    /**
+     * The heuristic of a child computed from its parent must be the heuristic
+     * computed from scratch
+     */
+    @Test
+    void incrementalTest() {
+        TestUtils.assertIncremental(SimpleHeuristic::new);
+    }
 }
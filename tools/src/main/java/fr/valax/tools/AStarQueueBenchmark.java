@@ -0,0 +1,73 @@
+package fr.valax.tools;
+
+import fr.poulpogaz.json.JsonException;
+import fr.valax.sokoshell.commands.AbstractCommand;
+import fr.valax.sokoshell.readers.PackReaders;
+import fr.valax.sokoshell.solver.AStarSolver;
+import fr.valax.sokoshell.solver.AbstractSolver;
+import fr.valax.sokoshell.solver.Level;
+import fr.valax.sokoshell.solver.Pack;
+import fr.valax.sokoshell.solver.SolverParameter;
+import fr.valax.sokoshell.solver.SolverParameters;
+import fr.valax.sokoshell.solver.SolverReport;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compares the bucket queue and the heap of {@link AStarSolver} on the large test suite.
+ * It must be run from the root of the project, where the deadlock table is.
+ * Usage: {@code AStarQueueBenchmark [pack] [number of levels] [timeout in ms]}
+ */
+public class AStarQueueBenchmark {
+
+    public static void main(String[] args) throws IOException, JsonException, AbstractCommand.InvalidArgument {
+        Path packPath = Path.of("levels/large_test_suite/" + (args.length > 0 ? args[0] : "Microban_155.xsb"));
+        int nLevels = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        long timeout = args.length > 2 ? Long.parseLong(args[2]) : 20_000;
+
+        Pack pack = PackReaders.read(packPath, false);
+
+        long[] heap = run(pack, "heap", nLevels, timeout);
+        long[] bucket = run(pack, "bucket", nLevels, timeout);
+
+        System.out.printf("heap:   %d solved in %d ms, %d states explored%n", heap[0], heap[1], heap[2]);
+        System.out.printf("bucket: %d solved in %d ms, %d states explored%n", bucket[0], bucket[1], bucket[2]);
+    }
+
+    /**
+     * @return number of solved levels, total time in milliseconds and number of explored states
+     */
+    private static long[] run(Pack pack, String queue, int nLevels, long timeout) throws AbstractCommand.InvalidArgument {
+        long[] result = new long[3];
+
+        for (int i = 0; i < Math.min(nLevels, pack.nLevels()); i++) {
+            Level level = pack.getLevel(i);
+
+            AStarSolver solver = new AStarSolver();
+            List<SolverParameter> params = solver.getParameters();
+            for (SolverParameter p : params) {
+                if (p.getName().equals(AbstractSolver.TIMEOUT)) {
+                    p.set(Long.toString(timeout));
+                } else if (p.getName().equals("queue")) {
+                    p.set(queue);
+                }
+            }
+
+            long start = System.currentTimeMillis();
+            SolverReport report = solver.solve(new SolverParameters(solver.getName(), level, params));
+            long time = System.currentTimeMillis() - start;
+
+            System.out.printf("%s - level %d: %s in %d ms%n", queue, i + 1, report.getStatus(), time);
+
+            if (report.isSolved()) {
+                result[0]++;
+            }
+            result[1] += time;
+            result[2] += solver.nStateExplored();
+        }
+
+        return result;
+    }
+}